@@ -0,0 +1,57 @@
+package com.personal_projects.common.Backpressure;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+
+import java.time.Duration;
+
+/**
+ * Database-aware backpressure shared by the services, imported by each service application.
+ * <p>
+ * When {@code backpressure.enabled} is set, the listener container factories install a
+ * {@link BackpressureRecordInterceptor}, and each container is paused by its {@link ListenerCircuitBreaker} when
+ * the records it processes fail on the database or slow down past the {@code backpressure.*} thresholds, or when
+ * a {@link DownstreamPool} of the service saturates. The Mongo backed services add theirs through
+ * {@link MongoBackpressureConfiguration}; the order service through its data source.
+ * </p>
+ * <p>
+ * The defaults of the {@code backpressure.*} thresholds are read from {@value #DEFAULTS}, below the properties of
+ * each service.
+ * </p>
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "backpressure.enabled", havingValue = "true")
+@PropertySource(BackpressureConfiguration.DEFAULTS)
+public class BackpressureConfiguration {
+
+    /** Classpath location of the backpressure defaults shared by the services. */
+    public static final String DEFAULTS = "classpath:defaults/backpressure.properties";
+
+    @Bean
+    public BackpressureThresholds backpressureThresholds(
+            @Value("${backpressure.window-size:50}") int windowSize,
+            @Value("${backpressure.minimum-records:20}") int minimumRecords,
+            @Value("${backpressure.failure-rate:0.5}") double failureRate,
+            @Value("${backpressure.slow-rate:0.5}") double slowRate,
+            @Value("${backpressure.slow-record-ms:500}") long slowRecordMs,
+            @Value("${backpressure.pool-saturation:1.5}") double poolSaturation,
+            @Value("${backpressure.open-ms:5000}") long openMs,
+            @Value("${backpressure.max-open-ms:60000}") long maxOpenMs,
+            @Value("${backpressure.probe-records:10}") int probeRecords) {
+        return new BackpressureThresholds(windowSize, minimumRecords, failureRate, slowRate,
+                Duration.ofMillis(slowRecordMs), poolSaturation, Duration.ofMillis(openMs), Duration.ofMillis(maxOpenMs),
+                probeRecords);
+    }
+
+    @Bean
+    public BackpressureMonitor backpressureMonitor(BackpressureThresholds backpressureThresholds,
+                                                   ObjectProvider<DownstreamPool> downstreamPools,
+                                                   MeterRegistry meterRegistry) {
+        return new BackpressureMonitor(backpressureThresholds, downstreamPools.orderedStream().toList(), meterRegistry);
+    }
+}
@@ -0,0 +1,107 @@
+package com.personal_projects.common.Backpressure;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Watches the health of the databases the listeners write to, and pauses each listener container through its own
+ * {@link ListenerCircuitBreaker} when they struggle, so the consumers stop adding failing writes to a database
+ * trying to recover.
+ * <p>
+ * The breakers see the processing time and the database failures of their records through a
+ * {@link BackpressureRecordInterceptor}, installed by the listener container factories. Every
+ * {@code backpressure.check-interval-ms}, the monitor reads the saturation of the {@link DownstreamPool}s and
+ * passes the highest to every breaker, which also moves them from open to half-open.
+ * </p>
+ * <p>
+ * The history of the breakers is published per listener: the transitions in
+ * {@code kafka.listener.backpressure.transitions}, by state entered and reason, the current state in
+ * {@code kafka.listener.backpressure.state} ({@code 0} closed, {@code 1} half-open, {@code 2} open), the paused
+ * partitions in {@code kafka.listener.backpressure.paused.partitions}, and the total time paused in
+ * {@code kafka.listener.backpressure.paused.time}. The pools' saturation is {@code downstream.pool.saturation}.
+ * </p>
+ */
+public class BackpressureMonitor {
+
+    private final BackpressureThresholds thresholds;
+    private final List<DownstreamPool> pools;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ListenerCircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs the monitor.
+     *
+     * @param thresholds    thresholds of the breakers
+     * @param pools         connection pools of the service's databases
+     * @param meterRegistry registry for the backpressure metrics
+     */
+    public BackpressureMonitor(BackpressureThresholds thresholds, List<DownstreamPool> pools,
+                               MeterRegistry meterRegistry) {
+        this.thresholds = thresholds;
+        this.pools = List.copyOf(pools);
+        this.meterRegistry = meterRegistry;
+        for (DownstreamPool pool : this.pools) {
+            Gauge.builder("downstream.pool.saturation", pool, DownstreamPool::saturation)
+                    .description("Connections in use and threads waiting for one, over the pool size")
+                    .tag("pool", pool.name())
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Creates the breaker of a listener container.
+     *
+     * @param container the container created for a {@code @KafkaListener}
+     * @return the breaker pausing the container
+     */
+    public ListenerCircuitBreaker breaker(MessageListenerContainer container) {
+        String listenerId = container.getListenerId();
+        ListenerCircuitBreaker breaker = new ListenerCircuitBreaker(listenerId, container, thresholds,
+                this::transitioned);
+        breakers.put(listenerId, breaker);
+        Gauge.builder("kafka.listener.backpressure.state", breaker, b -> b.state().ordinal())
+                .description("State of the listener's circuit breaker: 0 closed, 1 half-open, 2 open")
+                .tag("listener", listenerId)
+                .register(meterRegistry);
+        Gauge.builder("kafka.listener.backpressure.paused.partitions", breaker, ListenerCircuitBreaker::pausedPartitions)
+                .description("Partitions of the listener paused by its circuit breaker")
+                .tag("listener", listenerId)
+                .register(meterRegistry);
+        FunctionCounter.builder("kafka.listener.backpressure.paused.time", breaker, ListenerCircuitBreaker::pausedSeconds)
+                .description("Time the listener's circuit breaker kept partitions paused")
+                .baseUnit("seconds")
+                .tag("listener", listenerId)
+                .register(meterRegistry);
+        return breaker;
+    }
+
+    /**
+     * Passes the pool saturation to every breaker.
+     */
+    @Scheduled(fixedDelayString = "${backpressure.check-interval-ms:1000}")
+    public void check() {
+        double saturation = 0;
+        for (DownstreamPool pool : pools) {
+            saturation = Math.max(saturation, pool.saturation());
+        }
+        for (ListenerCircuitBreaker breaker : breakers.values()) {
+            breaker.tick(saturation);
+        }
+    }
+
+    private void transitioned(String listenerId, ListenerCircuitBreaker.State state, String reason) {
+        Counter.builder("kafka.listener.backpressure.transitions")
+                .description("State changes of the listener's circuit breaker")
+                .tags("listener", listenerId, "state", state.name().toLowerCase(), "reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+}
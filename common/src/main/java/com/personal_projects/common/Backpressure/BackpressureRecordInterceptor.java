@@ -0,0 +1,74 @@
+package com.personal_projects.common.Backpressure;
+
+import com.mongodb.MongoException;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessException;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.listener.RecordInterceptor;
+import org.springframework.transaction.TransactionException;
+
+import java.sql.SQLException;
+
+/**
+ * {@link RecordInterceptor} reporting the processing time of each record, and whether it failed on the database,
+ * to the {@link ListenerCircuitBreaker} of its container. Failures of the listener that do not come from the
+ * database, such as a record that cannot be deserialized, are not held against it.
+ *
+ * @param <K> the record key type
+ * @param <V> the record value type
+ */
+public class BackpressureRecordInterceptor<K, V> implements RecordInterceptor<K, V> {
+
+    private final ListenerCircuitBreaker breaker;
+    private final ThreadLocal<long[]> startNanos = ThreadLocal.withInitial(() -> new long[1]);
+
+    public BackpressureRecordInterceptor(ListenerCircuitBreaker breaker) {
+        this.breaker = breaker;
+    }
+
+    /**
+     * Creates an interceptor for a container if the service applies backpressure.
+     *
+     * @param monitor   the monitor, available when {@code backpressure.enabled} is set
+     * @param container the container created for a {@code @KafkaListener}
+     * @param <K>       the record key type
+     * @param <V>       the record value type
+     * @return the interceptor, or {@code null} when backpressure is off
+     */
+    public static <K, V> BackpressureRecordInterceptor<K, V> ifAvailable(ObjectProvider<BackpressureMonitor> monitor,
+                                                                         MessageListenerContainer container) {
+        BackpressureMonitor available = monitor.getIfAvailable();
+        return available == null ? null : new BackpressureRecordInterceptor<>(available.breaker(container));
+    }
+
+    @Override
+    public ConsumerRecord<K, V> intercept(ConsumerRecord<K, V> record, Consumer<K, V> consumer) {
+        startNanos.get()[0] = System.nanoTime();
+        return record;
+    }
+
+    @Override
+    public void success(ConsumerRecord<K, V> record, Consumer<K, V> consumer) {
+        breaker.record(System.nanoTime() - startNanos.get()[0], false);
+    }
+
+    @Override
+    public void failure(ConsumerRecord<K, V> record, Exception exception, Consumer<K, V> consumer) {
+        breaker.record(System.nanoTime() - startNanos.get()[0], isDownstream(exception));
+    }
+
+    static boolean isDownstream(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataAccessException || cause instanceof TransactionException
+                    || cause instanceof MongoException || cause instanceof SQLException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,37 @@
+package com.personal_projects.common.Backpressure;
+
+import java.time.Duration;
+
+/**
+ * Thresholds of the {@link ListenerCircuitBreaker}s, from the {@code backpressure.*} properties.
+ *
+ * @param windowSize      records of the sliding window the rates are computed over
+ * @param minimumRecords  records the window must hold before the rates can open the breaker
+ * @param failureRate     fraction of records failing on the database from which the breaker opens
+ * @param slowRate        fraction of slow records from which the breaker opens
+ * @param slowRecord      processing time from which a record is slow
+ * @param poolSaturation  connection pool saturation from which the breaker opens, see {@link DownstreamPool}
+ * @param openDuration    time the breaker stays open before probing, doubled after each failed probe
+ * @param maxOpenDuration longest time the breaker stays open
+ * @param probeRecords    records to process successfully before resuming one more partition
+ */
+public record BackpressureThresholds(int windowSize,
+                                     int minimumRecords,
+                                     double failureRate,
+                                     double slowRate,
+                                     Duration slowRecord,
+                                     double poolSaturation,
+                                     Duration openDuration,
+                                     Duration maxOpenDuration,
+                                     int probeRecords) {
+
+    public BackpressureThresholds {
+        if (windowSize < 1 || minimumRecords < 1 || minimumRecords > windowSize) {
+            throw new IllegalArgumentException("Expected 1 <= backpressure.minimum-records <= backpressure.window-size, was "
+                    + minimumRecords + " and " + windowSize);
+        }
+        if (probeRecords < 1) {
+            throw new IllegalArgumentException("backpressure.probe-records must be positive, was " + probeRecords);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.personal_projects.common.Backpressure;
+
+/**
+ * Connection pool of a database the listeners write to, watched by the {@link BackpressureMonitor}.
+ */
+public interface DownstreamPool {
+
+    /**
+     * @return name of the pool, for the metrics and logs
+     */
+    String name();
+
+    /**
+     * Returns how saturated the pool is: the connections in use plus the threads waiting for one, over the
+     * pool's maximum size. Above {@code 1}, callers queue for a connection.
+     *
+     * @return the saturation, {@code 0} for an idle pool
+     */
+    double saturation();
+}
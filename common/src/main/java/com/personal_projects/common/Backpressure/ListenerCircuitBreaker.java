@@ -0,0 +1,271 @@
+package com.personal_projects.common.Backpressure;
+
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Circuit breaker pausing the partitions of one listener container while the database it writes to struggles.
+ * <p>
+ * <b>Closed</b>, the breaker keeps the outcome of the last {@code windowSize} records. Once it holds
+ * {@code minimumRecords}, too high a rate of records failing on the database or of slow records opens it, as does
+ * a saturated connection pool at any time.
+ * </p>
+ * <p>
+ * <b>Open</b>, every assigned partition is paused: the consumer keeps polling, so it stays in its group, but
+ * fetches nothing, and the database is not sent writes bound to fail. After {@code openDuration}, if the pool is
+ * no longer saturated, the breaker is half-open.
+ * </p>
+ * <p>
+ * <b>Half-open</b>, partitions are resumed one at a time, the next one after {@code probeRecords} records were
+ * processed successfully, or right away when no record came in for an {@code openDuration}. The breaker closes
+ * once all are resumed. A failing or slow record, or a saturated pool, opens it again, for twice as long.
+ * </p>
+ */
+public class ListenerCircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListenerCircuitBreaker.class);
+
+    /**
+     * States of the breaker, their ordinal is published as the state gauge.
+     */
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    /**
+     * Notified of every state change.
+     */
+    @FunctionalInterface
+    public interface TransitionListener {
+        void transitioned(String listenerId, State state, String reason);
+    }
+
+    private final String listenerId;
+    private final MessageListenerContainer container;
+    private final BackpressureThresholds thresholds;
+    private final TransitionListener transitionListener;
+
+    private final Set<TopicPartition> resumed = new HashSet<>();
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private int recorded;
+    private int next;
+    private int failures;
+    private int slowRecords;
+
+    private State state = State.CLOSED;
+    private long stateSince = System.nanoTime();
+    private long openNanos;
+    private long pausedNanos;
+    private int probeSuccesses;
+    private long lastProbeProgress;
+
+    ListenerCircuitBreaker(String listenerId, MessageListenerContainer container,
+                           BackpressureThresholds thresholds, TransitionListener transitionListener) {
+        this.listenerId = listenerId;
+        this.container = container;
+        this.thresholds = thresholds;
+        this.transitionListener = transitionListener;
+        this.failed = new boolean[thresholds.windowSize()];
+        this.slow = new boolean[thresholds.windowSize()];
+        this.openNanos = thresholds.openDuration().toNanos();
+    }
+
+    /**
+     * Records the outcome of a record processed by the listener.
+     *
+     * @param processingNanos   how long the listener took
+     * @param downstreamFailure whether the listener failed on the database
+     */
+    public synchronized void record(long processingNanos, boolean downstreamFailure) {
+        boolean isSlow = processingNanos >= thresholds.slowRecord().toNanos();
+        switch (state) {
+            case CLOSED -> {
+                add(downstreamFailure, isSlow);
+                if (recorded >= thresholds.minimumRecords()) {
+                    if (failures >= thresholds.failureRate() * recorded) {
+                        open("failures", false);
+                    } else if (slowRecords >= thresholds.slowRate() * recorded) {
+                        open("latency", false);
+                    }
+                }
+            }
+            case HALF_OPEN -> {
+                if (downstreamFailure || isSlow) {
+                    open(downstreamFailure ? "failures" : "latency", true);
+                } else if (++probeSuccesses >= thresholds.probeRecords()) {
+                    resumeNext("probe");
+                }
+            }
+            case OPEN -> {
+                // Records fetched before the partitions were paused, their outcome says nothing new
+            }
+        }
+    }
+
+    /**
+     * Checks the pool saturation and the open duration, and keeps newly assigned partitions paused while open.
+     *
+     * @param poolSaturation the highest saturation of the downstream pools
+     */
+    public synchronized void tick(double poolSaturation) {
+        boolean saturated = poolSaturation >= thresholds.poolSaturation();
+        long now = System.nanoTime();
+        switch (state) {
+            case CLOSED -> {
+                if (saturated) {
+                    open("pool", false);
+                }
+            }
+            case OPEN -> {
+                pauseAll(Set.of());
+                if (!saturated && now - stateSince >= openNanos) {
+                    halfOpen();
+                }
+            }
+            case HALF_OPEN -> {
+                if (saturated) {
+                    open("pool", true);
+                    return;
+                }
+                pauseAll(resumed);
+                if (now - lastProbeProgress >= thresholds.openDuration().toNanos()) {
+                    resumeNext("idle");
+                }
+            }
+        }
+    }
+
+    public String listenerId() {
+        return listenerId;
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /**
+     * @return seconds spent with partitions paused, open or half-open, including the current stretch
+     */
+    public synchronized double pausedSeconds() {
+        long current = state == State.CLOSED ? 0 : System.nanoTime() - stateSince;
+        return (pausedNanos + current) / 1e9;
+    }
+
+    /**
+     * @return number of assigned partitions currently paused by the breaker
+     */
+    public synchronized int pausedPartitions() {
+        if (state == State.CLOSED) {
+            return 0;
+        }
+        int paused = 0;
+        for (TopicPartition partition : assigned()) {
+            if (container.isPartitionPauseRequested(partition)) {
+                paused++;
+            }
+        }
+        return paused;
+    }
+
+    private void add(boolean isFailure, boolean isSlow) {
+        if (recorded == failed.length) {
+            failures -= failed[next] ? 1 : 0;
+            slowRecords -= slow[next] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        failed[next] = isFailure;
+        slow[next] = isSlow;
+        failures += isFailure ? 1 : 0;
+        slowRecords += isSlow ? 1 : 0;
+        next = (next + 1) % failed.length;
+    }
+
+    private void open(String reason, boolean probeFailed) {
+        openNanos = probeFailed
+                ? Math.min(thresholds.maxOpenDuration().toNanos(), openNanos * 2)
+                : thresholds.openDuration().toNanos();
+        resumed.clear();
+        pauseAll(Set.of());
+        transition(State.OPEN, reason);
+        logger.warn("Paused listener {} for {} ms on {}", listenerId, openNanos / 1_000_000, reason);
+    }
+
+    private void halfOpen() {
+        transition(State.HALF_OPEN, "probe");
+        resumeNext("probe");
+    }
+
+    /**
+     * Resumes one more paused partition, closing the breaker when none is left.
+     */
+    private void resumeNext(String reason) {
+        probeSuccesses = 0;
+        lastProbeProgress = System.nanoTime();
+        List<TopicPartition> paused = new ArrayList<>();
+        for (TopicPartition partition : assigned()) {
+            if (!resumed.contains(partition)) {
+                paused.add(partition);
+            }
+        }
+        if (paused.isEmpty()) {
+            close(reason);
+            return;
+        }
+        paused.sort(Comparator.comparing(TopicPartition::topic).thenComparingInt(TopicPartition::partition));
+        TopicPartition partition = paused.get(0);
+        resumed.add(partition);
+        container.resumePartition(partition);
+        logger.info("Resumed partition {} of listener {}, {} still paused", partition, listenerId, paused.size() - 1);
+        if (paused.size() == 1) {
+            close(reason);
+        }
+    }
+
+    private void close(String reason) {
+        for (TopicPartition partition : assigned()) {
+            container.resumePartition(partition);
+        }
+        resumed.clear();
+        recorded = 0;
+        next = 0;
+        failures = 0;
+        slowRecords = 0;
+        openNanos = thresholds.openDuration().toNanos();
+        transition(State.CLOSED, reason);
+        logger.info("Resumed listener {}", listenerId);
+    }
+
+    private void pauseAll(Set<TopicPartition> except) {
+        for (TopicPartition partition : assigned()) {
+            if (!except.contains(partition) && !container.isPartitionPauseRequested(partition)) {
+                container.pausePartition(partition);
+            }
+        }
+    }
+
+    private void transition(State to, String reason) {
+        long now = System.nanoTime();
+        if (state != State.CLOSED) {
+            pausedNanos += now - stateSince;
+        }
+        state = to;
+        stateSince = now;
+        transitionListener.transitioned(listenerId, to, reason);
+    }
+
+    private Collection<TopicPartition> assigned() {
+        Collection<TopicPartition> assigned = container.getAssignedPartitions();
+        return assigned == null ? List.of() : assigned;
+    }
+}
@@ -0,0 +1,29 @@
+package com.personal_projects.common.Backpressure;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Backpressure on the Mongo connection pool, imported by the Mongo backed service applications.
+ * <p>
+ * Registers a {@link MongoPoolSaturation} on the auto-configured Mongo client, so the listeners are paused when
+ * writes queue for a connection.
+ * </p>
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "backpressure.enabled", havingValue = "true")
+public class MongoBackpressureConfiguration {
+
+    @Bean
+    public MongoPoolSaturation mongoPoolSaturation() {
+        return new MongoPoolSaturation();
+    }
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoPoolSaturationCustomizer(MongoPoolSaturation mongoPoolSaturation) {
+        return settings -> settings.applyToConnectionPoolSettings(
+                pool -> pool.addConnectionPoolListener(mongoPoolSaturation));
+    }
+}
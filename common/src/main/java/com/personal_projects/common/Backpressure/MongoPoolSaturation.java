@@ -0,0 +1,75 @@
+package com.personal_projects.common.Backpressure;
+
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionPoolClosedEvent;
+import com.mongodb.event.ConnectionPoolCreatedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Saturation of the Mongo client's connection pools, followed through the driver's pool events. A check-out
+ * counts from when it starts waiting for a connection until the connection is checked back in, or none could be
+ * obtained. The client has a pool per server, and the most saturated one is reported.
+ */
+public class MongoPoolSaturation implements DownstreamPool, ConnectionPoolListener {
+
+    private final Map<ServerId, Pool> pools = new ConcurrentHashMap<>();
+
+    @Override
+    public String name() {
+        return "mongodb";
+    }
+
+    @Override
+    public double saturation() {
+        double saturation = 0;
+        for (Pool pool : pools.values()) {
+            saturation = Math.max(saturation, (double) pool.requested.get() / pool.maxSize);
+        }
+        return saturation;
+    }
+
+    @Override
+    public void connectionPoolCreated(ConnectionPoolCreatedEvent event) {
+        pools.put(event.getServerId(), new Pool(Math.max(1, event.getSettings().getMaxSize())));
+    }
+
+    @Override
+    public void connectionPoolClosed(ConnectionPoolClosedEvent event) {
+        pools.remove(event.getServerId());
+    }
+
+    @Override
+    public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent event) {
+        update(event.getServerId(), 1);
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        update(event.getServerId(), -1);
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        update(event.getConnectionId().getServerId(), -1);
+    }
+
+    private void update(ServerId serverId, int delta) {
+        Pool pool = pools.get(serverId);
+        if (pool != null) {
+            pool.requested.addAndGet(delta);
+        }
+    }
+
+    private record Pool(int maxSize, AtomicInteger requested) {
+        Pool(int maxSize) {
+            this(maxSize, new AtomicInteger());
+        }
+    }
+}
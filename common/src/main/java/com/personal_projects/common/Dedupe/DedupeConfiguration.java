@@ -0,0 +1,55 @@
+package com.personal_projects.common.Dedupe;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+/**
+ * Idempotent consumption shared by the services, imported by each service application.
+ * <p>
+ * When {@code dedupe.enabled} is set, the service remembers the last {@code dedupe.window} events it processed
+ * in {@code dedupe.directory}, and the listener container factories install a {@link DedupeRecordInterceptor}
+ * dropping their redeliveries, e.g. after a rebalance. The window is per service instance: a partition moving
+ * to another instance is deduped there from that instance's own window, which has not seen the events processed
+ * before the move, so a redelivery across instances still reaches the listener and its writes must stay
+ * idempotent.
+ * </p>
+ * <p>
+ * Lookups are counted in {@code kafka.dedupe.lookups}, by result, and the window's size and memory in
+ * {@code kafka.dedupe.window.events} and {@code kafka.dedupe.window.memory}.
+ * </p>
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "dedupe.enabled", havingValue = "true")
+public class DedupeConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public DedupeWindow dedupeWindow(@Value("${dedupe.directory:dedupe}") String directory,
+                                     @Value("${spring.application.name}") String name,
+                                     @Value("${dedupe.window:262144}") int window,
+                                     MeterRegistry meterRegistry) {
+        DedupeWindow dedupeWindow = new DedupeWindow(Path.of(directory), name, window);
+        FunctionCounter.builder("kafka.dedupe.lookups", dedupeWindow, DedupeWindow::hits)
+                .description("Consumed records looked up in the dedupe window")
+                .tag("result", "duplicate")
+                .register(meterRegistry);
+        FunctionCounter.builder("kafka.dedupe.lookups", dedupeWindow, DedupeWindow::misses)
+                .description("Consumed records looked up in the dedupe window")
+                .tag("result", "new")
+                .register(meterRegistry);
+        Gauge.builder("kafka.dedupe.window.events", dedupeWindow, DedupeWindow::size)
+                .description("Processed events remembered by the dedupe window")
+                .register(meterRegistry);
+        Gauge.builder("kafka.dedupe.window.memory", dedupeWindow, DedupeWindow::memoryBytes)
+                .description("Memory held by the dedupe window, its lookup table and mapped ring")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        return dedupeWindow;
+    }
+}
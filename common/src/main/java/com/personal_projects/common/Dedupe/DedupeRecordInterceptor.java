@@ -0,0 +1,68 @@
+package com.personal_projects.common.Dedupe;
+
+import com.personal_projects.common.Retry.RetryTopics;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.kafka.listener.RecordInterceptor;
+
+/**
+ * {@link RecordInterceptor} dropping records whose event was already processed, before the listener runs and
+ * so before any database round trip. An event is added to the {@link DedupeWindow} once the listener has
+ * processed it successfully: a record the listener failed on is still retried. Records without an event ID
+ * are always processed.
+ * <p>
+ * A record handled by a dead-letter handler is not added: it was logged, not processed, and its replay to the
+ * retry topic carries the same event ID, which must reach the listener.
+ * </p>
+ *
+ * @param <K> the record key type
+ * @param <V> the record value type
+ */
+public class DedupeRecordInterceptor<K, V> implements RecordInterceptor<K, V> {
+
+    private static final Logger logger = LoggerFactory.getLogger(DedupeRecordInterceptor.class);
+
+    private final DedupeWindow window;
+
+    public DedupeRecordInterceptor(DedupeWindow window) {
+        this.window = window;
+    }
+
+    /**
+     * Creates an interceptor if the service dedupes.
+     *
+     * @param window the window, available when {@code dedupe.enabled} is set
+     * @param <K>    the record key type
+     * @param <V>    the record value type
+     * @return the interceptor, or {@code null} when deduping is off
+     */
+    public static <K, V> DedupeRecordInterceptor<K, V> ifAvailable(ObjectProvider<DedupeWindow> window) {
+        DedupeWindow available = window.getIfAvailable();
+        return available == null ? null : new DedupeRecordInterceptor<>(available);
+    }
+
+    @Override
+    public ConsumerRecord<K, V> intercept(ConsumerRecord<K, V> record, Consumer<K, V> consumer) {
+        long fingerprint = EventIds.fingerprint(record.headers());
+        if (fingerprint != EventIds.NONE && window.contains(fingerprint)) {
+            logger.debug("Dropped redelivered event {}-{}@{} key {}",
+                    record.topic(), record.partition(), record.offset(), record.key());
+            return null;
+        }
+        return record;
+    }
+
+    @Override
+    public void success(ConsumerRecord<K, V> record, Consumer<K, V> consumer) {
+        if (RetryTopics.isDeadLetterTopic(record.topic())) {
+            return;
+        }
+        long fingerprint = EventIds.fingerprint(record.headers());
+        if (fingerprint != EventIds.NONE) {
+            window.add(fingerprint);
+        }
+    }
+}
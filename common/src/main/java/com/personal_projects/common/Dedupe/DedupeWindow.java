@@ -0,0 +1,229 @@
+package com.personal_projects.common.Dedupe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded set of the event fingerprints a service processed most recently, surviving restarts.
+ * <p>
+ * The fingerprints are kept in insertion order in a ring of {@code window} slots, memory-mapped from
+ * {@code <name>.dedupe}:
+ * <pre>
+ * long   magic
+ * long   window
+ * long   insertions so far, the next slot is this modulo the window
+ * long[] the ring, 0 for an empty slot
+ * </pre>
+ * Lookups go to an open-addressing table of primitive longs with linear probing, at most half full, rebuilt from
+ * the ring on start. Once the ring is full, each insertion overwrites the oldest fingerprint and removes it from
+ * the table. The mapped ring is written by the OS in the background and flushed on close; if the process dies
+ * between writing a slot and the insertion count, the slot is still read back on start, so no fingerprint that
+ * was written is lost.
+ * </p>
+ * <p>
+ * All operations hold the monitor: a lookup is a few probes, far cheaper than the processing it saves.
+ * </p>
+ */
+public class DedupeWindow implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DedupeWindow.class);
+
+    static final long MAGIC = 0x4445445550450001L;
+    static final int HEADER_BYTES = 3 * Long.BYTES;
+    static final String SUFFIX = ".dedupe";
+
+    /**
+     * Largest window: 16M events map a 128 MB ring and take a 256 MB lookup table on the heap, and keep every ring
+     * position, {@code HEADER_BYTES + index * Long.BYTES}, well within the int range of a mapped buffer.
+     */
+    static final int MAX_WINDOW = 1 << 24;
+
+    private static final long EMPTY = 0L;
+
+    private final Path file;
+    private final int window;
+    private final long[] table;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private MappedByteBuffer ring;
+    private long insertions;
+    private int size;
+
+    /**
+     * Opens the window of a service, reloading the fingerprints it held when the service stopped.
+     *
+     * @param directory directory holding the window file, created if missing
+     * @param name      name of the window file, usually the service name
+     * @param window    number of fingerprints kept, at most {@value #MAX_WINDOW}
+     */
+    public DedupeWindow(Path directory, String name, int window) {
+        if (window <= 0 || window > MAX_WINDOW) {
+            throw new IllegalArgumentException("The dedupe window must hold between 1 and " + MAX_WINDOW
+                    + " events, was " + window);
+        }
+        this.file = directory.resolve(name + SUFFIX);
+        this.window = window;
+        this.table = new long[Integer.highestOneBit(2 * window - 1) << 1];
+        this.mask = table.length - 1;
+        try {
+            Files.createDirectories(directory);
+            this.ring = map();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the dedupe window " + file, e);
+        }
+        load();
+    }
+
+    /**
+     * Checks whether an event was processed, counting the lookup as a hit or a miss.
+     *
+     * @param fingerprint the fingerprint of the event ID, see {@link EventIds#fingerprint}
+     * @return whether the event is in the window
+     */
+    public synchronized boolean contains(long fingerprint) {
+        boolean found = table[slot(fingerprint)] != EMPTY;
+        (found ? hits : misses).increment();
+        return found;
+    }
+
+    /**
+     * Adds a processed event, evicting the oldest one once the window is full.
+     *
+     * @param fingerprint the fingerprint of the event ID, see {@link EventIds#fingerprint}
+     */
+    public synchronized void add(long fingerprint) {
+        if (ring == null || table[slot(fingerprint)] != EMPTY) {
+            return;
+        }
+        int index = (int) (insertions % window);
+        int position = HEADER_BYTES + index * Long.BYTES;
+        long evicted = ring.getLong(position);
+        if (evicted != EMPTY) {
+            remove(evicted);
+        } else {
+            size++;
+        }
+        ring.putLong(position, fingerprint);
+        ring.putLong(2 * Long.BYTES, ++insertions);
+        insert(fingerprint);
+    }
+
+    /**
+     * @return number of lookups that found a processed event
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of lookups that did not
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return number of fingerprints in the window
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return bytes held by the lookup table and the mapped ring
+     */
+    public long memoryBytes() {
+        return (long) table.length * Long.BYTES + HEADER_BYTES + (long) window * Long.BYTES;
+    }
+
+    /**
+     * Stops recording and flushes the ring to disk.
+     */
+    @Override
+    public synchronized void close() {
+        if (ring != null) {
+            ring.force();
+            ring = null;
+        }
+    }
+
+    private MappedByteBuffer map() throws IOException {
+        long bytes = HEADER_BYTES + (long) window * Long.BYTES;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            boolean compatible = channel.size() == bytes;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            if (!compatible || buffer.getLong(0) != MAGIC || buffer.getLong(Long.BYTES) != window) {
+                if (channel.size() > bytes) {
+                    channel.truncate(bytes);
+                }
+                for (int position = 0; position < bytes; position += Long.BYTES) {
+                    buffer.putLong(position, EMPTY);
+                }
+                buffer.putLong(0, MAGIC);
+                buffer.putLong(Long.BYTES, window);
+            }
+            return buffer;
+        }
+    }
+
+    private void load() {
+        insertions = ring.getLong(2 * Long.BYTES);
+        for (int index = 0; index < window; index++) {
+            long fingerprint = ring.getLong(HEADER_BYTES + index * Long.BYTES);
+            if (fingerprint != EMPTY && table[slot(fingerprint)] == EMPTY) {
+                insert(fingerprint);
+                size++;
+            }
+        }
+        logger.info("Loaded {} processed events into the dedupe window {}", size, file);
+    }
+
+    /**
+     * @return the slot holding the fingerprint, or the empty slot ending its probe sequence
+     */
+    private int slot(long fingerprint) {
+        int slot = (int) fingerprint & mask;
+        while (table[slot] != EMPTY && table[slot] != fingerprint) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void insert(long fingerprint) {
+        table[slot(fingerprint)] = fingerprint;
+    }
+
+    /**
+     * Removes a fingerprint, shifting back the entries after it so no probe sequence is broken.
+     */
+    private void remove(long fingerprint) {
+        int hole = slot(fingerprint);
+        if (table[hole] == EMPTY) {
+            return;
+        }
+        table[hole] = EMPTY;
+        int slot = (hole + 1) & mask;
+        while (table[slot] != EMPTY) {
+            int home = (int) table[slot] & mask;
+            // Moves the entry into the hole unless its home lies cyclically in (hole, slot].
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                table[hole] = table[slot];
+                table[slot] = EMPTY;
+                hole = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+}
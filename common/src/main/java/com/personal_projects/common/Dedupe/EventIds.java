@@ -0,0 +1,61 @@
+package com.personal_projects.common.Dedupe;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeader;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Kafka record header identifying an event, so a consumer can tell a redelivery from a new event.
+ * <p>
+ * {@value #EVENT_ID} holds 16 random bytes, stamped once when the event is produced. Redeliveries, retry and
+ * dead-letter copies and replays of the record carry the same ID. A consumer compares 64-bit fingerprints of
+ * the IDs, which collide with negligible probability over the window of recent events it remembers.
+ * </p>
+ */
+public final class EventIds {
+
+    public static final String EVENT_ID = "x-event-id";
+
+    /** Returned when a record carries no event ID, e.g. one produced before the header existed. */
+    public static final long NONE = 0L;
+
+    private static final int ID_BYTES = 16;
+
+    private EventIds() {
+    }
+
+    /**
+     * Stamps a new event ID on a record about to be produced.
+     *
+     * @param headers the headers of the record
+     */
+    public static void stamp(Headers headers) {
+        byte[] id = new byte[ID_BYTES];
+        ThreadLocalRandom.current().nextBytes(id);
+        headers.add(new RecordHeader(EVENT_ID, id));
+    }
+
+    /**
+     * Reads the fingerprint of the event ID of a record.
+     *
+     * @param headers the record headers
+     * @return a non-zero fingerprint of the event ID, or {@link #NONE} if the record has none
+     */
+    public static long fingerprint(Headers headers) {
+        Header header = headers.lastHeader(EVENT_ID);
+        if (header == null || header.value() == null || header.value().length == 0) {
+            return NONE;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : header.value()) {
+            hash = (hash ^ (b & 0xFF)) * 0x100000001b3L;
+        }
+        // Finalizes the FNV-1a hash so every input bit reaches every output bit, which the table probing relies on.
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash == NONE ? 1 : hash;
+    }
+}
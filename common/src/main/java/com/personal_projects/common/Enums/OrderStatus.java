@@ -1,8 +1,25 @@
 package com.personal_projects.common.Enums;
 
+import java.util.Set;
+
 public enum OrderStatus {
     CREATED,
     PAID,
     FAILED,
-    SHIPPED
+    SHIPPED;
+
+    /**
+     * The statuses an order may move to this one from, so that an event redelivered or consumed out of order never
+     * moves an order back: a late payment event does not undo its shipment. A shipment may be recorded before its
+     * payment, since the order service consumes the payment and shipment topics independently.
+     *
+     * @return the allowed predecessors, empty for {@link #CREATED}
+     */
+    public Set<OrderStatus> predecessors() {
+        return switch (this) {
+            case CREATED -> Set.of();
+            case PAID, FAILED -> Set.of(CREATED);
+            case SHIPPED -> Set.of(CREATED, PAID);
+        };
+    }
 }
@@ -21,6 +21,9 @@ public class OrderEvent {
     /** Name of the customer who placed the order */
     private String customerName;
 
+    /** Address the order is shipped to */
+    private String customerAddress;
+
     /** Total amount of the order */
     private double totalAmount;
 }
@@ -19,6 +19,12 @@ public class PaymentEvent {
 
     private PaymentStatus paymentStatus;
 
+    /** Name of the customer who placed the order */
+    private String customerName;
+
+    /** Address the order is shipped to */
+    private String customerAddress;
+
     public static PaymentEvent createEvent(String paymentId, long orderId, PaymentStatus paymentStatus) {
         return PaymentEvent.builder().paymentId(paymentId).orderId(orderId).paymentStatus(paymentStatus).build();
     }
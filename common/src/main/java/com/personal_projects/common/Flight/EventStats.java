@@ -0,0 +1,12 @@
+package com.personal_projects.common.Flight;
+
+/**
+ * Aggregated durations of the events of one type and key over a time window.
+ *
+ * @param count       number of events
+ * @param totalMillis sum of the event durations
+ * @param meanMillis  mean event duration
+ * @param maxMillis   longest event duration
+ */
+public record EventStats(long count, double totalMillis, double meanMillis, double maxMillis) {
+}
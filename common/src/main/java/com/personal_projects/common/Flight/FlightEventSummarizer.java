@@ -0,0 +1,139 @@
+package com.personal_projects.common.Flight;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Streams the Delivery System Flight Recorder events in process and aggregates them per second.
+ * <p>
+ * A {@link RecordingStream} started with the {@code jfr/delivery-system.jfc} settings feeds every
+ * {@link KafkaRecordEvent}, {@link MappingEvent}, {@link ServiceCallEvent} and garbage collection into a ring
+ * of one-second buckets holding count, total and max duration per event type and key (listener, mapping,
+ * operation or collector). {@link #summarize(int)} merges the buckets of the last seconds. Memory is bounded by
+ * the window and the number of distinct keys, however many events are recorded.
+ * </p>
+ * <p>
+ * Streaming enables the events for as long as the summarizer runs, so it is only created when
+ * {@code jfr.streaming.enabled} is set.
+ * </p>
+ */
+public class FlightEventSummarizer implements AutoCloseable {
+
+    private static final String GARBAGE_COLLECTION = "jdk.GarbageCollection";
+
+    private final int windowSeconds;
+    private final Second[] seconds;
+    private final RecordingStream stream;
+
+    /**
+     * Starts streaming.
+     *
+     * @param configuration the settings enabling the Delivery System events
+     * @param windowSeconds number of seconds of aggregates kept
+     */
+    public FlightEventSummarizer(Configuration configuration, int windowSeconds) {
+        this.windowSeconds = windowSeconds;
+        this.seconds = new Second[windowSeconds];
+        for (int i = 0; i < windowSeconds; i++) {
+            seconds[i] = new Second();
+        }
+        this.stream = new RecordingStream(configuration);
+        stream.enable(GARBAGE_COLLECTION);
+        stream.setMaxAge(Duration.ofSeconds(windowSeconds));
+        stream.onEvent(KafkaRecordEvent.NAME, event -> add(event, event.getString("listener"), event.getDuration()));
+        stream.onEvent(MappingEvent.NAME, event -> add(event, event.getString("mapping"), event.getDuration()));
+        stream.onEvent(ServiceCallEvent.NAME, event -> add(event, event.getString("operation"), event.getDuration()));
+        stream.onEvent(GARBAGE_COLLECTION, event -> add(event, event.getString("name"), event.getDuration("sumOfPauses")));
+        stream.startAsync();
+    }
+
+    /**
+     * @return number of seconds of aggregates kept
+     */
+    public int windowSeconds() {
+        return windowSeconds;
+    }
+
+    /**
+     * Merges the aggregates of the last seconds.
+     *
+     * @param lastSeconds number of seconds to summarize, capped to the window
+     * @return the aggregates per event type, then per key
+     */
+    public synchronized Map<String, Map<String, EventStats>> summarize(int lastSeconds) {
+        long now = Instant.now().getEpochSecond();
+        long from = now - Math.min(lastSeconds, windowSeconds);
+        Map<String, Map<String, Accumulator>> merged = new TreeMap<>();
+        for (Second second : seconds) {
+            if (second.epochSecond <= from || second.epochSecond > now) {
+                continue;
+            }
+            second.stats.forEach((type, byKey) -> byKey.forEach((key, accumulator) ->
+                    merged.computeIfAbsent(type, t -> new TreeMap<>())
+                            .computeIfAbsent(key, k -> new Accumulator())
+                            .merge(accumulator)));
+        }
+        Map<String, Map<String, EventStats>> summary = new TreeMap<>();
+        merged.forEach((type, byKey) -> {
+            Map<String, EventStats> stats = new TreeMap<>();
+            byKey.forEach((key, accumulator) -> stats.put(key, accumulator.toStats()));
+            summary.put(type, stats);
+        });
+        return summary;
+    }
+
+    private synchronized void add(RecordedEvent event, String key, Duration duration) {
+        long epochSecond = event.getEndTime().getEpochSecond();
+        Second second = seconds[(int) Math.floorMod(epochSecond, (long) windowSeconds)];
+        if (second.epochSecond != epochSecond) {
+            if (second.epochSecond > epochSecond) {
+                return;
+            }
+            second.epochSecond = epochSecond;
+            second.stats.clear();
+        }
+        second.stats.computeIfAbsent(event.getEventType().getName(), t -> new HashMap<>())
+                .computeIfAbsent(key == null ? "" : key, k -> new Accumulator())
+                .add(duration.toNanos());
+    }
+
+    @Override
+    public void close() {
+        stream.close();
+    }
+
+    private static final class Second {
+        private long epochSecond = Long.MIN_VALUE;
+        private final Map<String, Map<String, Accumulator>> stats = new HashMap<>();
+    }
+
+    private static final class Accumulator {
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        private void add(long nanos) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        private void merge(Accumulator other) {
+            count += other.count;
+            totalNanos += other.totalNanos;
+            maxNanos = Math.max(maxNanos, other.maxNanos);
+        }
+
+        private EventStats toStats() {
+            double totalMillis = totalNanos / 1e6;
+            return new EventStats(count, totalMillis, count == 0 ? 0 : totalMillis / count, maxNanos / 1e6);
+        }
+    }
+}
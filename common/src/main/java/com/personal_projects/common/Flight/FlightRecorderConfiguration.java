@@ -0,0 +1,59 @@
+package com.personal_projects.common.Flight;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+
+/**
+ * In-process streaming of the Delivery System Flight Recorder events, imported by each service application.
+ * <p>
+ * The {@link KafkaRecordEvent}, {@link MappingEvent} and {@link ServiceCallEvent} are emitted by the listeners,
+ * mappers and order path service methods, and are disabled unless a recording uses the {@value #SETTINGS}
+ * profile. When {@code jfr.streaming.enabled} is set, this configuration also starts a
+ * {@link FlightEventSummarizer} with that profile, keeping {@code jfr.streaming.window-seconds} of aggregates,
+ * and serves them from the {@link FlightSummaryEndpoint}.
+ * </p>
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "jfr.streaming.enabled", havingValue = "true")
+public class FlightRecorderConfiguration {
+
+    /**
+     * Classpath location of the settings profile enabling the Delivery System events. Recordings started with
+     * {@code -XX:StartFlightRecording} read settings from the file system only, so they are given
+     * {@code common/src/main/resources/jfr/delivery-system.jfc} or a copy extracted from the common jar.
+     */
+    public static final String SETTINGS = "jfr/delivery-system.jfc";
+
+    @Bean(destroyMethod = "close")
+    public FlightEventSummarizer flightEventSummarizer(
+            @Value("${jfr.streaming.window-seconds:300}") int windowSeconds) {
+        return new FlightEventSummarizer(settings(), windowSeconds);
+    }
+
+    @Bean
+    public FlightSummaryEndpoint flightSummaryEndpoint(FlightEventSummarizer flightEventSummarizer) {
+        return new FlightSummaryEndpoint(flightEventSummarizer);
+    }
+
+    static jdk.jfr.Configuration settings() {
+        try (InputStream in = FlightRecorderConfiguration.class.getClassLoader().getResourceAsStream(SETTINGS)) {
+            if (in == null) {
+                throw new IllegalStateException("Flight Recorder settings not found on the classpath: " + SETTINGS);
+            }
+            return jdk.jfr.Configuration.create(new InputStreamReader(in, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ParseException e) {
+            throw new IllegalStateException("Invalid Flight Recorder settings " + SETTINGS, e);
+        }
+    }
+}
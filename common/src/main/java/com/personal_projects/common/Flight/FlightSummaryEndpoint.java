@@ -0,0 +1,45 @@
+package com.personal_projects.common.Flight;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint summarizing the Delivery System Flight Recorder events of the last seconds, streamed by the
+ * {@link FlightEventSummarizer}: count, total, mean and max duration per listener, mapping, service operation
+ * and garbage collector. Read at {@code GET /actuator/flight?seconds=60}.
+ */
+@Endpoint(id = "flight")
+public class FlightSummaryEndpoint {
+
+    private static final int DEFAULT_SECONDS = 60;
+
+    private final FlightEventSummarizer summarizer;
+
+    public FlightSummaryEndpoint(FlightEventSummarizer summarizer) {
+        this.summarizer = summarizer;
+    }
+
+    /**
+     * Summarizes the events of the last seconds.
+     *
+     * @param seconds number of seconds to summarize, 60 by default and capped to the streaming window
+     * @return the summary
+     */
+    @ReadOperation
+    public FlightSummary summary(@Nullable Integer seconds) {
+        int window = Math.min(seconds == null || seconds <= 0 ? DEFAULT_SECONDS : seconds, summarizer.windowSeconds());
+        return new FlightSummary(window, summarizer.summarize(window));
+    }
+
+    /**
+     * Event aggregates over a window.
+     *
+     * @param seconds the summarized window
+     * @param events  the aggregates per event type, then per key
+     */
+    public record FlightSummary(int seconds, Map<String, Map<String, EventStats>> events) {
+    }
+}
@@ -0,0 +1,77 @@
+package com.personal_projects.common.Flight;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+/**
+ * Flight Recorder event covering the handling of one Kafka record by a listener.
+ * <p>
+ * Disabled by default; enabled by the {@code jfr/delivery-system.jfc} settings profile. While disabled,
+ * {@link #start()} and {@link #complete} are no-ops the JIT removes, and no field is ever set.
+ * </p>
+ */
+@Name(KafkaRecordEvent.NAME)
+@Label("Kafka Record Handled")
+@Category({"Delivery System", "Kafka"})
+@Description("Handling of a consumed Kafka record by a listener")
+@Enabled(false)
+@StackTrace(false)
+public class KafkaRecordEvent extends Event {
+
+    public static final String NAME = "delivery.KafkaRecord";
+
+    @Label("Listener")
+    String listener;
+
+    @Label("Topic")
+    String topic;
+
+    @Label("Partition")
+    int partition;
+
+    @Label("Offset")
+    long offset;
+
+    @Label("Order ID")
+    long orderId;
+
+    @Label("Stage")
+    String stage;
+
+    /**
+     * Starts timing the handling of a record.
+     *
+     * @return the started event
+     */
+    public static KafkaRecordEvent start() {
+        KafkaRecordEvent event = new KafkaRecordEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the handling of a record and commits the event if it is enabled and above its threshold.
+     *
+     * @param listener the ID of the listener
+     * @param record   the handled record
+     * @param orderId  the ID of the order the record belongs to
+     * @param stage    the lifecycle stage the record reports
+     */
+    public void complete(String listener, ConsumerRecord<?, ?> record, long orderId, String stage) {
+        if (shouldCommit()) {
+            this.listener = listener;
+            this.topic = record.topic();
+            this.partition = record.partition();
+            this.offset = record.offset();
+            this.orderId = orderId;
+            this.stage = stage;
+            commit();
+        }
+    }
+}
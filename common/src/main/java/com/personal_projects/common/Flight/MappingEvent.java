@@ -0,0 +1,58 @@
+package com.personal_projects.common.Flight;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event covering one mapping between events, DTOs and entities.
+ * <p>
+ * Disabled by default; enabled by the {@code jfr/delivery-system.jfc} settings profile.
+ * </p>
+ */
+@Name(MappingEvent.NAME)
+@Label("Mapping")
+@Category({"Delivery System", "Mapping"})
+@Description("Mapping between events, DTOs and entities")
+@Enabled(false)
+@StackTrace(false)
+public class MappingEvent extends Event {
+
+    public static final String NAME = "delivery.Mapping";
+
+    @Label("Mapping")
+    String mapping;
+
+    @Label("Order ID")
+    @Description("ID of the mapped order, 0 when it has none yet")
+    long orderId;
+
+    /**
+     * Starts timing a mapping.
+     *
+     * @return the started event
+     */
+    public static MappingEvent start() {
+        MappingEvent event = new MappingEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends a mapping and commits the event if it is enabled and above its threshold.
+     *
+     * @param mapping the mapping method, e.g. {@code PaymentMapper.toPayment}
+     * @param orderId the ID of the mapped order, {@code 0} when it has none yet
+     */
+    public void complete(String mapping, long orderId) {
+        if (shouldCommit()) {
+            this.mapping = mapping;
+            this.orderId = orderId;
+            commit();
+        }
+    }
+}
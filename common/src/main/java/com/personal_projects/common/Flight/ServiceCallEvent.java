@@ -0,0 +1,57 @@
+package com.personal_projects.common.Flight;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event covering a call to a service operation on the order path, e.g. creating an order.
+ * <p>
+ * Disabled by default; enabled by the {@code jfr/delivery-system.jfc} settings profile.
+ * </p>
+ */
+@Name(ServiceCallEvent.NAME)
+@Label("Service Call")
+@Category({"Delivery System", "Service"})
+@Description("Call to a service operation on the order path")
+@Enabled(false)
+@StackTrace(false)
+public class ServiceCallEvent extends Event {
+
+    public static final String NAME = "delivery.ServiceCall";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Order ID")
+    long orderId;
+
+    /**
+     * Starts timing a service call.
+     *
+     * @return the started event
+     */
+    public static ServiceCallEvent start() {
+        ServiceCallEvent event = new ServiceCallEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends a service call and commits the event if it is enabled and above its threshold.
+     *
+     * @param operation the service operation, e.g. {@code OrderService.createOrder}
+     * @param orderId   the ID of the order the call handled
+     */
+    public void complete(String operation, long orderId) {
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.orderId = orderId;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.personal_projects.common.Journal;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Append-only binary journal of the Kafka records a service consumes and produces, written to memory-mapped
+ * segment files.
+ * <p>
+ * Each record is appended as:
+ * <pre>
+ * int    length of the whole entry, negated while the entry is written
+ * byte   direction, {@link #CONSUMED} or {@link #PRODUCED}
+ * byte   payload type, see {@link JournalCodec}
+ * short  topic length in bytes
+ * long   record timestamp, epoch millis
+ * long   journal time, epoch millis
+ * int    partition
+ * long   offset
+ * long   order ID, {@code 0} if unknown
+ * bytes  topic, UTF-8
+ * bytes  payload, encoded by {@link JournalCodec}
+ * </pre>
+ * Entries are padded to a multiple of 8 bytes, keeping every length field aligned.
+ * Writers reserve their entry by atomically advancing the segment position, mark it reserved with its negated
+ * length, fill it with absolute puts and publish it by writing its length with release semantics, so concurrent
+ * listener and producer threads never lock and a reader never sees a partially written entry. A writer failing
+ * to encode its entry publishes it with the {@link #ABANDONED} direction, which readers skip; a reader also skips
+ * an entry left reserved for longer than a writer could take, see {@link JournalReader}. Once the segment
+ * exists, appending allocates nothing.
+ * </p>
+ * <p>
+ * The next segment is mapped ahead of time by a background thread. The writer whose entry crosses the end of a
+ * segment marks the end with a length of {@link #END_OF_SEGMENT} and switches to it; writers arriving meanwhile
+ * wait for it, for at most {@link #MAX_ROLL_WAIT_NANOS}, as they may run on a producer I/O thread. If the next
+ * segment is not mapped yet, the switch happens on the background thread once it is, and the entries appended
+ * until then are dropped. Segments are named {@code <name>-<index>.journal} and only the last
+ * {@code maxSegments} are kept, besides the one mapped ahead. A zero length marks where the writers stopped.
+ * Entries larger than a segment are dropped and counted.
+ * </p>
+ */
+public class EventJournal implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventJournal.class);
+
+    public static final byte CONSUMED = 1;
+    public static final byte PRODUCED = 2;
+    static final byte ABANDONED = 0;
+
+    static final int HEADER_BYTES = 44;
+    static final int END_OF_SEGMENT = -1;
+    static final int ALIGNMENT = Long.BYTES;
+    static final String SUFFIX = ".journal";
+    static final long MAX_ROLL_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final VarHandle LENGTH = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final Path directory;
+    private final String name;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final LongAdder dropped = new LongAdder();
+    private final ExecutorService roller;
+
+    private volatile Segment current;
+    private volatile CompletableFuture<Segment> nextSegment;
+    private boolean closed;
+
+    /**
+     * Opens a journal, starting a new segment after any segments already in the directory.
+     *
+     * @param directory    directory holding the segments, created if missing
+     * @param name         prefix of the segment files, usually the service name
+     * @param segmentBytes size of a segment file
+     * @param maxSegments  number of segments kept
+     */
+    public EventJournal(Path directory, String name, int segmentBytes, int maxSegments) {
+        if (segmentBytes <= HEADER_BYTES || segmentBytes % ALIGNMENT != 0) {
+            throw new IllegalArgumentException("Journal segments must be a multiple of " + ALIGNMENT
+                    + " bytes larger than " + HEADER_BYTES + " bytes");
+        }
+        this.directory = directory;
+        this.name = name;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = Math.max(1, maxSegments);
+        try {
+            Files.createDirectories(directory);
+            List<Path> segments = segments(directory, name);
+            long next = segments.isEmpty() ? 0 : index(segments.get(segments.size() - 1), name) + 1;
+            this.current = map(next);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the event journal in " + directory, e);
+        }
+        this.roller = Executors.newSingleThreadExecutor(Thread.ofPlatform().daemon().name(name + "-journal").factory());
+        this.nextSegment = mapAhead(current.index + 1);
+    }
+
+    /**
+     * Appends a consumed record.
+     *
+     * @param record the record consumed by a listener
+     */
+    public void consumed(ConsumerRecord<?, ?> record) {
+        append(CONSUMED, record.topic(), record.partition(), record.offset(), record.timestamp(),
+                record.key(), record.value());
+    }
+
+    /**
+     * Appends a produced record, once the broker acknowledged it.
+     *
+     * @param record   the record sent by a template
+     * @param metadata the partition and offset the broker assigned
+     */
+    public void produced(ProducerRecord<?, ?> record, RecordMetadata metadata) {
+        append(PRODUCED, record.topic(), metadata.partition(), metadata.offset(), metadata.timestamp(),
+                record.key(), record.value());
+    }
+
+    /**
+     * @return number of entries dropped because they did not fit a segment, could not be encoded, or the journal
+     * could not switch to the next segment in time
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    private void append(byte direction, String topic, int partition, long offset, long timestamp,
+                        Object key, Object value) {
+        int topicBytes = JournalCodec.utf8Length(topic);
+        int length = (HEADER_BYTES + topicBytes + JournalCodec.encodedLength(value) + ALIGNMENT - 1) & -ALIGNMENT;
+        if (length > segmentBytes) {
+            dropped.increment();
+            return;
+        }
+        while (true) {
+            Segment segment = current;
+            if (segment == null) {
+                dropped.increment();
+                return;
+            }
+            if (segment.position.get() > segmentBytes) {
+                // Full, and the writer that crossed its end is switching to the next one
+                if (!awaitRoll(segment)) {
+                    dropped.increment();
+                    return;
+                }
+                continue;
+            }
+            int position = segment.position.getAndAdd(length);
+            if (position + length <= segmentBytes) {
+                try {
+                    write(segment.buffer, position, length, direction, topic, topicBytes, partition, offset,
+                            timestamp, key, value);
+                } catch (RuntimeException e) {
+                    dropped.increment();
+                    logger.warn("Could not journal a record of {}-{}@{}", topic, partition, offset, e);
+                }
+                return;
+            }
+            if (position <= segmentBytes) {
+                // Reservations are contiguous, so only this writer crossed the end: it rolls the segment.
+                roll(segment, position);
+            } else if (!awaitRoll(segment)) {
+                dropped.increment();
+                return;
+            }
+        }
+    }
+
+    private boolean awaitRoll(Segment segment) {
+        long deadline = System.nanoTime() + MAX_ROLL_WAIT_NANOS;
+        while (current == segment) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            Thread.onSpinWait();
+        }
+        return true;
+    }
+
+    private static void write(ByteBuffer buffer, int position, int length, byte direction, String topic,
+                              int topicBytes, int partition, long offset, long timestamp, Object key, Object value) {
+        LENGTH.setRelease(buffer, position, -length);
+        try {
+            buffer.put(position + 4, direction);
+            buffer.put(position + 5, JournalCodec.type(value));
+            buffer.putShort(position + 6, (short) topicBytes);
+            buffer.putLong(position + 8, timestamp);
+            buffer.putLong(position + 16, System.currentTimeMillis());
+            buffer.putInt(position + 24, partition);
+            buffer.putLong(position + 28, offset);
+            buffer.putLong(position + 36, JournalCodec.orderId(key, value));
+            JournalCodec.putUtf8(buffer, position + HEADER_BYTES, topic);
+            JournalCodec.encode(value, buffer, position + HEADER_BYTES + topicBytes);
+        } catch (RuntimeException e) {
+            buffer.put(position + 4, ABANDONED);
+            LENGTH.setRelease(buffer, position, length);
+            throw e;
+        }
+        LENGTH.setRelease(buffer, position, length);
+    }
+
+    private void roll(Segment segment, int position) {
+        if (position + Integer.BYTES <= segmentBytes) {
+            LENGTH.setRelease(segment.buffer, position, END_OF_SEGMENT);
+        }
+        // Switches right away if the next segment is mapped, else on the background thread once it is
+        nextSegment.whenComplete((next, failure) -> {
+            if (failure != null) {
+                logger.error("Could not roll the event journal in {}, journaling stops", directory, failure);
+            }
+            install(next);
+        });
+    }
+
+    private synchronized void install(Segment next) {
+        if (closed) {
+            return;
+        }
+        if (next != null) {
+            nextSegment = mapAhead(next.index + 1);
+        }
+        current = next;
+    }
+
+    private CompletableFuture<Segment> mapAhead(long index) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                deleteOldSegments();
+                return map(index);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, roller);
+    }
+
+    private Segment map(long index) throws IOException {
+        Path file = directory.resolve(String.format("%s-%020d%s", name, index, SUFFIX));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new Segment(index, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+        }
+    }
+
+    private void deleteOldSegments() throws IOException {
+        List<Path> segments = segments(directory, name);
+        for (int i = 0; i < segments.size() - maxSegments; i++) {
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    /**
+     * Lists the segments of a journal, oldest first.
+     *
+     * @param directory the journal directory
+     * @param name      the prefix of the segment files
+     * @return the segment files
+     * @throws IOException if the directory cannot be listed
+     */
+    static List<Path> segments(Path directory, String name) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> index(file, name) >= 0).sorted().toList();
+        }
+    }
+
+    /**
+     * @return the index of a segment file of the journal, or {@code -1} if the file is not one
+     */
+    static long index(Path file, String name) {
+        String fileName = file.getFileName().toString();
+        if (!fileName.startsWith(name + "-") || !fileName.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(fileName.substring(name.length() + 1, fileName.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Stops journaling, flushes the current segment to disk and removes the segment mapped ahead.
+     */
+    @Override
+    public void close() {
+        Segment segment;
+        synchronized (this) {
+            closed = true;
+            segment = current;
+            current = null;
+        }
+        if (segment != null) {
+            segment.buffer.force();
+        }
+        roller.shutdown();
+        try {
+            Files.deleteIfExists(nextSegment.get(1, TimeUnit.SECONDS).file);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException | IOException e) {
+            logger.debug("Could not remove the segment mapped ahead in {}", directory, e);
+        }
+    }
+
+    private static final class Segment {
+        private final long index;
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        private final AtomicInteger position = new AtomicInteger();
+
+        private Segment(long index, Path file, MappedByteBuffer buffer) {
+            this.index = index;
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.personal_projects.common.Journal;
+
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line tool reading the {@link EventJournal} of a service.
+ * <pre>
+ * tail   &lt;directory&gt; &lt;name&gt; [-n &lt;count&gt;] [--follow]
+ *        prints the last entries of the newest segment, and with --follow the entries written afterwards
+ * grep   &lt;directory&gt; &lt;name&gt; &lt;orderId&gt;
+ *        prints every entry of an order, oldest first
+ * replay &lt;segment&gt; &lt;bootstrap-servers&gt; [--produced] [--topic &lt;topic&gt;]
+ *        sends the consumed entries of a segment (or the produced ones) back to their topic, or to another one,
+ *        so a service consumes them again
+ * </pre>
+ * {@code scripts/journal.sh} runs it from a service jar, which carries this module and its dependencies.
+ */
+public final class JournalCli {
+
+    private static final long FOLLOW_POLL_MILLIS = 200;
+    private static final String REPLAY_HEADER = "x-journal-replay";
+
+    private JournalCli() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            usage();
+            return;
+        }
+        switch (args[0]) {
+            case "tail" -> tail(Path.of(args[1]), args[2], intOption(args, "-n", 20), hasFlag(args, "--follow"));
+            case "grep" -> {
+                if (args.length < 4) {
+                    usage();
+                    return;
+                }
+                grep(Path.of(args[1]), args[2], Long.parseLong(args[3]));
+            }
+            case "replay" -> replay(Path.of(args[1]), args[2], hasFlag(args, "--produced"), option(args, "--topic"));
+            default -> usage();
+        }
+    }
+
+    private static void tail(Path directory, String name, int count, boolean follow)
+            throws IOException, InterruptedException {
+        List<Path> segments = EventJournal.segments(directory, name);
+        if (segments.isEmpty()) {
+            System.err.println("No journal segments for " + name + " in " + directory);
+            return;
+        }
+        JournalReader reader = new JournalReader(segments.get(segments.size() - 1));
+        Deque<JournalEntry> last = new ArrayDeque<>(count);
+        for (JournalEntry entry = reader.next(); entry != null; entry = reader.next()) {
+            if (last.size() == count) {
+                last.removeFirst();
+            }
+            last.addLast(entry);
+        }
+        last.forEach(System.out::println);
+
+        while (follow) {
+            JournalEntry entry = reader.next();
+            if (entry != null) {
+                System.out.println(entry);
+                continue;
+            }
+            Path next = following(directory, name, reader);
+            if (next != null) {
+                reader = new JournalReader(next);
+            } else {
+                Thread.sleep(FOLLOW_POLL_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Finds the segment to follow once a reader caught up: the next one after an end marker, else the first later
+     * segment a writer started, as a segment left by a stopped writer has no end marker and the journal maps the
+     * next segment ahead of time.
+     */
+    private static Path following(Path directory, String name, JournalReader reader) throws IOException {
+        long index = EventJournal.index(reader.file(), name);
+        for (Path segment : EventJournal.segments(directory, name)) {
+            if (EventJournal.index(segment, name) > index && (reader.ended() || JournalReader.started(segment))) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    private static void grep(Path directory, String name, long orderId) throws IOException {
+        for (Path segment : EventJournal.segments(directory, name)) {
+            JournalReader reader = new JournalReader(segment, Duration.ZERO);
+            for (JournalEntry entry = reader.next(); entry != null; entry = reader.next()) {
+                if (entry.orderId() == orderId) {
+                    System.out.println(entry);
+                }
+            }
+        }
+    }
+
+    private static void replay(Path segment, String bootstrapServers, boolean produced, String topic)
+            throws IOException {
+        byte direction = produced ? EventJournal.PRODUCED : EventJournal.CONSUMED;
+        Map<String, Object> config = Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class,
+                JsonSerializer.ADD_TYPE_INFO_HEADERS, false);
+        int replayed = 0;
+        try (KafkaProducer<String, Object> producer = new KafkaProducer<>(config)) {
+            JournalReader reader = new JournalReader(segment, Duration.ZERO);
+            for (JournalEntry entry = reader.next(); entry != null; entry = reader.next()) {
+                if (entry.direction() != direction || entry.payload() == null) {
+                    continue;
+                }
+                ProducerRecord<String, Object> record = new ProducerRecord<>(topic == null ? entry.topic() : topic,
+                        Long.toString(entry.orderId()), entry.payload());
+                record.headers().add(REPLAY_HEADER, Long.toString(entry.offset()).getBytes(StandardCharsets.UTF_8));
+                producer.send(record);
+                replayed++;
+            }
+        }
+        System.out.println("Replayed " + replayed + " entries from " + segment);
+    }
+
+    private static boolean hasFlag(String[] args, String flag) {
+        for (String arg : args) {
+            if (arg.equals(flag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String option(String[] args, String name) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) {
+                return args[i + 1];
+            }
+        }
+        return null;
+    }
+
+    private static int intOption(String[] args, String name, int defaultValue) {
+        String value = option(args, name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static void usage() {
+        System.err.println("""
+                Usage:
+                  tail   <directory> <name> [-n <count>] [--follow]
+                  grep   <directory> <name> <orderId>
+                  replay <segment> <bootstrap-servers> [--produced] [--topic <topic>]""");
+    }
+}
@@ -0,0 +1,249 @@
+package com.personal_projects.common.Journal;
+
+import com.personal_projects.common.Enums.PaymentStatus;
+import com.personal_projects.common.Enums.ShipmentStatus;
+import com.personal_projects.common.Events.OrderEvent;
+import com.personal_projects.common.Events.PaymentEvent;
+import com.personal_projects.common.Events.ShipmentEvent;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary encoding of the event payloads kept in the {@link EventJournal}.
+ * <p>
+ * Each event type has a one-byte tag. Fields are written in declaration order: longs and doubles as 8 bytes,
+ * enums as their ordinal in one byte ({@code -1} for {@code null}), strings as a 4-byte UTF-8 length
+ * ({@code -1} for {@code null}) followed by the bytes. Encoding writes with absolute puts and encodes strings
+ * char by char, so it allocates nothing. Values of other types are journaled without payload.
+ * </p>
+ */
+final class JournalCodec {
+
+    static final byte UNKNOWN = 0;
+    static final byte ORDER_EVENT = 1;
+    static final byte PAYMENT_EVENT = 2;
+    static final byte SHIPMENT_EVENT = 3;
+
+    private JournalCodec() {
+    }
+
+    static byte type(Object value) {
+        if (value instanceof OrderEvent) {
+            return ORDER_EVENT;
+        }
+        if (value instanceof PaymentEvent) {
+            return PAYMENT_EVENT;
+        }
+        if (value instanceof ShipmentEvent) {
+            return SHIPMENT_EVENT;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * @return the ID of the order an event belongs to, or the record key if it is numeric, else {@code 0}
+     */
+    static long orderId(Object key, Object value) {
+        if (value instanceof OrderEvent event) {
+            return event.getOrderId();
+        }
+        if (value instanceof PaymentEvent event) {
+            return event.getOrderId();
+        }
+        if (value instanceof ShipmentEvent event) {
+            return event.getOrderId();
+        }
+        if (key instanceof String text && !text.isEmpty() && text.length() < 19) {
+            long id = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9') {
+                    return 0;
+                }
+                id = id * 10 + (c - '0');
+            }
+            return id;
+        }
+        return 0;
+    }
+
+    static int encodedLength(Object value) {
+        if (value instanceof OrderEvent event) {
+            return Long.BYTES + stringLength(event.getCustomerName()) + stringLength(event.getCustomerAddress())
+                    + Double.BYTES;
+        }
+        if (value instanceof PaymentEvent event) {
+            return stringLength(event.getPaymentId()) + Long.BYTES + 1 + stringLength(event.getCustomerName())
+                    + stringLength(event.getCustomerAddress());
+        }
+        if (value instanceof ShipmentEvent event) {
+            return stringLength(event.getShipmentId()) + Long.BYTES + 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Writes a payload at {@code index}, which must have {@link #encodedLength} bytes of room.
+     */
+    static void encode(Object value, ByteBuffer buffer, int index) {
+        if (value instanceof OrderEvent event) {
+            buffer.putLong(index, event.getOrderId());
+            index = putString(buffer, index + Long.BYTES, event.getCustomerName());
+            index = putString(buffer, index, event.getCustomerAddress());
+            buffer.putDouble(index, event.getTotalAmount());
+        } else if (value instanceof PaymentEvent event) {
+            index = putString(buffer, index, event.getPaymentId());
+            buffer.putLong(index, event.getOrderId());
+            buffer.put(index + Long.BYTES, ordinal(event.getPaymentStatus()));
+            index = putString(buffer, index + Long.BYTES + 1, event.getCustomerName());
+            putString(buffer, index, event.getCustomerAddress());
+        } else if (value instanceof ShipmentEvent event) {
+            index = putString(buffer, index, event.getShipmentId());
+            buffer.putLong(index, event.getOrderId());
+            buffer.put(index + Long.BYTES, ordinal(event.getShipmentStatus()));
+        }
+    }
+
+    /**
+     * Reads a payload written by {@link #encode}. Used by the {@link JournalReader}, so it may allocate.
+     *
+     * @return the event, or {@code null} for payloads of unknown type
+     */
+    static Object decode(byte type, ByteBuffer buffer, int index) {
+        int[] cursor = {index};
+        return switch (type) {
+            case ORDER_EVENT -> {
+                long orderId = getLong(buffer, cursor);
+                String customerName = getString(buffer, cursor);
+                String customerAddress = getString(buffer, cursor);
+                yield OrderEvent.builder()
+                        .orderId(orderId)
+                        .customerName(customerName)
+                        .customerAddress(customerAddress)
+                        .totalAmount(buffer.getDouble(cursor[0]))
+                        .build();
+            }
+            case PAYMENT_EVENT -> {
+                String paymentId = getString(buffer, cursor);
+                long orderId = getLong(buffer, cursor);
+                byte status = buffer.get(cursor[0]++);
+                yield PaymentEvent.builder()
+                        .paymentId(paymentId)
+                        .orderId(orderId)
+                        .paymentStatus(status < 0 ? null : PaymentStatus.values()[status])
+                        .customerName(getString(buffer, cursor))
+                        .customerAddress(getString(buffer, cursor))
+                        .build();
+            }
+            case SHIPMENT_EVENT -> {
+                String shipmentId = getString(buffer, cursor);
+                long orderId = getLong(buffer, cursor);
+                byte status = buffer.get(cursor[0]);
+                yield ShipmentEvent.builder()
+                        .shipmentId(shipmentId)
+                        .orderId(orderId)
+                        .shipmentStatus(status < 0 ? null : ShipmentStatus.values()[status])
+                        .build();
+            }
+            default -> null;
+        };
+    }
+
+    /**
+     * @return the number of bytes {@code text} takes in UTF-8, without encoding it
+     */
+    static int utf8Length(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Writes {@code text} as UTF-8 at {@code index}; unpaired surrogates are written as {@code ?}.
+     *
+     * @return the index past the written bytes
+     */
+    static int putUtf8(ByteBuffer buffer, int index, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                buffer.put(index++, (byte) c);
+            } else if (c < 0x800) {
+                buffer.put(index++, (byte) (0xC0 | c >> 6));
+                buffer.put(index++, (byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                buffer.put(index++, (byte) (0xF0 | codePoint >> 18));
+                buffer.put(index++, (byte) (0x80 | codePoint >> 12 & 0x3F));
+                buffer.put(index++, (byte) (0x80 | codePoint >> 6 & 0x3F));
+                buffer.put(index++, (byte) (0x80 | codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Keeps the three bytes counted by utf8Length
+                buffer.put(index++, (byte) 0xEF);
+                buffer.put(index++, (byte) 0xBF);
+                buffer.put(index++, (byte) 0xBD);
+            } else {
+                buffer.put(index++, (byte) (0xE0 | c >> 12));
+                buffer.put(index++, (byte) (0x80 | c >> 6 & 0x3F));
+                buffer.put(index++, (byte) (0x80 | c & 0x3F));
+            }
+        }
+        return index;
+    }
+
+    static String getUtf8(ByteBuffer buffer, int index, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(index, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int stringLength(String text) {
+        return Integer.BYTES + (text == null ? 0 : utf8Length(text));
+    }
+
+    private static int putString(ByteBuffer buffer, int index, String text) {
+        if (text == null) {
+            buffer.putInt(index, -1);
+            return index + Integer.BYTES;
+        }
+        int end = putUtf8(buffer, index + Integer.BYTES, text);
+        buffer.putInt(index, end - index - Integer.BYTES);
+        return end;
+    }
+
+    private static byte ordinal(Enum<?> value) {
+        return value == null ? -1 : (byte) value.ordinal();
+    }
+
+    private static long getLong(ByteBuffer buffer, int[] cursor) {
+        long value = buffer.getLong(cursor[0]);
+        cursor[0] += Long.BYTES;
+        return value;
+    }
+
+    private static String getString(ByteBuffer buffer, int[] cursor) {
+        int length = buffer.getInt(cursor[0]);
+        cursor[0] += Integer.BYTES;
+        if (length < 0) {
+            return null;
+        }
+        String text = getUtf8(buffer, cursor[0], length);
+        cursor[0] += length;
+        return text;
+    }
+}
@@ -0,0 +1,38 @@
+package com.personal_projects.common.Journal;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+/**
+ * Event journal shared by the services, imported by each service application.
+ * <p>
+ * When {@code journal.enabled} is set, the service journals to {@code journal.directory}, in segments of
+ * {@code journal.segment-size-mb} keeping the last {@code journal.max-segments}. The listener container
+ * factories install a {@link JournalRecordInterceptor} and the Kafka templates a {@link JournalProducerListener};
+ * both take the journal from an {@code ObjectProvider} so they are left out when journaling is off.
+ * </p>
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "journal.enabled", havingValue = "true")
+public class JournalConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public EventJournal eventJournal(@Value("${journal.directory:journal}") String directory,
+                                     @Value("${spring.application.name}") String name,
+                                     @Value("${journal.segment-size-mb:64}") int segmentSizeMb,
+                                     @Value("${journal.max-segments:16}") int maxSegments,
+                                     MeterRegistry meterRegistry) {
+        EventJournal journal = new EventJournal(Path.of(directory), name, segmentSizeMb << 20, maxSegments);
+        FunctionCounter.builder("journal.dropped", journal, EventJournal::dropped)
+                .description("Records not journaled because they did not fit a segment, could not be encoded, or the journal "
+                        + "could not switch to the next segment in time")
+                .register(meterRegistry);
+        return journal;
+    }
+}
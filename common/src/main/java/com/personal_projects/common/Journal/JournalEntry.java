@@ -0,0 +1,38 @@
+package com.personal_projects.common.Journal;
+
+import java.time.Instant;
+
+/**
+ * An entry read back from the {@link EventJournal}.
+ *
+ * @param direction   {@link EventJournal#CONSUMED} or {@link EventJournal#PRODUCED}
+ * @param timestamp   the record timestamp, epoch millis
+ * @param journaledAt when the entry was written, epoch millis
+ * @param topic       the topic of the record
+ * @param partition   the partition of the record
+ * @param offset      the offset of the record
+ * @param orderId     the ID of the order the record belongs to, {@code 0} if unknown
+ * @param payload     the decoded event, {@code null} if its type is not known to the journal
+ */
+public record JournalEntry(byte direction,
+                           long timestamp,
+                           long journaledAt,
+                           String topic,
+                           int partition,
+                           long offset,
+                           long orderId,
+                           Object payload) {
+
+    /**
+     * @return the entry as one line of text, for the {@link JournalCli}
+     */
+    @Override
+    public String toString() {
+        return Instant.ofEpochMilli(journaledAt)
+                + (direction == EventJournal.CONSUMED ? " consumed " : " produced ")
+                + topic + "-" + partition + "@" + offset
+                + " order=" + orderId
+                + " ts=" + Instant.ofEpochMilli(timestamp)
+                + " " + payload;
+    }
+}
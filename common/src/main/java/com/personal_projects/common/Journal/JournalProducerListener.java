@@ -0,0 +1,26 @@
+package com.personal_projects.common.Journal;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.springframework.kafka.support.LoggingProducerListener;
+
+/**
+ * Producer listener appending every record the broker acknowledged to the {@link EventJournal}. Failed sends
+ * are still logged, as by the template's default {@link LoggingProducerListener}.
+ *
+ * @param <K> the record key type
+ * @param <V> the record value type
+ */
+public class JournalProducerListener<K, V> extends LoggingProducerListener<K, V> {
+
+    private final EventJournal journal;
+
+    public JournalProducerListener(EventJournal journal) {
+        this.journal = journal;
+    }
+
+    @Override
+    public void onSuccess(ProducerRecord<K, V> record, RecordMetadata metadata) {
+        journal.produced(record, metadata);
+    }
+}
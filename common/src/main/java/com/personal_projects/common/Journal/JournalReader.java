@@ -0,0 +1,138 @@
+package com.personal_projects.common.Journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+/**
+ * Reads the entries of one {@link EventJournal} segment, possibly while it is being written.
+ * <p>
+ * An entry still marked reserved is being written, and the reader waits for it. A writer takes microseconds, so
+ * an entry left reserved for longer than {@code skipAfter} was abandoned, e.g. by a service stopped mid-write,
+ * and is skipped; reading a segment no longer written, a reserved entry is skipped right away.
+ * </p>
+ */
+public class JournalReader {
+
+    /** Time after which a live reader skips an entry left reserved. */
+    public static final Duration DEFAULT_SKIP_AFTER = Duration.ofSeconds(1);
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final long skipAfterNanos;
+    private int position;
+    private boolean ended;
+    private int stalledAt = -1;
+    private long stalledSince;
+
+    /**
+     * Maps a segment for reading while it may be written, skipping entries reserved for longer than
+     * {@link #DEFAULT_SKIP_AFTER}.
+     *
+     * @param file the segment file
+     * @throws IOException if the file cannot be mapped
+     */
+    public JournalReader(Path file) throws IOException {
+        this(file, DEFAULT_SKIP_AFTER);
+    }
+
+    /**
+     * Maps a segment for reading.
+     *
+     * @param file      the segment file
+     * @param skipAfter time after which an entry left reserved is skipped, {@link Duration#ZERO} for a segment
+     *                  no longer written
+     * @throws IOException if the file cannot be mapped
+     */
+    public JournalReader(Path file, Duration skipAfter) throws IOException {
+        this.file = file;
+        this.skipAfterNanos = skipAfter.toNanos();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Checks whether a writer started writing a segment, as opposed to a segment mapped ahead and still empty.
+     *
+     * @param file the segment file
+     * @return whether the segment holds an entry, reserved or written, or its end marker
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean started(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            return channel.read(length, 0) == Integer.BYTES && length.getInt(0) != 0;
+        }
+    }
+
+    /**
+     * @return the segment file
+     */
+    public Path file() {
+        return file;
+    }
+
+    /**
+     * Reads the next entry.
+     *
+     * @return the entry, or {@code null} if no further entry has been written yet
+     */
+    public JournalEntry next() {
+        while (true) {
+            if (ended || position + Integer.BYTES > buffer.capacity()) {
+                ended = true;
+                return null;
+            }
+            int length = buffer.getInt(position);
+            if (length == EventJournal.END_OF_SEGMENT) {
+                ended = true;
+                return null;
+            }
+            if (length == 0) {
+                return null;
+            }
+            if (length < 0) {
+                // Reserved: wait for the writer, unless it was abandoned
+                long now = System.nanoTime();
+                if (stalledAt != position) {
+                    stalledAt = position;
+                    stalledSince = now;
+                }
+                if (now - stalledSince < skipAfterNanos) {
+                    return null;
+                }
+                position -= length;
+                continue;
+            }
+            if (buffer.get(position + 4) == EventJournal.ABANDONED) {
+                position += length;
+                continue;
+            }
+            int topicBytes = buffer.getShort(position + 6);
+            JournalEntry entry = new JournalEntry(
+                    buffer.get(position + 4),
+                    buffer.getLong(position + 8),
+                    buffer.getLong(position + 16),
+                    JournalCodec.getUtf8(buffer, position + EventJournal.HEADER_BYTES, topicBytes),
+                    buffer.getInt(position + 24),
+                    buffer.getLong(position + 28),
+                    buffer.getLong(position + 36),
+                    JournalCodec.decode(buffer.get(position + 5), buffer,
+                            position + EventJournal.HEADER_BYTES + topicBytes));
+            position += length;
+            return entry;
+        }
+    }
+
+    /**
+     * @return whether the writers moved on to the next segment, so no further entry will appear in this one
+     */
+    public boolean ended() {
+        return ended;
+    }
+}
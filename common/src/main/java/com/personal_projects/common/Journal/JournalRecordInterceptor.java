@@ -0,0 +1,40 @@
+package com.personal_projects.common.Journal;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.kafka.listener.RecordInterceptor;
+
+/**
+ * {@link RecordInterceptor} appending every record a listener receives to the {@link EventJournal}.
+ *
+ * @param <K> the record key type
+ * @param <V> the record value type
+ */
+public class JournalRecordInterceptor<K, V> implements RecordInterceptor<K, V> {
+
+    private final EventJournal journal;
+
+    public JournalRecordInterceptor(EventJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Creates an interceptor if the service journals.
+     *
+     * @param journal the journal, available when {@code journal.enabled} is set
+     * @param <K>     the record key type
+     * @param <V>     the record value type
+     * @return the interceptor, or {@code null} when journaling is off
+     */
+    public static <K, V> JournalRecordInterceptor<K, V> ifAvailable(ObjectProvider<EventJournal> journal) {
+        EventJournal available = journal.getIfAvailable();
+        return available == null ? null : new JournalRecordInterceptor<>(available);
+    }
+
+    @Override
+    public ConsumerRecord<K, V> intercept(ConsumerRecord<K, V> record, Consumer<K, V> consumer) {
+        journal.consumed(record);
+        return record;
+    }
+}
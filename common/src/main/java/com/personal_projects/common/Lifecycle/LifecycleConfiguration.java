@@ -0,0 +1,18 @@
+package com.personal_projects.common.Lifecycle;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Order lifecycle latency metrics shared by the services, imported by each service application. The listeners
+ * record every consumed event through the {@link LifecycleLatencyRecorder}.
+ */
+@Configuration(proxyBeanMethods = false)
+public class LifecycleConfiguration {
+
+    @Bean
+    public LifecycleLatencyRecorder lifecycleLatencyRecorder(MeterRegistry meterRegistry) {
+        return new LifecycleLatencyRecorder(meterRegistry);
+    }
+}
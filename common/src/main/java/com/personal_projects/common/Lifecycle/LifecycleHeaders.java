@@ -0,0 +1,107 @@
+package com.personal_projects.common.Lifecycle;
+
+import com.personal_projects.common.Dedupe.EventIds;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeader;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Kafka record headers carrying the timing of an order through its lifecycle.
+ * <p>
+ * {@value #ORIGIN_TS} holds the epoch millis at which the order was created and is copied unchanged onto every
+ * event of that order. {@value #HOP_TS} holds the epoch millis at which the producing service started the stage
+ * the event completes, e.g. when the payment service received the order. Both are 8-byte big-endian longs, so
+ * stamping and reading them needs no parsing. Records are keyed by order ID, keeping the events of one order
+ * in order on a single partition.
+ * </p>
+ */
+public final class LifecycleHeaders {
+
+    public static final String ORIGIN_TS = "x-origin-ts";
+    public static final String HOP_TS = "x-hop-ts";
+
+    /** Returned when a header is absent, e.g. on records produced before the headers existed. */
+    public static final long UNKNOWN = 0L;
+
+    private LifecycleHeaders() {
+    }
+
+    /**
+     * Creates a record for an order event, keyed by order ID and stamped with the lifecycle timestamps and a new
+     * {@link EventIds event ID}. Timestamps that are {@link #UNKNOWN} are not stamped.
+     *
+     * @param topic        the topic to send to
+     * @param orderId      the ID of the order the event belongs to
+     * @param event        the event payload
+     * @param originMillis epoch millis at which the order was created
+     * @param hopMillis    epoch millis at which the stage completed by this event started
+     * @param <V>          the type of the event
+     * @return the stamped record
+     */
+    public static <V> ProducerRecord<String, V> record(String topic, long orderId, V event,
+                                                       long originMillis, long hopMillis) {
+        ProducerRecord<String, V> record = new ProducerRecord<>(topic, Long.toString(orderId), event);
+        EventIds.stamp(record.headers());
+        if (originMillis > UNKNOWN) {
+            record.headers().add(new RecordHeader(ORIGIN_TS, encode(originMillis)));
+        }
+        if (hopMillis > UNKNOWN) {
+            record.headers().add(new RecordHeader(HOP_TS, encode(hopMillis)));
+        }
+        return record;
+    }
+
+    /**
+     * Reads the origin timestamp of a record.
+     *
+     * @param headers the record headers
+     * @return the epoch millis at which the order was created, or {@link #UNKNOWN}
+     */
+    public static long originMillis(Headers headers) {
+        return decode(headers.lastHeader(ORIGIN_TS));
+    }
+
+    /**
+     * Reads the hop timestamp of a record.
+     *
+     * @param headers the record headers
+     * @return the epoch millis at which the stage completed by the record started, or {@link #UNKNOWN}
+     */
+    public static long hopMillis(Headers headers) {
+        return decode(headers.lastHeader(HOP_TS));
+    }
+
+    /**
+     * Converts a local timestamp, as stored on the entities, to epoch millis.
+     *
+     * @param time the local timestamp, may be {@code null}
+     * @return the epoch millis, or {@link #UNKNOWN} if {@code time} is {@code null}
+     */
+    public static long epochMillis(LocalDateTime time) {
+        return time == null ? UNKNOWN : time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static byte[] encode(long value) {
+        byte[] bytes = new byte[Long.BYTES];
+        for (int i = Long.BYTES - 1; i >= 0; i--) {
+            bytes[i] = (byte) value;
+            value >>>= 8;
+        }
+        return bytes;
+    }
+
+    private static long decode(Header header) {
+        if (header == null || header.value() == null || header.value().length != Long.BYTES) {
+            return UNKNOWN;
+        }
+        long value = 0;
+        for (byte b : header.value()) {
+            value = (value << 8) | (b & 0xFF);
+        }
+        return value;
+    }
+}
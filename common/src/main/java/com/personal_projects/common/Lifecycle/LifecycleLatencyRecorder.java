@@ -0,0 +1,116 @@
+package com.personal_projects.common.Lifecycle;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records order lifecycle latencies for consumed Kafka records as Micrometer timers.
+ * <p>
+ * For every record it records:
+ * <ul>
+ *     <li>{@code order.lifecycle.queue.time}, tagged by topic: time from the record timestamp to consumption.</li>
+ *     <li>{@code order.lifecycle.hop.latency}, tagged by topic and stage: time from the {@link LifecycleHeaders#HOP_TS}
+ *     header to consumption, i.e. the upstream stage plus queueing.</li>
+ *     <li>{@code order.lifecycle.end.to.end}, tagged by stage: time from the {@link LifecycleHeaders#ORIGIN_TS}
+ *     header, the order's creation, to consumption.</li>
+ * </ul>
+ * The timers publish histogram buckets, so percentiles can be aggregated across instances by the scraper.
+ * Timers are created once per topic and stage; recording a record only reads two headers and updates three
+ * timers. Timestamps come from the wall clocks of different hosts, so small negative values caused by clock
+ * skew are recorded as zero.
+ * </p>
+ */
+public class LifecycleLatencyRecorder {
+
+    private static final Duration MIN_EXPECTED = Duration.ofMillis(1);
+    private static final Duration MAX_QUEUE_TIME = Duration.ofMinutes(5);
+    private static final Duration MAX_LIFECYCLE = Duration.ofDays(1);
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> queueTimers = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, StageTimers>> stageTimers = new ConcurrentHashMap<>();
+
+    public LifecycleLatencyRecorder(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Records the latencies of a consumed record.
+     *
+     * @param record the consumed record
+     * @param stage  the lifecycle stage the record reports, e.g. {@code PAID} or {@code SHIPPED}
+     */
+    public void record(ConsumerRecord<?, ?> record, String stage) {
+        long now = System.currentTimeMillis();
+
+        if (record.timestamp() > 0) {
+            queueTimer(record.topic()).record(elapsed(record.timestamp(), now), TimeUnit.MILLISECONDS);
+        }
+
+        long hop = LifecycleHeaders.hopMillis(record.headers());
+        long origin = LifecycleHeaders.originMillis(record.headers());
+        if (hop == LifecycleHeaders.UNKNOWN && origin == LifecycleHeaders.UNKNOWN) {
+            return;
+        }
+        StageTimers timers = stageTimers(record.topic(), stage);
+        if (hop != LifecycleHeaders.UNKNOWN) {
+            timers.hop.record(elapsed(hop, now), TimeUnit.MILLISECONDS);
+        }
+        if (origin != LifecycleHeaders.UNKNOWN) {
+            timers.endToEnd.record(elapsed(origin, now), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static long elapsed(long fromMillis, long nowMillis) {
+        return Math.max(0, nowMillis - fromMillis);
+    }
+
+    private Timer queueTimer(String topic) {
+        Timer timer = queueTimers.get(topic);
+        if (timer == null) {
+            timer = queueTimers.computeIfAbsent(topic, t -> Timer.builder("order.lifecycle.queue.time")
+                    .description("Time from producing a record to consuming it")
+                    .tag("topic", t)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(MIN_EXPECTED)
+                    .maximumExpectedValue(MAX_QUEUE_TIME)
+                    .register(meterRegistry));
+        }
+        return timer;
+    }
+
+    private StageTimers stageTimers(String topic, String stage) {
+        Map<String, StageTimers> byStage = stageTimers.get(topic);
+        if (byStage == null) {
+            byStage = stageTimers.computeIfAbsent(topic, t -> new ConcurrentHashMap<>());
+        }
+        StageTimers timers = byStage.get(stage);
+        if (timers == null) {
+            timers = byStage.computeIfAbsent(stage, s -> new StageTimers(
+                    Timer.builder("order.lifecycle.hop.latency")
+                            .description("Time from the start of the upstream stage to consuming its event")
+                            .tags("topic", topic, "stage", s)
+                            .publishPercentileHistogram()
+                            .minimumExpectedValue(MIN_EXPECTED)
+                            .maximumExpectedValue(MAX_LIFECYCLE)
+                            .register(meterRegistry),
+                    Timer.builder("order.lifecycle.end.to.end")
+                            .description("Time from creating the order to consuming the event of a stage")
+                            .tag("stage", s)
+                            .publishPercentileHistogram()
+                            .minimumExpectedValue(MIN_EXPECTED)
+                            .maximumExpectedValue(MAX_LIFECYCLE)
+                            .register(meterRegistry)));
+        }
+        return timers;
+    }
+
+    private record StageTimers(Timer hop, Timer endToEnd) {
+    }
+}
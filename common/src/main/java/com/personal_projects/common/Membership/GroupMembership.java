@@ -0,0 +1,105 @@
+package com.personal_projects.common.Membership;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.CooperativeStickyAssignor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.MicrometerConsumerListener;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+
+import java.time.Duration;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Joins the listener containers to their consumer group so that a deploy moves as few partitions as possible, and
+ * measures the rebalances that still happen.
+ * <p>
+ * Partitions are assigned by the {@link CooperativeStickyAssignor}: a rebalance only revokes the partitions moving
+ * to another consumer, and every other partition keeps being consumed through it, where the eager assignors stopped
+ * every listener of the group until all consumers had rejoined.
+ * </p>
+ * <p>
+ * When the instance has a stable {@code kafka.consumer.instance-id}, e.g. the pod name of a stateful set, each
+ * consumer also joins as a static member, with a {@code group.instance.id} made of the instance ID and the listener
+ * ID, which the container suffixes with the consumer index. A static member shutting down does not rebalance the
+ * group: its partitions wait for it for up to {@code kafka.consumer.session-timeout-ms}, and it gets them back when
+ * it rejoins, so a rolling restart moves no partition at all. Without an instance ID, consumers are dynamic members.
+ * </p>
+ * <p>
+ * On shutdown, a container finishes the records it polled and commits their offsets before closing its consumer,
+ * waiting up to {@code kafka.consumer.shutdown-timeout-ms}. Parallel listeners are drained before, by the
+ * {@code KeyOrderedDispatcher}.
+ * </p>
+ * <p>
+ * The time from the revocation of partitions of a listener to the assignment ending the rebalance is published as
+ * {@code kafka.listener.rebalance.duration}, the partitions moved as {@code kafka.listener.rebalance.partitions},
+ * and the client's own group coordinator metrics as {@code kafka.consumer.coordinator.*}, e.g.
+ * {@code kafka.consumer.coordinator.rebalance.latency.max}.
+ * </p>
+ */
+public class GroupMembership {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupMembership.class);
+
+    private final String instanceId;
+    private final Duration sessionTimeout;
+    private final Duration shutdownTimeout;
+    private final MeterRegistry meterRegistry;
+    private final Set<ConsumerFactory<?, ?>> instrumentedFactories = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructs the group membership of the instance.
+     *
+     * @param instanceId      stable ID of the instance, or blank to join as dynamic members
+     * @param sessionTimeout  time after which the group gives up on a consumer it has not heard from
+     * @param shutdownTimeout time a container gets to finish its records and commit when stopping
+     * @param meterRegistry   registry for the rebalance metrics
+     */
+    public GroupMembership(String instanceId, Duration sessionTimeout, Duration shutdownTimeout,
+                           MeterRegistry meterRegistry) {
+        this.instanceId = instanceId == null || instanceId.isBlank() ? null : instanceId.strip();
+        this.sessionTimeout = sessionTimeout;
+        this.shutdownTimeout = shutdownTimeout;
+        this.meterRegistry = meterRegistry;
+        if (this.instanceId == null) {
+            logger.info("No kafka.consumer.instance-id, the listeners join their groups as dynamic members");
+        }
+    }
+
+    /**
+     * Configures the group membership of a listener container, before it starts. Used in the container customizer
+     * of the listener container factories, ahead of any customization wrapping the rebalance listener.
+     *
+     * @param container       the container created for a {@code @KafkaListener}
+     * @param consumerFactory the consumer factory of the container, whose consumers publish their client metrics
+     * @param <K>             the record key type
+     * @param <V>             the record value type
+     */
+    public <K, V> void join(ConcurrentMessageListenerContainer<K, V> container,
+                            ConsumerFactory<?, ?> consumerFactory) {
+        String listenerId = container.getListenerId();
+        ContainerProperties properties = container.getContainerProperties();
+        Properties overrides = properties.getKafkaConsumerProperties();
+        overrides.setProperty(ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG,
+                CooperativeStickyAssignor.class.getName());
+        overrides.setProperty(ConsumerConfig.SESSION_TIMEOUT_MS_CONFIG, Long.toString(sessionTimeout.toMillis()));
+        if (instanceId != null) {
+            overrides.setProperty(ConsumerConfig.GROUP_INSTANCE_ID_CONFIG, instanceId + "-" + listenerId);
+        }
+        properties.setShutdownTimeout(shutdownTimeout.toMillis());
+        properties.setConsumerRebalanceListener(
+                new RebalanceTimer(listenerId, properties.getConsumerRebalanceListener(), meterRegistry));
+        instrument(consumerFactory);
+    }
+
+    private <K, V> void instrument(ConsumerFactory<K, V> consumerFactory) {
+        if (instrumentedFactories.add(consumerFactory)) {
+            consumerFactory.addListener(new MicrometerConsumerListener<>(meterRegistry));
+        }
+    }
+}
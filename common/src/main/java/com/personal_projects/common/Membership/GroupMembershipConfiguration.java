@@ -0,0 +1,26 @@
+package com.personal_projects.common.Membership;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Consumer group membership shared by the services, imported by each service application. The listener container
+ * factories of a service call {@link GroupMembership#join} first in their container customizer.
+ */
+@Configuration(proxyBeanMethods = false)
+public class GroupMembershipConfiguration {
+
+    @Bean
+    public GroupMembership groupMembership(
+            @Value("${kafka.consumer.instance-id:}") String instanceId,
+            @Value("${kafka.consumer.session-timeout-ms:45000}") long sessionTimeoutMs,
+            @Value("${kafka.consumer.shutdown-timeout-ms:30000}") long shutdownTimeoutMs,
+            MeterRegistry meterRegistry) {
+        return new GroupMembership(instanceId, Duration.ofMillis(sessionTimeoutMs),
+                Duration.ofMillis(shutdownTimeoutMs), meterRegistry);
+    }
+}
@@ -0,0 +1,113 @@
+package com.personal_projects.common.Membership;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rebalance listener of a container timing the rebalances that take partitions away from its consumers, then
+ * calling the container's own listener.
+ * <p>
+ * With cooperative assignment, a consumer only sees its revoked partitions when some move away, and the others keep
+ * flowing meanwhile; the duration recorded is then how long the moved partitions were consumed by no one on this
+ * side. The listener is shared by the consumers of a concurrent container, so the revocation times are kept per
+ * consumer.
+ * </p>
+ */
+class RebalanceTimer implements ConsumerAwareRebalanceListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(RebalanceTimer.class);
+
+    private final String listenerId;
+    private final ConsumerRebalanceListener delegate;
+    private final Timer duration;
+    private final Counter assigned;
+    private final Counter revoked;
+    private final Counter lost;
+    private final Map<Consumer<?, ?>, Long> revokedAt = Collections.synchronizedMap(new WeakHashMap<>());
+
+    RebalanceTimer(String listenerId, ConsumerRebalanceListener delegate, MeterRegistry meterRegistry) {
+        this.listenerId = listenerId;
+        this.delegate = delegate;
+        this.duration = Timer.builder("kafka.listener.rebalance.duration")
+                .description("Time from the revocation of partitions of a listener to the assignment ending the "
+                        + "rebalance")
+                .tag("listener", listenerId)
+                .register(meterRegistry);
+        this.assigned = partitions(meterRegistry, "assigned");
+        this.revoked = partitions(meterRegistry, "revoked");
+        this.lost = partitions(meterRegistry, "lost");
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        leaving(consumer, partitions, revoked);
+        if (delegate instanceof ConsumerAwareRebalanceListener aware) {
+            aware.onPartitionsRevokedBeforeCommit(consumer, partitions);
+        } else if (delegate != null) {
+            delegate.onPartitionsRevoked(partitions);
+        }
+    }
+
+    @Override
+    public void onPartitionsRevokedAfterCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        if (delegate instanceof ConsumerAwareRebalanceListener aware) {
+            aware.onPartitionsRevokedAfterCommit(consumer, partitions);
+        }
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        leaving(consumer, partitions, lost);
+        if (delegate instanceof ConsumerAwareRebalanceListener aware) {
+            aware.onPartitionsLost(consumer, partitions);
+        } else if (delegate != null) {
+            delegate.onPartitionsLost(partitions);
+        }
+    }
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        assigned.increment(partitions.size());
+        Long since = revokedAt.remove(consumer);
+        if (since != null) {
+            long nanos = System.nanoTime() - since;
+            duration.record(nanos, TimeUnit.NANOSECONDS);
+            logger.info("Listener {} rebalanced in {} ms, assigned {}", listenerId,
+                    TimeUnit.NANOSECONDS.toMillis(nanos), partitions);
+        }
+        if (delegate instanceof ConsumerAwareRebalanceListener aware) {
+            aware.onPartitionsAssigned(consumer, partitions);
+        } else if (delegate != null) {
+            delegate.onPartitionsAssigned(partitions);
+        }
+    }
+
+    private void leaving(Consumer<?, ?> consumer, Collection<TopicPartition> partitions, Counter counter) {
+        if (partitions.isEmpty()) {
+            return;
+        }
+        counter.increment(partitions.size());
+        revokedAt.putIfAbsent(consumer, System.nanoTime());
+    }
+
+    private Counter partitions(MeterRegistry meterRegistry, String change) {
+        return Counter.builder("kafka.listener.rebalance.partitions")
+                .description("Partitions of a listener moved by rebalances, by change")
+                .tag("listener", listenerId)
+                .tag("change", change)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,364 @@
+package com.personal_projects.common.Parallel;
+
+import com.personal_projects.common.Retry.RetryTopics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.ListenerExecutionFailedException;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.listener.RecordInterceptor;
+import org.springframework.kafka.support.converter.ConversionException;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.handler.invocation.MethodArgumentResolutionException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Processes the records of the listeners in {@code kafka.parallel.listeners} on a bounded pool of workers instead
+ * of their consumer thread, keeping them in order per record key only.
+ * <p>
+ * The records of a partition are keyed by order ID, so in a listener processing one record at a time a slow
+ * database write holds up every order behind it in the partition. Here, the consumer thread hands each record to a
+ * {@link ParallelMessageListener} and fetches on: records with different keys run concurrently, up to
+ * {@code kafka.parallel.threads}, while the records of one key still run one after the other, in offset order.
+ * Once {@code kafka.parallel.max-in-flight} records of the service are dispatched and not yet processed, the
+ * parallel containers are paused, and resumed when half of them are: a slow database still slows consumption
+ * down, while the consumer threads keep polling, without fetching, so however long the retries take they stay in
+ * their groups. The records of the poll in progress are still dispatched, so the bound is exceeded by at most one
+ * poll per consumer. The throughput of an instance is then bound by its I/O concurrency rather than by the number
+ * of partitions it is assigned.
+ * </p>
+ * <p>
+ * Offsets are committed up to the highest record below which all records are processed, see
+ * {@link PartitionOffsets}; a record processed out of order is redelivered after a crash, and dropped by the
+ * dedupe window. A failing record is retried in place, holding up its key only, with the {@code kafka.retry.*}
+ * backoff, then published to the listener's dead-letter topic, named after the topic with
+ * {@code kafka.parallel.dead-letter-suffix}, which must name a dead-letter topic. Records that cannot be
+ * deserialized go there straight away. The containers of the retry and dead-letter topics are never dispatched:
+ * they process one record at a time, and the dedupe window skips the dead-lettered records, so their replay still
+ * reaches the listener.
+ * </p>
+ * <p>
+ * On shutdown, the dispatcher stops before the listener containers: it pauses them and waits up to
+ * {@code kafka.parallel.drain-timeout-ms} for the records in flight, so the containers commit their offsets as
+ * they stop and a restart redelivers nothing already processed.
+ * </p>
+ * <p>
+ * The records in flight are exposed as {@code kafka.parallel.in.flight}, and per listener the keys running in
+ * {@code kafka.parallel.keys}, the records not yet committable in {@code kafka.parallel.uncommitted}, the retries
+ * in {@code kafka.parallel.retries} and the dead-lettered records in {@code kafka.parallel.dead.lettered}.
+ * </p>
+ */
+public class KeyOrderedDispatcher implements SmartLifecycle, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(KeyOrderedDispatcher.class);
+    private static final long DRAIN_POLL_MS = 50;
+
+    private final Set<String> listenerIds;
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ExecutorService workers;
+    private final int attempts;
+    private final long initialDelayMs;
+    private final double multiplier;
+    private final long maxDelayMs;
+    private final Duration drainTimeout;
+    private final DeadLetterPublishingRecoverer deadLetterRecoverer;
+    private final ObservationRegistry observationRegistry;
+    private final MeterRegistry meterRegistry;
+    private final List<MessageListenerContainer> containers = new CopyOnWriteArrayList<>();
+    private volatile boolean running;
+    private volatile boolean throttled;
+
+    /**
+     * Constructs the dispatcher.
+     *
+     * @param listenerIds         IDs of the listeners processing in parallel
+     * @param threads             number of workers
+     * @param maxInFlight         records dispatched and not yet processed, at most
+     * @param attempts            attempts at processing a record before dead-lettering it
+     * @param initialDelayMs      delay before the first retry
+     * @param multiplier          factor applied to the delay after each retry
+     * @param maxDelayMs          longest delay between retries
+     * @param drainTimeout        time to wait for the records in flight of a revoked partition
+     * @param deadLetterSuffix    suffix of the dead-letter topic of a listener's topic
+     * @param retryKafkaTemplate  template publishing to the dead-letter topics
+     * @param observationRegistry registry holding the trace context of the dispatched records
+     * @param meterRegistry       registry for the dispatch metrics
+     */
+    public KeyOrderedDispatcher(Set<String> listenerIds, int threads, int maxInFlight, int attempts,
+                                long initialDelayMs, double multiplier, long maxDelayMs, Duration drainTimeout,
+                                String deadLetterSuffix, KafkaOperations<?, ?> retryKafkaTemplate,
+                                ObservationRegistry observationRegistry, MeterRegistry meterRegistry) {
+        if (threads < 1 || maxInFlight < threads) {
+            throw new IllegalArgumentException("Expected 1 <= kafka.parallel.threads <= kafka.parallel.max-in-flight, was "
+                    + threads + " and " + maxInFlight);
+        }
+        if (!RetryTopics.isDeadLetterTopic(deadLetterSuffix)) {
+            throw new IllegalArgumentException("kafka.parallel.dead-letter-suffix must end with "
+                    + RetryTopics.DLT_SUFFIX + " to name a dead-letter topic, was " + deadLetterSuffix);
+        }
+        this.listenerIds = Set.copyOf(listenerIds);
+        this.maxInFlight = maxInFlight;
+        this.workers = Executors.newFixedThreadPool(threads, workerThreads());
+        this.attempts = Math.max(1, attempts);
+        this.initialDelayMs = initialDelayMs;
+        this.multiplier = multiplier;
+        this.maxDelayMs = maxDelayMs;
+        this.drainTimeout = drainTimeout;
+        this.deadLetterRecoverer = new DeadLetterPublishingRecoverer(retryKafkaTemplate,
+                (record, exception) -> new TopicPartition(record.topic() + deadLetterSuffix, -1));
+        this.observationRegistry = observationRegistry;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("kafka.parallel.in.flight", inFlight, AtomicInteger::get)
+                .description("Records dispatched to the parallel workers and not yet processed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Installs the interceptors of a listener container, on the container itself, or on a
+     * {@link ParallelMessageListener} running them on the workers when the listener processes in parallel.
+     * Used as the container customizer of the listener container factories.
+     *
+     * @param dispatcher   the dispatcher, available when {@code kafka.parallel.enabled} is set
+     * @param container    the container created for a {@code @KafkaListener}
+     * @param interceptors the interceptors of the container
+     * @param <K>          the record key type
+     * @param <V>          the record value type
+     */
+    public static <K, V> void install(ObjectProvider<KeyOrderedDispatcher> dispatcher,
+                                      ConcurrentMessageListenerContainer<K, V> container,
+                                      RecordInterceptor<K, V> interceptors) {
+        KeyOrderedDispatcher available = dispatcher.getIfAvailable();
+        if (available == null || !available.listenerIds.contains(container.getListenerId())
+                || readsRetryTopics(container)) {
+            container.setRecordInterceptor(interceptors);
+            return;
+        }
+        available.dispatch(container, interceptors);
+    }
+
+    private static boolean readsRetryTopics(MessageListenerContainer container) {
+        String[] topics = container.getContainerProperties().getTopics();
+        if (topics == null) {
+            return false;
+        }
+        for (String topic : topics) {
+            if (RetryTopics.isDeadLetterTopic(topic) || RetryTopics.isRetryTopic(topic)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private <K, V> void dispatch(ConcurrentMessageListenerContainer<K, V> container,
+                                 RecordInterceptor<K, V> interceptors) {
+        String listenerId = container.getListenerId();
+        ContainerProperties properties = container.getContainerProperties();
+        ParallelMessageListener<K, V> listener = new ParallelMessageListener<>(this, listenerId,
+                properties.getMessageListener(), interceptors, properties.getConsumerRebalanceListener());
+        // The listener acknowledges each record once it and all the records before it are processed
+        properties.setAckMode(ContainerProperties.AckMode.MANUAL);
+        properties.setConsumerRebalanceListener(listener.rebalanceListener());
+        container.setupMessageListener(listener);
+        containers.add(container);
+
+        Gauge.builder("kafka.parallel.keys", listener, ParallelMessageListener::activeKeys)
+                .description("Record keys with records dispatched and not yet processed")
+                .tag("listener", listenerId)
+                .register(meterRegistry);
+        Gauge.builder("kafka.parallel.uncommitted", listener, ParallelMessageListener::uncommitted)
+                .description("Records dispatched whose offset cannot be committed yet")
+                .tag("listener", listenerId)
+                .register(meterRegistry);
+        logger.info("Listener {} processes records in parallel, ordered per key", listenerId);
+    }
+
+    /**
+     * Counts a record dispatched, pausing the parallel containers once {@code max-in-flight} records are being
+     * processed. Called from the consumer threads, never waiting.
+     */
+    void dispatched() {
+        if (inFlight.incrementAndGet() >= maxInFlight) {
+            throttle();
+        }
+    }
+
+    /**
+     * Counts a record processed, resuming the parallel containers once half of the records in flight are.
+     */
+    void release() {
+        if (inFlight.decrementAndGet() <= maxInFlight / 2 && throttled) {
+            unthrottle();
+        }
+    }
+
+    private synchronized void throttle() {
+        if (!throttled && inFlight.get() >= maxInFlight) {
+            throttled = true;
+            containers.forEach(MessageListenerContainer::pause);
+            logger.debug("Paused the parallel listeners with {} records in flight", inFlight.get());
+        }
+    }
+
+    private synchronized void unthrottle() {
+        if (throttled && inFlight.get() <= maxInFlight / 2) {
+            throttled = false;
+            // Stopping, the containers stay paused until they stop
+            if (running) {
+                containers.forEach(MessageListenerContainer::resume);
+            }
+        }
+    }
+
+    ExecutorService workers() {
+        return workers;
+    }
+
+    ObservationRegistry observationRegistry() {
+        return observationRegistry;
+    }
+
+    Duration drainTimeout() {
+        return drainTimeout;
+    }
+
+    /**
+     * @return the delay before the next attempt, or {@code -1} if the failed attempt was the last
+     */
+    long retryDelayMs(int attempt, Exception failure) {
+        if (attempt >= attempts || !isRetryable(failure)) {
+            return -1;
+        }
+        return (long) Math.min(maxDelayMs, initialDelayMs * Math.pow(multiplier, attempt - 1));
+    }
+
+    void retried(String listenerId) {
+        counter("kafka.parallel.retries", "Failed records retried by the parallel workers", listenerId).increment();
+    }
+
+    /**
+     * Publishes a record to the dead-letter topic after its last attempt.
+     */
+    void deadLetter(String listenerId, ConsumerRecord<?, ?> record, Exception failure) {
+        logger.error("Dead-lettering {}-{}@{} key {} of listener {}", record.topic(), record.partition(),
+                record.offset(), record.key(), listenerId, failure);
+        counter("kafka.parallel.dead.lettered", "Records dead-lettered by the parallel workers", listenerId)
+                .increment();
+        deadLetterRecoverer.accept(record, failure);
+    }
+
+    private Counter counter(String name, String description, String listenerId) {
+        return Counter.builder(name)
+                .description(description)
+                .tag("listener", listenerId)
+                .register(meterRegistry);
+    }
+
+    private static boolean isRetryable(Exception failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ListenerExecutionFailedException) {
+                continue;
+            }
+            if (cause instanceof DeserializationException || cause instanceof ConversionException
+                    || cause instanceof MessageConversionException
+                    || cause instanceof MethodArgumentResolutionException || cause instanceof ClassCastException) {
+                return false;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    private static ThreadFactory workerThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "kafka-parallel-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stopped just before the listener containers, which stop in the default container phase.
+     */
+    @Override
+    public int getPhase() {
+        return AbstractMessageListenerContainer.DEFAULT_PHASE + 1;
+    }
+
+    /**
+     * Pauses the parallel containers and waits for the records in flight, within the drain timeout, so their
+     * acknowledgments are queued before the containers stop and commit.
+     */
+    @Override
+    public void stop() {
+        synchronized (this) {
+            running = false;
+            if (containers.isEmpty()) {
+                return;
+            }
+            containers.forEach(MessageListenerContainer::pause);
+        }
+        long deadline = System.nanoTime() + drainTimeout.toNanos();
+        try {
+            while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(DRAIN_POLL_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int left = inFlight.get();
+        if (left > 0) {
+            logger.warn("Stopping the parallel listeners with {} records in flight, they will be redelivered", left);
+        } else {
+            logger.info("Drained the parallel listeners");
+        }
+    }
+
+    /**
+     * Stops the workers, letting the records in flight finish within the drain timeout.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        workers.shutdown();
+        if (!workers.awaitTermination(drainTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            logger.warn("{} records still in flight on shutdown, they will be redelivered", inFlight.get());
+            workers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.personal_projects.common.Parallel;
+
+import com.personal_projects.common.Retry.RetryTopics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Key-ordered parallel consumption shared by the services, imported by each service application.
+ * <p>
+ * When {@code kafka.parallel.enabled} is set, the listener container factories hand the containers of the
+ * listeners in {@code kafka.parallel.listeners} to the {@link KeyOrderedDispatcher}. Their retry topic containers
+ * keep processing one record at a time, as in parallel mode failures are retried in place.
+ * </p>
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "kafka.parallel.enabled", havingValue = "true")
+public class ParallelConsumerConfiguration {
+
+    @Bean
+    public KeyOrderedDispatcher keyOrderedDispatcher(
+            @Value("${kafka.parallel.listeners:}") Set<String> listenerIds,
+            @Value("${kafka.parallel.threads:32}") int threads,
+            @Value("${kafka.parallel.max-in-flight:256}") int maxInFlight,
+            @Value("${kafka.retry.attempts:4}") int attempts,
+            @Value("${kafka.retry.initial-delay-ms:1000}") long initialDelayMs,
+            @Value("${kafka.retry.multiplier:4}") double multiplier,
+            @Value("${kafka.retry.max-delay-ms:60000}") long maxDelayMs,
+            @Value("${kafka.parallel.drain-timeout-ms:10000}") long drainTimeoutMs,
+            @Value("${kafka.parallel.dead-letter-suffix}") String deadLetterSuffix,
+            @Qualifier(RetryTopics.TEMPLATE) KafkaTemplate<String, Object> retryKafkaTemplate,
+            ObservationRegistry observationRegistry,
+            MeterRegistry meterRegistry) {
+        return new KeyOrderedDispatcher(listenerIds, threads, maxInFlight, attempts, initialDelayMs, multiplier,
+                maxDelayMs, Duration.ofMillis(drainTimeoutMs), deadLetterSuffix, retryKafkaTemplate,
+                observationRegistry, meterRegistry);
+    }
+}
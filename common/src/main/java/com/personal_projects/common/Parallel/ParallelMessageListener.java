@@ -0,0 +1,252 @@
+package com.personal_projects.common.Parallel;
+
+import io.micrometer.observation.Observation;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.listener.AcknowledgingConsumerAwareMessageListener;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.GenericMessageListener;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.listener.RecordInterceptor;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Message listener of a container processing in parallel, installed by the {@link KeyOrderedDispatcher} in place
+ * of the {@code @KafkaListener} method it delegates to.
+ * <p>
+ * On the consumer thread, a record is only tracked in its {@link PartitionOffsets} and chained after the last
+ * record dispatched with the same key. On a worker, the container's interceptors run around the listener method as
+ * the container would run them, so a record counts as processed, e.g. for the dedupe window, only once it is.
+ * Each attempt runs in a {@code kafka.parallel.process} observation, a child of the container's observation of
+ * the record: that one ends as soon as the record is dispatched, so the spans of the worker belong to their own.
+ * </p>
+ *
+ * @param <K> the record key type
+ * @param <V> the record value type
+ */
+class ParallelMessageListener<K, V> implements AcknowledgingConsumerAwareMessageListener<K, V> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelMessageListener.class);
+    private static final String OBSERVATION_NAME = "kafka.parallel.process";
+
+    private static final CompletableFuture<Void> PROCESSED = CompletableFuture.completedFuture(null);
+    private static final Acknowledgment NO_ACKNOWLEDGMENT = () -> {
+    };
+
+    private final KeyOrderedDispatcher dispatcher;
+    private final String listenerId;
+    private final GenericMessageListener<ConsumerRecord<K, V>> delegate;
+    private final RecordInterceptor<K, V> interceptors;
+    private final ConsumerRebalanceListener rebalanceDelegate;
+    private final Map<TopicPartition, PartitionOffsets> partitions = new ConcurrentHashMap<>();
+    private final Map<K, CompletableFuture<Void>> lastByKey = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    ParallelMessageListener(KeyOrderedDispatcher dispatcher, String listenerId, Object delegate,
+                            RecordInterceptor<K, V> interceptors, ConsumerRebalanceListener rebalanceDelegate) {
+        this.dispatcher = dispatcher;
+        this.listenerId = listenerId;
+        this.delegate = (GenericMessageListener<ConsumerRecord<K, V>>) delegate;
+        this.interceptors = interceptors;
+        this.rebalanceDelegate = rebalanceDelegate;
+    }
+
+    @Override
+    public void onMessage(ConsumerRecord<K, V> record, Acknowledgment acknowledgment, Consumer<?, ?> consumer) {
+        dispatcher.dispatched();
+        PartitionOffsets offsets = partitions.computeIfAbsent(
+                new TopicPartition(record.topic(), record.partition()), partition -> new PartitionOffsets());
+        PartitionOffsets.Pending pending = offsets.dispatched(record.offset(), acknowledgment);
+        Observation parent = dispatcher.observationRegistry().getCurrentObservation();
+        @SuppressWarnings("unchecked")
+        Consumer<K, V> typedConsumer = (Consumer<K, V>) consumer;
+
+        K key = record.key();
+        CompletableFuture<Void> processed;
+        if (key == null) {
+            processed = process(record, typedConsumer, parent, 1, dispatcher.workers());
+        } else {
+            processed = lastByKey.compute(key, (k, last) -> (last == null ? PROCESSED : last.handle((v, e) -> null))
+                    .thenCompose(ignored -> process(record, typedConsumer, parent, 1, dispatcher.workers())));
+        }
+        processed.whenComplete((ignored, failure) -> {
+            if (key != null) {
+                lastByKey.remove(key, processed);
+            }
+            if (failure == null) {
+                offsets.completed(pending);
+            } else {
+                // Only on shutdown: the offset stays uncommitted and the record is redelivered
+                logger.warn("Left {}-{}@{} of listener {} unprocessed", record.topic(), record.partition(),
+                        pending.offset(), listenerId, failure);
+            }
+            // After the acknowledgment, which the dispatcher waits for when stopping
+            dispatcher.release();
+        });
+    }
+
+    /**
+     * Processes a record on the workers, retrying it after a backoff while it fails, then dead-lettering it.
+     *
+     * @return a future completed once the record is processed or dead-lettered
+     */
+    private CompletableFuture<Void> process(ConsumerRecord<K, V> record, Consumer<K, V> consumer,
+                                            Observation parent, int attempt, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> attempt(record, consumer, parent), executor)
+                .thenCompose(failure -> {
+                    if (failure == null) {
+                        return PROCESSED;
+                    }
+                    long delayMs = dispatcher.retryDelayMs(attempt, failure);
+                    if (delayMs < 0) {
+                        dispatcher.deadLetter(listenerId, record, failure);
+                        return PROCESSED;
+                    }
+                    dispatcher.retried(listenerId);
+                    return process(record, consumer, parent, attempt + 1,
+                            CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS, dispatcher.workers()));
+                });
+    }
+
+    /**
+     * Runs the interceptors and the listener method once, in an observation of the attempt.
+     *
+     * @return the failure, or {@code null} if the record was processed or dropped by an interceptor
+     */
+    private Exception attempt(ConsumerRecord<K, V> record, Consumer<K, V> consumer, Observation parent) {
+        Observation observation = Observation.createNotStarted(OBSERVATION_NAME, dispatcher.observationRegistry())
+                .parentObservation(parent)
+                .contextualName(record.topic() + " process")
+                .lowCardinalityKeyValue("listener", listenerId)
+                .start();
+        Exception failure;
+        try (Observation.Scope ignored = observation.openScope()) {
+            failure = run(record, consumer);
+        }
+        if (failure != null) {
+            observation.error(failure);
+        }
+        observation.stop();
+        return failure;
+    }
+
+    private Exception run(ConsumerRecord<K, V> record, Consumer<K, V> consumer) {
+        try {
+            ConsumerRecord<K, V> intercepted = interceptors.intercept(record, consumer);
+            if (intercepted == null) {
+                return null;
+            }
+            try {
+                invoke(intercepted, consumer);
+                interceptors.success(intercepted, consumer);
+                return null;
+            } catch (Exception e) {
+                interceptors.failure(intercepted, e, consumer);
+                return e;
+            } finally {
+                interceptors.afterRecord(intercepted, consumer);
+            }
+        } catch (Exception e) {
+            return e;
+        }
+    }
+
+    private void invoke(ConsumerRecord<K, V> record, Consumer<K, V> consumer) {
+        if (delegate instanceof MessageListener<?, ?>) {
+            delegate.onMessage(record);
+        } else {
+            delegate.onMessage(record, NO_ACKNOWLEDGMENT, consumer);
+        }
+    }
+
+    int activeKeys() {
+        return lastByKey.size();
+    }
+
+    int uncommitted() {
+        int uncommitted = 0;
+        for (PartitionOffsets offsets : partitions.values()) {
+            uncommitted += offsets.size();
+        }
+        return uncommitted;
+    }
+
+    /**
+     * @return the rebalance listener draining revoked partitions, then calling the container's own listener
+     */
+    ConsumerAwareRebalanceListener rebalanceListener() {
+        return new ConsumerAwareRebalanceListener() {
+
+            @Override
+            public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> revoked) {
+                drain(revoked);
+                if (rebalanceDelegate instanceof ConsumerAwareRebalanceListener aware) {
+                    aware.onPartitionsRevokedBeforeCommit(consumer, revoked);
+                } else if (rebalanceDelegate != null) {
+                    rebalanceDelegate.onPartitionsRevoked(revoked);
+                }
+            }
+
+            @Override
+            public void onPartitionsRevokedAfterCommit(Consumer<?, ?> consumer, Collection<TopicPartition> revoked) {
+                if (rebalanceDelegate instanceof ConsumerAwareRebalanceListener aware) {
+                    aware.onPartitionsRevokedAfterCommit(consumer, revoked);
+                }
+            }
+
+            @Override
+            public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> lost) {
+                drain(lost);
+                if (rebalanceDelegate instanceof ConsumerAwareRebalanceListener aware) {
+                    aware.onPartitionsLost(consumer, lost);
+                } else if (rebalanceDelegate != null) {
+                    rebalanceDelegate.onPartitionsLost(lost);
+                }
+            }
+
+            @Override
+            public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> assigned) {
+                if (rebalanceDelegate instanceof ConsumerAwareRebalanceListener aware) {
+                    aware.onPartitionsAssigned(consumer, assigned);
+                } else if (rebalanceDelegate != null) {
+                    rebalanceDelegate.onPartitionsAssigned(assigned);
+                }
+            }
+        };
+    }
+
+    /**
+     * Waits for the records in flight of partitions leaving this consumer, so their offsets can still be
+     * committed, then forgets the partitions.
+     */
+    private void drain(Collection<TopicPartition> leaving) {
+        long deadline = System.nanoTime() + dispatcher.drainTimeout().toNanos();
+        for (TopicPartition partition : leaving) {
+            PartitionOffsets offsets = partitions.remove(partition);
+            if (offsets == null) {
+                continue;
+            }
+            try {
+                int left = offsets.revoke(Math.max(0, deadline - System.nanoTime()));
+                if (left > 0) {
+                    logger.warn("Revoked partition {} of listener {} with {} records in flight, they will be "
+                            + "redelivered to its new owner", partition, listenerId, left);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
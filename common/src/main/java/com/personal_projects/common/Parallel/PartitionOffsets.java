@@ -0,0 +1,99 @@
+package com.personal_projects.common.Parallel;
+
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.ArrayDeque;
+
+/**
+ * Offsets of one partition dispatched to the workers and not yet committable.
+ * <p>
+ * Only the records in flight are tracked, in the order they were fetched, with whether they completed. The head
+ * of the queue is the oldest record still running; once it completes, it and every completed record after it are
+ * dropped, and the last of them is acknowledged, committing the highest contiguous offset. Records completed out
+ * of order past an incomplete one wait in the queue: the memory held is that of the records in flight, not of
+ * the partition's offset range, and gaps in the offsets, e.g. transaction markers, need no special case.
+ * </p>
+ */
+final class PartitionOffsets {
+
+    private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+    private boolean revoked;
+
+    /**
+     * Tracks a record being dispatched. Called from the consumer thread, in offset order.
+     *
+     * @param offset         the offset of the record
+     * @param acknowledgment the acknowledgment committing the record's offset
+     * @return the handle to complete once the record is processed
+     */
+    synchronized Pending dispatched(long offset, Acknowledgment acknowledgment) {
+        Pending record = new Pending(offset, acknowledgment);
+        pending.addLast(record);
+        return record;
+    }
+
+    /**
+     * Marks a record processed, and acknowledges the highest offset below which all records are processed.
+     *
+     * @param record the handle returned on dispatch
+     * @return the number of offsets made committable, {@code 0} while an earlier record is still running
+     */
+    synchronized int completed(Pending record) {
+        record.done = true;
+        Pending committable = null;
+        int released = 0;
+        while (!pending.isEmpty() && pending.peekFirst().done) {
+            committable = pending.pollFirst();
+            released++;
+        }
+        if (committable != null && !revoked) {
+            committable.acknowledgment.acknowledge();
+        }
+        notifyAll();
+        return released;
+    }
+
+    /**
+     * Waits for the records in flight to complete, when the partition is revoked, then stops acknowledging its
+     * records: a new owner resumes from the last committed offset.
+     *
+     * @param timeoutNanos the longest wait
+     * @return the number of records still in flight when giving up
+     */
+    synchronized int revoke(long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        long remaining = timeoutNanos;
+        while (!pending.isEmpty() && remaining > 0) {
+            wait(Math.max(1, remaining / 1_000_000));
+            remaining = deadline - System.nanoTime();
+        }
+        revoked = true;
+        return pending.size();
+    }
+
+    /**
+     * @return number of records dispatched and not yet committable
+     */
+    synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * A dispatched record.
+     */
+    static final class Pending {
+
+        private final long offset;
+        private final Acknowledgment acknowledgment;
+        private boolean done;
+
+        private Pending(long offset, Acknowledgment acknowledgment) {
+            this.offset = offset;
+            this.acknowledgment = acknowledgment;
+        }
+
+        long offset() {
+            return offset;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.personal_projects.common.Queries;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which slow queries get an explain plan captured, and runs the captures off the hot path.
+ * <p>
+ * A slow query is explained with probability {@code sampleRate}, and a query shape at most once per
+ * {@code minInterval}, so a burst of the same slow query costs one explain. Explains run on a single
+ * background thread with a small queue; when the queue is full the explain is dropped rather than delaying
+ * the caller.
+ * </p>
+ */
+public class ExplainSampler implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExplainSampler.class);
+    private static final int MAX_TRACKED_SHAPES = 1024;
+    private static final int QUEUE_CAPACITY = 16;
+
+    private final double sampleRate;
+    private final long minIntervalNanos;
+    private final Map<String, Long> lastExplained = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Creates a sampler.
+     *
+     * @param name        name of the background thread
+     * @param sampleRate  probability of explaining a slow query, in {@code [0, 1]}
+     * @param minInterval minimum time between two explains of the same query shape
+     */
+    public ExplainSampler(String name, double sampleRate, Duration minInterval) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Explain sample rate must be in [0, 1], was " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+        this.minIntervalNanos = minInterval.toNanos();
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, name);
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * Runs {@code explain} in the background if this slow query is sampled.
+     *
+     * @param shape   the redacted query, identifying the query shape
+     * @param explain the explain capture
+     */
+    public void maybeExplain(String shape, Runnable explain) {
+        if (sampleRate == 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        long now = System.nanoTime();
+        Long previous = lastExplained.get(shape);
+        if (previous != null && now - previous < minIntervalNanos) {
+            return;
+        }
+        if (lastExplained.size() >= MAX_TRACKED_SHAPES) {
+            lastExplained.clear();
+        }
+        lastExplained.put(shape, now);
+        executor.execute(() -> {
+            try {
+                explain.run();
+            } catch (RuntimeException e) {
+                logger.warn("Could not explain slow query {}", shape, e);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
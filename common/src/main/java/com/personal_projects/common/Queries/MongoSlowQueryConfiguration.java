@@ -0,0 +1,44 @@
+package com.personal_projects.common.Queries;
+
+import com.mongodb.client.MongoClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Slow query logging for the Mongo backed services, imported by their service applications.
+ * <p>
+ * Registers a {@link MongoSlowQueryListener} on the auto-configured Mongo client. Commands slower than
+ * {@code slow-query.threshold-ms} are logged with their values redacted, and {@code slow-query.explain-sample-rate}
+ * of them are explained, each query shape at most once per {@code slow-query.explain-interval-ms}.
+ * </p>
+ */
+@Configuration(proxyBeanMethods = false)
+public class MongoSlowQueryConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public ExplainSampler mongoExplainSampler(
+            @Value("${slow-query.explain-sample-rate:0.1}") double sampleRate,
+            @Value("${slow-query.explain-interval-ms:60000}") long intervalMs) {
+        return new ExplainSampler("mongo-explain", sampleRate, Duration.ofMillis(intervalMs));
+    }
+
+    @Bean
+    public MongoSlowQueryListener mongoSlowQueryListener(@Value("${slow-query.threshold-ms:100}") long thresholdMs,
+                                                         ExplainSampler mongoExplainSampler,
+                                                         ObjectProvider<MongoClient> mongoClient,
+                                                         MeterRegistry meterRegistry) {
+        return new MongoSlowQueryListener(Duration.ofMillis(thresholdMs), mongoExplainSampler,
+                mongoClient::getObject, meterRegistry);
+    }
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoSlowQueryCustomizer(MongoSlowQueryListener mongoSlowQueryListener) {
+        return settings -> settings.addCommandListener(mongoSlowQueryListener);
+    }
+}
@@ -0,0 +1,238 @@
+package com.personal_projects.common.Queries;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Mongo {@link CommandListener} logging slow query commands and capturing a sample of their query plans.
+ * <p>
+ * A query command ({@code find}, {@code aggregate}, {@code count}, {@code distinct}, {@code update},
+ * {@code delete}, {@code findAndModify}) that takes at least {@code threshold} is logged with its shape: the
+ * filter, sort, projection or pipeline with every value replaced by {@code "?"}, so customer data never
+ * reaches the log. It is also counted in {@code mongodb.slow.commands}. A sample of the slow commands is
+ * explained in the background through the {@link ExplainSampler}, and the winning plan is logged. A plan
+ * containing a {@code COLLSCAN} is logged as a warning, as it points to a missing index.
+ * </p>
+ * <p>
+ * The command document is only readable while the command starts, and copying every one of them would cost more
+ * than the commands this listener looks for. So only the commands of a kind already seen slow, the same command
+ * on the same collection, are copied: the first slow one is logged and counted without its shape, and the next
+ * ones with it.
+ * </p>
+ * <p>
+ * Per-command latency timers are already published by Spring Boot as {@code mongodb.driver.commands}.
+ * </p>
+ */
+public class MongoSlowQueryListener implements CommandListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(MongoSlowQueryListener.class);
+
+    private static final Set<String> QUERY_COMMANDS = Set.of(
+            "find", "aggregate", "count", "distinct", "update", "delete", "findAndModify");
+    private static final Set<String> SHAPE_FIELDS = Set.of(
+            "filter", "query", "sort", "projection", "fields", "pipeline", "key", "updates", "deletes", "q", "u", "hint");
+    private static final Set<String> SESSION_FIELDS = Set.of(
+            "$db", "lsid", "$clusterTime", "$readPreference", "txnNumber", "autocommit", "startTransaction",
+            "signature", "apiVersion", "apiStrict", "apiDeprecationErrors", "readConcern", "writeConcern");
+    private static final int MAX_PENDING = 10_000;
+    private static final int MAX_SLOW_KINDS = 1024;
+    private static final BsonString REDACTED = new BsonString("?");
+
+    private final long thresholdNanos;
+    private final ExplainSampler explainSampler;
+    private final Supplier<MongoClient> mongoClient;
+    private final Counter slowCommands;
+    private final Map<Integer, PendingCommand> pending = new ConcurrentHashMap<>();
+    private final Set<String> slowKinds = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates the listener.
+     *
+     * @param threshold      duration from which a command is considered slow
+     * @param explainSampler sampler running the explain captures
+     * @param mongoClient    client used to run the explains, resolved lazily as it is created after the listener
+     * @param meterRegistry  registry for the slow command counter
+     */
+    public MongoSlowQueryListener(Duration threshold,
+                                  ExplainSampler explainSampler,
+                                  Supplier<MongoClient> mongoClient,
+                                  MeterRegistry meterRegistry) {
+        this.thresholdNanos = threshold.toNanos();
+        this.explainSampler = explainSampler;
+        this.mongoClient = mongoClient;
+        this.slowCommands = Counter.builder("mongodb.slow.commands")
+                .description("Mongo query commands slower than the slow query threshold")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        if (!QUERY_COMMANDS.contains(event.getCommandName())) {
+            return;
+        }
+        if (pending.size() >= MAX_PENDING) {
+            pending.clear();
+        }
+        BsonDocument command = event.getCommand();
+        String collection = command.get(event.getCommandName()) instanceof BsonString name ? name.getValue() : "?";
+        String kind = event.getCommandName() + " " + event.getDatabaseName() + "." + collection;
+        // The command document is only valid during the callback, so the ones that may be logged are copied.
+        pending.put(event.getRequestId(), new PendingCommand(event.getDatabaseName(), kind,
+                slowKinds.contains(kind) ? command.clone() : null));
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        PendingCommand command = pending.remove(event.getRequestId());
+        if (command != null) {
+            checkSlow(command, event.getElapsedTime(TimeUnit.NANOSECONDS));
+        }
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        PendingCommand command = pending.remove(event.getRequestId());
+        if (command != null) {
+            checkSlow(command, event.getElapsedTime(TimeUnit.NANOSECONDS));
+        }
+    }
+
+    private void checkSlow(PendingCommand command, long elapsedNanos) {
+        if (elapsedNanos < thresholdNanos) {
+            return;
+        }
+        slowCommands.increment();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        if (command.document() == null) {
+            if (slowKinds.size() >= MAX_SLOW_KINDS) {
+                slowKinds.clear();
+            }
+            slowKinds.add(command.kind());
+            logger.warn("Slow Mongo command ({} ms): {}, its shape is logged from the next slow one", elapsedMillis,
+                    command.kind());
+            return;
+        }
+        String shape = command.kind() + " " + shape(command.document()).toJson();
+        logger.warn("Slow Mongo command ({} ms): {}", elapsedMillis, shape);
+        explainSampler.maybeExplain(shape, () -> explain(command, shape));
+    }
+
+    private void explain(PendingCommand command, String shape) {
+        BsonDocument explained = new BsonDocument();
+        command.document().forEach((key, value) -> {
+            if (!SESSION_FIELDS.contains(key)) {
+                explained.put(key, value);
+            }
+        });
+        BsonDocument result = mongoClient.get().getDatabase(command.database()).runCommand(
+                new BsonDocument("explain", explained).append("verbosity", new BsonString("queryPlanner")),
+                BsonDocument.class);
+
+        BsonDocument queryPlanner = findDocument(result, "queryPlanner");
+        BsonDocument winningPlan = queryPlanner == null ? null : findDocument(queryPlanner, "winningPlan");
+        String plan = winningPlan == null ? result.toJson() : summarize(winningPlan);
+        if (plan.contains("COLLSCAN")) {
+            logger.warn("Plan of slow Mongo command {} scans the collection, an index may be missing: {}", shape, plan);
+        } else {
+            logger.info("Plan of slow Mongo command {}: {}", shape, plan);
+        }
+    }
+
+    /**
+     * Keeps the fields describing the query shape and replaces every value in them by {@code "?"}.
+     */
+    private static BsonDocument shape(BsonDocument command) {
+        BsonDocument shape = new BsonDocument();
+        command.forEach((key, value) -> {
+            if (SHAPE_FIELDS.contains(key)) {
+                shape.put(key, redact(value));
+            }
+        });
+        return shape;
+    }
+
+    private static BsonValue redact(BsonValue value) {
+        if (value.isDocument()) {
+            BsonDocument redacted = new BsonDocument();
+            value.asDocument().forEach((key, nested) -> redacted.put(key, redact(nested)));
+            return redacted;
+        }
+        if (value.isArray()) {
+            BsonArray redacted = new BsonArray();
+            value.asArray().forEach(nested -> redacted.add(redact(nested)));
+            return redacted;
+        }
+        return REDACTED;
+    }
+
+    /**
+     * Describes a plan as its chain of stages, e.g. {@code FETCH <- IXSCAN(orderId)}.
+     */
+    private static String summarize(BsonDocument plan) {
+        StringBuilder summary = new StringBuilder();
+        BsonDocument stage = plan.containsKey("queryPlan") ? plan.getDocument("queryPlan") : plan;
+        while (stage != null) {
+            if (!summary.isEmpty()) {
+                summary.append(" <- ");
+            }
+            summary.append(stage.getString("stage", new BsonString("?")).getValue());
+            if (stage.containsKey("indexName")) {
+                summary.append('(').append(stage.getString("indexName").getValue()).append(')');
+            }
+            if (stage.containsKey("inputStage")) {
+                stage = stage.getDocument("inputStage");
+            } else if (stage.containsKey("inputStages") && !stage.getArray("inputStages").isEmpty()) {
+                stage = stage.getArray("inputStages").get(0).asDocument();
+            } else {
+                stage = null;
+            }
+        }
+        return summary.toString();
+    }
+
+    private static BsonDocument findDocument(BsonDocument document, String key) {
+        if (document.get(key) instanceof BsonDocument found) {
+            return found;
+        }
+        for (BsonValue value : document.values()) {
+            BsonDocument found = null;
+            if (value.isDocument()) {
+                found = findDocument(value.asDocument(), key);
+            } else if (value.isArray()) {
+                for (BsonValue element : value.asArray()) {
+                    if (element.isDocument() && (found = findDocument(element.asDocument(), key)) != null) {
+                        break;
+                    }
+                }
+            }
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A command in flight, with a copy of its document if commands of its kind were slow before.
+     */
+    private record PendingCommand(String database, String kind, BsonDocument document) {
+    }
+}
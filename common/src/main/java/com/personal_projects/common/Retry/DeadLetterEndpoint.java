@@ -0,0 +1,51 @@
+package com.personal_projects.common.Retry;
+
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Actuator endpoint listing the dead-letter topics of the service at {@code GET /actuator/deadletters}, and
+ * replaying one to its listener at {@code POST /actuator/deadletters/{topic}}, through the
+ * {@link DeadLetterReplayer}.
+ */
+@Endpoint(id = "deadletters")
+public class DeadLetterEndpoint {
+
+    private final DeadLetterReplayer replayer;
+
+    public DeadLetterEndpoint(DeadLetterReplayer replayer) {
+        this.replayer = replayer;
+    }
+
+    /**
+     * Lists the dead-letter topics with their record counts.
+     *
+     * @return the dead-letter topics
+     */
+    @ReadOperation
+    public List<DeadLetterTopic> topics() {
+        return replayer.topics();
+    }
+
+    /**
+     * Replays the records of a dead-letter topic not replayed yet.
+     *
+     * @param topic the dead-letter topic
+     * @return the number of records replayed
+     * @throws Exception if a record could not be sent to the retry topic
+     */
+    @WriteOperation
+    public Map<String, Object> replay(@Selector String topic) throws Exception {
+        try {
+            return Map.of("topic", topic, "replayed", replayer.replay(topic));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.personal_projects.common.Retry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.KafkaHeaders;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Lists the dead-letter topics of the service and replays their records.
+ * <p>
+ * A replay sends the records of a dead-letter topic, raw, to the first retry topic of the same listener, so only
+ * that listener consumes them again and they get the full retry policy. The retry and dead-letter headers are
+ * dropped and an {@value #REPLAY_HEADER} header carries the dead-letter offset. Progress is committed by a
+ * {@code <group>-replay} consumer group after every record the retry topic acknowledged, so every record is
+ * replayed once, however often the replay is run, and a replay failing halfway resumes after its last acknowledged
+ * record: replay after the fix for the failure is deployed.
+ * </p>
+ * <p>
+ * On the in-process bus of the single-JVM deployment, dead-lettered records are released once the dead-letter
+ * handler has logged them, so there is nothing to replay.
+ * </p>
+ */
+public class DeadLetterReplayer {
+
+    public static final String REPLAY_HEADER = "x-dead-letter-replay";
+
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+    private static final long REPLAY_TIMEOUT_MILLIS = 30_000;
+    private static final long SEND_TIMEOUT_SECONDS = 10;
+    private static final String RETRY_HEADER_PREFIX = "retry_topic-";
+
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final ConsumerFactory<String, byte[]> consumerFactory;
+    private final KafkaTemplate<String, Object> template;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Creates the replayer.
+     *
+     * @param listenerRegistry registry of the service's listener containers, including the retry and dead-letter ones
+     * @param consumerFactory  factory of the consumers reading the dead-letter topics as raw bytes
+     * @param template         the retry template
+     * @param meterRegistry    registry for the replayed record counter
+     */
+    public DeadLetterReplayer(KafkaListenerEndpointRegistry listenerRegistry,
+                              ConsumerFactory<String, byte[]> consumerFactory,
+                              KafkaTemplate<String, Object> template,
+                              MeterRegistry meterRegistry) {
+        this.listenerRegistry = listenerRegistry;
+        this.consumerFactory = consumerFactory;
+        this.template = template;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Lists the dead-letter topics of the service's listeners with their record counts.
+     *
+     * @return the dead-letter topics
+     */
+    public List<DeadLetterTopic> topics() {
+        List<DeadLetterTopic> topics = new ArrayList<>();
+        for (Target target : targets()) {
+            try (Consumer<String, byte[]> consumer = consumerFactory.createConsumer(target.replayGroup(), null, null)) {
+                List<TopicPartition> partitions = partitions(consumer, target.topic());
+                Map<TopicPartition, Long> beginnings = consumer.beginningOffsets(partitions);
+                Map<TopicPartition, Long> ends = consumer.endOffsets(partitions);
+                Map<TopicPartition, OffsetAndMetadata> replayed = consumer.committed(new HashSet<>(partitions));
+                long records = 0;
+                long pending = 0;
+                for (TopicPartition partition : partitions) {
+                    long beginning = beginnings.getOrDefault(partition, 0L);
+                    long end = ends.getOrDefault(partition, beginning);
+                    OffsetAndMetadata commit = replayed.get(partition);
+                    records += end - beginning;
+                    pending += end - Math.max(beginning, commit == null ? beginning : commit.offset());
+                }
+                topics.add(new DeadLetterTopic(target.topic(), target.listenerId(), target.replayTopic(),
+                        records, pending));
+            }
+        }
+        return topics;
+    }
+
+    /**
+     * Replays the records of a dead-letter topic not replayed yet, up to its end when the replay starts.
+     *
+     * @param deadLetterTopic the dead-letter topic
+     * @return the number of records replayed
+     * @throws IllegalArgumentException if the topic is not a dead-letter topic of the service
+     */
+    public synchronized int replay(String deadLetterTopic) throws ExecutionException, InterruptedException, TimeoutException {
+        Target target = targets().stream()
+                .filter(candidate -> candidate.topic().equals(deadLetterTopic))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(deadLetterTopic + " is not a dead-letter topic of this service"));
+        Counter replayed = Counter.builder("kafka.dlt.replayed")
+                .description("Dead-lettered records replayed to their retry topic")
+                .tag("topic", deadLetterTopic)
+                .register(meterRegistry);
+
+        int count = 0;
+        try (Consumer<String, byte[]> consumer = consumerFactory.createConsumer(target.replayGroup(), null, null)) {
+            List<TopicPartition> partitions = partitions(consumer, deadLetterTopic);
+            consumer.assign(partitions);
+            Map<TopicPartition, Long> ends = consumer.endOffsets(partitions);
+            Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(new HashSet<>(partitions));
+            for (TopicPartition partition : partitions) {
+                OffsetAndMetadata commit = committed.get(partition);
+                if (commit == null) {
+                    consumer.seekToBeginning(List.of(partition));
+                } else {
+                    consumer.seek(partition, commit.offset());
+                }
+            }
+
+            long deadline = System.currentTimeMillis() + REPLAY_TIMEOUT_MILLIS;
+            while (!caughtUp(consumer, partitions, ends) && System.currentTimeMillis() < deadline) {
+                for (ConsumerRecord<String, byte[]> record : consumer.poll(POLL_TIMEOUT)) {
+                    TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+                    if (record.offset() >= ends.get(partition)) {
+                        continue; // Dead-lettered after the replay started, left for the next one
+                    }
+                    template.send(replayRecord(record, target.replayTopic())).get(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    // Committed right away, so a send failing later does not replay this record again
+                    consumer.commitSync(Map.of(partition, new OffsetAndMetadata(record.offset() + 1)));
+                    replayed.increment();
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static ProducerRecord<String, Object> replayRecord(ConsumerRecord<String, byte[]> record, String topic) {
+        RecordHeaders headers = new RecordHeaders();
+        for (Header header : record.headers()) {
+            String key = header.key();
+            if (!key.startsWith(KafkaHeaders.PREFIX) && !key.startsWith(RETRY_HEADER_PREFIX)
+                    && !key.equals(REPLAY_HEADER)) {
+                headers.add(header);
+            }
+        }
+        headers.add(REPLAY_HEADER, Long.toString(record.offset()).getBytes(StandardCharsets.UTF_8));
+        return new ProducerRecord<>(topic, null, record.key(), record.value(), headers);
+    }
+
+    private static boolean caughtUp(Consumer<?, ?> consumer, List<TopicPartition> partitions,
+                                    Map<TopicPartition, Long> ends) {
+        for (TopicPartition partition : partitions) {
+            if (consumer.position(partition) < ends.get(partition)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<TopicPartition> partitions(Consumer<?, ?> consumer, String topic) {
+        List<PartitionInfo> infos = consumer.partitionsFor(topic);
+        if (infos == null) {
+            return List.of();
+        }
+        return infos.stream().map(info -> new TopicPartition(topic, info.partition())).toList();
+    }
+
+    /**
+     * Finds the dead-letter topics among the topics of the listener containers, with the first retry topic of
+     * the same listener.
+     */
+    private List<Target> targets() {
+        List<String> topics = new ArrayList<>();
+        List<MessageListenerContainer> deadLetterContainers = new ArrayList<>();
+        for (MessageListenerContainer container : listenerRegistry.getListenerContainers()) {
+            String[] containerTopics = container.getContainerProperties().getTopics();
+            if (containerTopics == null) {
+                continue;
+            }
+            for (String topic : containerTopics) {
+                topics.add(topic);
+                if (RetryTopics.isDeadLetterTopic(topic)) {
+                    deadLetterContainers.add(container);
+                }
+            }
+        }
+
+        List<Target> targets = new ArrayList<>();
+        for (MessageListenerContainer container : deadLetterContainers) {
+            for (String topic : container.getContainerProperties().getTopics()) {
+                if (!RetryTopics.isDeadLetterTopic(topic)) {
+                    continue;
+                }
+                String retryPrefix = RetryTopics.retryPrefix(topic);
+                // The first retry topic is suffixed -retry-0, or -retry when there is a single one.
+                topics.stream()
+                        .filter(candidate -> candidate.startsWith(retryPrefix))
+                        .min(Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder()))
+                        .ifPresent(retryTopic -> targets.add(new Target(topic, container.getListenerId(),
+                                container.getGroupId() + "-replay", retryTopic)));
+            }
+        }
+        targets.sort(Comparator.comparing(Target::topic));
+        return targets;
+    }
+
+    private record Target(String topic, String listenerId, String replayGroup, String replayTopic) {
+    }
+}
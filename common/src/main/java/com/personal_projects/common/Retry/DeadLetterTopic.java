@@ -0,0 +1,17 @@
+package com.personal_projects.common.Retry;
+
+/**
+ * A dead-letter topic of the service, as listed by the {@link DeadLetterEndpoint}.
+ *
+ * @param topic         the dead-letter topic
+ * @param listenerId    the listener handling the topic
+ * @param replayTopic   the retry topic its records are replayed to
+ * @param records       records retained in the topic
+ * @param pendingReplay records not replayed yet
+ */
+public record DeadLetterTopic(String topic,
+                              String listenerId,
+                              String replayTopic,
+                              long records,
+                              long pendingReplay) {
+}
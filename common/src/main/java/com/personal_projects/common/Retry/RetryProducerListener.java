@@ -0,0 +1,53 @@
+package com.personal_projects.common.Retry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.header.Header;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.support.LoggingProducerListener;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Producer listener of the retry template, counting the failed records it moved to a retry topic in
+ * {@code kafka.retry.records} and those it dead-lettered in {@code kafka.dlt.records}, tagged by destination
+ * topic and exception. Records replayed from a dead-letter topic are counted by the {@link DeadLetterReplayer}
+ * instead. Failed sends are still logged, as by the template's default {@link LoggingProducerListener}.
+ */
+public class RetryProducerListener extends LoggingProducerListener<String, Object> {
+
+    private final MeterRegistry meterRegistry;
+
+    public RetryProducerListener(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void onSuccess(ProducerRecord<String, Object> record, RecordMetadata metadata) {
+        if (record.headers().lastHeader(DeadLetterReplayer.REPLAY_HEADER) != null) {
+            return;
+        }
+        boolean deadLetter = RetryTopics.isDeadLetterTopic(record.topic());
+        Counter.builder(deadLetter ? "kafka.dlt.records" : "kafka.retry.records")
+                .description(deadLetter
+                        ? "Records moved to a dead-letter topic after their last attempt or a non-retryable failure"
+                        : "Failed records moved to a retry topic")
+                .tags("topic", record.topic(), "exception", exception(record))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static String exception(ProducerRecord<String, Object> record) {
+        Header header = record.headers().lastHeader(KafkaHeaders.DLT_EXCEPTION_CAUSE_FQCN);
+        if (header == null) {
+            header = record.headers().lastHeader(KafkaHeaders.DLT_EXCEPTION_FQCN);
+        }
+        if (header == null) {
+            return "unknown";
+        }
+        String className = new String(header.value(), StandardCharsets.UTF_8);
+        return className.substring(className.lastIndexOf('.') + 1);
+    }
+}
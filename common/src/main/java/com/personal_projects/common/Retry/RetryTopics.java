@@ -0,0 +1,73 @@
+package com.personal_projects.common.Retry;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.kafka.support.KafkaHeaders;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Naming of the retry and dead-letter topics of the listeners.
+ * <p>
+ * Every {@code @RetryableTopic} listener suffixes its topics with its service name, e.g.
+ * {@code payment-topic-order-retry-0} and {@code payment-topic-order-dlt}, since the order and shipping services
+ * both consume the payment topic and each must only retry its own failures.
+ * </p>
+ */
+public final class RetryTopics {
+
+    /**
+     * Name of the Kafka template bean publishing to the retry and dead-letter topics.
+     */
+    public static final String TEMPLATE = "retryKafkaTemplate";
+    public static final String RETRY_SUFFIX = "-retry";
+    public static final String DLT_SUFFIX = "-dlt";
+
+    private RetryTopics() {
+    }
+
+    /**
+     * @return whether the topic is a dead-letter topic
+     */
+    public static boolean isDeadLetterTopic(String topic) {
+        return topic.endsWith(DLT_SUFFIX);
+    }
+
+    /**
+     * @return whether the topic is a retry topic, e.g. {@code payment-topic-order-retry-0}
+     */
+    public static boolean isRetryTopic(String topic) {
+        int suffix = topic.lastIndexOf(RETRY_SUFFIX);
+        if (suffix < 0) {
+            return false;
+        }
+        String index = topic.substring(suffix + RETRY_SUFFIX.length());
+        return index.isEmpty() || index.matches("-\\d+");
+    }
+
+    /**
+     * @return the prefix shared by the retry topics of a dead-letter topic, e.g. {@code payment-topic-order-retry}
+     */
+    public static String retryPrefix(String deadLetterTopic) {
+        return deadLetterTopic.substring(0, deadLetterTopic.length() - DLT_SUFFIX.length()) + RETRY_SUFFIX;
+    }
+
+    /**
+     * Describes a dead-lettered record for the log: where it came from and why it failed.
+     *
+     * @param record the record read from a dead-letter topic
+     * @return the description
+     */
+    public static String describe(ConsumerRecord<?, ?> record) {
+        return record.topic() + "-" + record.partition() + "@" + record.offset()
+                + " key " + record.key()
+                + " from " + header(record, KafkaHeaders.DLT_ORIGINAL_TOPIC)
+                + ": " + header(record, KafkaHeaders.DLT_EXCEPTION_FQCN)
+                + " " + header(record, KafkaHeaders.DLT_EXCEPTION_MESSAGE);
+    }
+
+    static String header(ConsumerRecord<?, ?> record, String name) {
+        Header header = record.headers().lastHeader(name);
+        return header == null || header.value() == null ? "?" : new String(header.value(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,96 @@
+package com.personal_projects.common.Retry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.serializer.DelegatingByTypeSerializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Retry and dead-letter topics shared by the services, imported by each service application.
+ * <p>
+ * Every listener is a {@code @RetryableTopic}: a record it fails on is moved to a retry topic and consumed again
+ * after an exponential backoff, then to a dead-letter topic after {@code kafka.retry.attempts}, so the partition
+ * it came from keeps flowing and only that record waits. The listener container factories wrap their value
+ * deserializer in an {@code ErrorHandlingDeserializer}, so a record that cannot be deserialized fails without
+ * stopping the container and, not being retryable, is quarantined in the dead-letter topic straight away.
+ * </p>
+ * <p>
+ * The {@value RetryTopics#TEMPLATE} bean publishes both, the deserialized value as JSON and the raw bytes of an
+ * undeserializable record as they were.
+ * </p>
+ * <p>
+ * The listeners get this policy through {@link RetryableListener}. The defaults of the {@code kafka.retry.*}
+ * properties are read from {@value #DEFAULTS}, below the properties of each service.
+ * </p>
+ */
+@Configuration(proxyBeanMethods = false)
+@PropertySource(RetryTopicsConfiguration.DEFAULTS)
+public class RetryTopicsConfiguration {
+
+    /** Classpath location of the retry topic defaults shared by the services. */
+    public static final String DEFAULTS = "classpath:defaults/retry.properties";
+
+    @Bean
+    public ProducerFactory<String, Object> retryProducerFactory(
+            @Value("${spring.kafka.bootstrap-servers}") String bootstrapServers) {
+        Map<Class<?>, Serializer<?>> valueSerializers = new LinkedHashMap<>();
+        valueSerializers.put(byte[].class, new ByteArraySerializer());
+        valueSerializers.put(Object.class, new JsonSerializer<>());
+        return new DefaultKafkaProducerFactory<>(
+                Map.of(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers),
+                new StringSerializer(),
+                new DelegatingByTypeSerializer(valueSerializers, true));
+    }
+
+    @Bean(RetryTopics.TEMPLATE)
+    public KafkaTemplate<String, Object> retryKafkaTemplate(ProducerFactory<String, Object> retryProducerFactory,
+                                                           MeterRegistry meterRegistry) {
+        KafkaTemplate<String, Object> kafkaTemplate = new KafkaTemplate<>(retryProducerFactory);
+        kafkaTemplate.setObservationEnabled(true); // Propagates the trace context in the record headers
+        kafkaTemplate.setProducerListener(new RetryProducerListener(meterRegistry));
+        return kafkaTemplate;
+    }
+
+    @Bean
+    public ConsumerFactory<String, byte[]> deadLetterConsumerFactory(
+            @Value("${spring.kafka.bootstrap-servers}") String bootstrapServers) {
+        return new DefaultKafkaConsumerFactory<>(
+                Map.of(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
+                        ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false),
+                new StringDeserializer(),
+                new ByteArrayDeserializer());
+    }
+
+    @Bean
+    public DeadLetterReplayer deadLetterReplayer(KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry,
+                                                 ConsumerFactory<String, byte[]> deadLetterConsumerFactory,
+                                                 KafkaTemplate<String, Object> retryKafkaTemplate,
+                                                 MeterRegistry meterRegistry) {
+        return new DeadLetterReplayer(kafkaListenerEndpointRegistry, deadLetterConsumerFactory, retryKafkaTemplate,
+                meterRegistry);
+    }
+
+    @Bean
+    public DeadLetterEndpoint deadLetterEndpoint(DeadLetterReplayer deadLetterReplayer) {
+        return new DeadLetterEndpoint(deadLetterReplayer);
+    }
+}
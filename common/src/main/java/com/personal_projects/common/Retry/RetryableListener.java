@@ -0,0 +1,48 @@
+package com.personal_projects.common.Retry;
+
+import org.springframework.core.annotation.AliasFor;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.retrytopic.DltStrategy;
+import org.springframework.retry.annotation.Backoff;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The {@link RetryableTopic} policy of every listener of the services: {@code kafka.retry.attempts} attempts with
+ * an exponential backoff, published by the {@value RetryTopics#TEMPLATE}, then a dead-letter topic whose handler
+ * fails rather than dead-letters again.
+ * <p>
+ * The suffixes name the consuming service, e.g. {@code "-order" + RetryTopics.RETRY_SUFFIX}, as described in
+ * {@link RetryTopics}.
+ * </p>
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@RetryableTopic(
+        attempts = "${kafka.retry.attempts:4}",
+        backoff = @Backoff(
+                delayExpression = "${kafka.retry.initial-delay-ms:1000}",
+                multiplierExpression = "${kafka.retry.multiplier:4}",
+                maxDelayExpression = "${kafka.retry.max-delay-ms:60000}"),
+        dltStrategy = DltStrategy.FAIL_ON_ERROR,
+        kafkaTemplate = RetryTopics.TEMPLATE
+)
+public @interface RetryableListener {
+
+    /**
+     * @return the suffix of the retry topics, e.g. {@code -order-retry}
+     */
+    @AliasFor(annotation = RetryableTopic.class)
+    String retryTopicSuffix();
+
+    /**
+     * @return the suffix of the dead-letter topic, e.g. {@code -order-dlt}
+     */
+    @AliasFor(annotation = RetryableTopic.class)
+    String dltTopicSuffix();
+}
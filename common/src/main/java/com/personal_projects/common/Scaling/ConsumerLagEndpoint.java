@@ -0,0 +1,31 @@
+package com.personal_projects.common.Scaling;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.List;
+
+/**
+ * Actuator endpoint exposing the state of every listener as of the last poll of the {@link ConsumerLagMonitor}:
+ * offsets, lag and rates per partition, mean processing time and desired instances.
+ * Polled by {@code scripts/autoscaler.py} at {@code GET /actuator/consumerlag}.
+ */
+@Endpoint(id = "consumerlag")
+public class ConsumerLagEndpoint {
+
+    private final ConsumerLagMonitor monitor;
+
+    public ConsumerLagEndpoint(ConsumerLagMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    /**
+     * Lists the state of every listener.
+     *
+     * @return the listener states
+     */
+    @ReadOperation
+    public List<ListenerLag> listeners() {
+        return monitor.snapshot();
+    }
+}
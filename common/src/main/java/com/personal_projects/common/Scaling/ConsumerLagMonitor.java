@@ -0,0 +1,355 @@
+package com.personal_projects.common.Scaling;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.ConsumerGroupDescription;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.MemberDescription;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.CompositeRecordInterceptor;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.listener.RecordInterceptor;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Reports how far every {@code @KafkaListener} of a service is behind and how many instances it needs.
+ * <p>
+ * Every {@code kafka.scaling.poll-interval-ms} the monitor asks the broker, through an {@link Admin} client, for
+ * the committed offset of each listener's consumer group and the end offset of every partition it reads. From two
+ * consecutive polls it derives the consumption and production rates. The mean time a record takes to process comes
+ * from the {@link ProcessingTimeInterceptor} created by {@link #interceptors}.
+ * </p>
+ * <p>
+ * The desired number of instances of a listener is the production rate plus the lag drained over
+ * {@code kafka.scaling.target-drain-seconds}, divided by what one instance processes at
+ * {@code kafka.scaling.target-utilization}. It is at least one, and never more than the instances that can be
+ * assigned a partition. Until the instance has processed a record the instances currently running the listener are
+ * reported, from the consumers of its group assigned its partitions, so no scaling decision is made without data.
+ * </p>
+ * <p>
+ * The state is published as the {@code kafka.listener.*} gauges and through the {@link ConsumerLagEndpoint}.
+ * With {@code kafka.scaling.enabled=false}, as when the services run on the single-JVM in-process bus, there is
+ * no broker to ask: the records are still timed, but the monitor never polls.
+ * </p>
+ */
+public class ConsumerLagMonitor implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConsumerLagMonitor.class);
+    private static final long ADMIN_TIMEOUT_SECONDS = 5;
+
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Object> adminConfig;
+    private final boolean enabled;
+    private final Duration targetDrainTime;
+    private final double targetUtilization;
+
+    private final Map<String, ProcessingTimeInterceptor<?, ?>> interceptors = new ConcurrentHashMap<>();
+    private final Map<String, Sample> previousSamples = new HashMap<>();
+
+    private final MultiGauge committedOffsets;
+    private final MultiGauge endOffsets;
+    private final MultiGauge lags;
+    private final MultiGauge recordRates;
+    private final MultiGauge desiredInstances;
+
+    private Admin admin;
+    private volatile List<ListenerLag> snapshot = List.of();
+
+    /**
+     * Constructs the monitor.
+     *
+     * @param listenerRegistry  registry of the service's listener containers
+     * @param meterRegistry     registry for the lag metrics
+     * @param bootstrapServers  Kafka brokers to query
+     * @param enabled           whether to poll the brokers at all
+     * @param targetDrainTime   time in which an instance count should drain the current lag
+     * @param targetUtilization fraction of an instance's processing capacity to plan for, in {@code (0, 1]}
+     */
+    public ConsumerLagMonitor(KafkaListenerEndpointRegistry listenerRegistry,
+                              MeterRegistry meterRegistry,
+                              String bootstrapServers,
+                              boolean enabled,
+                              Duration targetDrainTime,
+                              double targetUtilization) {
+        if (targetUtilization <= 0 || targetUtilization > 1) {
+            throw new IllegalArgumentException("kafka.scaling.target-utilization must be in (0, 1], was " + targetUtilization);
+        }
+        this.listenerRegistry = listenerRegistry;
+        this.meterRegistry = meterRegistry;
+        this.adminConfig = Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        this.enabled = enabled;
+        this.targetDrainTime = targetDrainTime;
+        this.targetUtilization = targetUtilization;
+
+        this.committedOffsets = MultiGauge.builder("kafka.listener.committed.offset")
+                .description("Offset committed by the listener's consumer group")
+                .register(meterRegistry);
+        this.endOffsets = MultiGauge.builder("kafka.listener.end.offset")
+                .description("End offset of a partition read by the listener")
+                .register(meterRegistry);
+        this.lags = MultiGauge.builder("kafka.listener.lag")
+                .description("Records produced but not yet committed by the listener's consumer group")
+                .register(meterRegistry);
+        this.recordRates = MultiGauge.builder("kafka.listener.records.per.second")
+                .description("Records committed per second by the listener's consumer group")
+                .register(meterRegistry);
+        this.desiredInstances = MultiGauge.builder("kafka.listener.desired.instances")
+                .description("Instances needed to keep up with production and drain the lag in the target time")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Creates the processing-time interceptor of a listener container, followed by other interceptors of the
+     * service. Used by the container customizer of the listener container factories, which installs them on the
+     * container, or on the worker processing the records of a parallel listener. A container holds a single
+     * interceptor, so they are combined in a {@link CompositeRecordInterceptor}.
+     *
+     * @param container the container created for a {@code @KafkaListener}
+     * @param next      the interceptors to run after the processing-time interceptor, in order; {@code null}
+     *                  ones, for features that are off, are skipped
+     * @param <K>       the record key type
+     * @param <V>       the record value type
+     * @return the interceptors, as one
+     */
+    @SafeVarargs
+    public final <K, V> RecordInterceptor<K, V> interceptors(ConcurrentMessageListenerContainer<K, V> container,
+                                                             RecordInterceptor<K, V>... next) {
+        ProcessingTimeInterceptor<K, V> interceptor = new ProcessingTimeInterceptor<>(container.getListenerId(), meterRegistry);
+        interceptors.put(container.getListenerId(), interceptor);
+        List<RecordInterceptor<K, V>> chain = new ArrayList<>();
+        chain.add(interceptor);
+        for (RecordInterceptor<K, V> other : next) {
+            if (other != null) {
+                chain.add(other);
+            }
+        }
+        @SuppressWarnings("unchecked")
+        RecordInterceptor<K, V>[] delegates = chain.toArray(new RecordInterceptor[0]);
+        return delegates.length == 1 ? interceptor : new CompositeRecordInterceptor<>(delegates);
+    }
+
+    /**
+     * Returns the state of every listener as of the last poll.
+     *
+     * @return the listener states
+     */
+    public List<ListenerLag> snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Polls the broker for the offsets of every listener and refreshes the snapshot and gauges.
+     */
+    @Scheduled(fixedDelayString = "${kafka.scaling.poll-interval-ms:5000}")
+    public synchronized void poll() {
+        if (!enabled) {
+            return;
+        }
+        List<ListenerLag> listeners = new ArrayList<>();
+        for (MessageListenerContainer container : listenerRegistry.getListenerContainers()) {
+            String[] topics = container.getContainerProperties().getTopics();
+            if (container.getListenerId() == null || container.getGroupId() == null || topics == null) {
+                continue;
+            }
+            try {
+                listeners.add(poll(container, Arrays.asList(topics)));
+            } catch (ExecutionException | TimeoutException e) {
+                logger.warn("Could not read the offsets of listener {}", container.getListenerId(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        snapshot = List.copyOf(listeners);
+        publish(listeners);
+    }
+
+    private ListenerLag poll(MessageListenerContainer container, List<String> topics)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        String listenerId = container.getListenerId();
+        String groupId = container.getGroupId();
+        Admin client = admin();
+
+        Map<TopicPartition, OffsetSpec> latest = new HashMap<>();
+        for (TopicDescription topic : client.describeTopics(topics).allTopicNames()
+                .get(ADMIN_TIMEOUT_SECONDS, TimeUnit.SECONDS).values()) {
+            topic.partitions().forEach(p -> latest.put(new TopicPartition(topic.name(), p.partition()), OffsetSpec.latest()));
+        }
+        Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> ends = client.listOffsets(latest).all()
+                .get(ADMIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        Map<TopicPartition, OffsetAndMetadata> committed = client.listConsumerGroupOffsets(groupId)
+                .partitionsToOffsetAndMetadata().get(ADMIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        ConsumerGroupDescription group = client.describeConsumerGroups(List.of(groupId)).all()
+                .get(ADMIN_TIMEOUT_SECONDS, TimeUnit.SECONDS).get(groupId);
+
+        long now = System.nanoTime();
+        Sample previous = previousSamples.get(listenerId);
+        double elapsedSeconds = previous == null ? 0 : (now - previous.nanoTime) / 1e9;
+        Map<TopicPartition, long[]> offsets = new HashMap<>();
+
+        List<PartitionLag> partitions = new ArrayList<>();
+        long totalLag = 0;
+        double totalConsumed = 0;
+        double totalProduced = 0;
+        for (TopicPartition partition : latest.keySet()) {
+            long end = ends.get(partition).offset();
+            OffsetAndMetadata commit = committed.get(partition);
+            long committedOffset = commit == null ? -1 : commit.offset();
+            long lag = commit == null ? 0 : Math.max(0, end - committedOffset);
+            offsets.put(partition, new long[]{committedOffset, end});
+
+            double consumedRate = 0;
+            double producedRate = 0;
+            long[] before = previous == null ? null : previous.offsets.get(partition);
+            if (before != null && elapsedSeconds > 0) {
+                consumedRate = before[0] < 0 || committedOffset < 0 ? 0 : (committedOffset - before[0]) / elapsedSeconds;
+                producedRate = (end - before[1]) / elapsedSeconds;
+            }
+            partitions.add(new PartitionLag(partition.topic(), partition.partition(), committedOffset, end, lag,
+                    consumedRate, producedRate));
+            totalLag += lag;
+            totalConsumed += consumedRate;
+            totalProduced += producedRate;
+        }
+
+        ProcessingTimeInterceptor<?, ?> interceptor = interceptors.get(listenerId);
+        long records = interceptor == null ? 0 : interceptor.records.sum();
+        long nanos = interceptor == null ? 0 : interceptor.processingNanos.sum();
+        double meanProcessingNanos = previous == null ? -1 : previous.meanProcessingNanos;
+        if (previous != null && records > previous.records) {
+            meanProcessingNanos = (double) (nanos - previous.processingNanos) / (records - previous.records);
+        } else if (previous == null && records > 0) {
+            meanProcessingNanos = (double) nanos / records;
+        }
+        previousSamples.put(listenerId, new Sample(now, offsets, records, nanos, meanProcessingNanos));
+
+        int concurrency = container instanceof ConcurrentMessageListenerContainer<?, ?> concurrent
+                ? concurrent.getConcurrency() : 1;
+        int members = group == null ? 0 : listenerMembers(group.members(), topics);
+        int desired = desiredInstances(meanProcessingNanos, concurrency, members, latest.size(), totalLag,
+                totalProduced, targetDrainTime, targetUtilization);
+
+        partitions.sort((a, b) -> a.topic().equals(b.topic())
+                ? Integer.compare(a.partition(), b.partition()) : a.topic().compareTo(b.topic()));
+        return new ListenerLag(listenerId, groupId, concurrency, members, totalLag, totalConsumed, totalProduced,
+                meanProcessingNanos < 0 ? -1 : meanProcessingNanos / 1000, desired, partitions);
+    }
+
+    /**
+     * Counts the consumers of a group that read the topics of one listener. Listeners of a service may share a
+     * consumer group, as those of the order service do, so the members assigned only other topics belong to
+     * other listeners. Consumers left without a partition, beyond the partition count, are not counted either.
+     *
+     * @param members the members of the listener's consumer group
+     * @param topics  the topics the listener reads
+     * @return the consumers of the group assigned a partition of the listener's topics
+     */
+    static int listenerMembers(Collection<MemberDescription> members, Collection<String> topics) {
+        int count = 0;
+        for (MemberDescription member : members) {
+            if (member.assignment().topicPartitions().stream().anyMatch(p -> topics.contains(p.topic()))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Computes the instances a listener needs, as described on this class.
+     *
+     * @param meanProcessingNanos mean time a record takes to process, or a negative value before the first record
+     * @param concurrency         consumer threads of the listener per instance
+     * @param members             consumers of the listener, as counted by {@link #listenerMembers}
+     * @param partitionCount      partitions of the listener's topics
+     * @param lag                 total lag of the listener
+     * @param producedPerSecond   records produced per second to the listener's topics
+     * @param targetDrainTime     time in which the lag should be drained
+     * @param targetUtilization   fraction of an instance's processing capacity to plan for
+     * @return the desired number of instances, between one and the instances that can be assigned a partition
+     */
+    static int desiredInstances(double meanProcessingNanos, int concurrency, int members, int partitionCount,
+                                long lag, double producedPerSecond, Duration targetDrainTime,
+                                double targetUtilization) {
+        int maxUseful = Math.max(1, (partitionCount + concurrency - 1) / concurrency);
+        if (meanProcessingNanos <= 0) {
+            int instances = (members + concurrency - 1) / Math.max(1, concurrency);
+            return Math.max(1, Math.min(instances, maxUseful));
+        }
+        double capacityPerInstance = concurrency * (1e9 / meanProcessingNanos) * targetUtilization;
+        double demand = producedPerSecond + lag / (double) Math.max(1, targetDrainTime.toSeconds());
+        int desired = (int) Math.ceil(demand / capacityPerInstance);
+        return Math.max(1, Math.min(desired, maxUseful));
+    }
+
+    private void publish(List<ListenerLag> listeners) {
+        List<MultiGauge.Row<?>> committedRows = new ArrayList<>();
+        List<MultiGauge.Row<?>> endRows = new ArrayList<>();
+        List<MultiGauge.Row<?>> lagRows = new ArrayList<>();
+        List<MultiGauge.Row<?>> rateRows = new ArrayList<>();
+        List<MultiGauge.Row<?>> desiredRows = new ArrayList<>();
+        for (ListenerLag listener : listeners) {
+            for (PartitionLag partition : listener.partitions()) {
+                Tags tags = Tags.of("listener", listener.listenerId(), "topic", partition.topic(),
+                        "partition", Integer.toString(partition.partition()));
+                committedRows.add(MultiGauge.Row.of(tags, partition.committedOffset()));
+                endRows.add(MultiGauge.Row.of(tags, partition.endOffset()));
+                lagRows.add(MultiGauge.Row.of(tags, partition.lag()));
+                rateRows.add(MultiGauge.Row.of(tags, partition.recordsPerSecond()));
+            }
+            desiredRows.add(MultiGauge.Row.of(Tags.of("listener", listener.listenerId()), listener.desiredInstances()));
+        }
+        committedOffsets.register(committedRows, true);
+        endOffsets.register(endRows, true);
+        lags.register(lagRows, true);
+        recordRates.register(rateRows, true);
+        desiredInstances.register(desiredRows, true);
+    }
+
+    private Admin admin() {
+        if (admin == null) {
+            admin = Admin.create(adminConfig);
+        }
+        return admin;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (admin != null) {
+            admin.close(Duration.ofSeconds(ADMIN_TIMEOUT_SECONDS));
+        }
+    }
+
+    /**
+     * Offsets and processing totals of one listener at one poll.
+     */
+    private record Sample(long nanoTime,
+                          Map<TopicPartition, long[]> offsets,
+                          long records,
+                          long processingNanos,
+                          double meanProcessingNanos) {
+    }
+}
@@ -0,0 +1,35 @@
+package com.personal_projects.common.Scaling;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+
+import java.time.Duration;
+
+/**
+ * Consumer lag and autoscaling signals shared by the services, imported by each service application.
+ * The listener container factories of a service install {@link ConsumerLagMonitor#interceptors} in their
+ * container customizer, and the application enables scheduling so the monitor polls.
+ */
+@Configuration(proxyBeanMethods = false)
+public class ConsumerScalingConfiguration {
+
+    @Bean
+    public ConsumerLagMonitor consumerLagMonitor(
+            KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry,
+            MeterRegistry meterRegistry,
+            @Value("${spring.kafka.bootstrap-servers}") String bootstrapServers,
+            @Value("${kafka.scaling.enabled:true}") boolean enabled,
+            @Value("${kafka.scaling.target-drain-seconds:60}") long targetDrainSeconds,
+            @Value("${kafka.scaling.target-utilization:0.7}") double targetUtilization) {
+        return new ConsumerLagMonitor(kafkaListenerEndpointRegistry, meterRegistry, bootstrapServers, enabled,
+                Duration.ofSeconds(targetDrainSeconds), targetUtilization);
+    }
+
+    @Bean
+    public ConsumerLagEndpoint consumerLagEndpoint(ConsumerLagMonitor consumerLagMonitor) {
+        return new ConsumerLagEndpoint(consumerLagMonitor);
+    }
+}
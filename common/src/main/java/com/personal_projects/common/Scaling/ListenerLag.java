@@ -0,0 +1,30 @@
+package com.personal_projects.common.Scaling;
+
+import java.util.List;
+
+/**
+ * Consumption state of one {@code @KafkaListener} and the number of instances it should run on.
+ *
+ * @param listenerId           the id of the listener
+ * @param groupId              the consumer group of the listener
+ * @param concurrency          consumer threads the listener runs per instance
+ * @param members              consumers of the group assigned a partition of the listener's topics, across all
+ *                             instances
+ * @param lag                  total lag over all partitions
+ * @param recordsPerSecond     total records committed per second
+ * @param producedPerSecond    total records produced per second
+ * @param meanProcessingMicros mean time this instance took to process a record, or {@code -1} before the first record
+ * @param desiredInstances     instances needed to keep up with production and drain the lag in the target time
+ * @param partitions           the state of every partition
+ */
+public record ListenerLag(String listenerId,
+                          String groupId,
+                          int concurrency,
+                          int members,
+                          long lag,
+                          double recordsPerSecond,
+                          double producedPerSecond,
+                          double meanProcessingMicros,
+                          int desiredInstances,
+                          List<PartitionLag> partitions) {
+}
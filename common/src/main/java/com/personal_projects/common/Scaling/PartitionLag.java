@@ -0,0 +1,21 @@
+package com.personal_projects.common.Scaling;
+
+/**
+ * Consumption state of one partition read by a listener, across every instance of its consumer group.
+ *
+ * @param topic             the topic
+ * @param partition         the partition
+ * @param committedOffset   the offset committed by the consumer group, or {@code -1} if none was committed yet
+ * @param endOffset         the offset the next produced record will get
+ * @param lag               records produced but not yet committed by the consumer group
+ * @param recordsPerSecond  records committed per second since the previous poll
+ * @param producedPerSecond records produced per second since the previous poll
+ */
+public record PartitionLag(String topic,
+                           int partition,
+                           long committedOffset,
+                           long endOffset,
+                           long lag,
+                           double recordsPerSecond,
+                           double producedPerSecond) {
+}
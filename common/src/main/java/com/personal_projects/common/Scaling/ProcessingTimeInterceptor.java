@@ -0,0 +1,69 @@
+package com.personal_projects.common.Scaling;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.listener.RecordInterceptor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link RecordInterceptor} timing how long one listener takes to process each record.
+ * <p>
+ * Every record is recorded in the {@code kafka.listener.processing.time} timer, tagged by listener, topic and
+ * partition, and added to running totals the {@link ConsumerLagMonitor} turns into the mean processing time
+ * behind the desired-instances signal. The start time is kept per consumer thread, so timing a record
+ * allocates nothing once the timer of its partition exists.
+ * </p>
+ *
+ * @param <K> the record key type
+ * @param <V> the record value type
+ */
+class ProcessingTimeInterceptor<K, V> implements RecordInterceptor<K, V> {
+
+    private final String listenerId;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Map<Integer, Timer>> timers = new ConcurrentHashMap<>();
+    private final ThreadLocal<long[]> startNanos = ThreadLocal.withInitial(() -> new long[1]);
+
+    final LongAdder records = new LongAdder();
+    final LongAdder processingNanos = new LongAdder();
+
+    ProcessingTimeInterceptor(String listenerId, MeterRegistry meterRegistry) {
+        this.listenerId = listenerId;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public ConsumerRecord<K, V> intercept(ConsumerRecord<K, V> record, Consumer<K, V> consumer) {
+        startNanos.get()[0] = System.nanoTime();
+        return record;
+    }
+
+    @Override
+    public void afterRecord(ConsumerRecord<K, V> record, Consumer<K, V> consumer) {
+        long elapsed = System.nanoTime() - startNanos.get()[0];
+        records.increment();
+        processingNanos.add(elapsed);
+        timer(record.topic(), record.partition()).record(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(String topic, int partition) {
+        Map<Integer, Timer> byPartition = timers.get(topic);
+        if (byPartition == null) {
+            byPartition = timers.computeIfAbsent(topic, t -> new ConcurrentHashMap<>());
+        }
+        Timer timer = byPartition.get(partition);
+        if (timer == null) {
+            timer = byPartition.computeIfAbsent(partition, p -> Timer.builder("kafka.listener.processing.time")
+                    .description("Time a listener takes to process one record")
+                    .tags("listener", listenerId, "topic", topic, "partition", Integer.toString(p))
+                    .register(meterRegistry));
+        }
+        return timer;
+    }
+}
@@ -0,0 +1,193 @@
+package com.personal_projects.common.Tiering;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves documents from a hot collection to its archive collection, shared by the tiering jobs of the Mongo
+ * backed services.
+ * <p>
+ * Each run moves the documents matching a query in batches of {@code batchSize}. A batch is upserted into the
+ * archive before it is removed from the hot collection, so a document is always readable from one of the two and
+ * a run interrupted half-way is simply repeated by the next one. The removal re-checks the query, so a document
+ * updated since it was read stays hot; only the documents actually removed count as moved.
+ * </p>
+ * <p>
+ * To keep foreground latency unaffected, a run pauses between batches so that it is busy for at most
+ * {@code dutyCycle} of the wall-clock time, and stops after {@code maxBatchesPerRun} batches. The size of the hot
+ * collection and its indexes is logged before and after every run and published as the
+ * {@code <prefix>.hot.documents}, {@code <prefix>.hot.data.bytes} and {@code <prefix>.hot.index.bytes} gauges;
+ * the moved documents are counted in {@code <prefix>.archived}.
+ * </p>
+ *
+ * @param <T> the mapped document class
+ */
+public class CollectionTiering<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(CollectionTiering.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final Class<T> documentClass;
+    private final MongoPersistentEntity<?> entity;
+    private final String hotCollection;
+    private final String archiveCollection;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final double dutyCycle;
+
+    private final AtomicLong hotDocuments = new AtomicLong();
+    private final AtomicLong hotDataBytes = new AtomicLong();
+    private final AtomicLong hotIndexBytes = new AtomicLong();
+    private final Counter archived;
+
+    /**
+     * Creates the mover of one collection.
+     *
+     * @param mongoTemplate     template used to read, archive and remove the documents
+     * @param documentClass     the mapped class of the documents
+     * @param archiveCollection the collection the documents are moved to
+     * @param prefix            prefix of the settings named in the error messages and of the metrics, e.g.
+     *                          {@code payment.tiering}
+     * @param meterRegistry     registry for the tiering metrics
+     * @param batchSize         documents moved per batch
+     * @param maxBatchesPerRun  batches moved per run at most
+     * @param dutyCycle         fraction of wall-clock time a run may spend moving batches, in {@code (0, 1]}
+     * @throws IllegalArgumentException if a setting is out of range
+     */
+    public CollectionTiering(MongoTemplate mongoTemplate, Class<T> documentClass, String archiveCollection,
+                             String prefix, MeterRegistry meterRegistry,
+                             int batchSize, int maxBatchesPerRun, double dutyCycle) {
+        if (batchSize <= 0 || maxBatchesPerRun <= 0) {
+            throw new IllegalArgumentException(prefix + " batch-size and max-batches-per-run must be positive");
+        }
+        if (dutyCycle <= 0 || dutyCycle > 1) {
+            throw new IllegalArgumentException(prefix + ".duty-cycle must be in (0, 1], was " + dutyCycle);
+        }
+        MappingContext<? extends MongoPersistentEntity<?>, ?> mappingContext =
+                mongoTemplate.getConverter().getMappingContext();
+        this.mongoTemplate = mongoTemplate;
+        this.documentClass = documentClass;
+        this.entity = mappingContext.getRequiredPersistentEntity(documentClass);
+        this.hotCollection = mongoTemplate.getCollectionName(documentClass);
+        this.archiveCollection = archiveCollection;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.dutyCycle = dutyCycle;
+
+        Gauge.builder(prefix + ".hot.documents", hotDocuments, AtomicLong::get)
+                .description("Documents in the hot " + hotCollection + " collection")
+                .register(meterRegistry);
+        Gauge.builder(prefix + ".hot.data.bytes", hotDataBytes, AtomicLong::get)
+                .description("Uncompressed size of the documents in the hot " + hotCollection + " collection")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder(prefix + ".hot.index.bytes", hotIndexBytes, AtomicLong::get)
+                .description("Size of the indexes of the hot " + hotCollection + " collection")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.archived = Counter.builder(prefix + ".archived")
+                .description("Documents moved to the " + archiveCollection + " collection")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Moves the documents matching a query to the archive, batch by batch.
+     *
+     * @param eligible the documents to move; re-checked when they are removed from the hot collection
+     * @return the number of documents removed from the hot collection
+     */
+    public long archive(Query eligible) {
+        String before = refreshWorkingSet();
+        long moved = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            long start = System.nanoTime();
+            List<T> documents = mongoTemplate.find(Query.of(eligible).limit(batchSize), documentClass);
+            moved += moveBatch(eligible, documents);
+            if (documents.size() < batchSize || !pause(System.nanoTime() - start)) {
+                break;
+            }
+        }
+        String after = refreshWorkingSet();
+        logger.info("Archived {} documents of {} to {}. Hot working set before: {}, after: {}",
+                moved, hotCollection, archiveCollection, before, after);
+        return moved;
+    }
+
+    /**
+     * Copies one batch of documents to the archive, then removes those still eligible from the hot collection.
+     *
+     * @return the number of documents removed
+     */
+    private long moveBatch(Query eligible, List<T> documents) {
+        if (documents.isEmpty()) {
+            return 0;
+        }
+        BulkOperations archive = mongoTemplate.bulkOps(
+                BulkOperations.BulkMode.UNORDERED, documentClass, archiveCollection);
+        List<Object> ids = new ArrayList<>(documents.size());
+        for (T document : documents) {
+            Object id = entity.getIdentifierAccessor(document).getRequiredIdentifier();
+            ids.add(id);
+            archive.replaceOne(Query.query(Criteria.where("_id").is(id)), document,
+                    FindAndReplaceOptions.options().upsert());
+        }
+        archive.execute();
+
+        long removed = mongoTemplate.remove(Query.of(eligible).addCriteria(Criteria.where("_id").in(ids)),
+                documentClass).getDeletedCount();
+        archived.increment(removed);
+        return removed;
+    }
+
+    /**
+     * Sleeps long enough after a batch that took {@code busyNanos} to keep the run within its duty cycle.
+     *
+     * @return {@code false} if the thread was interrupted and the run should stop
+     */
+    private boolean pause(long busyNanos) {
+        long pauseNanos = (long) (busyNanos * (1 - dutyCycle) / dutyCycle);
+        try {
+            Thread.sleep(Duration.ofNanos(pauseNanos));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Reads the storage statistics of the hot collection and updates the working-set gauges.
+     *
+     * @return a short description of the hot working set for logging
+     */
+    private String refreshWorkingSet() {
+        Document stats = mongoTemplate.getCollection(hotCollection)
+                .aggregate(List.of(new Document("$collStats", new Document("storageStats", new Document()))))
+                .first();
+        Document storage = stats == null ? null : stats.get("storageStats", Document.class);
+        if (storage == null) {
+            return "unavailable";
+        }
+        hotDocuments.set(((Number) storage.getOrDefault("count", 0)).longValue());
+        hotDataBytes.set(((Number) storage.getOrDefault("size", 0)).longValue());
+        hotIndexBytes.set(((Number) storage.getOrDefault("totalIndexSize", 0)).longValue());
+        return String.format("%d documents, %d data bytes, %d index bytes",
+                hotDocuments.get(), hotDataBytes.get(), hotIndexBytes.get());
+    }
+}
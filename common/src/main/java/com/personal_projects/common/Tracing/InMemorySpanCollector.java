@@ -0,0 +1,66 @@
+package com.personal_projects.common.Tracing;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * {@link SpanExporter} keeping the most recent finished spans in memory, so slow hops can be found
+ * through the {@code spans} actuator endpoint without an external tracing backend.
+ * <p>
+ * Spans are kept in a fixed-size ring; once it is full the oldest span is overwritten.
+ * </p>
+ */
+public class InMemorySpanCollector implements SpanExporter {
+
+    private final SpanData[] ring;
+    private long written;
+
+    /**
+     * Creates a collector keeping at most {@code capacity} spans.
+     *
+     * @param capacity the number of spans to keep
+     */
+    public InMemorySpanCollector(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Span collector capacity must be positive, was " + capacity);
+        }
+        this.ring = new SpanData[capacity];
+    }
+
+    @Override
+    public synchronized CompletableResultCode export(Collection<SpanData> spans) {
+        for (SpanData span : spans) {
+            ring[(int) (written++ % ring.length)] = span;
+        }
+        return CompletableResultCode.ofSuccess();
+    }
+
+    /**
+     * Returns the collected spans, oldest first.
+     *
+     * @return a snapshot of the collected spans
+     */
+    public synchronized List<SpanData> spans() {
+        int size = (int) Math.min(written, ring.length);
+        List<SpanData> spans = new ArrayList<>(size);
+        for (long i = written - size; i < written; i++) {
+            spans.add(ring[(int) (i % ring.length)]);
+        }
+        return spans;
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        return CompletableResultCode.ofSuccess();
+    }
+}
@@ -0,0 +1,133 @@
+package com.personal_projects.common.Tracing;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.data.domain.Slice;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.BaseStream;
+
+/**
+ * Wraps every Spring Data repository call in a {@code repository.call} {@link Observation}.
+ * <p>
+ * With tracing enabled each call becomes a child span of the current request or listener span, named
+ * after the repository interface and method, e.g. {@code PaymentRepository.save}. The observation also
+ * publishes a {@code repository.call} timer tagged by repository and method.
+ * </p>
+ * <p>
+ * The number of rows or documents each call returned is recorded in the {@code repository.call.results}
+ * distribution with the same tags: the size of a returned collection or page, one or zero for a single
+ * entity, count or {@link Optional}, and the affected count returned by modifying queries. Streams are not
+ * counted, since counting them would consume them.
+ * </p>
+ */
+@Aspect
+public class RepositoryObservationAspect {
+
+    private static final String OBSERVATION_NAME = "repository.call";
+
+    private static final ClassValue<String> REPOSITORY_NAMES = new ClassValue<>() {
+        @Override
+        protected String computeValue(Class<?> proxyClass) {
+            for (Class<?> type : proxyClass.getInterfaces()) {
+                if (org.springframework.data.repository.Repository.class.isAssignableFrom(type)
+                        && !type.getName().startsWith("org.springframework.")) {
+                    return type.getSimpleName();
+                }
+            }
+            return proxyClass.getSimpleName();
+        }
+    };
+
+    private final ObservationRegistry observationRegistry;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Map<Method, DistributionSummary>> results = new ConcurrentHashMap<>();
+
+    public RepositoryObservationAspect(ObservationRegistry observationRegistry, MeterRegistry meterRegistry) {
+        this.observationRegistry = observationRegistry;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Observes a call to a repository method and records how many rows or documents it returned.
+     *
+     * @param joinPoint the repository call
+     * @return the result of the call
+     * @throws Throwable whatever the repository call throws
+     */
+    @Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+    public Object observe(ProceedingJoinPoint joinPoint) throws Throwable {
+        String repository = REPOSITORY_NAMES.get(joinPoint.getThis().getClass());
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Object result = Observation.createNotStarted(OBSERVATION_NAME, observationRegistry)
+                .contextualName(repository + "." + method.getName())
+                .lowCardinalityKeyValue("repository", repository)
+                .lowCardinalityKeyValue("method", method.getName())
+                .observeChecked((Observation.CheckedCallable<Object, Throwable>) joinPoint::proceed);
+
+        long count = method.getName().startsWith("count") ? 1 : resultCount(result);
+        if (count >= 0) {
+            results(repository, method).record(count);
+        }
+        return result;
+    }
+
+    /**
+     * Counts the rows or documents in a repository result.
+     *
+     * @return the count, or {@code -1} if the result cannot be counted without consuming it
+     */
+    private static long resultCount(Object result) {
+        if (result == null) {
+            return 0;
+        }
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Slice<?> slice) {
+            return slice.getNumberOfElements();
+        }
+        if (result instanceof Optional<?> optional) {
+            return optional.isPresent() ? 1 : 0;
+        }
+        if (result instanceof Number number) {
+            return number.longValue();
+        }
+        if (result instanceof Boolean) {
+            return -1;
+        }
+        if (result.getClass().isArray()) {
+            return Array.getLength(result);
+        }
+        if (result instanceof Iterable<?> || result instanceof BaseStream<?, ?>) {
+            return -1;
+        }
+        return 1;
+    }
+
+    private DistributionSummary results(String repository, Method method) {
+        Map<Method, DistributionSummary> byMethod = results.get(repository);
+        if (byMethod == null) {
+            byMethod = results.computeIfAbsent(repository, r -> new ConcurrentHashMap<>());
+        }
+        DistributionSummary summary = byMethod.get(method);
+        if (summary == null) {
+            summary = byMethod.computeIfAbsent(method, m -> DistributionSummary.builder("repository.call.results")
+                    .description("Rows or documents returned or affected by a repository call")
+                    .tags("repository", repository, "method", m.getName())
+                    .register(meterRegistry));
+        }
+        return summary;
+    }
+}
@@ -0,0 +1,82 @@
+package com.personal_projects.common.Tracing;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.opentelemetry.sdk.trace.data.SpanData;
+
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flat, serializable view of a finished span, as returned by the {@code spans} actuator endpoint
+ * and written by the {@link FileSpanExporter}.
+ *
+ * @param traceId          W3C trace ID shared by every span of the trace, across services
+ * @param spanId           ID of the span
+ * @param parentSpanId     ID of the parent span, or {@code null} for the root span
+ * @param service          service that recorded the span
+ * @param name             name of the span, e.g. {@code order-topic send}
+ * @param kind             span kind, e.g. {@code SERVER}, {@code PRODUCER} or {@code CONSUMER}
+ * @param startEpochMicros start of the span in epoch micros
+ * @param durationMicros   duration of the span in micros
+ * @param status           status of the span, {@code ERROR} when it failed
+ * @param attributes       span attributes
+ */
+public record SpanView(String traceId,
+                       String spanId,
+                       String parentSpanId,
+                       String service,
+                       String name,
+                       String kind,
+                       long startEpochMicros,
+                       long durationMicros,
+                       String status,
+                       Map<String, String> attributes) {
+
+    private static final String SERVICE_NAME = "service.name";
+    private static final ObjectWriter JSON = new ObjectMapper().writerFor(SpanView.class);
+
+    /**
+     * Creates the view of a finished span.
+     *
+     * @param span the span exported by the OpenTelemetry SDK
+     * @return the span view
+     */
+    public static SpanView of(SpanData span) {
+        Map<String, String> attributes = new TreeMap<>();
+        span.getAttributes().forEach((key, value) -> attributes.put(key.getKey(), String.valueOf(value)));
+        String service = span.getResource().getAttributes().asMap().entrySet().stream()
+                .filter(entry -> SERVICE_NAME.equals(entry.getKey().getKey()))
+                .map(entry -> String.valueOf(entry.getValue()))
+                .findFirst()
+                .orElse(null);
+        return new SpanView(
+                span.getTraceId(),
+                span.getSpanId(),
+                span.getParentSpanContext().isValid() ? span.getParentSpanId() : null,
+                service,
+                span.getName(),
+                span.getKind().name(),
+                TimeUnit.NANOSECONDS.toMicros(span.getStartEpochNanos()),
+                TimeUnit.NANOSECONDS.toMicros(span.getEndEpochNanos() - span.getStartEpochNanos()),
+                span.getStatus().getStatusCode().name(),
+                attributes
+        );
+    }
+
+    /**
+     * Formats the span as a single line of JSON.
+     *
+     * @return the JSON representation of the span
+     */
+    public String toJson() {
+        try {
+            return JSON.writeValueAsString(this);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Could not format span " + spanId, e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.personal_projects.common.Tracing;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.lang.Nullable;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Actuator endpoint exposing the spans held by the {@link InMemorySpanCollector}.
+ * <ul>
+ *     <li>{@code GET /actuator/spans} lists the slowest recent spans, optionally only those of at least
+ *     {@code minDurationMs} milliseconds.</li>
+ *     <li>{@code GET /actuator/spans/{traceId}} lists the spans of one trace recorded by this service in start
+ *     order, showing which hop of the trace took the time.</li>
+ * </ul>
+ */
+@Endpoint(id = "spans")
+public class SpansEndpoint {
+
+    private static final int DEFAULT_LIMIT = 100;
+
+    private final InMemorySpanCollector collector;
+
+    public SpansEndpoint(InMemorySpanCollector collector) {
+        this.collector = collector;
+    }
+
+    /**
+     * Lists the slowest recent spans.
+     *
+     * @param minDurationMs only return spans that took at least this long
+     * @param limit         the maximum number of spans to return, 100 by default
+     * @return the spans, slowest first
+     */
+    @ReadOperation
+    public List<SpanView> slowest(@Nullable Long minDurationMs, @Nullable Integer limit) {
+        long minDurationMicros = minDurationMs == null ? 0 : minDurationMs * 1000;
+        return collector.spans().stream()
+                .map(SpanView::of)
+                .filter(span -> span.durationMicros() >= minDurationMicros)
+                .sorted(Comparator.comparingLong(SpanView::durationMicros).reversed())
+                .limit(limit == null ? DEFAULT_LIMIT : limit)
+                .toList();
+    }
+
+    /**
+     * Lists the spans of one trace.
+     *
+     * @param traceId the W3C trace ID
+     * @return the spans of the trace recorded by this service, in start order
+     */
+    @ReadOperation
+    public List<SpanView> trace(@Selector String traceId) {
+        return collector.spans().stream()
+                .filter(span -> span.getTraceId().equals(traceId))
+                .map(SpanView::of)
+                .sorted(Comparator.comparingLong(SpanView::startEpochMicros))
+                .toList();
+    }
+}
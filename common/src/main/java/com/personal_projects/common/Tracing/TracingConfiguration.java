@@ -0,0 +1,64 @@
+package com.personal_projects.common.Tracing;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+
+import java.nio.file.Path;
+
+/**
+ * Local tracing setup shared by the services, imported by each service application.
+ * <p>
+ * The OpenTelemetry tracer itself is auto-configured by Spring Boot from {@code micrometer-tracing-bridge-otel}:
+ * it continues W3C {@code traceparent} headers arriving at the REST controllers and starts new traces otherwise,
+ * and samples {@code management.tracing.sampling.probability} of the traces. The Kafka templates and listener
+ * containers of the services have observation enabled, which carries the trace context in the record headers.
+ * </p>
+ * <p>
+ * This configuration adds the local exporters, which the auto-configured batch span processor picks up as
+ * {@code SpanExporter} beans:
+ * <ul>
+ *     <li>an {@link InMemorySpanCollector} holding the last {@code tracing.export.in-memory-capacity} spans,
+ *     served by the {@link SpansEndpoint};</li>
+ *     <li>a {@link FileSpanExporter} appending to {@code tracing.export.file}, when that property is set.</li>
+ * </ul>
+ * It also wraps repository calls in spans through the {@link RepositoryObservationAspect}.
+ * </p>
+ * <p>
+ * The defaults of these properties are read from {@value #DEFAULTS}, below the properties of each service.
+ * </p>
+ */
+@Configuration(proxyBeanMethods = false)
+@PropertySource(TracingConfiguration.DEFAULTS)
+public class TracingConfiguration {
+
+    /** Classpath location of the tracing defaults shared by the services. */
+    public static final String DEFAULTS = "classpath:defaults/tracing.properties";
+
+    @Bean
+    public InMemorySpanCollector inMemorySpanCollector(
+            @Value("${tracing.export.in-memory-capacity:2048}") int capacity) {
+        return new InMemorySpanCollector(capacity);
+    }
+
+    @Bean
+    @ConditionalOnExpression("!'${tracing.export.file:}'.isEmpty()")
+    public FileSpanExporter fileSpanExporter(@Value("${tracing.export.file}") String file) {
+        return new FileSpanExporter(Path.of(file));
+    }
+
+    @Bean
+    public SpansEndpoint spansEndpoint(InMemorySpanCollector inMemorySpanCollector) {
+        return new SpansEndpoint(inMemorySpanCollector);
+    }
+
+    @Bean
+    public RepositoryObservationAspect repositoryObservationAspect(ObservationRegistry observationRegistry,
+                                                                   MeterRegistry meterRegistry) {
+        return new RepositoryObservationAspect(observationRegistry, meterRegistry);
+    }
+}
@@ -0,0 +1,193 @@
+package com.personal_projects.common.Backpressure;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Drives a breaker over a mock container of three partitions, recording which are paused.
+ */
+class ListenerCircuitBreakerTest {
+
+    private static final long FAST = Duration.ofMillis(1).toNanos();
+    private static final long SLOW = Duration.ofMillis(500).toNanos();
+    private static final Duration OPEN = Duration.ofMillis(100);
+
+    private static final TopicPartition P0 = new TopicPartition("order-topic", 0);
+    private static final TopicPartition P1 = new TopicPartition("order-topic", 1);
+    private static final TopicPartition P2 = new TopicPartition("order-topic", 2);
+
+    private final Set<TopicPartition> paused = new HashSet<>();
+    private final List<String> transitions = new ArrayList<>();
+    private ListenerCircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        MessageListenerContainer container = mock(MessageListenerContainer.class);
+        when(container.getAssignedPartitions()).thenReturn(List.of(P2, P0, P1));
+        when(container.isPartitionPauseRequested(any())).thenAnswer(call -> paused.contains(call.getArgument(0)));
+        doAnswer(call -> paused.add(call.getArgument(0))).when(container).pausePartition(any());
+        doAnswer(call -> paused.remove(call.getArgument(0))).when(container).resumePartition(any());
+        BackpressureThresholds thresholds = new BackpressureThresholds(10, 4, 0.5, 0.5, Duration.ofMillis(500), 1.5,
+                OPEN, Duration.ofSeconds(10), 2);
+        breaker = new ListenerCircuitBreaker("payment-order-listener", container, thresholds,
+                (listenerId, state, reason) -> transitions.add(state + " on " + reason));
+    }
+
+    @Test
+    void waitsForTheMinimumRecordsBeforeOpening() {
+        for (int i = 0; i < 3; i++) {
+            breaker.record(FAST, true);
+        }
+        assertEquals(ListenerCircuitBreaker.State.CLOSED, breaker.state());
+        assertEquals(Set.of(), paused);
+
+        breaker.record(FAST, false);
+
+        assertEquals(ListenerCircuitBreaker.State.OPEN, breaker.state());
+        assertEquals(Set.of(P0, P1, P2), paused);
+        assertEquals(3, breaker.pausedPartitions());
+        assertEquals(List.of("OPEN on failures"), transitions);
+    }
+
+    @Test
+    void opensOnSlowRecords() {
+        for (int i = 0; i < 4; i++) {
+            breaker.record(i % 2 == 0 ? SLOW : FAST, false);
+        }
+
+        assertEquals(ListenerCircuitBreaker.State.OPEN, breaker.state());
+        assertEquals(List.of("OPEN on latency"), transitions);
+    }
+
+    @Test
+    void forgetsTheFailuresThatLeftTheWindow() {
+        for (int i = 0; i < 4; i++) {
+            breaker.record(FAST, i == 0);
+        }
+        for (int i = 0; i < 20; i++) {
+            breaker.record(FAST, false);
+        }
+        // Four failures among the last ten records, then a fifth reaching the rate
+        for (int i = 0; i < 4; i++) {
+            breaker.record(FAST, true);
+        }
+        assertEquals(ListenerCircuitBreaker.State.CLOSED, breaker.state());
+
+        breaker.record(FAST, true);
+
+        assertEquals(ListenerCircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    void opensOnASaturatedPoolWithoutRecords() {
+        breaker.tick(1.2);
+        assertEquals(ListenerCircuitBreaker.State.CLOSED, breaker.state());
+
+        breaker.tick(1.5);
+
+        assertEquals(ListenerCircuitBreaker.State.OPEN, breaker.state());
+        assertEquals(List.of("OPEN on pool"), transitions);
+    }
+
+    @Test
+    void staysOpenWhileThePoolIsSaturated() throws InterruptedException {
+        breaker.tick(2);
+        Thread.sleep(OPEN.toMillis() * 2);
+
+        breaker.tick(2);
+        assertEquals(ListenerCircuitBreaker.State.OPEN, breaker.state());
+
+        breaker.tick(0);
+        assertEquals(ListenerCircuitBreaker.State.HALF_OPEN, breaker.state());
+    }
+
+    @Test
+    void resumesOnePartitionPerProbeThenCloses() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN.toMillis() * 2);
+
+        breaker.tick(0);
+        assertEquals(ListenerCircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertEquals(Set.of(P1, P2), paused, "the partitions are resumed in order");
+
+        breaker.record(FAST, false);
+        assertEquals(Set.of(P1, P2), paused);
+        breaker.record(FAST, false);
+        assertEquals(Set.of(P2), paused);
+
+        breaker.record(FAST, false);
+        breaker.record(FAST, false);
+
+        assertEquals(ListenerCircuitBreaker.State.CLOSED, breaker.state());
+        assertEquals(Set.of(), paused);
+        assertEquals(0, breaker.pausedPartitions());
+        assertEquals(List.of("OPEN on failures", "HALF_OPEN on probe", "CLOSED on probe"), transitions);
+        assertTrue(breaker.pausedSeconds() >= OPEN.toMillis() * 2 / 1e3);
+    }
+
+    @Test
+    void reopensForTwiceAsLongOnAFailedProbe() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN.toMillis() * 2);
+        breaker.tick(0);
+
+        breaker.record(SLOW, false);
+
+        assertEquals(ListenerCircuitBreaker.State.OPEN, breaker.state());
+        assertEquals(Set.of(P0, P1, P2), paused);
+        Thread.sleep(OPEN.toMillis() + OPEN.toMillis() / 2);
+        breaker.tick(0);
+        assertEquals(ListenerCircuitBreaker.State.OPEN, breaker.state(), "open for twice the open duration");
+        Thread.sleep(OPEN.toMillis());
+        breaker.tick(0);
+        assertEquals(ListenerCircuitBreaker.State.HALF_OPEN, breaker.state());
+    }
+
+    @Test
+    void resumesTheNextPartitionWhenNoRecordCameIn() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN.toMillis() * 2);
+        breaker.tick(0);
+        assertEquals(Set.of(P1, P2), paused);
+
+        Thread.sleep(OPEN.toMillis() * 2);
+        breaker.tick(0);
+
+        assertEquals(Set.of(P2), paused);
+        assertEquals(ListenerCircuitBreaker.State.HALF_OPEN, breaker.state());
+    }
+
+    @Test
+    void ignoresTheRecordsFetchedBeforeThePause() {
+        open();
+
+        for (int i = 0; i < 20; i++) {
+            breaker.record(FAST, false);
+        }
+
+        assertEquals(ListenerCircuitBreaker.State.OPEN, breaker.state());
+        assertEquals(Set.of(P0, P1, P2), paused);
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            breaker.record(FAST, true);
+        }
+        assertEquals(ListenerCircuitBreaker.State.OPEN, breaker.state());
+    }
+}
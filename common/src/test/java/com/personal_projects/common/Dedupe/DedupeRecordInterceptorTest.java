@@ -0,0 +1,87 @@
+package com.personal_projects.common.Dedupe;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Delivers the records of an event through the {@link DedupeRecordInterceptor}, as the listener containers do.
+ */
+class DedupeRecordInterceptorTest {
+
+    @TempDir
+    Path directory;
+
+    private DedupeWindow window;
+    private DedupeRecordInterceptor<String, String> interceptor;
+
+    @BeforeEach
+    void open() {
+        window = new DedupeWindow(directory, "service", 1024);
+        interceptor = new DedupeRecordInterceptor<>(window);
+    }
+
+    @AfterEach
+    void close() {
+        window.close();
+    }
+
+    @Test
+    void dropsTheRedeliveryOfAProcessedEvent() {
+        RecordHeaders headers = new RecordHeaders();
+        EventIds.stamp(headers);
+
+        assertNotNull(deliver("order-topic", headers, true));
+        assertNull(deliver("order-topic", headers, true));
+    }
+
+    @Test
+    void redeliversAnEventTheListenerFailedOn() {
+        RecordHeaders headers = new RecordHeaders();
+        EventIds.stamp(headers);
+
+        assertNotNull(deliver("order-topic", headers, false));
+        assertNotNull(deliver("order-topic-payment-retry-0", headers, true));
+        assertNull(deliver("order-topic", headers, true));
+    }
+
+    @Test
+    void deliversTheReplayOfADeadLetteredEvent() {
+        RecordHeaders headers = new RecordHeaders();
+        EventIds.stamp(headers);
+        deliver("order-topic", headers, false);
+        deliver("order-topic-payment-retry-0", headers, false);
+
+        // Logged by the dead-letter handler, then replayed to the first retry topic with the same event ID
+        assertNotNull(deliver("order-topic-payment-dlt", headers, true));
+        assertNotNull(deliver("order-topic-payment-retry-0", headers, true));
+        assertNull(deliver("order-topic-payment-retry-0", headers, true), "replayed once");
+    }
+
+    @Test
+    void alwaysProcessesRecordsWithoutAnEventId() {
+        assertNotNull(deliver("order-topic", new RecordHeaders(), true));
+        assertNotNull(deliver("order-topic", new RecordHeaders(), true));
+    }
+
+    /**
+     * @return the record the listener gets, or {@code null} if it was dropped
+     */
+    private ConsumerRecord<String, String> deliver(String topic, RecordHeaders headers, boolean processed) {
+        ConsumerRecord<String, String> record = new ConsumerRecord<>(topic, 0, 0, "key", "value");
+        headers.forEach(header -> record.headers().add(header));
+        ConsumerRecord<String, String> intercepted = interceptor.intercept(record, null);
+        if (intercepted != null && processed) {
+            interceptor.success(intercepted, null);
+        }
+        return intercepted;
+    }
+}
@@ -0,0 +1,133 @@
+package com.personal_projects.common.Dedupe;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The lookup table, eviction and persistence of the {@link DedupeWindow}. Fingerprints are picked by hand so they
+ * collide in the table: a window of 4 has a table of 8 slots, and a fingerprint's home slot is its lowest 3 bits.
+ */
+class DedupeWindowTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void remembersTheAddedEventsAndCountsTheLookups() {
+        try (DedupeWindow window = new DedupeWindow(directory, "service", 4)) {
+            window.add(42);
+
+            assertTrue(window.contains(42));
+            assertFalse(window.contains(43));
+            assertEquals(1, window.hits());
+            assertEquals(1, window.misses());
+            assertEquals(1, window.size());
+        }
+    }
+
+    @Test
+    void evictsTheOldestEventOnceFull() {
+        try (DedupeWindow window = new DedupeWindow(directory, "service", 4)) {
+            for (long fingerprint = 1; fingerprint <= 5; fingerprint++) {
+                window.add(fingerprint);
+            }
+
+            assertFalse(window.contains(1));
+            for (long fingerprint = 2; fingerprint <= 5; fingerprint++) {
+                assertTrue(window.contains(fingerprint), Long.toString(fingerprint));
+            }
+            assertEquals(4, window.size());
+        }
+    }
+
+    @Test
+    void shiftsBackTheCollidingEventsOfAnEvictedOne() {
+        try (DedupeWindow window = new DedupeWindow(directory, "service", 4)) {
+            // Slots 0 to 3: 8 and 16 share home slot 0, 1 and 2 are at home
+            window.add(8);
+            window.add(1);
+            window.add(16);
+            window.add(2);
+
+            // Evicts 8: 16 moves back to slot 0 and 2 to slot 2, 1 stays at home in slot 1
+            window.add(3);
+
+            assertFalse(window.contains(8));
+            for (long fingerprint : new long[] {1, 16, 2, 3}) {
+                assertTrue(window.contains(fingerprint), Long.toString(fingerprint));
+            }
+        }
+    }
+
+    @Test
+    void agreesWithAReferenceWindowUnderHeavyCollisions() {
+        Random random = new Random(7);
+        Deque<Long> reference = new ArrayDeque<>();
+        try (DedupeWindow window = new DedupeWindow(directory, "service", 64)) {
+            for (int i = 0; i < 20_000; i++) {
+                // Few distinct home slots, so the probe sequences run long and overlap
+                long fingerprint = 1 + random.nextInt(8) + 128L * random.nextInt(64);
+                assertEquals(reference.contains(fingerprint), window.contains(fingerprint), "lookup " + i);
+                if (!reference.contains(fingerprint)) {
+                    window.add(fingerprint);
+                    reference.addLast(fingerprint);
+                    if (reference.size() > 64) {
+                        reference.removeFirst();
+                    }
+                }
+            }
+            assertEquals(reference.size(), window.size());
+        }
+    }
+
+    @Test
+    void reloadsTheEventsOfTheRingOnRestart() {
+        try (DedupeWindow window = new DedupeWindow(directory, "service", 4)) {
+            for (long fingerprint = 1; fingerprint <= 6; fingerprint++) {
+                window.add(fingerprint);
+            }
+        }
+
+        try (DedupeWindow window = new DedupeWindow(directory, "service", 4)) {
+            assertEquals(4, window.size());
+            assertFalse(window.contains(2));
+            assertTrue(window.contains(3));
+
+            // Carries on evicting in insertion order
+            window.add(7);
+            assertFalse(window.contains(3));
+            assertTrue(window.contains(4));
+            assertTrue(window.contains(7));
+        }
+    }
+
+    @Test
+    void startsEmptyWhenTheWindowSizeChanged() {
+        try (DedupeWindow window = new DedupeWindow(directory, "service", 4)) {
+            window.add(1);
+        }
+
+        try (DedupeWindow window = new DedupeWindow(directory, "service", 8)) {
+            assertEquals(0, window.size());
+            assertFalse(window.contains(1));
+        }
+    }
+
+    @Test
+    void rejectsAWindowOutOfRange() {
+        for (int size : new int[]{0, -1, DedupeWindow.MAX_WINDOW + 1, 1 << 28, Integer.MAX_VALUE}) {
+            assertThrows(IllegalArgumentException.class, () -> new DedupeWindow(directory, "service", size),
+                    Integer.toString(size));
+        }
+    }
+}
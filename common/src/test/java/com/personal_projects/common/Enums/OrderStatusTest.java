@@ -0,0 +1,35 @@
+package com.personal_projects.common.Enums;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * The status transitions allowed by {@link OrderStatus#predecessors()}.
+ */
+class OrderStatusTest {
+
+    @Test
+    void movesAnOrderForwardOnly() {
+        assertEquals(Set.of(), OrderStatus.CREATED.predecessors());
+        assertEquals(Set.of(OrderStatus.CREATED), OrderStatus.PAID.predecessors());
+        assertEquals(Set.of(OrderStatus.CREATED), OrderStatus.FAILED.predecessors());
+        assertFalse(OrderStatus.PAID.predecessors().contains(OrderStatus.SHIPPED),
+                "a redelivered payment event does not undo the shipment");
+    }
+
+    @Test
+    void shipsAnOrderWhoseShipmentIsConsumedBeforeItsPayment() {
+        assertEquals(Set.of(OrderStatus.CREATED, OrderStatus.PAID), OrderStatus.SHIPPED.predecessors());
+    }
+
+    @Test
+    void neverUpdatesAnOrderToItsCurrentStatus() {
+        for (OrderStatus status : OrderStatus.values()) {
+            assertFalse(status.predecessors().contains(status), status.name());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.personal_projects.common.Flight;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Streams mapping events into a {@link FlightEventSummarizer} and reads back their per second aggregates.
+ */
+class FlightEventSummarizerTest {
+
+    private static final int WINDOW_SECONDS = 30;
+
+    private final FlightEventSummarizer summarizer =
+            new FlightEventSummarizer(FlightRecorderConfiguration.settings(), WINDOW_SECONDS);
+
+    @AfterEach
+    void close() {
+        summarizer.close();
+    }
+
+    @Test
+    void aggregatesTheEventsPerKey() throws InterruptedException {
+        MappingEvent slow = MappingEvent.start();
+        TimeUnit.MILLISECONDS.sleep(50);
+        slow.complete("OrderMapper.toOrder", 1);
+        MappingEvent.start().complete("OrderMapper.toOrder", 2);
+        MappingEvent.start().complete("OrderMapper.toOrder", 3);
+        MappingEvent.start().complete("PaymentMapper.toPayment", 4);
+
+        Map<String, EventStats> mappings = awaitMappings(4);
+
+        EventStats order = mappings.get("OrderMapper.toOrder");
+        assertEquals(3, order.count());
+        assertTrue(order.maxMillis() >= 50, "the slow mapping is the max: " + order);
+        assertTrue(order.totalMillis() >= order.maxMillis(), order.toString());
+        assertEquals(order.totalMillis() / 3, order.meanMillis(), 1e-9);
+        assertEquals(1, mappings.get("PaymentMapper.toPayment").count());
+    }
+
+    @Test
+    void summarizesOnlyTheSecondsAskedFor() throws InterruptedException {
+        MappingEvent.start().complete("OrderMapper.toOrder", 1);
+        MappingEvent.start().complete("OrderMapper.toOrder", 2);
+        long emitted = Instant.now().getEpochSecond();
+        awaitMappings(2);
+
+        // Every event ended in a second that is now over
+        while (Instant.now().getEpochSecond() <= emitted) {
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+
+        assertFalse(summarizer.summarize(1).containsKey(MappingEvent.NAME),
+                "the current second has no mapping yet");
+        assertEquals(2, summarizer.summarize(WINDOW_SECONDS).get(MappingEvent.NAME).get("OrderMapper.toOrder").count());
+    }
+
+    private Map<String, EventStats> awaitMappings(long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            Map<String, EventStats> mappings = summarizer.summarize(WINDOW_SECONDS).get(MappingEvent.NAME);
+            if (mappings != null && mappings.values().stream().mapToLong(EventStats::count).sum() >= count) {
+                return mappings;
+            }
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        fail("the summarizer did not stream " + count + " mappings");
+        return null;
+    }
+}
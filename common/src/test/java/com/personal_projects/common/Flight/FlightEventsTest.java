@@ -0,0 +1,84 @@
+package com.personal_projects.common.Flight;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Records the Delivery System events with the {@code jfr/delivery-system.jfc} profile, and emits them without it.
+ */
+class FlightEventsTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsTheEventsWithTheirFieldsUnderTheProfile() throws IOException {
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording(FlightRecorderConfiguration.settings())) {
+            recording.start();
+            KafkaRecordEvent.start().complete("order-listener", new ConsumerRecord<>("order-topic", 2, 17L, "42", "{}"),
+                    42, "CREATED");
+            MappingEvent.start().complete("PaymentMapper.toPayment", 43);
+            ServiceCallEvent.start().complete("OrderService.createOrder", 44);
+            recording.stop();
+            Path file = directory.resolve("delivery.jfr");
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        }
+
+        RecordedEvent kafkaRecord = only(events, KafkaRecordEvent.NAME);
+        assertEquals("order-listener", kafkaRecord.getString("listener"));
+        assertEquals("order-topic", kafkaRecord.getString("topic"));
+        assertEquals(2, kafkaRecord.getInt("partition"));
+        assertEquals(17, kafkaRecord.getLong("offset"));
+        assertEquals(42, kafkaRecord.getLong("orderId"));
+        assertEquals("CREATED", kafkaRecord.getString("stage"));
+        assertFalse(kafkaRecord.getDuration().isNegative());
+
+        RecordedEvent mapping = only(events, MappingEvent.NAME);
+        assertEquals("PaymentMapper.toPayment", mapping.getString("mapping"));
+        assertEquals(43, mapping.getLong("orderId"));
+
+        RecordedEvent serviceCall = only(events, ServiceCallEvent.NAME);
+        assertEquals("OrderService.createOrder", serviceCall.getString("operation"));
+        assertEquals(44, serviceCall.getLong("orderId"));
+    }
+
+    @Test
+    void leavesTheFieldsUnsetWhileTheEventsAreDisabled() {
+        KafkaRecordEvent kafkaRecord = KafkaRecordEvent.start();
+        kafkaRecord.complete("order-listener", new ConsumerRecord<>("order-topic", 2, 17L, "42", "{}"), 42, "CREATED");
+        MappingEvent mapping = MappingEvent.start();
+        mapping.complete("PaymentMapper.toPayment", 43);
+        ServiceCallEvent serviceCall = ServiceCallEvent.start();
+        serviceCall.complete("OrderService.createOrder", 44);
+
+        assertNull(kafkaRecord.listener);
+        assertNull(kafkaRecord.topic);
+        assertEquals(0, kafkaRecord.offset);
+        assertEquals(0, kafkaRecord.orderId);
+        assertNull(mapping.mapping);
+        assertEquals(0, mapping.orderId);
+        assertNull(serviceCall.operation);
+        assertEquals(0, serviceCall.orderId);
+    }
+
+    private static RecordedEvent only(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> named = events.stream().filter(event -> event.getEventType().getName().equals(name))
+                .toList();
+        assertEquals(1, named.size(), name);
+        return named.get(0);
+    }
+}
@@ -0,0 +1,168 @@
+package com.personal_projects.common.Journal;
+
+import com.personal_projects.common.Events.OrderEvent;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Appends to an {@link EventJournal} and reads the segments back with {@link JournalReader}s.
+ */
+class EventJournalTest {
+
+    private static final String NAME = "order-service";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackTheEntriesInOrderAcrossSegments() throws IOException {
+        int appended = 2_000;
+        EventJournal journal = new EventJournal(directory, NAME, 4096, 1_000);
+        for (int i = 0; i < appended; i++) {
+            journal.consumed(record(0, i));
+        }
+        journal.close();
+
+        List<JournalEntry> entries = readAll();
+        assertTrue(EventJournal.segments(directory, NAME).size() > 10);
+        assertEquals(appended, entries.size() + journal.dropped());
+        for (int i = 0; i < entries.size(); i++) {
+            JournalEntry entry = entries.get(i);
+            assertTrue(i == 0 || entry.offset() > entries.get(i - 1).offset());
+            assertEquals(EventJournal.CONSUMED, entry.direction());
+            assertEquals("order-topic", entry.topic());
+            assertEquals(entry.offset(), entry.orderId());
+            assertEquals(event(entry.offset()), entry.payload());
+        }
+    }
+
+    @Test
+    void keepsEveryWriterInOrderUnderConcurrentAppends() throws Exception {
+        int writers = 4;
+        int appendsPerWriter = 5_000;
+        EventJournal journal = new EventJournal(directory, NAME, 64 * 1024, 1_000);
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        List<Future<?>> done = new ArrayList<>();
+        for (int writer = 0; writer < writers; writer++) {
+            int partition = writer;
+            done.add(executor.submit(() -> {
+                for (int i = 0; i < appendsPerWriter; i++) {
+                    journal.consumed(record(partition, i));
+                }
+            }));
+        }
+        for (Future<?> writer : done) {
+            writer.get();
+        }
+        executor.shutdown();
+        journal.close();
+
+        List<JournalEntry> entries = readAll();
+        assertEquals(writers * appendsPerWriter, entries.size() + journal.dropped());
+        long[] last = {-1, -1, -1, -1};
+        for (JournalEntry entry : entries) {
+            assertTrue(entry.offset() > last[entry.partition()], "entries of a writer stay in order");
+            assertEquals(event(entry.offset()), entry.payload());
+            last[entry.partition()] = entry.offset();
+        }
+    }
+
+    @Test
+    void skipsAnEntryWhoseWriterFailedToEncodeIt() throws IOException {
+        EventJournal journal = new EventJournal(directory, NAME, 4096, 4);
+        AtomicInteger reads = new AtomicInteger();
+        OrderEvent failing = new OrderEvent(2, "customer-2", "address-2", 2) {
+            @Override
+            public String getCustomerAddress() {
+                // The length is computed from the first read, the encoding fails on the second
+                if (reads.incrementAndGet() > 1) {
+                    throw new IllegalStateException("Lazy field could not be loaded");
+                }
+                return super.getCustomerAddress();
+            }
+        };
+
+        journal.consumed(record(0, 1));
+        journal.consumed(new ConsumerRecord<>("order-topic", 0, 2, "2", failing));
+        journal.consumed(record(0, 3));
+        journal.close();
+
+        assertEquals(List.of(1L, 3L), readAll().stream().map(JournalEntry::offset).toList());
+        assertEquals(1, journal.dropped());
+    }
+
+    @Test
+    void waitsForAReservedEntryThenSkipsItOnceAbandoned() throws Exception {
+        EventJournal journal = new EventJournal(directory, NAME, 4096, 4);
+        journal.consumed(record(0, 1));
+        journal.consumed(record(0, 2));
+        journal.close();
+        Path segment = EventJournal.segments(directory, NAME).get(0);
+        // As if the writer of the first entry stopped after reserving it
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            buffer.putInt(0, -buffer.getInt(0));
+            buffer.force();
+        }
+
+        JournalReader live = new JournalReader(segment);
+        assertNull(live.next(), "a live reader waits for the writer");
+        assertFalse(live.ended());
+
+        JournalReader patient = new JournalReader(segment, Duration.ofMillis(50));
+        assertNull(patient.next());
+        Thread.sleep(100);
+        assertEquals(2, patient.next().offset());
+
+        assertEquals(2, new JournalReader(segment, Duration.ZERO).next().offset());
+    }
+
+    @Test
+    void removesTheSegmentMappedAheadWhenClosed() throws IOException {
+        EventJournal journal = new EventJournal(directory, NAME, 4096, 4);
+        journal.consumed(record(0, 1));
+        journal.close();
+
+        List<Path> segments = EventJournal.segments(directory, NAME);
+        assertEquals(1, segments.size());
+        assertTrue(JournalReader.started(segments.get(0)));
+    }
+
+    private List<JournalEntry> readAll() throws IOException {
+        List<JournalEntry> entries = new ArrayList<>();
+        for (Path segment : EventJournal.segments(directory, NAME)) {
+            JournalReader reader = new JournalReader(segment, Duration.ZERO);
+            for (JournalEntry entry = reader.next(); entry != null; entry = reader.next()) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    private static ConsumerRecord<String, OrderEvent> record(int partition, long offset) {
+        return new ConsumerRecord<>("order-topic", partition, offset, Long.toString(offset), event(offset));
+    }
+
+    private static OrderEvent event(long orderId) {
+        return new OrderEvent(orderId, "customer-" + orderId, "address-" + orderId, orderId * 1.5);
+    }
+}
@@ -0,0 +1,68 @@
+package com.personal_projects.common.Lifecycle;
+
+import com.personal_projects.common.Dedupe.EventIds;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Stamps the lifecycle headers on produced records and reads them back as a consumer does.
+ */
+class LifecycleHeadersTest {
+
+    private static final long ORIGIN = 1_700_000_000_123L;
+    private static final long HOP = 1_700_000_004_567L;
+
+    @Test
+    void stampsTheTimestampsAndAnEventIdOnARecordKeyedByOrder() {
+        ProducerRecord<String, String> record = LifecycleHeaders.record("payment-topic", 42, "{}", ORIGIN, HOP);
+
+        assertEquals("payment-topic", record.topic());
+        assertEquals("42", record.key());
+        assertEquals("{}", record.value());
+        assertEquals(Long.BYTES, record.headers().lastHeader(LifecycleHeaders.ORIGIN_TS).value().length);
+        assertEquals(ORIGIN, LifecycleHeaders.originMillis(record.headers()));
+        assertEquals(HOP, LifecycleHeaders.hopMillis(record.headers()));
+        assertNotNull(record.headers().lastHeader(EventIds.EVENT_ID));
+    }
+
+    @Test
+    void leavesUnknownTimestampsUnstamped() {
+        ProducerRecord<String, String> record =
+                LifecycleHeaders.record("payment-topic", 42, "{}", LifecycleHeaders.UNKNOWN, HOP);
+
+        assertNull(record.headers().lastHeader(LifecycleHeaders.ORIGIN_TS));
+        assertEquals(LifecycleHeaders.UNKNOWN, LifecycleHeaders.originMillis(record.headers()));
+        assertEquals(HOP, LifecycleHeaders.hopMillis(record.headers()));
+    }
+
+    @Test
+    void readsMissingOrMalformedHeadersAsUnknown() {
+        assertEquals(LifecycleHeaders.UNKNOWN, LifecycleHeaders.originMillis(new RecordHeaders()));
+        assertEquals(LifecycleHeaders.UNKNOWN, LifecycleHeaders.hopMillis(new RecordHeaders()));
+
+        RecordHeaders malformed = new RecordHeaders();
+        malformed.add(new RecordHeader(LifecycleHeaders.ORIGIN_TS, new byte[]{1, 2, 3}));
+        malformed.add(new RecordHeader(LifecycleHeaders.HOP_TS, (byte[]) null));
+
+        assertEquals(LifecycleHeaders.UNKNOWN, LifecycleHeaders.originMillis(malformed));
+        assertEquals(LifecycleHeaders.UNKNOWN, LifecycleHeaders.hopMillis(malformed));
+    }
+
+    @Test
+    void convertsLocalTimestampsToEpochMillis() {
+        LocalDateTime time = LocalDateTime.of(2024, 3, 1, 12, 30, 15, 250_000_000);
+
+        long millis = LifecycleHeaders.epochMillis(time);
+
+        assertEquals(250, millis % 1000);
+        assertEquals(LifecycleHeaders.UNKNOWN, LifecycleHeaders.epochMillis(null));
+    }
+}
@@ -0,0 +1,91 @@
+package com.personal_projects.common.Lifecycle;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Consumes records stamped by {@link LifecycleHeaders} and reads the latencies back from the timers.
+ */
+class LifecycleLatencyRecorderTest {
+
+    private static final String TOPIC = "payment-topic";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LifecycleLatencyRecorder recorder = new LifecycleLatencyRecorder(meterRegistry);
+
+    @Test
+    void recordsTheTimeSinceEachStamp() {
+        long before = System.currentTimeMillis();
+        Headers headers = LifecycleHeaders.record(TOPIC, 42, "{}", before - 5_000, before - 2_000).headers();
+
+        recorder.record(record(before - 500, headers), "PAID");
+        long slack = System.currentTimeMillis() - before;
+
+        assertLatency(500, slack, meterRegistry.get("order.lifecycle.queue.time").tag("topic", TOPIC).timer());
+        assertLatency(2_000, slack, meterRegistry.get("order.lifecycle.hop.latency")
+                .tags("topic", TOPIC, "stage", "PAID").timer());
+        assertLatency(5_000, slack, meterRegistry.get("order.lifecycle.end.to.end").tag("stage", "PAID").timer());
+    }
+
+    @Test
+    void recordsOnlyTheQueueTimeWithoutLifecycleHeaders() {
+        recorder.record(record(System.currentTimeMillis(), new RecordHeaders()), "PAID");
+
+        assertEquals(1, meterRegistry.get("order.lifecycle.queue.time").timer().count());
+        assertNull(meterRegistry.find("order.lifecycle.hop.latency").timer());
+        assertNull(meterRegistry.find("order.lifecycle.end.to.end").timer());
+    }
+
+    @Test
+    void skipsTheLatenciesWhoseHeaderIsUnknown() {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(new RecordHeader(LifecycleHeaders.ORIGIN_TS, new byte[Long.BYTES]));
+        Headers hopOnly = LifecycleHeaders.record(TOPIC, 42, "{}", LifecycleHeaders.UNKNOWN,
+                System.currentTimeMillis()).headers();
+
+        recorder.record(record(System.currentTimeMillis(), headers), "PAID");
+        recorder.record(record(System.currentTimeMillis(), hopOnly), "SHIPPED");
+
+        assertNull(meterRegistry.find("order.lifecycle.hop.latency").tag("stage", "PAID").timer(),
+                "an origin stamped as UNKNOWN is no origin");
+        assertNull(meterRegistry.find("order.lifecycle.end.to.end").tag("stage", "PAID").timer());
+        assertEquals(1, meterRegistry.get("order.lifecycle.hop.latency").tag("stage", "SHIPPED").timer().count());
+        assertEquals(0, meterRegistry.get("order.lifecycle.end.to.end").tag("stage", "SHIPPED").timer().count());
+    }
+
+    @Test
+    void recordsTimestampsAheadOfTheClockAsZero() {
+        long ahead = System.currentTimeMillis() + 60_000;
+
+        recorder.record(record(ahead, LifecycleHeaders.record(TOPIC, 42, "{}", ahead, ahead).headers()), "PAID");
+
+        assertEquals(0, meterRegistry.get("order.lifecycle.queue.time").timer().totalTime(TimeUnit.MILLISECONDS));
+        assertEquals(0, meterRegistry.get("order.lifecycle.hop.latency").timer().totalTime(TimeUnit.MILLISECONDS));
+        assertEquals(0, meterRegistry.get("order.lifecycle.end.to.end").timer().totalTime(TimeUnit.MILLISECONDS));
+    }
+
+    private static void assertLatency(long expectedMillis, long slackMillis, Timer timer) {
+        assertEquals(1, timer.count());
+        double recorded = timer.totalTime(TimeUnit.MILLISECONDS);
+        assertTrue(recorded >= expectedMillis && recorded <= expectedMillis + slackMillis,
+                "recorded " + recorded + " ms, expected " + expectedMillis + " ms");
+    }
+
+    private static ConsumerRecord<String, String> record(long timestamp, Headers headers) {
+        return new ConsumerRecord<>(TOPIC, 0, 7L, timestamp, TimestampType.CREATE_TIME, 2, 2, "42", "{}", headers,
+                Optional.empty());
+    }
+}
@@ -0,0 +1,185 @@
+package com.personal_projects.common.Membership;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Restarts one of two instances of a listener, joined to their group by {@link GroupMembership}, while records keep
+ * coming into every partition.
+ */
+@EmbeddedKafka(partitions = RollingRestartTest.PARTITIONS, topics = RollingRestartTest.TOPIC)
+class RollingRestartTest {
+
+    static final String TOPIC = "rolling-restart-topic";
+    static final int PARTITIONS = 4;
+
+    private static final String GROUP = "rolling-restart-group";
+    private static final String LISTENER = "rolling-restart-listener";
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+
+    private final List<Instance> instances = new ArrayList<>();
+    private ScheduledExecutorService producer;
+
+    @AfterEach
+    void tearDown() {
+        if (producer != null) {
+            producer.shutdownNow();
+        }
+        instances.forEach(Instance::stop);
+    }
+
+    @Test
+    void unaffectedPartitionsKeepFlowingDuringRollingRestart(EmbeddedKafkaBroker broker) throws InterruptedException {
+        produceToEveryPartition(broker);
+        Instance a = start("instance-a", broker);
+        awaitUntil(() -> a.assigned().size() == PARTITIONS, "instance-a owns every partition");
+        Instance b = start("instance-b", broker);
+        awaitUntil(() -> a.assigned().size() == PARTITIONS / 2 && b.assigned().size() == PARTITIONS / 2,
+                "the partitions are split between the instances");
+        Set<TopicPartition> ownedByA = a.assigned();
+        Set<TopicPartition> ownedByB = b.assigned();
+        awaitFlowing(a, ownedByA);
+        awaitFlowing(b, ownedByB);
+        assertTrue(a.meterRegistry.get("kafka.listener.rebalance.duration").tag("listener", LISTENER).timer()
+                .count() >= 1, "the rebalance moving partitions of instance-a to instance-b was timed");
+        a.revoked.set(0);
+
+        // Rolling restart of instance-b: it stops gracefully, and comes back with the same instance ID
+        b.stop();
+        awaitFlowing(a, ownedByA);
+        assertEquals(ownedByA, a.assigned(), "instance-a neither lost nor took over partitions");
+        Instance restarted = start("instance-b", broker);
+        awaitFlowing(restarted, ownedByB);
+
+        assertEquals(ownedByB, restarted.assigned(), "instance-b got its partitions back");
+        assertEquals(ownedByA, a.assigned());
+        assertEquals(0, a.revoked.get(), "no partition of instance-a was revoked during the restart");
+    }
+
+    private void produceToEveryPartition(EmbeddedKafkaBroker broker) {
+        KafkaTemplate<String, String> template = new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(
+                KafkaTestUtils.producerProps(broker), new StringSerializer(), new StringSerializer()));
+        producer = Executors.newSingleThreadScheduledExecutor();
+        producer.scheduleAtFixedRate(() -> {
+            for (int partition = 0; partition < PARTITIONS; partition++) {
+                template.send(TOPIC, partition, "order-" + partition, "event");
+            }
+        }, 0, 20, TimeUnit.MILLISECONDS);
+    }
+
+    private Instance start(String instanceId, EmbeddedKafkaBroker broker) {
+        Instance instance = new Instance(instanceId, broker);
+        instances.add(instance);
+        instance.container.start();
+        return instance;
+    }
+
+    /**
+     * Waits until the instance received new records from every one of the partitions.
+     */
+    private static void awaitFlowing(Instance instance, Set<TopicPartition> partitions) throws InterruptedException {
+        Map<TopicPartition, Long> before = new HashMap<>();
+        partitions.forEach(partition -> before.put(partition, instance.received(partition)));
+        awaitUntil(() -> partitions.stream()
+                        .allMatch(partition -> instance.received(partition) > before.get(partition)),
+                instance.instanceId + " consumes " + partitions);
+    }
+
+    private static void awaitUntil(BooleanSupplier condition, String description) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Timed out waiting until " + description);
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    /**
+     * One instance of the service, consuming the topic with a single-consumer container.
+     */
+    private static final class Instance {
+
+        private final String instanceId;
+        private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        private final Map<TopicPartition, AtomicLong> received = new ConcurrentHashMap<>();
+        private final AtomicInteger revoked = new AtomicInteger();
+        private final ConcurrentMessageListenerContainer<String, String> container;
+
+        private Instance(String instanceId, EmbeddedKafkaBroker broker) {
+            this.instanceId = instanceId;
+            ContainerProperties properties = new ContainerProperties(TOPIC);
+            properties.setMessageListener((MessageListener<String, String>) record -> received
+                    .computeIfAbsent(new TopicPartition(record.topic(), record.partition()), p -> new AtomicLong())
+                    .incrementAndGet());
+            properties.setConsumerRebalanceListener(new ConsumerRebalanceListener() {
+
+                @Override
+                public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                    revoked.addAndGet(partitions.size());
+                }
+
+                @Override
+                public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                }
+            });
+            ConsumerFactory<String, String> consumerFactory = new DefaultKafkaConsumerFactory<>(
+                    KafkaTestUtils.consumerProps(GROUP, "false", broker), new StringDeserializer(),
+                    new StringDeserializer());
+            this.container = new ConcurrentMessageListenerContainer<>(consumerFactory, properties);
+            container.setBeanName(LISTENER);
+            new GroupMembership(instanceId, Duration.ofSeconds(30), Duration.ofSeconds(10), meterRegistry)
+                    .join(container, consumerFactory);
+        }
+
+        private Set<TopicPartition> assigned() {
+            Collection<TopicPartition> assigned = container.getAssignedPartitions();
+            return assigned == null ? Set.of() : Set.copyOf(assigned);
+        }
+
+        private long received(TopicPartition partition) {
+            AtomicLong count = received.get(partition);
+            return count == null ? 0 : count.get();
+        }
+
+        private void stop() {
+            if (container.isRunning()) {
+                container.stop();
+            }
+        }
+    }
+}
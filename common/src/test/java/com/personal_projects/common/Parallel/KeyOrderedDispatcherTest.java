@@ -0,0 +1,290 @@
+package com.personal_projects.common.Parallel;
+
+import com.personal_projects.common.Dedupe.DedupeRecordInterceptor;
+import com.personal_projects.common.Dedupe.DedupeWindow;
+import com.personal_projects.common.Dedupe.EventIds;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.AcknowledgingConsumerAwareMessageListener;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.listener.RecordInterceptor;
+import org.springframework.kafka.support.SendResult;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Dispatches the records of a listener container, not started, through the dispatcher's workers, as its consumer
+ * thread would.
+ */
+class KeyOrderedDispatcherTest {
+
+    private static final String LISTENER = "payment-order-listener";
+    private static final String TOPIC = "payment-topic";
+    private static final int MAX_IN_FLIGHT = 8;
+
+    @TempDir
+    Path directory;
+
+    private final ObservationRegistry observationRegistry = ObservationRegistry.create();
+    private final RecordingKafkaTemplate template = new RecordingKafkaTemplate();
+    private final Map<Long, Long> acknowledged = new ConcurrentHashMap<>();
+    private DedupeWindow window;
+    private KeyOrderedDispatcher dispatcher;
+
+    @BeforeEach
+    void start() {
+        observationRegistry.observationConfig().observationHandler(context -> true);
+        window = new DedupeWindow(directory, "service", 1024);
+        dispatcher = new KeyOrderedDispatcher(Set.of(LISTENER), 4, MAX_IN_FLIGHT, 3, 10, 2, 50,
+                Duration.ofSeconds(5), "-order-dlt", template, observationRegistry, new SimpleMeterRegistry());
+        dispatcher.start();
+    }
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        dispatcher.destroy();
+        window.close();
+    }
+
+    @Test
+    void processesTheRecordsOfAKeyInOrderAndTheKeysConcurrently() throws InterruptedException {
+        Map<String, List<Long>> processed = new ConcurrentHashMap<>();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger mostRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(200);
+        ConcurrentMessageListenerContainer<String, String> container = container(TOPIC, record -> {
+            mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep(ThreadLocalRandom.current().nextInt(3));
+            processed.computeIfAbsent(record.key(), key -> new CopyOnWriteArrayList<>()).add(record.offset());
+            running.decrementAndGet();
+            done.countDown();
+        });
+        AcknowledgingConsumerAwareMessageListener<String, String> listener = parallel(container);
+
+        for (long offset = 0; offset < 200; offset++) {
+            deliver(listener, record(TOPIC, offset, "order-" + offset % 5, new RecordHeaders()));
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (List<Long> offsets : processed.values()) {
+            assertEquals(offsets.stream().sorted().toList(), offsets, "the records of a key run in offset order");
+        }
+        assertTrue(mostRunning.get() > 1, "records of different keys run concurrently");
+        awaitAcknowledged(199);
+    }
+
+    @Test
+    void pausesTheContainerRatherThanBlockingTheConsumer() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        ConcurrentMessageListenerContainer<String, String> container = container(TOPIC, record -> await(blocked));
+        AcknowledgingConsumerAwareMessageListener<String, String> listener = parallel(container);
+
+        for (long offset = 0; offset < MAX_IN_FLIGHT - 1; offset++) {
+            deliver(listener, record(TOPIC, offset, "order-" + offset, new RecordHeaders()));
+        }
+        assertFalse(container.isPauseRequested());
+
+        // The rest of the poll is still dispatched, without waiting
+        for (long offset = MAX_IN_FLIGHT - 1; offset < MAX_IN_FLIGHT + 4; offset++) {
+            deliver(listener, record(TOPIC, offset, "order-" + offset, new RecordHeaders()));
+        }
+        assertTrue(container.isPauseRequested());
+
+        blocked.countDown();
+        awaitAcknowledged(MAX_IN_FLIGHT + 3);
+        assertFalse(container.isPauseRequested(), "resumed once the records in flight are processed");
+    }
+
+    @Test
+    void keepsTheContainerPausedWhenStopping() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        ConcurrentMessageListenerContainer<String, String> container = container(TOPIC, record -> await(blocked));
+        AcknowledgingConsumerAwareMessageListener<String, String> listener = parallel(container);
+        for (long offset = 0; offset < MAX_IN_FLIGHT; offset++) {
+            deliver(listener, record(TOPIC, offset, "order-" + offset, new RecordHeaders()));
+        }
+
+        Thread.ofPlatform().start(() -> {
+            sleep(50);
+            blocked.countDown();
+        });
+        dispatcher.stop();
+
+        assertEquals(MAX_IN_FLIGHT - 1L, acknowledged.get(0L), "the acknowledgments precede the stop");
+        assertTrue(container.isPauseRequested());
+    }
+
+    @Test
+    void deadLettersAFailingRecordHoldingUpItsKeyOnly() throws InterruptedException {
+        List<String> processed = new CopyOnWriteArrayList<>();
+        AtomicInteger attempts = new AtomicInteger();
+        ConcurrentMessageListenerContainer<String, String> container = container(TOPIC, record -> {
+            if (record.offset() == 0) {
+                attempts.incrementAndGet();
+                throw new IllegalStateException("Database unavailable");
+            }
+            processed.add(record.key() + "@" + record.offset());
+        });
+        AcknowledgingConsumerAwareMessageListener<String, String> listener = parallel(container);
+        RecordHeaders headers = new RecordHeaders();
+        EventIds.stamp(headers);
+
+        deliver(listener, record(TOPIC, 0, "order-1", headers));
+        deliver(listener, record(TOPIC, 1, "order-2", new RecordHeaders()));
+        deliver(listener, record(TOPIC, 2, "order-1", new RecordHeaders()));
+
+        awaitAcknowledged(2);
+        assertEquals(3, attempts.get());
+        assertEquals("order-2@1", processed.get(0), "the other keys are not held up by the retries");
+        assertEquals(List.of("order-2@1", "order-1@2"), processed);
+        assertEquals(1, template.sent.size());
+        assertEquals(TOPIC + "-order-dlt", template.sent.get(0).topic());
+        assertFalse(window.contains(EventIds.fingerprint(headers)), "the replay of the record must not be dropped");
+    }
+
+    @Test
+    void leavesTheRetryAndDeadLetterContainersSerial() {
+        for (String topic : List.of(TOPIC + "-order-retry-0", TOPIC + "-order-retry", TOPIC + "-order-dlt")) {
+            MessageListener<String, String> method = record -> {
+            };
+            ConcurrentMessageListenerContainer<String, String> container = container(topic, method);
+
+            assertSame(method, container.getContainerProperties().getMessageListener(), topic);
+        }
+    }
+
+    @Test
+    void observesTheProcessingAfterTheRecordObservationEnded() throws InterruptedException {
+        CountDownLatch dispatched = new CountDownLatch(1);
+        List<Observation> current = new CopyOnWriteArrayList<>();
+        ConcurrentMessageListenerContainer<String, String> container = container(TOPIC, record -> {
+            await(dispatched);
+            current.add(observationRegistry.getCurrentObservation());
+        });
+        AcknowledgingConsumerAwareMessageListener<String, String> listener = parallel(container);
+
+        Observation received = Observation.start("spring.kafka.listener", observationRegistry);
+        try (Observation.Scope ignored = received.openScope()) {
+            deliver(listener, record(TOPIC, 0, "order-1", new RecordHeaders()));
+        }
+        received.stop();
+        dispatched.countDown();
+
+        awaitAcknowledged(0);
+        Observation processing = current.get(0);
+        assertNotNull(processing);
+        assertEquals("kafka.parallel.process", processing.getContext().getName());
+        assertSame(received, processing.getContext().getParentObservation());
+    }
+
+    @SuppressWarnings("unchecked")
+    private ConcurrentMessageListenerContainer<String, String> container(String topic,
+                                                                       MessageListener<String, String> method) {
+        ContainerProperties properties = new ContainerProperties(topic);
+        properties.setMessageListener(method);
+        ConcurrentMessageListenerContainer<String, String> container =
+                new ConcurrentMessageListenerContainer<>(new DefaultKafkaConsumerFactory<>(Map.of()), properties);
+        container.setBeanName(LISTENER);
+        ObjectProvider<KeyOrderedDispatcher> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(dispatcher);
+        RecordInterceptor<String, String> interceptor = new DedupeRecordInterceptor<>(window);
+        KeyOrderedDispatcher.install(provider, container, interceptor);
+        return container;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static AcknowledgingConsumerAwareMessageListener<String, String> parallel(
+            ConcurrentMessageListenerContainer<String, String> container) {
+        return (AcknowledgingConsumerAwareMessageListener<String, String>) container.getContainerProperties()
+                .getMessageListener();
+    }
+
+    private void deliver(AcknowledgingConsumerAwareMessageListener<String, String> listener,
+                         ConsumerRecord<String, String> record) {
+        listener.onMessage(record, () -> acknowledged.merge((long) record.partition(), record.offset(), Math::max),
+                null);
+    }
+
+    private static ConsumerRecord<String, String> record(String topic, long offset, String key, RecordHeaders headers) {
+        return new ConsumerRecord<>(topic, 0, offset, 0L, TimestampType.CREATE_TIME, 0, 0, key, "{}", headers,
+                Optional.empty());
+    }
+
+    private void awaitAcknowledged(long offset) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!Long.valueOf(offset).equals(acknowledged.get(0L)) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(offset, acknowledged.get(0L));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Template recording the dead-lettered records.
+     */
+    private static final class RecordingKafkaTemplate extends KafkaTemplate<String, Object> {
+
+        private final List<ProducerRecord<String, Object>> sent = new ArrayList<>();
+
+        RecordingKafkaTemplate() {
+            super(new DefaultKafkaProducerFactory<>(Map.of()));
+        }
+
+        @Override
+        public synchronized CompletableFuture<SendResult<String, Object>> send(ProducerRecord<String, Object> record) {
+            sent.add(record);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.personal_projects.common.Parallel;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Completes the records of a partition in and out of order, recording the offsets acknowledged.
+ */
+class PartitionOffsetsTest {
+
+    private final List<Long> acknowledged = new ArrayList<>();
+    private final PartitionOffsets offsets = new PartitionOffsets();
+
+    @Test
+    void acknowledgesEachRecordCompletedInOrder() {
+        PartitionOffsets.Pending first = dispatch(0);
+        PartitionOffsets.Pending second = dispatch(1);
+
+        assertEquals(1, offsets.completed(first));
+        assertEquals(1, offsets.completed(second));
+
+        assertEquals(List.of(0L, 1L), acknowledged);
+        assertEquals(0, offsets.size());
+    }
+
+    @Test
+    void holdsTheRecordsCompletedPastARunningOne() {
+        PartitionOffsets.Pending first = dispatch(10);
+        PartitionOffsets.Pending second = dispatch(11);
+        PartitionOffsets.Pending third = dispatch(12);
+        PartitionOffsets.Pending fourth = dispatch(13);
+
+        assertEquals(0, offsets.completed(third));
+        assertEquals(0, offsets.completed(second));
+        assertEquals(List.of(), acknowledged);
+        assertEquals(4, offsets.size());
+
+        assertEquals(3, offsets.completed(first));
+        assertEquals(List.of(12L), acknowledged, "only the highest contiguous offset is acknowledged");
+        assertEquals(1, offsets.size());
+
+        assertEquals(1, offsets.completed(fourth));
+        assertEquals(List.of(12L, 13L), acknowledged);
+    }
+
+    @Test
+    void needsNoContiguousOffsets() {
+        PartitionOffsets.Pending first = dispatch(3);
+        PartitionOffsets.Pending afterAMarker = dispatch(5);
+        PartitionOffsets.Pending afterACompactedRange = dispatch(40);
+
+        offsets.completed(afterACompactedRange);
+        offsets.completed(afterAMarker);
+        offsets.completed(first);
+
+        assertEquals(List.of(40L), acknowledged);
+    }
+
+    @Test
+    void waitsForTheRecordsInFlightOnRevoke() throws InterruptedException {
+        PartitionOffsets.Pending first = dispatch(0);
+        PartitionOffsets.Pending second = dispatch(1);
+        Thread worker = Thread.ofPlatform().start(() -> {
+            sleep(50);
+            offsets.completed(second);
+            sleep(50);
+            offsets.completed(first);
+        });
+
+        assertEquals(0, offsets.revoke(TimeUnit.SECONDS.toNanos(5)));
+
+        worker.join();
+        assertEquals(List.of(1L), acknowledged);
+    }
+
+    @Test
+    void stopsAcknowledgingOnceRevoked() throws InterruptedException {
+        PartitionOffsets.Pending first = dispatch(0);
+        PartitionOffsets.Pending second = dispatch(1);
+
+        assertEquals(2, offsets.revoke(TimeUnit.MILLISECONDS.toNanos(20)), "gives up after the timeout");
+
+        offsets.completed(first);
+        offsets.completed(second);
+        assertEquals(List.of(), acknowledged, "the new owner resumes from the committed offset");
+    }
+
+    private PartitionOffsets.Pending dispatch(long offset) {
+        Acknowledgment acknowledgment = () -> acknowledged.add(offset);
+        return offsets.dispatched(offset, acknowledgment);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.personal_projects.common.Retry;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.SendResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Replays a dead-letter topic of mock consumers sharing their committed offsets, as the {@code <group>-replay}
+ * group does on the broker.
+ */
+class DeadLetterReplayerTest {
+
+    private static final String DLT = "order-topic-payment-dlt";
+    private static final String RETRY = "order-topic-payment-retry-0";
+    private static final TopicPartition PARTITION = new TopicPartition(DLT, 0);
+
+    private final Map<TopicPartition, OffsetAndMetadata> committed = new HashMap<>();
+
+    @Test
+    void replaysEveryRecordToTheFirstRetryTopicOnce() throws Exception {
+        RecordingKafkaTemplate template = new RecordingKafkaTemplate(Long.MAX_VALUE);
+        DeadLetterReplayer replayer = replayer(template, 3);
+
+        assertEquals(3, replayer.replay(DLT));
+        assertEquals(List.of("0", "1", "2"), template.replayedOffsets());
+        assertEquals(RETRY, template.sent.get(0).topic());
+        assertEquals(0, replayer.replay(DLT), "the replayed records are not replayed again");
+    }
+
+    @Test
+    void resumesAFailedReplayAfterTheLastAcknowledgedRecord() throws Exception {
+        RecordingKafkaTemplate failing = new RecordingKafkaTemplate(2);
+        assertThrows(ExecutionException.class, () -> replayer(failing, 4).replay(DLT));
+        assertEquals(2, committed.get(PARTITION).offset(), "the acknowledged records are committed");
+
+        RecordingKafkaTemplate template = new RecordingKafkaTemplate(Long.MAX_VALUE);
+        assertEquals(2, replayer(template, 4).replay(DLT));
+        assertEquals(List.of("2", "3"), template.replayedOffsets());
+    }
+
+    @Test
+    void rejectsATopicThatIsNotADeadLetterTopicOfTheService() {
+        DeadLetterReplayer replayer = replayer(new RecordingKafkaTemplate(Long.MAX_VALUE), 0);
+
+        assertThrows(IllegalArgumentException.class, () -> replayer.replay(RETRY));
+    }
+
+    @SuppressWarnings("unchecked")
+    private DeadLetterReplayer replayer(KafkaTemplate<String, Object> template, int records) {
+        MessageListenerContainer retryContainer = container("order-payment-listener-retry-0", RETRY);
+        MessageListenerContainer dltContainer = container("order-payment-listener-dlt", DLT);
+        KafkaListenerEndpointRegistry registry = mock(KafkaListenerEndpointRegistry.class);
+        when(registry.getListenerContainers()).thenReturn(List.of(retryContainer, dltContainer));
+        ConsumerFactory<String, byte[]> consumerFactory = mock(ConsumerFactory.class);
+        when(consumerFactory.createConsumer(eq("order-service-group-replay"), any(), any()))
+                .thenAnswer(invocation -> consumer(records));
+        return new DeadLetterReplayer(registry, consumerFactory, template, new SimpleMeterRegistry());
+    }
+
+    private static MessageListenerContainer container(String listenerId, String topic) {
+        MessageListenerContainer container = mock(MessageListenerContainer.class);
+        when(container.getContainerProperties()).thenReturn(new ContainerProperties(topic));
+        when(container.getListenerId()).thenReturn(listenerId);
+        when(container.getGroupId()).thenReturn("order-service-group");
+        return container;
+    }
+
+    /**
+     * A consumer of the dead-letter topic, starting from and committing to the shared offsets.
+     */
+    private MockConsumer<String, byte[]> consumer(int records) {
+        MockConsumer<String, byte[]> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST) {
+            @Override
+            public synchronized void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets) {
+                super.commitSync(offsets);
+                committed.putAll(offsets);
+            }
+
+            // Read from the shared offsets, as MockConsumer forgets its own commits on assign
+            @Override
+            public synchronized Map<TopicPartition, OffsetAndMetadata> committed(Set<TopicPartition> partitions) {
+                Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+                for (TopicPartition partition : partitions) {
+                    if (committed.containsKey(partition)) {
+                        offsets.put(partition, committed.get(partition));
+                    }
+                }
+                return offsets;
+            }
+        };
+        consumer.updatePartitions(DLT, List.of(new PartitionInfo(DLT, 0, null, null, null)));
+        consumer.updateBeginningOffsets(Map.of(PARTITION, 0L));
+        consumer.updateEndOffsets(Map.of(PARTITION, (long) records));
+        consumer.schedulePollTask(() -> {
+            for (int offset = 0; offset < records; offset++) {
+                consumer.addRecord(new ConsumerRecord<>(DLT, 0, offset, "order-" + offset,
+                        ("{\"orderId\": " + offset + "}").getBytes(StandardCharsets.UTF_8)));
+            }
+        });
+        return consumer;
+    }
+
+    /**
+     * Template recording the records sent, acknowledging them until it fails the sends after the given number.
+     */
+    private static final class RecordingKafkaTemplate extends KafkaTemplate<String, Object> {
+
+        private final List<ProducerRecord<String, Object>> sent = new ArrayList<>();
+        private final long failAfter;
+
+        RecordingKafkaTemplate(long failAfter) {
+            super(new DefaultKafkaProducerFactory<>(Map.of()));
+            this.failAfter = failAfter;
+        }
+
+        @Override
+        public CompletableFuture<SendResult<String, Object>> send(ProducerRecord<String, Object> record) {
+            if (sent.size() >= failAfter) {
+                return CompletableFuture.failedFuture(new KafkaException("Broker unavailable"));
+            }
+            sent.add(record);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        private List<String> replayedOffsets() {
+            return sent.stream()
+                    .map(record -> new String(record.headers().lastHeader(DeadLetterReplayer.REPLAY_HEADER).value(),
+                            StandardCharsets.UTF_8))
+                    .toList();
+        }
+    }
+}
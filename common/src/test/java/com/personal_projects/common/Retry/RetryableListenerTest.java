@@ -0,0 +1,37 @@
+package com.personal_projects.common.Retry;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.retrytopic.DltStrategy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * The {@link RetryableTopic} a listener annotated with {@link RetryableListener} gets.
+ */
+class RetryableListenerTest {
+
+    @Test
+    void carriesTheSharedPolicyAndTheSuffixesOfTheListener() throws NoSuchMethodException {
+        RetryableTopic retryableTopic = AnnotatedElementUtils.findMergedAnnotation(
+                Listener.class.getDeclaredMethod("listen", String.class), RetryableTopic.class);
+
+        assertNotNull(retryableTopic);
+        assertEquals("-order-retry", retryableTopic.retryTopicSuffix());
+        assertEquals("-order-dlt", retryableTopic.dltTopicSuffix());
+        assertEquals("${kafka.retry.attempts:4}", retryableTopic.attempts());
+        assertEquals(DltStrategy.FAIL_ON_ERROR, retryableTopic.dltStrategy());
+        assertEquals(RetryTopics.TEMPLATE, retryableTopic.kafkaTemplate());
+    }
+
+    private static final class Listener {
+
+        @RetryableListener(
+                retryTopicSuffix = "-order" + RetryTopics.RETRY_SUFFIX,
+                dltTopicSuffix = "-order" + RetryTopics.DLT_SUFFIX)
+        void listen(String value) {
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.personal_projects.common.Scaling;
+
+import org.apache.kafka.clients.admin.MemberAssignment;
+import org.apache.kafka.clients.admin.MemberDescription;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The member counting and desired instance math of the {@link ConsumerLagMonitor}.
+ */
+class ConsumerLagMonitorTest {
+
+    private static final Duration DRAIN = Duration.ofSeconds(60);
+    private static final long MILLISECOND = 1_000_000;
+
+    @Test
+    void countsOnlyTheMembersOfTheListenerWhenListenersShareAGroup() {
+        // Two instances, each running a listener of order-topic and one of shipment-topic, three threads each
+        List<MemberDescription> members = new ArrayList<>();
+        for (int instance = 0; instance < 2; instance++) {
+            for (int thread = 0; thread < 3; thread++) {
+                int partition = instance * 3 + thread;
+                members.add(member("order-" + partition, new TopicPartition("order-topic", partition)));
+                members.add(member("shipment-" + partition, new TopicPartition("shipment-topic", partition)));
+            }
+        }
+
+        assertEquals(6, ConsumerLagMonitor.listenerMembers(members, List.of("order-topic")));
+        assertEquals(6, ConsumerLagMonitor.listenerMembers(members, List.of("shipment-topic")));
+        assertEquals(12, ConsumerLagMonitor.listenerMembers(members, List.of("order-topic", "shipment-topic")));
+    }
+
+    @Test
+    void leavesOutMembersWithoutAPartition() {
+        List<MemberDescription> members = List.of(
+                member("a", new TopicPartition("order-topic", 0), new TopicPartition("order-topic", 1)),
+                member("b"),
+                member("c", new TopicPartition("payment-topic", 0)));
+
+        assertEquals(1, ConsumerLagMonitor.listenerMembers(members, List.of("order-topic")));
+    }
+
+    @Test
+    void reportsTheRunningInstancesUntilARecordIsProcessed() {
+        assertEquals(2, desired(-1, 3, 6, 6, 0, 0));
+        assertEquals(2, desired(-1, 3, 4, 6, 0, 0), "a partially assigned instance is still running");
+        assertEquals(1, desired(-1, 3, 0, 6, 0, 0));
+        assertEquals(2, desired(-1, 3, 9, 6, 0, 0), "never more than can be assigned a partition");
+    }
+
+    @Test
+    void plansForTheProductionRateAndTheLagDrainedInTheTargetTime() {
+        // 1 ms a record on 2 threads at 50% utilization: 1000 records per second per instance
+        assertEquals(1, desired(MILLISECOND, 2, 2, 12, 0, 900));
+        assertEquals(3, desired(MILLISECOND, 2, 2, 12, 0, 2_500));
+        assertEquals(4, desired(MILLISECOND, 2, 2, 12, 60_000 * 3, 500), "500/s plus 3000/s of lag");
+    }
+
+    @Test
+    void boundsTheDesiredInstancesByThePartitions() {
+        assertEquals(3, desired(MILLISECOND, 2, 2, 6, 1_000_000, 100_000));
+        assertEquals(1, desired(MILLISECOND, 2, 2, 6, 0, 0));
+    }
+
+    private static int desired(double meanProcessingNanos, int concurrency, int members, int partitions, long lag,
+                               double producedPerSecond) {
+        return ConsumerLagMonitor.desiredInstances(meanProcessingNanos, concurrency, members, partitions, lag,
+                producedPerSecond, DRAIN, 0.5);
+    }
+
+    private static MemberDescription member(String id, TopicPartition... partitions) {
+        return new MemberDescription(id, id + "-client", "/10.0.0.1",
+                new MemberAssignment(new HashSet<>(Set.of(partitions))));
+    }
+}
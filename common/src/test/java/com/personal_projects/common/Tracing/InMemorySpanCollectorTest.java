@@ -0,0 +1,57 @@
+package com.personal_projects.common.Tracing;
+
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The ring of the most recent spans kept by the {@link InMemorySpanCollector}.
+ */
+class InMemorySpanCollectorTest {
+
+    @Test
+    void keepsTheSpansOldestFirstUntilTheRingIsFull() {
+        InMemorySpanCollector collector = new InMemorySpanCollector(4);
+        assertTrue(collector.spans().isEmpty());
+
+        finish(collector, 3);
+
+        assertEquals(List.of("span-0", "span-1", "span-2"), names(collector));
+    }
+
+    @Test
+    void overwritesTheOldestSpansOnceTheRingIsFull() {
+        InMemorySpanCollector collector = new InMemorySpanCollector(4);
+
+        finish(collector, 10);
+
+        assertEquals(List.of("span-6", "span-7", "span-8", "span-9"), names(collector));
+    }
+
+    @Test
+    void rejectsAnEmptyRing() {
+        assertThrows(IllegalArgumentException.class, () -> new InMemorySpanCollector(0));
+    }
+
+    private static void finish(InMemorySpanCollector collector, int spans) {
+        try (SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+                .addSpanProcessor(SimpleSpanProcessor.create(collector))
+                .build()) {
+            Tracer tracer = tracerProvider.get("test");
+            IntStream.range(0, spans).forEach(i -> tracer.spanBuilder("span-" + i).startSpan().end());
+        }
+    }
+
+    private static List<String> names(InMemorySpanCollector collector) {
+        return collector.spans().stream().map(SpanData::getName).toList();
+    }
+}
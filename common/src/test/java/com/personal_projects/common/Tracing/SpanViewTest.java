@@ -0,0 +1,87 @@
+package com.personal_projects.common.Tracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Views of the spans finished by an OpenTelemetry tracer, and their JSON lines.
+ */
+class SpanViewTest {
+
+    private final InMemorySpanCollector collector = new InMemorySpanCollector(16);
+    private final SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+            .setResource(Resource.create(Attributes.of(AttributeKey.stringKey("service.name"), "order-service")))
+            .addSpanProcessor(SimpleSpanProcessor.create(collector))
+            .build();
+    private final Tracer tracer = tracerProvider.get("test");
+
+    @AfterEach
+    void close() {
+        tracerProvider.close();
+    }
+
+    @Test
+    void viewsTheParentServiceKindAndDurationOfASpan() {
+        Instant start = Instant.ofEpochSecond(1_700_000_000, 250_000);
+        Span parent = tracer.spanBuilder("POST /orders").setSpanKind(SpanKind.SERVER).startSpan();
+        try (Scope ignored = parent.makeCurrent()) {
+            tracer.spanBuilder("order-topic send")
+                    .setSpanKind(SpanKind.PRODUCER)
+                    .setStartTimestamp(start)
+                    .setAttribute("messaging.destination.name", "order-topic")
+                    .setAttribute("messaging.kafka.partition", 3L)
+                    .startSpan()
+                    .setStatus(StatusCode.ERROR)
+                    .end(start.plusMillis(42));
+        } finally {
+            parent.end();
+        }
+
+        List<SpanView> views = collector.spans().stream().map(SpanView::of).toList();
+
+        SpanView send = views.get(0);
+        SpanView request = views.get(1);
+        assertNull(request.parentSpanId());
+        assertEquals(request.spanId(), send.parentSpanId());
+        assertEquals(request.traceId(), send.traceId());
+        assertEquals("order-service", send.service());
+        assertEquals("PRODUCER", send.kind());
+        assertEquals("ERROR", send.status());
+        assertEquals(1_700_000_000_000_250L, send.startEpochMicros());
+        assertEquals(42_000, send.durationMicros());
+        assertEquals(Map.of("messaging.destination.name", "order-topic", "messaging.kafka.partition", "3"),
+                send.attributes());
+    }
+
+    @Test
+    void writesOneLineOfJsonReadBackAsTheSameView() throws Exception {
+        tracer.spanBuilder("shipment \"label\"")
+                .setAttribute("customer.address", "Rua Augusta 10\n1100-053 Lisboa\t\\ \u0001")
+                .startSpan()
+                .end();
+        SpanView view = SpanView.of(collector.spans().get(0));
+
+        String json = view.toJson();
+
+        assertEquals(-1, json.indexOf('\n'));
+        assertEquals(view, new ObjectMapper().readValue(json, SpanView.class));
+    }
+}
@@ -0,0 +1,166 @@
+package com.personal_projects.load_generator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * HTTP client for the REST APIs of the order, payment and shipping services.
+ * <p>
+ * Responses are read as Jackson trees rather than bound to the service entities, so the generator depends on
+ * none of the services and runs the same against the real services or stand-ins exposing the same paths.
+ * </p>
+ */
+public class DeliveryClient {
+
+    private static final String JSON = "application/json";
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final URI orderUrl;
+    private final URI paymentUrl;
+    private final URI shippingUrl;
+    private final Duration requestTimeout;
+
+    /**
+     * Creates the client.
+     *
+     * @param settings the URLs of the services and the step timeout, bounding each request
+     */
+    public DeliveryClient(LoadSettings settings) {
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(settings.stepTimeout())
+                .build();
+        this.orderUrl = settings.orderUrl();
+        this.paymentUrl = settings.paymentUrl();
+        this.shippingUrl = settings.shippingUrl();
+        this.requestTimeout = settings.stepTimeout();
+    }
+
+    /**
+     * Creates an order.
+     *
+     * @param customerName the customer placing it
+     * @return the ID of the created order
+     * @throws IOException if the request fails or the response carries no order ID
+     */
+    public long createOrder(String customerName) throws IOException, InterruptedException {
+        JsonNode order = send(post(orderUrl.resolve("api/v1/order"), Map.of(
+                "customerName", customerName,
+                "customerAddress", "1 Load Test Street",
+                "productName", "load-test-item",
+                "quantity", 1,
+                "price", 10.0)));
+        if (order == null || !order.hasNonNull("id")) {
+            throw new IOException("Order service returned no order ID");
+        }
+        return order.get("id").asLong();
+    }
+
+    /**
+     * @return the order, or {@code null} if it does not exist
+     */
+    public JsonNode getOrder(long orderId) throws IOException, InterruptedException {
+        return find(get(orderUrl.resolve("api/v1/order/" + orderId)));
+    }
+
+    /**
+     * @return the payment of an order, or {@code null} if it does not exist yet
+     */
+    public JsonNode getPayment(long orderId) throws IOException, InterruptedException {
+        return find(get(paymentUrl.resolve("api/v1/payment/" + orderId)));
+    }
+
+    /**
+     * Pays the pending payment of an order.
+     *
+     * @param orderId the order
+     * @param amount  the amount due
+     * @throws IOException if the request fails
+     */
+    public void pay(long orderId, double amount) throws IOException, InterruptedException {
+        send(post(paymentUrl.resolve("api/v1/payment/" + orderId), Map.of(
+                "orderId", orderId,
+                "paymentMethod", "CARD",
+                "amount", amount)));
+    }
+
+    /**
+     * @return the shipment of an order, or {@code null} if it does not exist yet
+     */
+    public JsonNode getShipment(long orderId) throws IOException, InterruptedException {
+        return find(get(shippingUrl.resolve("api/v1/shipment/" + orderId)));
+    }
+
+    /**
+     * Ships the order.
+     *
+     * @param orderId the order
+     * @throws IOException if the request fails
+     */
+    public void ship(long orderId) throws IOException, InterruptedException {
+        send(HttpRequest.newBuilder(shippingUrl.resolve("api/v1/shipment/" + orderId + "/ship_order"))
+                .timeout(requestTimeout)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build());
+    }
+
+    private HttpRequest get(URI uri) {
+        return HttpRequest.newBuilder(uri)
+                .timeout(requestTimeout)
+                .header("Accept", JSON)
+                .GET()
+                .build();
+    }
+
+    private HttpRequest post(URI uri, Map<String, Object> body) throws IOException {
+        return HttpRequest.newBuilder(uri)
+                .timeout(requestTimeout)
+                .header("Content-Type", JSON)
+                .header("Accept", JSON)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+    }
+
+    /**
+     * Sends a request that must succeed.
+     *
+     * @return the response body, or {@code null} if it is empty
+     * @throws IOException if the request fails or the response status is not {@code 2xx}
+     */
+    private JsonNode send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException(request.method() + " " + request.uri() + " returned " + response.statusCode());
+        }
+        return body(response);
+    }
+
+    /**
+     * Sends a lookup, which the services answer with an empty body or an error status while the resource does
+     * not exist yet.
+     *
+     * @return the response body, or {@code null} if the resource was not found
+     * @throws IOException if the request fails
+     */
+    private JsonNode find(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        return response.statusCode() / 100 == 2 ? body(response) : null;
+    }
+
+    private JsonNode body(HttpResponse<byte[]> response) throws IOException {
+        if (response.body().length == 0) {
+            return null;
+        }
+        JsonNode body = objectMapper.readTree(response.body());
+        return body == null || body.isNull() || body.isMissingNode() ? null : body;
+    }
+}
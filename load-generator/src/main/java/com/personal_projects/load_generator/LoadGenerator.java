@@ -0,0 +1,168 @@
+package com.personal_projects.load_generator;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load generator driving complete {@link OrderFlow}s through the delivery system at a fixed rate.
+ * <p>
+ * Flows are scheduled at {@code start + i / rate}, whatever the services' response times, and each runs on its
+ * own virtual thread, so a slow system faces a growing number of concurrent flows instead of a slower arrival
+ * rate. Latencies are measured from the scheduled start of each flow, which keeps the histograms free of
+ * coordinated omission. The flows started during the warmup record nothing, even those ending after it. Every
+ * report interval the throughput and latency percentiles of that interval are printed, and at the end the totals
+ * of the measured run.
+ * </p>
+ * <pre>
+ * java -jar load-generator/target/load-generator-1.0.0.jar --rate 50 --duration 120 --warmup 20
+ * </pre>
+ * The service URLs default to the local ports of the services, and can point at stand-ins instead.
+ */
+public final class LoadGenerator {
+
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private final LoadSettings settings;
+    private final StepMetrics metrics = new StepMetrics();
+    private final OrderFlow flow;
+    private final LongAdder started = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+
+    private LoadGenerator(LoadSettings settings) {
+        this.settings = settings;
+        this.flow = new OrderFlow(new DeliveryClient(settings), metrics, settings);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadSettings settings;
+        try {
+            settings = LoadSettings.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LoadSettings.USAGE);
+            System.exit(2);
+            return;
+        }
+        new LoadGenerator(settings).run();
+    }
+
+    private void run() throws InterruptedException, IOException {
+        System.out.printf(Locale.ROOT, "Running %.1f flows/s for %ds after a %ds warmup against %s, %s, %s%n",
+                settings.rate(), settings.duration().toSeconds(), settings.warmup().toSeconds(),
+                settings.orderUrl(), settings.paymentUrl(), settings.shippingUrl());
+
+        long start = System.nanoTime();
+        long warmupEnd = start + settings.warmup().toNanos();
+        long end = warmupEnd + settings.duration().toNanos();
+        long reportNanos = settings.reportInterval().toNanos();
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "load-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (warmupEnd > start) {
+            reporter.schedule(() -> System.out.println("Warmup done, measuring"), warmupEnd - start,
+                    TimeUnit.NANOSECONDS);
+        }
+        reporter.scheduleAtFixedRate(() -> report(reportNanos), warmupEnd - start + reportNanos, reportNanos,
+                TimeUnit.NANOSECONDS);
+
+        Semaphore inFlight = new Semaphore(settings.maxInFlight());
+        try (ExecutorService flows = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; ; i++) {
+                long intendedStart = start + Math.round(i * 1e9 / settings.rate());
+                if (intendedStart >= end) {
+                    break;
+                }
+                for (long wait = intendedStart - System.nanoTime(); wait > 0; wait = intendedStart - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+                // A flow waiting here still counts its delay, as it is measured from its intended start.
+                inFlight.acquire();
+                boolean measured = intendedStart >= warmupEnd;
+                if (measured) {
+                    started.increment();
+                }
+                flows.execute(() -> {
+                    try {
+                        if (flow.run(intendedStart, measured) && measured) {
+                            completed.increment();
+                        }
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            // Closing the executor waits for the flows still running, each bounded by its step timeouts.
+        }
+        long elapsed = System.nanoTime() - warmupEnd;
+
+        reporter.shutdownNow();
+        reporter.awaitTermination(1, TimeUnit.SECONDS);
+        metrics.interval();
+        summarize(elapsed);
+    }
+
+    private void report(long intervalNanos) {
+        Map<Step, StepMetrics.Interval> interval = metrics.interval();
+        StepMetrics.Interval endToEnd = interval.get(Step.END_TO_END);
+        System.out.printf(Locale.ROOT, "%8.1f flows/s  p50 %9.1f ms  p99 %9.1f ms  max %9.1f ms  errors %d%n",
+                endToEnd.histogram().getTotalCount() * 1e9 / intervalNanos,
+                millis(endToEnd.histogram().getValueAtPercentile(50)),
+                millis(endToEnd.histogram().getValueAtPercentile(99)),
+                millis(endToEnd.histogram().getMaxValue()),
+                endToEnd.errors());
+    }
+
+    private void summarize(long elapsedNanos) throws IOException {
+        Map<Step, StepMetrics.Interval> totals = metrics.totals();
+        PrintStream out = System.out;
+        out.println();
+        out.printf(Locale.ROOT, "Flows started %d, completed %d, failed %d in %.1f s%n",
+                started.sum(), completed.sum(), started.sum() - completed.sum(), elapsedNanos / 1e9);
+        out.printf(Locale.ROOT, "Throughput %.1f flows/s (target %.1f)%n",
+                completed.sum() * 1e9 / elapsedNanos, settings.rate());
+        out.println();
+        out.printf(Locale.ROOT, "%-15s %9s %7s %10s %10s %10s %10s %10s%n",
+                "step", "count", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Step step : Step.values()) {
+            Histogram histogram = totals.get(step).histogram();
+            out.printf(Locale.ROOT, "%-15s %9d %7d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    step.label(), histogram.getTotalCount(), totals.get(step).errors(),
+                    millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()));
+        }
+
+        if (settings.histogramDir() != null) {
+            Files.createDirectories(settings.histogramDir());
+            for (Step step : Step.values()) {
+                try (PrintStream file = new PrintStream(
+                        Files.newOutputStream(settings.histogramDir().resolve(step.label() + ".hgrm")))) {
+                    totals.get(step).histogram().outputPercentileDistribution(file, MICROS_PER_MILLI);
+                }
+            }
+            out.println();
+            out.println("Histograms, in milliseconds, written to " + settings.histogramDir());
+        }
+    }
+
+    private static double millis(long micros) {
+        return micros / MICROS_PER_MILLI;
+    }
+}
@@ -0,0 +1,103 @@
+package com.personal_projects.load_generator;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings of a load run, parsed from the command line.
+ *
+ * @param rate            flows started per second
+ * @param duration        length of the measured run
+ * @param warmup          length of the run preceding it, whose results are discarded
+ * @param maxInFlight     flows running at once; flows due while the limit is reached start late, and their
+ *                        delay is measured
+ * @param orderUrl        base URL of the order service
+ * @param paymentUrl      base URL of the payment service
+ * @param shippingUrl     base URL of the shipping service
+ * @param pollInterval    pause between two polls of an awaited step
+ * @param stepTimeout     time after which a step fails
+ * @param reportInterval  period of the interval reports
+ * @param histogramDir    directory the final histograms are written to as {@code .hgrm} files, or {@code null}
+ */
+public record LoadSettings(double rate,
+                           Duration duration,
+                           Duration warmup,
+                           int maxInFlight,
+                           URI orderUrl,
+                           URI paymentUrl,
+                           URI shippingUrl,
+                           Duration pollInterval,
+                           Duration stepTimeout,
+                           Duration reportInterval,
+                           Path histogramDir) {
+
+    static final String USAGE = """
+            Usage: java -jar load-generator.jar [options]
+              --rate <flows/s>            flows started per second (default 10)
+              --duration <seconds>        measured run (default 60)
+              --warmup <seconds>          discarded run before it (default 10)
+              --max-in-flight <count>     flows running at once (default 1000)
+              --order-url <url>           order service (default http://localhost:8081)
+              --payment-url <url>         payment service (default http://localhost:8082)
+              --shipping-url <url>        shipping service (default http://localhost:8083)
+              --poll-interval-ms <ms>     pause between polls (default 50)
+              --step-timeout-ms <ms>      step timeout (default 30000)
+              --report-interval <seconds> interval report period (default 5)
+              --hgrm-dir <directory>      write the final histograms there""";
+
+    /**
+     * Parses the command line, using the defaults for the missing options.
+     *
+     * @param args the command line arguments
+     * @return the settings
+     * @throws IllegalArgumentException if an option is unknown, misses its value or is out of range
+     */
+    public static LoadSettings parse(String[] args) {
+        double rate = 10;
+        long duration = 60;
+        long warmup = 10;
+        int maxInFlight = 1000;
+        String orderUrl = "http://localhost:8081";
+        String paymentUrl = "http://localhost:8082";
+        String shippingUrl = "http://localhost:8083";
+        long pollIntervalMs = 50;
+        long stepTimeoutMs = 30_000;
+        long reportInterval = 5;
+        String histogramDir = null;
+
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--rate" -> rate = Double.parseDouble(value);
+                case "--duration" -> duration = Long.parseLong(value);
+                case "--warmup" -> warmup = Long.parseLong(value);
+                case "--max-in-flight" -> maxInFlight = Integer.parseInt(value);
+                case "--order-url" -> orderUrl = value;
+                case "--payment-url" -> paymentUrl = value;
+                case "--shipping-url" -> shippingUrl = value;
+                case "--poll-interval-ms" -> pollIntervalMs = Long.parseLong(value);
+                case "--step-timeout-ms" -> stepTimeoutMs = Long.parseLong(value);
+                case "--report-interval" -> reportInterval = Long.parseLong(value);
+                case "--hgrm-dir" -> histogramDir = value;
+                default -> throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        if (rate <= 0 || duration <= 0 || warmup < 0 || maxInFlight <= 0 || pollIntervalMs <= 0
+                || stepTimeoutMs <= 0 || reportInterval <= 0) {
+            throw new IllegalArgumentException("Rates, durations and limits must be positive");
+        }
+        return new LoadSettings(rate, Duration.ofSeconds(duration), Duration.ofSeconds(warmup), maxInFlight,
+                baseUri(orderUrl), baseUri(paymentUrl), baseUri(shippingUrl),
+                Duration.ofMillis(pollIntervalMs), Duration.ofMillis(stepTimeoutMs),
+                Duration.ofSeconds(reportInterval), histogramDir == null ? null : Path.of(histogramDir));
+    }
+
+    private static URI baseUri(String url) {
+        return URI.create(url.endsWith("/") ? url : url + "/");
+    }
+}
@@ -0,0 +1,128 @@
+package com.personal_projects.load_generator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * One pass through the delivery system: create an order, wait for its payment, pay it, wait for its shipment,
+ * ship it and wait for the order to be {@code SHIPPED}.
+ * <p>
+ * {@link Step#CREATE_ORDER} and {@link Step#END_TO_END} are measured from the time the flow was meant to start,
+ * not from the time it actually started, so a flow held back by a saturated system or by the in-flight limit
+ * records the delay it suffered instead of hiding it (coordinated omission). The other steps are measured from
+ * the end of the previous one. A failed step is counted as an error of that step and of the whole flow, and the
+ * flow stops. A flow started during the warmup records nothing, however late it ends.
+ * </p>
+ */
+public class OrderFlow {
+
+    private static final String SHIPPED = "SHIPPED";
+
+    private final DeliveryClient client;
+    private final StepMetrics metrics;
+    private final long pollIntervalNanos;
+    private final long stepTimeoutNanos;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public OrderFlow(DeliveryClient client, StepMetrics metrics, LoadSettings settings) {
+        this.client = client;
+        this.metrics = metrics;
+        this.pollIntervalNanos = settings.pollInterval().toNanos();
+        this.stepTimeoutNanos = settings.stepTimeout().toNanos();
+    }
+
+    /**
+     * Runs the flow.
+     *
+     * @param intendedStart {@link System#nanoTime()} at which the schedule meant the flow to start
+     * @param measured      whether the flow started after the warmup, and its latencies and errors are recorded
+     * @return whether every step succeeded
+     */
+    public boolean run(long intendedStart, boolean measured) {
+        Step step = Step.CREATE_ORDER;
+        try {
+            long orderId = client.createOrder("load-test-" + sequence.incrementAndGet());
+            long stepEnd = measure(step, intendedStart, measured);
+
+            step = Step.AWAIT_PAYMENT;
+            JsonNode payment = await(step, () -> client.getPayment(orderId), found -> true);
+            stepEnd = measure(step, stepEnd, measured);
+
+            step = Step.PAY;
+            client.pay(orderId, payment.path("amount").asDouble());
+            stepEnd = measure(step, stepEnd, measured);
+
+            step = Step.AWAIT_SHIPMENT;
+            await(step, () -> client.getShipment(orderId), found -> true);
+            stepEnd = measure(step, stepEnd, measured);
+
+            step = Step.SHIP;
+            client.ship(orderId);
+            stepEnd = measure(step, stepEnd, measured);
+
+            step = Step.AWAIT_SHIPPED;
+            await(step, () -> client.getOrder(orderId), order -> SHIPPED.equals(order.path("status").asText()));
+            measure(step, stepEnd, measured);
+
+            measure(Step.END_TO_END, intendedStart, measured);
+            return true;
+        } catch (IOException | StepTimeoutException e) {
+            if (measured) {
+                metrics.error(step);
+                metrics.error(Step.END_TO_END);
+            }
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private long measure(Step step, long start, boolean measured) {
+        long end = System.nanoTime();
+        if (measured) {
+            metrics.record(step, end - start);
+        }
+        return end;
+    }
+
+    /**
+     * Polls a lookup until it returns a resource matching the condition. Failed lookups are retried, as the
+     * services answer them with an error status while the resource does not exist yet.
+     *
+     * @throws StepTimeoutException if no matching resource was found within the step timeout
+     */
+    private JsonNode await(Step step, Lookup lookup, Predicate<JsonNode> condition)
+            throws InterruptedException, StepTimeoutException {
+        long deadline = System.nanoTime() + stepTimeoutNanos;
+        while (true) {
+            try {
+                JsonNode resource = lookup.get();
+                if (resource != null && condition.test(resource)) {
+                    return resource;
+                }
+            } catch (IOException e) {
+                // Not there yet, or a transient failure: retried until the deadline.
+            }
+            if (System.nanoTime() + pollIntervalNanos > deadline) {
+                throw new StepTimeoutException(step);
+            }
+            TimeUnit.NANOSECONDS.sleep(pollIntervalNanos);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Lookup {
+        JsonNode get() throws IOException, InterruptedException;
+    }
+
+    private static final class StepTimeoutException extends Exception {
+        private StepTimeoutException(Step step) {
+            super(step.label() + " timed out", null, false, false);
+        }
+    }
+}
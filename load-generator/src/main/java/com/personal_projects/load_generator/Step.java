@@ -0,0 +1,35 @@
+package com.personal_projects.load_generator;
+
+/**
+ * The steps of an order flow, in the order they run, plus the flow as a whole.
+ */
+public enum Step {
+
+    /** {@code POST /api/v1/order}, measured from the intended start of the flow. */
+    CREATE_ORDER("create-order"),
+    /** Polling the payment service until the payment of the order exists. */
+    AWAIT_PAYMENT("await-payment"),
+    /** {@code POST /api/v1/payment/{order_id}}. */
+    PAY("pay"),
+    /** Polling the shipping service until the shipment of the order exists. */
+    AWAIT_SHIPMENT("await-shipment"),
+    /** {@code POST /api/v1/shipment/{order_id}/ship_order}. */
+    SHIP("ship"),
+    /** Polling the order service until the order is {@code SHIPPED}. */
+    AWAIT_SHIPPED("await-shipped"),
+    /** The whole flow, measured from its intended start. */
+    END_TO_END("end-to-end");
+
+    private final String label;
+
+    Step(String label) {
+        this.label = label;
+    }
+
+    /**
+     * @return the name printed in reports
+     */
+    public String label() {
+        return label;
+    }
+}
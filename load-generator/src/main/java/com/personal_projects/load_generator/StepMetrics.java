@@ -0,0 +1,97 @@
+package com.personal_projects.load_generator;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and errors of every {@link Step}.
+ * <p>
+ * Latencies are recorded in microseconds into one HdrHistogram {@link Recorder} per step, which many flows
+ * record into without locking while the reporter swaps out interval histograms. The reporter accumulates the
+ * intervals into the totals of the run.
+ * </p>
+ */
+public class StepMetrics {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Map<Step, Recorder> recorders = new EnumMap<>(Step.class);
+    private final Map<Step, LongAdder> errors = new EnumMap<>(Step.class);
+    private final Map<Step, Histogram> totals = new EnumMap<>(Step.class);
+    private final Map<Step, Long> totalErrors = new EnumMap<>(Step.class);
+    private final Map<Step, Histogram> intervals = new EnumMap<>(Step.class);
+
+    public StepMetrics() {
+        for (Step step : Step.values()) {
+            recorders.put(step, new Recorder(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS));
+            errors.put(step, new LongAdder());
+            totals.put(step, new Histogram(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS));
+            totalErrors.put(step, 0L);
+        }
+    }
+
+    /**
+     * Records the latency of a successful step.
+     *
+     * @param step         the step
+     * @param elapsedNanos time from the start of the step, or from the intended start of the flow
+     */
+    public void record(Step step, long elapsedNanos) {
+        long micros = Math.min(Math.max(TimeUnit.NANOSECONDS.toMicros(elapsedNanos), 1), HIGHEST_TRACKABLE_MICROS);
+        recorders.get(step).recordValue(micros);
+    }
+
+    /**
+     * Counts a failed step.
+     *
+     * @param step the step that failed or timed out
+     */
+    public void error(Step step) {
+        errors.get(step).increment();
+    }
+
+    /**
+     * Takes the latencies and errors recorded since the previous interval, adding them to the totals. Only the
+     * reporter thread calls this.
+     *
+     * @return the interval histograms by step
+     */
+    public Map<Step, Interval> interval() {
+        Map<Step, Interval> snapshot = new EnumMap<>(Step.class);
+        for (Step step : Step.values()) {
+            Histogram histogram = recorders.get(step).getIntervalHistogram(intervals.get(step));
+            intervals.put(step, histogram);
+            long stepErrors = errors.get(step).sumThenReset();
+            totals.get(step).add(histogram);
+            totalErrors.merge(step, stepErrors, Long::sum);
+            snapshot.put(step, new Interval(histogram, stepErrors));
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return the accumulated latencies and errors of the run, by step
+     */
+    public Map<Step, Interval> totals() {
+        Map<Step, Interval> snapshot = new EnumMap<>(Step.class);
+        for (Step step : Step.values()) {
+            snapshot.put(step, new Interval(totals.get(step), totalErrors.get(step)));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Latencies, in microseconds, and errors of a step over a period.
+     *
+     * @param histogram the latencies
+     * @param errors    the number of failures
+     */
+    public record Interval(Histogram histogram, long errors) {
+    }
+}
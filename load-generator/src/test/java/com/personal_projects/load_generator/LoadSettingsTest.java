@@ -0,0 +1,85 @@
+package com.personal_projects.load_generator;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Parses command lines into settings.
+ */
+class LoadSettingsTest {
+
+    @Test
+    void usesTheDefaultsWithoutOptions() {
+        LoadSettings settings = LoadSettings.parse(new String[0]);
+
+        assertEquals(10, settings.rate());
+        assertEquals(Duration.ofSeconds(60), settings.duration());
+        assertEquals(Duration.ofSeconds(10), settings.warmup());
+        assertEquals(1000, settings.maxInFlight());
+        assertEquals(URI.create("http://localhost:8081/"), settings.orderUrl());
+        assertEquals(URI.create("http://localhost:8082/"), settings.paymentUrl());
+        assertEquals(URI.create("http://localhost:8083/"), settings.shippingUrl());
+        assertEquals(Duration.ofMillis(50), settings.pollInterval());
+        assertEquals(Duration.ofMillis(30_000), settings.stepTimeout());
+        assertEquals(Duration.ofSeconds(5), settings.reportInterval());
+        assertNull(settings.histogramDir());
+    }
+
+    @Test
+    void parsesEveryOption() {
+        LoadSettings settings = LoadSettings.parse(new String[]{
+                "--rate", "2.5", "--duration", "120", "--warmup", "0", "--max-in-flight", "20",
+                "--order-url", "http://orders:9000", "--payment-url", "http://payments:9000/",
+                "--shipping-url", "http://shipping:9000/api", "--poll-interval-ms", "10",
+                "--step-timeout-ms", "500", "--report-interval", "1", "--hgrm-dir", "target/hgrm"});
+
+        assertEquals(2.5, settings.rate());
+        assertEquals(Duration.ofSeconds(120), settings.duration());
+        assertEquals(Duration.ZERO, settings.warmup());
+        assertEquals(20, settings.maxInFlight());
+        assertEquals(URI.create("http://orders:9000/"), settings.orderUrl());
+        assertEquals(URI.create("http://payments:9000/"), settings.paymentUrl(), "a trailing slash is kept once");
+        assertEquals(URI.create("http://shipping:9000/api/"), settings.shippingUrl());
+        assertEquals(Duration.ofMillis(10), settings.pollInterval());
+        assertEquals(Duration.ofMillis(500), settings.stepTimeout());
+        assertEquals(Duration.ofSeconds(1), settings.reportInterval());
+        assertEquals(Path.of("target/hgrm"), settings.histogramDir());
+    }
+
+    @Test
+    void rejectsAnUnknownOption() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> LoadSettings.parse(new String[]{"--speed", "10"}));
+
+        assertEquals("Unknown option --speed", e.getMessage());
+    }
+
+    @Test
+    void rejectsAnOptionWithoutItsValue() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> LoadSettings.parse(new String[]{"--rate", "5", "--duration"}));
+
+        assertEquals("Missing value for --duration", e.getMessage());
+    }
+
+    @Test
+    void rejectsAValueThatIsNotANumber() {
+        assertThrows(NumberFormatException.class, () -> LoadSettings.parse(new String[]{"--rate", "fast"}));
+    }
+
+    @Test
+    void rejectsValuesOutOfRange() {
+        for (String[] args : new String[][]{{"--rate", "0"}, {"--duration", "0"}, {"--warmup", "-1"},
+                {"--max-in-flight", "0"}, {"--poll-interval-ms", "0"}, {"--step-timeout-ms", "-5"},
+                {"--report-interval", "0"}}) {
+            assertThrows(IllegalArgumentException.class, () -> LoadSettings.parse(args), args[0] + " " + args[1]);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.personal_projects.load_generator;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Records latencies and errors, then takes them out as intervals and totals.
+ */
+class StepMetricsTest {
+
+    private final StepMetrics metrics = new StepMetrics();
+
+    @Test
+    void takesTheLatenciesAndErrorsRecordedSinceThePreviousInterval() {
+        metrics.record(Step.PAY, TimeUnit.MILLISECONDS.toNanos(20));
+        metrics.record(Step.PAY, TimeUnit.MILLISECONDS.toNanos(40));
+        metrics.error(Step.PAY);
+
+        Map<Step, StepMetrics.Interval> first = metrics.interval();
+
+        Histogram pay = first.get(Step.PAY).histogram();
+        assertEquals(2, pay.getTotalCount());
+        assertEquals(20_000, pay.getMinValue(), pay.getMinValue() * 0.001);
+        assertEquals(40_000, pay.getMaxValue(), pay.getMaxValue() * 0.001);
+        assertEquals(1, first.get(Step.PAY).errors());
+        assertEquals(0, first.get(Step.SHIP).histogram().getTotalCount());
+
+        metrics.record(Step.PAY, TimeUnit.MILLISECONDS.toNanos(30));
+
+        Map<Step, StepMetrics.Interval> second = metrics.interval();
+        assertEquals(1, second.get(Step.PAY).histogram().getTotalCount());
+        assertEquals(0, second.get(Step.PAY).errors());
+    }
+
+    @Test
+    void accumulatesTheIntervalsIntoTheTotals() {
+        metrics.record(Step.END_TO_END, TimeUnit.MILLISECONDS.toNanos(100));
+        metrics.error(Step.END_TO_END);
+        metrics.interval();
+        metrics.record(Step.END_TO_END, TimeUnit.MILLISECONDS.toNanos(300));
+        metrics.error(Step.END_TO_END);
+        metrics.error(Step.END_TO_END);
+        metrics.interval();
+
+        StepMetrics.Interval totals = metrics.totals().get(Step.END_TO_END);
+
+        assertEquals(2, totals.histogram().getTotalCount());
+        assertEquals(300_000, totals.histogram().getMaxValue(), 300);
+        assertEquals(3, totals.errors());
+    }
+
+    @Test
+    void leavesOutOfTheTotalsWhatNoIntervalTookYet() {
+        metrics.record(Step.SHIP, TimeUnit.MILLISECONDS.toNanos(5));
+        metrics.error(Step.SHIP);
+
+        assertEquals(0, metrics.totals().get(Step.SHIP).histogram().getTotalCount());
+        assertEquals(0, metrics.totals().get(Step.SHIP).errors());
+    }
+
+    @Test
+    void clampsLatenciesIntoTheTrackableRange() {
+        metrics.record(Step.CREATE_ORDER, 10);
+        metrics.record(Step.CREATE_ORDER, TimeUnit.HOURS.toNanos(1));
+
+        Histogram histogram = metrics.interval().get(Step.CREATE_ORDER).histogram();
+
+        assertEquals(1, histogram.getMinValue(), "sub-microsecond latencies count as one microsecond");
+        assertEquals(TimeUnit.MINUTES.toMicros(10), histogram.getMaxValue(), TimeUnit.MINUTES.toMicros(10) * 0.001);
+    }
+}
@@ -1,10 +1,27 @@
 package com.personal_projects.order_service;
 
+import com.personal_projects.common.Backpressure.BackpressureConfiguration;
+import com.personal_projects.common.Dedupe.DedupeConfiguration;
+import com.personal_projects.common.Flight.FlightRecorderConfiguration;
+import com.personal_projects.common.Journal.JournalConfiguration;
+import com.personal_projects.common.Lifecycle.LifecycleConfiguration;
+import com.personal_projects.common.Membership.GroupMembershipConfiguration;
+import com.personal_projects.common.Parallel.ParallelConsumerConfiguration;
+import com.personal_projects.common.Retry.RetryTopicsConfiguration;
+import com.personal_projects.common.Scaling.ConsumerScalingConfiguration;
+import com.personal_projects.common.Tracing.TracingConfiguration;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 
 @SpringBootApplication
+@Import({TracingConfiguration.class, ConsumerScalingConfiguration.class, FlightRecorderConfiguration.class,
+		JournalConfiguration.class, DedupeConfiguration.class, RetryTopicsConfiguration.class,
+		BackpressureConfiguration.class, ParallelConsumerConfiguration.class, GroupMembershipConfiguration.class,
+		LifecycleConfiguration.class})
+@EnableScheduling
 public class OrderServiceApplication {
 
 	public static void main(String[] args) {
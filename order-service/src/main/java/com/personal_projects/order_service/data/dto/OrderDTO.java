@@ -17,6 +17,9 @@ public class OrderDTO {
     /** Name of the customer placing the order */
     private String customerName;
 
+    /** Address the order is shipped to */
+    private String customerAddress;
+
     /** Name of the product being ordered */
     private String productName;
 
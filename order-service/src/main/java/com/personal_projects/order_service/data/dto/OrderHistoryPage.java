@@ -0,0 +1,12 @@
+package com.personal_projects.order_service.data.dto;
+
+import java.util.List;
+
+/**
+ * A page of a customer's order history, newest first.
+ *
+ * @param orders the orders of the page
+ * @param next   the cursor to pass as {@code before} for the next page, or {@code null} on the last page
+ */
+public record OrderHistoryPage(List<OrderSummary> orders, String next) {
+}
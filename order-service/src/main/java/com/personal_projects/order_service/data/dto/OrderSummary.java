@@ -0,0 +1,18 @@
+package com.personal_projects.order_service.data.dto;
+
+import com.personal_projects.common.Enums.OrderStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Slim view of an order in a customer's order history, read entirely from the customer history index.
+ *
+ * @param id          the order ID
+ * @param productName the name of the product ordered
+ * @param totalAmount the total price of the order
+ * @param status      the status of the order
+ * @param createdAt   when the order was created
+ */
+public record OrderSummary(long id, String productName, double totalAmount, OrderStatus status,
+                           LocalDateTime createdAt) {
+}
@@ -0,0 +1,50 @@
+package com.personal_projects.order_service.data.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity recording an {@code Idempotency-Key} sent with an order creation request, and the order it created.
+ * A key whose order is {@code null} is still being processed.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "idempotency_keys",
+        indexes = @Index(name = "idempotency_keys_created_at_idx", columnList = "created_at"))
+public class IdempotencyKey {
+    /**
+     * The key chosen by the client.
+     */
+    @Id
+    @Column(name = "idempotency_key")
+    private String key;
+
+    /**
+     * SHA-256 of the request body, in hex, telling a retry from a reuse of the key for another request.
+     */
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    /**
+     * ID of the order created for the key.
+     */
+    @Column(name = "order_id")
+    private Long orderId;
+
+    /**
+     * The order returned to the first request, as JSON, returned again to its retries.
+     */
+    @Column(name = "response", columnDefinition = "text")
+    private String response;
+
+    /**
+     * Timestamp when the key was first received.
+     */
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -1,8 +1,13 @@
 package com.personal_projects.order_service.data.entity;
 
 import com.personal_projects.common.Enums.OrderStatus;
+import com.personal_projects.order_service.order.shard.OrderIds;
+import com.personal_projects.order_service.order.shard.ShardedOrderIdGenerator;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import java.time.LocalDateTime;
 
@@ -18,18 +23,18 @@ import java.time.LocalDateTime;
 @Table(name="orders")
 public class Order {
     /**
-     * Unique identifier for the order (auto-generated).
+     * Unique identifier for the order (auto-generated), carrying the bucket of its customer, see {@link OrderIds}.
      */
     @Id
-    @SequenceGenerator(
+    @GenericGenerator(
             name = "order_sequence",
-            sequenceName = "order_sequence",
-            allocationSize = 1
-    )
-    @GeneratedValue(
-            strategy = GenerationType.SEQUENCE,
-            generator = "order_sequence"
+            type = ShardedOrderIdGenerator.class,
+            parameters = {
+                    @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "order_sequence"),
+                    @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "1")
+            }
     )
+    @GeneratedValue(generator = "order_sequence")
     private long id;
 
     /**
@@ -37,6 +42,11 @@ public class Order {
      */
     private String customerName;
 
+    /**
+     * Address the order is shipped to.
+     */
+    private String customerAddress;
+
     /**
      * Name of the product ordered.
      */
@@ -64,8 +74,8 @@ public class Order {
     private OrderStatus status;
 
     /**
-     * Timestamp when the order was created.
+     * Timestamp when the order was created, the partition key of the {@code orders} table.
      */
-    @Column(name = "created_at")
+    @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
 }
@@ -1,11 +1,17 @@
 package com.personal_projects.order_service.order;
 import com.personal_projects.order_service.data.dto.OrderDTO;
+import com.personal_projects.order_service.data.dto.OrderHistoryPage;
 import com.personal_projects.order_service.data.entity.Order;
+import com.personal_projects.order_service.order.admission.OrderAdmission;
+import com.personal_projects.order_service.order.history.OrderHistoryService;
+import com.personal_projects.order_service.order.idempotency.IdempotencyService;
+import com.personal_projects.order_service.order.idempotency.IdempotentOrder;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -19,15 +25,25 @@ public class OrderController {
 
 
     private final OrderService orderService;
+    private final IdempotencyService idempotencyService;
+    private final OrderAdmission orderAdmission;
+    private final OrderHistoryService orderHistoryService;
 
     /**
-     * Constructs the OrderController with the required OrderService dependency.
+     * Constructs the OrderController with the required dependencies.
      *
-     * @param orderService the service that handles order business logic
+     * @param orderService        the service that handles order business logic
+     * @param idempotencyService  the service creating orders at most once per idempotency key
+     * @param orderAdmission      the admission control rejecting order creations over the service's capacity
+     * @param orderHistoryService the service reading the order history of a customer
      */
     @Autowired
-    public OrderController(OrderService orderService) {
+    public OrderController(OrderService orderService, IdempotencyService idempotencyService,
+                           OrderAdmission orderAdmission, OrderHistoryService orderHistoryService) {
         this.orderService = orderService;
+        this.idempotencyService = idempotencyService;
+        this.orderAdmission = orderAdmission;
+        this.orderHistoryService = orderHistoryService;
     }
 
     /**
@@ -55,15 +71,52 @@ public class OrderController {
         return orderService.getOrderById(orderId);
     }
 
+    /**
+     * Retrieves the orders of a customer, newest first, a page at a time.
+     *
+     * @param customerName the customer
+     * @param before       the {@code next} cursor of the previous page, omitted for the first page
+     * @param limit        the orders of the page, {@code history.default-limit} if omitted
+     * @return the page of orders, with the cursor of the next page, {@code null} on the last one
+     */
+    @Operation(summary = "Retrieves the orders of a customer, newest first, a page at a time.")
+    @GetMapping("customer/{customerName}")
+    public OrderHistoryPage getCustomerOrders(@PathVariable("customerName") String customerName,
+                                              @RequestParam(value = "before", required = false) String before,
+                                              @RequestParam(value = "limit", required = false) Integer limit) {
+        return orderHistoryService.history(customerName, before, limit);
+    }
+
     /**
      * Creates a new order.
+     * <p>
+     * A retry carrying the same {@code Idempotency-Key} gets the order created by the first request back, marked
+     * with an {@code Idempotent-Replayed: true} header, instead of creating another one.
+     * </p>
+     * <p>
+     * Requests over the customer's rate are rejected with a {@code 429}, and requests over the service's capacity
+     * with a {@code 503}, both with a {@code Retry-After}. A retry whose order is in the cache of recent keys is
+     * answered before either check.
+     * </p>
      *
-     * @param orderDTO the {@link OrderDTO} object to be created
+     * @param idempotencyKey the key identifying the request across retries, optional
+     * @param orderDTO       the {@link OrderDTO} object to be created
+     * @return the created {@link Order}, carrying its ID
      */
     @Operation(summary = "Creates a new order")
     @PostMapping
-    public void createOrder(@RequestBody OrderDTO orderDTO){
-        orderService.createOrder(orderDTO);
+    public ResponseEntity<Order> createOrder(
+            @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody OrderDTO orderDTO){
+        // A retry of an order created recently costs no capacity, so it is answered before the admission control
+        IdempotentOrder result = idempotencyService.replayCached(idempotencyKey, orderDTO);
+        if (result == null) {
+            result = orderAdmission.admit(orderDTO.getCustomerName(),
+                    () -> idempotencyService.createOrder(idempotencyKey, orderDTO));
+        }
+        return ResponseEntity.ok()
+                .header(IdempotencyService.REPLAYED, Boolean.toString(result.replayed()))
+                .body(result.order());
     }
 
 }
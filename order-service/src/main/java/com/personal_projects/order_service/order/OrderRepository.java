@@ -1,31 +1,124 @@
 package com.personal_projects.order_service.order;
 
 import com.personal_projects.common.Enums.OrderStatus;
+import com.personal_projects.order_service.data.dto.OrderSummary;
 import com.personal_projects.order_service.data.entity.Order;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Repository interface for {@link Order} entities.
  * Provides standard CRUD operations and can be extended with custom queries.
+ * <p>
+ * The {@code orders} table is partitioned by month on {@code created_at}. Queries bounding {@code createdAt} are
+ * pruned to the partitions of the range; the others, such as {@code findById}, probe the index of every attached
+ * partition.
+ * </p>
  */
 public interface OrderRepository extends JpaRepository<Order, Long> {
     /**
-     * Updates the status of an order by its ID.
+     * Updates the status of an order by its ID, if its current status may precede the new one.
      * <p>
      * This is a custom modifying query that directly executes an update operation in the database
-     * without loading the entity into the persistence context.
+     * without loading the entity into the persistence context. The check on the current status keeps the
+     * transitions monotonic when events are redelivered or consumed out of order.
      * </p>
      *
-     * @param orderId the ID of the order to update
-     * @param status the new status to set
-     * @return the number of rows affected (should be 0 or 1)
+     * @param orderId             the ID of the order to update
+     * @param status              the new status to set
+     * @param allowedPredecessors the statuses the order may be updated from, see {@link OrderStatus#predecessors()}
+     * @return the number of rows affected (0 if the order is not found or not in an allowed status, 1 otherwise)
      */
     @Modifying
     @Transactional
-    @Query("UPDATE Order o SET o.status = :status WHERE o.id = :orderId")
-    int updateOrderStatusById(@Param("orderId") Long orderId, @Param("status") OrderStatus status);
-}
\ No newline at end of file
+    @Query("UPDATE Order o SET o.status = :status "
+            + "WHERE o.id = :orderId AND o.status IN (:allowedPredecessors)")
+    int updateOrderStatusById(@Param("orderId") Long orderId, @Param("status") OrderStatus status,
+                              @Param("allowedPredecessors") Collection<OrderStatus> allowedPredecessors);
+
+    /**
+     * Updates the status of an order by its ID, if it was created within a range.
+     * <p>
+     * The range on the creation time prunes the update down to the partition holding the order. As in
+     * {@link #updateOrderStatusById}, the order is only updated from an allowed predecessor of the new status.
+     * </p>
+     *
+     * @param orderId             the ID of the order to update
+     * @param from                the earliest creation time of the order, inclusive
+     * @param to                  the latest creation time of the order, exclusive
+     * @param status              the new status to set
+     * @param allowedPredecessors the statuses the order may be updated from, see {@link OrderStatus#predecessors()}
+     * @return the number of rows affected (0 if the order is not found in the range or not in an allowed status,
+     * 1 otherwise)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Order o SET o.status = :status "
+            + "WHERE o.id = :orderId AND o.createdAt >= :from AND o.createdAt < :to "
+            + "AND o.status IN (:allowedPredecessors)")
+    int updateOrderStatusByIdCreatedBetween(@Param("orderId") Long orderId, @Param("from") LocalDateTime from,
+                                            @Param("to") LocalDateTime to, @Param("status") OrderStatus status,
+                                            @Param("allowedPredecessors") Collection<OrderStatus> allowedPredecessors);
+
+    /**
+     * Checks whether an order was created within a range, reading only the partitions of the range.
+     * <p>
+     * Tells an order {@link #updateOrderStatusByIdCreatedBetween} left as it is, already past the new status, from
+     * one created outside the range. It runs in a read-write transaction, on the primary the update ran on, rather
+     * than on a replica that may not have the order yet.
+     * </p>
+     *
+     * @param orderId the ID of the order
+     * @param from    the earliest creation time of the order, inclusive
+     * @param to      the latest creation time of the order, exclusive
+     * @return whether the order exists and was created within the range
+     */
+    @Transactional
+    @Query("SELECT count(o) > 0 FROM Order o WHERE o.id = :orderId AND o.createdAt >= :from AND o.createdAt < :to")
+    boolean existsByIdCreatedBetween(@Param("orderId") Long orderId, @Param("from") LocalDateTime from,
+                                     @Param("to") LocalDateTime to);
+
+    /**
+     * Reads the newest orders of a customer, from the customer history index only.
+     *
+     * @param customerName the customer
+     * @param page         the number of orders to read, from the first
+     * @return the orders, newest first
+     */
+    @Query("SELECT new com.personal_projects.order_service.data.dto.OrderSummary("
+            + "o.id, o.productName, o.totalAmount, o.status, o.createdAt) "
+            + "FROM Order o WHERE o.customerName = :customerName "
+            + "ORDER BY o.createdAt DESC, o.id DESC")
+    List<OrderSummary> findHistory(@Param("customerName") String customerName, Pageable page);
+
+    /**
+     * Reads the orders of a customer older than a keyset cursor, from the customer history index only.
+     * <p>
+     * The row comparison on {@code (createdAt, id)} starts the index scan right at the cursor, so a page costs the
+     * same however deep it is. Postgres does not prune partitions on a row comparison, so the redundant bound on
+     * {@code createdAt} alone is there to skip the partitions newer than the cursor.
+     * </p>
+     *
+     * @param customerName the customer
+     * @param createdAt    the creation time of the last order of the previous page
+     * @param id           the ID of the last order of the previous page
+     * @param page         the number of orders to read, from the first
+     * @return the orders, newest first
+     */
+    @Query("SELECT new com.personal_projects.order_service.data.dto.OrderSummary("
+            + "o.id, o.productName, o.totalAmount, o.status, o.createdAt) "
+            + "FROM Order o WHERE o.customerName = :customerName AND o.createdAt <= :createdAt "
+            + "AND (o.createdAt, o.id) < (:createdAt, :id) "
+            + "ORDER BY o.createdAt DESC, o.id DESC")
+    List<OrderSummary> findHistoryBefore(@Param("customerName") String customerName,
+                                         @Param("createdAt") LocalDateTime createdAt, @Param("id") long id,
+                                         Pageable page);
+}
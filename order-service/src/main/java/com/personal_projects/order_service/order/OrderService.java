@@ -2,14 +2,23 @@ package com.personal_projects.order_service.order;
 
 import com.personal_projects.common.Enums.OrderStatus;
 import com.personal_projects.common.Events.OrderEvent;
+import com.personal_projects.common.Flight.ServiceCallEvent;
+import com.personal_projects.common.Lifecycle.LifecycleHeaders;
 import com.personal_projects.order_service.data.dto.OrderDTO;
 import com.personal_projects.order_service.data.entity.Order;
+import com.personal_projects.order_service.order.shard.OrderShards;
 import com.personal_projects.order_service.util.OrderMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Comparator;
 import java.util.List;
 
 import static com.personal_projects.common.Configs.KafkaConfigs.ORDER_TOPIC;
@@ -18,14 +27,32 @@ import static com.personal_projects.common.Configs.KafkaConfigs.ORDER_TOPIC;
 /**
  * Service class for managing orders.
  * Handles business logic and communicates with the repository and Kafka.
+ * <p>
+ * Every call runs on the shard of its orders, bound before the repository starts its transaction: that of the
+ * customer for a new order, that encoded in the ID otherwise, and every shard for the list of all orders. The reads
+ * run in the read-only transactions of the repository, served by a read replica when replicas are configured.
+ * </p>
  */
 @Service
 public class OrderService {
 
     private static final Logger logger = LoggerFactory.getLogger(OrderService.class);
 
+    /**
+     * Margin around the creation time of an order read from an event, which is truncated to millis.
+     */
+    private static final Duration CREATED_AT_MARGIN = Duration.ofSeconds(1);
+
+    /**
+     * Keyset order of the order lists, newest first.
+     */
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+    private static final Comparator<Order> NEWEST_FIRST_ORDER =
+            Comparator.comparing(Order::getCreatedAt).thenComparingLong(Order::getId).reversed();
+
     private final OrderRepository orderRepository;
     private final KafkaTemplate<String, OrderEvent> kafkaTemplate;
+    private final OrderShards orderShards;
 
 
     /**
@@ -33,21 +60,28 @@ public class OrderService {
      *
      * @param orderRepository the repository to perform CRUD operations
      * @param kafkaTemplate   the Kafka template used to send messages
+     * @param orderShards     the shards the orders are stored in
      */
     public OrderService(OrderRepository orderRepository,
-                        KafkaTemplate<String, OrderEvent> kafkaTemplate) {
+                        KafkaTemplate<String, OrderEvent> kafkaTemplate,
+                        OrderShards orderShards) {
         this.orderRepository = orderRepository;
         this.kafkaTemplate = kafkaTemplate;
+        this.orderShards = orderShards;
     }
 
     /**
-     * Retrieves all orders from the database.
+     * Retrieves all orders from the database, newest first.
+     * <p>
+     * Every shard is queried concurrently for its orders in keyset order, and the results are merged.
+     * </p>
      *
      * @return a list of all {@link Order} objects
      */
     public List<Order> getAllOrders() {
         logger.info("Fetching all orders from the database");
-        return orderRepository.findAll();
+        return orderShards.gather(shard -> orderRepository.findAll(NEWEST_FIRST), NEWEST_FIRST_ORDER,
+                Integer.MAX_VALUE);
     }
 
     /**
@@ -59,7 +93,7 @@ public class OrderService {
      */
     public Order getOrderById(Long orderId) {
         logger.info("Fetching order with ID: {}", orderId);
-        return orderRepository.findById(orderId)
+        return orderShards.on(orderShards.shardOf(orderId), () -> orderRepository.findById(orderId))
                 .orElseThrow(() -> {
                     logger.error("Order with ID {} not found", orderId);
                     return new IllegalStateException(orderId + "not found");
@@ -68,28 +102,84 @@ public class OrderService {
 
     /**
      * Creates and saves an order from the request, then publishes it to Kafka.
+     * <p>
+     * The event is stamped with the order's creation time as both the origin and the hop timestamp of
+     * the order lifecycle. The call is covered by a {@link ServiceCallEvent}.
+     * </p>
      *
      * @param orderDTO the order creation request
+     * @return the saved order
      */
-    public void createOrder(OrderDTO orderDTO) {
-        logger.info("Creating order: {}", orderDTO);
-        Order order = orderRepository.save(OrderMapper.toOrder(orderDTO));
-        logger.info("Order saved to the database");
-        logger.debug("Order created: {}", order);
-        kafkaTemplate.send(ORDER_TOPIC, OrderMapper.toOrderEvent(order));
-        logger.info("Order published to Kafka topic: {}", ORDER_TOPIC);
+    public Order createOrder(OrderDTO orderDTO) {
+        ServiceCallEvent event = ServiceCallEvent.start();
+        long orderId = 0;
+        try {
+            logger.info("Creating order: {}", orderDTO);
+            Order order = orderShards.on(orderShards.shardOfCustomer(orderDTO.getCustomerName()),
+                    () -> orderRepository.save(OrderMapper.toOrder(orderDTO)));
+            orderId = order.getId();
+            logger.info("Order saved to the database");
+            logger.debug("Order created: {}", order);
+            long createdAt = LifecycleHeaders.epochMillis(order.getCreatedAt());
+            kafkaTemplate.send(LifecycleHeaders.record(
+                    ORDER_TOPIC, order.getId(), OrderMapper.toOrderEvent(order), createdAt, createdAt));
+            logger.info("Order published to Kafka topic: {}", ORDER_TOPIC);
+            return order;
+        } finally {
+            event.complete("OrderService.createOrder", orderId);
+        }
     }
 
     /**
      * Updates the status of an order by its ID.
      * <p>
-     * Delegates to a custom repository query that performs a direct update in the database
+     * Delegates to a custom repository query that performs a direct update in the database, leaving an order
+     * already past the new status as it is.
      * </p>
      *
      * @param orderId      the ID of the order to update
      * @param orderStatus  the new status to assign to the order
      */
     public void updateOrderStatusById(long orderId, OrderStatus orderStatus) {
-        orderRepository.updateOrderStatusById(orderId, orderStatus);
+        orderShards.on(orderShards.shardOf(orderId), () -> orderRepository.updateOrderStatusById(orderId, orderStatus,
+                orderStatus.predecessors()));
+    }
+
+    /**
+     * Updates the status of an order by its ID, looking it up in the partition of its creation time.
+     * <p>
+     * The creation time comes from the origin timestamp of the event, so it is only as precise as its millis;
+     * if the order is not found around it, e.g. across a daylight saving change, every partition is searched.
+     * Either way, only the shard encoded in the ID is. An order already past the new status, e.g. shipped when a
+     * payment event is redelivered, is left as it is, found in the partition of its creation time alone.
+     * </p>
+     *
+     * @param orderId         the ID of the order to update
+     * @param createdAtMillis the epoch millis at which the order was created, or {@link LifecycleHeaders#UNKNOWN}
+     * @param orderStatus     the new status to assign to the order
+     */
+    public void updateOrderStatusById(long orderId, long createdAtMillis, OrderStatus orderStatus) {
+        orderShards.on(orderShards.shardOf(orderId), () -> {
+            updateOnShard(orderId, createdAtMillis, orderStatus);
+            return null;
+        });
+    }
+
+    private void updateOnShard(long orderId, long createdAtMillis, OrderStatus orderStatus) {
+        if (createdAtMillis != LifecycleHeaders.UNKNOWN) {
+            LocalDateTime createdAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(createdAtMillis),
+                    ZoneId.systemDefault());
+            LocalDateTime from = createdAt.minus(CREATED_AT_MARGIN);
+            LocalDateTime to = createdAt.plus(CREATED_AT_MARGIN);
+            if (orderRepository.updateOrderStatusByIdCreatedBetween(orderId, from, to, orderStatus,
+                    orderStatus.predecessors()) > 0) {
+                return;
+            }
+            // Not updated, but in the range: a redelivered or late event the status has moved past
+            if (orderRepository.existsByIdCreatedBetween(orderId, from, to)) {
+                return;
+            }
+        }
+        orderRepository.updateOrderStatusById(orderId, orderStatus, orderStatus.predecessors());
     }
 }
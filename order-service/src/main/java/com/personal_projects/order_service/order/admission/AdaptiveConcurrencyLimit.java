@@ -0,0 +1,99 @@
+package com.personal_projects.order_service.order.admission;
+
+/**
+ * Limit on concurrent calls adapted to their latency, additive increase and multiplicative decrease.
+ * <p>
+ * A call completing within the latency target while the limit is in use raises the limit by {@code 1/limit}, so
+ * by about one per round of calls. A call slower than the target, or failing for lack of capacity, cuts it by
+ * {@link #BACKOFF}, at most once per target interval so that one burst of slow calls, already admitted, cuts it
+ * only once. The limit thus settles around the concurrency the database and the producer sustain within the
+ * target. A call failing for another reason, e.g. a rejected request, says nothing about the capacity and leaves
+ * the limit as it is.
+ * </p>
+ */
+final class AdaptiveConcurrencyLimit {
+
+    static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+
+    private double limit;
+    private int inFlight;
+    private long decreasedAt;
+
+    /**
+     * @param initialLimit       the limit until the first calls complete
+     * @param minLimit           the lowest limit
+     * @param maxLimit           the highest limit
+     * @param latencyTargetNanos the latency above which a call signals overload
+     */
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, long latencyTargetNanos) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Expected 1 <= min <= initial <= max concurrency limit, was "
+                    + minLimit + ", " + initialLimit + ", " + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTargetNanos = latencyTargetNanos;
+        this.limit = initialLimit;
+        this.decreasedAt = System.nanoTime() - latencyTargetNanos;
+    }
+
+    /**
+     * Starts a call if the limit allows it.
+     *
+     * @return whether the call may start, in which case {@link #release} must follow
+     */
+    synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Ends a call and adapts the limit to it.
+     *
+     * @param latencyNanos how long the call took
+     * @param outcome      how the call ended
+     * @param now          the current {@link System#nanoTime()}
+     */
+    synchronized void release(long latencyNanos, Outcome outcome, long now) {
+        int concurrency = inFlight--;
+        if (outcome == Outcome.FAILED) {
+            return;
+        }
+        if (outcome == Outcome.OVERLOADED || latencyNanos > latencyTargetNanos) {
+            if (now - decreasedAt >= latencyTargetNanos) {
+                limit = Math.max(minLimit, limit * BACKOFF);
+                decreasedAt = now;
+            }
+        } else if (concurrency * 2 >= limit) {
+            // Only a limit in use is known to be sustainable; an idle service keeps its limit.
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    synchronized int limit() {
+        return (int) limit;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    /**
+     * How a call ended, as far as the limit is concerned.
+     */
+    enum Outcome {
+        /** Completed, a sample of the latency at the current concurrency. */
+        SUCCEEDED,
+        /** Failed for lack of capacity, e.g. a timeout, whatever its latency. */
+        OVERLOADED,
+        /** Failed for another reason, not a sample of the capacity. */
+        FAILED
+    }
+}
@@ -0,0 +1,183 @@
+package com.personal_projects.order_service.order.admission;
+
+import com.personal_projects.order_service.order.admission.AdaptiveConcurrencyLimit.Outcome;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.ErrorResponseException;
+
+import java.sql.SQLTransientConnectionException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Admission control in front of order creation, rejecting the requests the service cannot serve in time with a
+ * fast error instead of queueing them on the connection pool and the producer buffer until they all time out.
+ * <p>
+ * A request is admitted if both:
+ * <ul>
+ *     <li>its customer has a token left, refilled at {@code admission.customer.rate-per-second} up to
+ *     {@code admission.customer.burst}, otherwise it gets a {@code 429} with a {@code Retry-After} of when the next
+ *     token is due;</li>
+ *     <li>fewer order creations are running than the {@link AdaptiveConcurrencyLimit}, which follows the latency of
+ *     the database and producer calls against {@code admission.limit.latency-target-ms}, otherwise it gets a
+ *     {@code 503} with a {@code Retry-After} of {@code admission.retry-after-seconds}.</li>
+ * </ul>
+ * Only the creations failing for lack of capacity, on a timeout or an exhausted connection pool or producer buffer,
+ * cut the limit; a creation rejected on purpose, e.g. an idempotency conflict, or failing on bad data leaves it as
+ * it is.
+ * </p>
+ * <p>
+ * Requests are counted in {@code orders.admission.requests}, by outcome, and the limit and the running creations
+ * are exposed as {@code orders.admission.limit} and {@code orders.admission.in.flight}.
+ * </p>
+ */
+@Service
+public class OrderAdmission {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderAdmission.class);
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final double customerRatePerSecond;
+    private final double customerBurst;
+    private final long retryAfterSeconds;
+    private final AdaptiveConcurrencyLimit limit;
+    private final Map<String, TokenBucket> customerBuckets = new ConcurrentHashMap<>();
+    private final Counter admitted;
+    private final Counter throttled;
+    private final Counter shed;
+
+    /**
+     * Constructs the OrderAdmission with its limits.
+     *
+     * @param customerRatePerSecond the order creations admitted per customer and second
+     * @param customerBurst         the order creations admitted at once per customer
+     * @param initialLimit          the concurrent order creations admitted on start
+     * @param minLimit              the lowest limit on concurrent order creations
+     * @param maxLimit              the highest limit on concurrent order creations
+     * @param latencyTargetMs       the order creation latency above which the limit is lowered
+     * @param retryAfterSeconds     the delay suggested to requests shed for lack of capacity
+     * @param meterRegistry         the registry counting the requests
+     */
+    public OrderAdmission(@Value("${admission.customer.rate-per-second:5}") double customerRatePerSecond,
+                          @Value("${admission.customer.burst:20}") double customerBurst,
+                          @Value("${admission.limit.initial:20}") int initialLimit,
+                          @Value("${admission.limit.min:4}") int minLimit,
+                          @Value("${admission.limit.max:200}") int maxLimit,
+                          @Value("${admission.limit.latency-target-ms:250}") long latencyTargetMs,
+                          @Value("${admission.retry-after-seconds:1}") long retryAfterSeconds,
+                          MeterRegistry meterRegistry) {
+        this.customerRatePerSecond = customerRatePerSecond;
+        this.customerBurst = customerBurst;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.limit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit,
+                TimeUnit.MILLISECONDS.toNanos(latencyTargetMs));
+
+        Gauge.builder("orders.admission.limit", limit, AdaptiveConcurrencyLimit::limit)
+                .description("Concurrent order creations admitted")
+                .register(meterRegistry);
+        Gauge.builder("orders.admission.in.flight", limit, AdaptiveConcurrencyLimit::inFlight)
+                .description("Order creations running")
+                .register(meterRegistry);
+        this.admitted = requests(meterRegistry, "admitted");
+        this.throttled = requests(meterRegistry, "throttled");
+        this.shed = requests(meterRegistry, "shed");
+    }
+
+    /**
+     * Runs an order creation if it is admitted.
+     *
+     * @param customerName the customer ordering
+     * @param creation     the order creation
+     * @param <T>          the result type
+     * @return the result of the creation
+     * @throws ErrorResponseException with a {@code 429} if the customer is over its rate, or a {@code 503} if the
+     *                                service is over its concurrency limit
+     */
+    public <T> T admit(String customerName, Supplier<T> creation) {
+        long start = System.nanoTime();
+        String customer = customerName == null ? "" : customerName;
+        long wait = customerBuckets
+                .computeIfAbsent(customer, ignored -> new TokenBucket(customerRatePerSecond, customerBurst, start))
+                .tryAcquire(start);
+        if (wait > 0) {
+            throttled.increment();
+            logger.debug("Throttled an order creation of customer {}", customer);
+            throw rejected(HttpStatus.TOO_MANY_REQUESTS, "Too many orders from this customer",
+                    Math.max(1, (wait + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND));
+        }
+        if (!limit.tryAcquire()) {
+            shed.increment();
+            logger.debug("Shed an order creation at the concurrency limit of {}", limit.limit());
+            throw rejected(HttpStatus.SERVICE_UNAVAILABLE, "The order service is at capacity", retryAfterSeconds);
+        }
+
+        admitted.increment();
+        Outcome outcome = Outcome.OVERLOADED;
+        try {
+            T result = creation.get();
+            outcome = Outcome.SUCCEEDED;
+            return result;
+        } catch (RuntimeException e) {
+            outcome = outcomeOf(e);
+            throw e;
+        } finally {
+            long now = System.nanoTime();
+            limit.release(now - start, outcome, now);
+        }
+    }
+
+    /**
+     * Drops the buckets of customers idle long enough to have refilled them, which admitting their next order
+     * recreates as they were.
+     */
+    @Scheduled(fixedDelayString = "${admission.customer.sweep-interval-ms:60000}")
+    public void dropIdleCustomers() {
+        long now = System.nanoTime();
+        customerBuckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+    /**
+     * Tells a failure for lack of capacity, a timeout or an exhausted pool or buffer anywhere in the causes, from
+     * any other.
+     */
+    static Outcome outcomeOf(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof QueryTimeoutException
+                    || cause instanceof CannotGetJdbcConnectionException
+                    || cause instanceof SQLTransientConnectionException
+                    || cause instanceof org.apache.kafka.common.errors.TimeoutException
+                    || cause instanceof TimeoutException) {
+                return Outcome.OVERLOADED;
+            }
+        }
+        return Outcome.FAILED;
+    }
+
+    private static ErrorResponseException rejected(HttpStatus status, String detail, long retryAfterSeconds) {
+        ErrorResponseException rejected = new ErrorResponseException(status);
+        rejected.setDetail(detail);
+        rejected.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        return rejected;
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("orders.admission.requests")
+                .description("Order creation requests, by admission outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
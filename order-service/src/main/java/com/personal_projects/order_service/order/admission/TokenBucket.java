@@ -0,0 +1,56 @@
+package com.personal_projects.order_service.order.admission;
+
+/**
+ * Token bucket refilled continuously at a fixed rate, up to a burst.
+ */
+final class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double burst;
+
+    private double tokens;
+    private long refilledAt;
+
+    /**
+     * Creates a full bucket.
+     *
+     * @param ratePerSecond tokens added per second
+     * @param burst         tokens the bucket holds at most
+     * @param now           the current {@link System#nanoTime()}
+     */
+    TokenBucket(double ratePerSecond, double burst, long now) {
+        this.tokensPerNano = ratePerSecond / 1_000_000_000d;
+        this.burst = burst;
+        this.tokens = burst;
+        this.refilledAt = now;
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @param now the current {@link System#nanoTime()}
+     * @return {@code 0} if a token was taken, otherwise the nanoseconds until one is available
+     */
+    synchronized long tryAcquire(long now) {
+        refill(now);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    /**
+     * @param now the current {@link System#nanoTime()}
+     * @return whether the bucket refilled completely, so dropping it loses nothing
+     */
+    synchronized boolean isFull(long now) {
+        refill(now);
+        return tokens >= burst;
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+    }
+}
@@ -0,0 +1,101 @@
+package com.personal_projects.order_service.order.bulk;
+
+import com.personal_projects.order_service.data.entity.Order;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Writes orders to the {@code orders} table with {@code COPY ... FROM STDIN}, in the text format.
+ * <p>
+ * The rows are streamed to the server in blocks of about {@value #BLOCK_CHARS} characters as they are encoded, so
+ * neither side holds the whole batch as rows, and the server skips the parsing, planning and round trip of an
+ * {@code INSERT} per row.
+ * </p>
+ */
+final class OrderCopy {
+
+    static final String COPY_ORDERS = "COPY orders (id, customer_name, customer_address, product_name, quantity, "
+            + "price, total_amount, status, created_at) FROM STDIN";
+
+    private static final int BLOCK_CHARS = 256 * 1024;
+
+    private OrderCopy() {
+    }
+
+    /**
+     * Copies orders, with their IDs set, in the current transaction of the connection.
+     *
+     * @param connection a connection to Postgres, possibly wrapped
+     * @param orders     the orders
+     * @return the number of rows copied
+     * @throws SQLException if the copy fails, e.g. on a missing partition
+     */
+    static long copy(Connection connection, List<Order> orders) throws SQLException {
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_ORDERS);
+        try {
+            StringBuilder rows = new StringBuilder(BLOCK_CHARS + 1024);
+            for (Order order : orders) {
+                appendRow(rows, order);
+                if (rows.length() >= BLOCK_CHARS) {
+                    write(copyIn, rows);
+                }
+            }
+            write(copyIn, rows);
+            return copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    /**
+     * Appends an order as a row of the text format: tab-separated columns, ending with a line break.
+     */
+    static void appendRow(StringBuilder rows, Order order) {
+        rows.append(order.getId()).append('\t');
+        appendText(rows, order.getCustomerName());
+        rows.append('\t');
+        appendText(rows, order.getCustomerAddress());
+        rows.append('\t');
+        appendText(rows, order.getProductName());
+        rows.append('\t').append(order.getQuantity())
+                .append('\t').append(order.getPrice())
+                .append('\t').append(order.getTotalAmount())
+                .append('\t');
+        appendText(rows, order.getStatus() == null ? null : order.getStatus().name());
+        // ISO 8601, with a T between the date and the time, as read by Postgres
+        rows.append('\t').append(order.getCreatedAt()).append('\n');
+    }
+
+    private static void appendText(StringBuilder rows, String value) {
+        if (value == null) {
+            rows.append("\\N");
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> rows.append("\\\\");
+                case '\t' -> rows.append("\\t");
+                case '\n' -> rows.append("\\n");
+                case '\r' -> rows.append("\\r");
+                default -> rows.append(c);
+            }
+        }
+    }
+
+    private static void write(CopyIn copyIn, StringBuilder rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        rows.setLength(0);
+    }
+}
@@ -0,0 +1,457 @@
+package com.personal_projects.order_service.order.bulk;
+
+import com.personal_projects.common.Events.OrderEvent;
+import com.personal_projects.common.Lifecycle.LifecycleHeaders;
+import com.personal_projects.order_service.data.dto.OrderDTO;
+import com.personal_projects.order_service.data.entity.Order;
+import com.personal_projects.order_service.order.shard.OrderIds;
+import com.personal_projects.order_service.order.shard.OrderShards;
+import com.personal_projects.order_service.util.OrderMapper;
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.personal_projects.common.Configs.KafkaConfigs.ORDER_TOPIC;
+
+/**
+ * Import of one file of orders, run by the {@link OrderImporter}.
+ * <p>
+ * The file is cut into chunks of about {@code chunkSize} bytes, ending on a line break, each mapped in memory
+ * and imported by one of {@code parallelism} workers while the next ones are mapped. A worker parses the rows of
+ * its chunk in place, rejects those breaking the rules of {@link OrderMapper#violation}, and maps the others with
+ * {@link OrderMapper#toOrder(OrderDTO, LocalDateTime)}. For each shard the chunk has orders for, it then takes
+ * their IDs from the shard's {@code order_sequence} in one query, copies them with {@link OrderCopy}, and records
+ * the chunk in {@code order_import_chunks}, in a single transaction. Once the chunk is committed on every shard,
+ * its {@link OrderEvent}s are sent at once, and the chunk completes when the broker acknowledged them all.
+ * </p>
+ * <p>
+ * The {@link OrderImportCheckpoint} follows the completed chunks. An import started again after a failure or a
+ * restart resumes from it: the chunks already recorded on a shard are not copied again, only their events are
+ * published again, with the IDs recorded. Orders are thus stored exactly once, and their events published at
+ * least once, as when created one at a time.
+ * </p>
+ */
+final class OrderImport implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderImport.class);
+
+    private static final String FIND_CHUNK =
+            "SELECT order_ids, created_at FROM order_import_chunks WHERE import_id = ? AND chunk_offset = ?";
+    private static final String NEXT_IDS = "SELECT nextval('order_sequence') FROM generate_series(1, ?)";
+    private static final String RECORD_CHUNK = "INSERT INTO order_import_chunks (import_id, chunk_offset, "
+            + "order_ids, created_at) VALUES (?, ?, ?, ?)";
+    private static final String DELETE_CHUNKS = "DELETE FROM order_import_chunks WHERE import_id = ?";
+
+    /**
+     * Longest CSV header read.
+     */
+    private static final int MAX_HEADER_BYTES = 64 * 1024;
+
+    enum State {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    private final String id;
+    private final Path file;
+    private final Path checkpointFile;
+    private final OrderShards orderShards;
+    private final KafkaTemplate<String, OrderEvent> kafkaTemplate;
+    private final int chunkSize;
+    private final int parallelism;
+    private final Counter importedRows;
+    private final Counter rejectedRows;
+
+    private final ArrayDeque<Chunk> pending = new ArrayDeque<>();
+    private OrderImportCheckpoint checkpoint;
+    private final LongAdder processed = new LongAdder();
+    private final long startedAt = System.nanoTime();
+    private volatile long finishedAt;
+    private volatile State state = State.RUNNING;
+    private volatile Exception failure;
+
+    /**
+     * Creates the import, to be run.
+     *
+     * @param id             the ID of the import, keying its checkpoint and its chunks on the shards
+     * @param file           the file to import
+     * @param checkpointFile the file of the import's checkpoint
+     * @param orderShards    the shards the orders are copied to
+     * @param kafkaTemplate  the template sending the order events
+     * @param chunkSize      the size of the chunks, for a new import
+     * @param parallelism    the chunks imported concurrently
+     * @param importedRows   counter of the imported orders
+     * @param rejectedRows   counter of the rejected rows
+     */
+    OrderImport(String id, Path file, Path checkpointFile, OrderShards orderShards,
+                KafkaTemplate<String, OrderEvent> kafkaTemplate, int chunkSize, int parallelism,
+                Counter importedRows, Counter rejectedRows) {
+        this.id = id;
+        this.file = file;
+        this.checkpointFile = checkpointFile;
+        this.orderShards = orderShards;
+        this.kafkaTemplate = kafkaTemplate;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+        this.importedRows = importedRows;
+        this.rejectedRows = rejectedRows;
+    }
+
+    @Override
+    public void run() {
+        try {
+            importFile();
+            state = State.COMPLETED;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            failure = e;
+            state = State.FAILED;
+            logger.error("Import {} of {} failed, started again it resumes from offset {}", id, file,
+                    status().offset(), e);
+        } finally {
+            finishedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * @return whether the import is still running
+     */
+    boolean running() {
+        return state == State.RUNNING;
+    }
+
+    /**
+     * @return the progress of the import
+     */
+    OrderImportStatus status() {
+        OrderImportCheckpoint saved;
+        synchronized (this) {
+            saved = checkpoint;
+        }
+        long elapsed = (running() ? System.nanoTime() : finishedAt) - startedAt;
+        Exception cause = failure;
+        return new OrderImportStatus(id, file.getFileName().toString(), state.name(),
+                saved == null ? 0 : saved.offset(),
+                saved == null ? 0 : saved.fileSize(),
+                saved == null ? 0 : saved.imported(),
+                saved == null ? 0 : saved.rejected(),
+                elapsed > 0 ? processed.sum() * 1e9 / elapsed : 0,
+                cause == null ? null : cause.toString());
+    }
+
+    private void importFile() throws Exception {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer first = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAX_HEADER_BYTES));
+            int headerEnd = lineEnd(first, 0);
+            String header = new String(bytes(first, headerEnd), StandardCharsets.UTF_8).strip();
+            OrderRowParser parser = OrderRowParser.of(file, header);
+
+            OrderImportCheckpoint saved = OrderImportCheckpoint.load(checkpointFile);
+            String name = file.getFileName().toString();
+            if (saved == null) {
+                long start = parser.hasHeader() ? Math.min(size, headerEnd + 1) : 0;
+                saved = new OrderImportCheckpoint(name, size, chunkSize, start, 0, 0, false);
+            } else if (!saved.file().equals(name) || saved.fileSize() != size) {
+                throw new IllegalStateException("Import " + id + " was started on " + saved.file() + " of "
+                        + saved.fileSize() + " bytes, not on " + name + " of " + size + " bytes");
+            }
+            synchronized (this) {
+                checkpoint = saved;
+            }
+            if (saved.completed()) {
+                logger.info("Import {} of {} already completed", id, file);
+                return;
+            }
+            logger.info("Importing {} as {}, from offset {} of {} bytes", file, id, saved.offset(), size);
+            importChunks(channel, saved, parser);
+
+            // The chunks are forgotten before the import completes: a crash in between completes it again
+            for (int shard = 0; shard < orderShards.count(); shard++) {
+                new JdbcTemplate(orderShards.dataSource(shard)).update(DELETE_CHUNKS, id);
+            }
+            synchronized (this) {
+                checkpoint = checkpoint.complete();
+                checkpoint.save(checkpointFile);
+                saved = checkpoint;
+            }
+            logger.info("Import {} of {} completed: {} orders imported, {} rows rejected", id, file,
+                    saved.imported(), saved.rejected());
+        }
+    }
+
+    private void importChunks(FileChannel channel, OrderImportCheckpoint from, OrderRowParser parser)
+            throws Exception {
+        // The workers own a chunk being imported and one mapped ahead each
+        Semaphore permits = new Semaphore(parallelism * 2);
+        try (ExecutorService workers = Executors.newFixedThreadPool(parallelism,
+                Thread.ofPlatform().name("order-import-" + id + "-", 0).factory())) {
+            long start = from.offset();
+            while (start < from.fileSize() && failure == null) {
+                permits.acquire();
+                Chunk chunk = chunk(channel, start, from.fileSize(), from.chunkSize());
+                synchronized (this) {
+                    pending.addLast(chunk);
+                }
+                workers.execute(() -> {
+                    try {
+                        importChunk(chunk, parser.copy());
+                        completed(chunk);
+                    } catch (Exception e) {
+                        failed(e);
+                    } finally {
+                        permits.release();
+                    }
+                });
+                start = chunk.end;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Maps the next chunk of the file, up to its last line break within the chunk size.
+     */
+    private Chunk chunk(FileChannel channel, long start, long size, int maxSize) throws IOException {
+        long length = Math.min(maxSize, size - start);
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        int end = (int) length;
+        if (start + length < size) {
+            end = end - 1;
+            while (end >= 0 && mapped.get(end) != '\n') {
+                end--;
+            }
+            if (end < 0) {
+                throw new IllegalStateException("The row at offset " + start + " is longer than the chunks, "
+                        + maxSize + " bytes");
+            }
+            end++;
+        }
+        return new Chunk(start, start + end, mapped.slice(0, end));
+    }
+
+    private void importChunk(Chunk chunk, OrderRowParser parser) throws Exception {
+        LocalDateTime createdAt = LocalDateTime.now();
+        List<List<Order>> byShard = new ArrayList<>();
+        for (int shard = 0; shard < orderShards.count(); shard++) {
+            byShard.add(new ArrayList<>());
+        }
+        ByteBuffer rows = chunk.rows;
+        int position = 0;
+        while (position < rows.limit()) {
+            int lineEnd = lineEnd(rows, position);
+            int end = lineEnd > position && rows.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            if (end > position) {
+                Order order = order(chunk, parser, position, end, createdAt);
+                if (order != null) {
+                    byShard.get(orderShards.shardOfCustomer(order.getCustomerName())).add(order);
+                }
+            }
+            position = lineEnd + 1;
+        }
+
+        List<Order> orders = new ArrayList<>();
+        for (int shard = 0; shard < byShard.size(); shard++) {
+            if (!byShard.get(shard).isEmpty()) {
+                copy(shard, chunk, byShard.get(shard));
+                orders.addAll(byShard.get(shard));
+            }
+        }
+        CompletableFuture<?>[] sent = new CompletableFuture<?>[orders.size()];
+        for (int i = 0; i < sent.length; i++) {
+            Order order = orders.get(i);
+            long created = LifecycleHeaders.epochMillis(order.getCreatedAt());
+            sent[i] = kafkaTemplate.send(LifecycleHeaders.record(
+                    ORDER_TOPIC, order.getId(), OrderMapper.toOrderEvent(order), created, created));
+        }
+        CompletableFuture.allOf(sent).get();
+        chunk.imported = orders.size();
+    }
+
+    private Order order(Chunk chunk, OrderRowParser parser, int start, int end, LocalDateTime createdAt) {
+        String violation;
+        try {
+            OrderDTO row = parser.parse(chunk.rows, start, end);
+            violation = OrderMapper.violation(row);
+            if (violation == null) {
+                return OrderMapper.toOrder(row, createdAt);
+            }
+        } catch (IllegalArgumentException e) {
+            violation = e.getMessage();
+        }
+        // The first rejection of a chunk is enough to spot a systematic error
+        if (chunk.rejected++ == 0) {
+            logger.warn("Import {} rejected the row at offset {}: {}", id, chunk.start + start, violation);
+        } else {
+            logger.debug("Import {} rejected the row at offset {}: {}", id, chunk.start + start, violation);
+        }
+        return null;
+    }
+
+    /**
+     * Copies the orders of a chunk to a shard, with their IDs, unless the chunk is recorded there already, in
+     * which case the orders get the IDs and creation time recorded.
+     */
+    private void copy(int shard, Chunk chunk, List<Order> orders) throws SQLException {
+        try (Connection connection = orderShards.dataSource(shard).getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                if (!recorded(connection, shard, chunk, orders)) {
+                    Long[] ids = nextIds(connection, orders);
+                    OrderCopy.copy(connection, orders);
+                    try (PreparedStatement statement = connection.prepareStatement(RECORD_CHUNK)) {
+                        statement.setString(1, id);
+                        statement.setLong(2, chunk.start);
+                        statement.setArray(3, connection.createArrayOf("bigint", ids));
+                        statement.setTimestamp(4, Timestamp.valueOf(orders.get(0).getCreatedAt()));
+                        statement.executeUpdate();
+                    }
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private boolean recorded(Connection connection, int shard, Chunk chunk, List<Order> orders)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(FIND_CHUNK)) {
+            statement.setString(1, id);
+            statement.setLong(2, chunk.start);
+            try (ResultSet result = statement.executeQuery()) {
+                if (!result.next()) {
+                    return false;
+                }
+                Array array = result.getArray(1);
+                Long[] ids = (Long[]) array.getArray();
+                if (ids.length != orders.size()) {
+                    throw new IllegalStateException("The chunk at offset " + chunk.start + " was imported to shard "
+                            + shard + " with " + ids.length + " orders, it now has " + orders.size());
+                }
+                LocalDateTime createdAt = result.getTimestamp(2).toLocalDateTime();
+                for (int i = 0; i < ids.length; i++) {
+                    orders.get(i).setId(ids[i]);
+                    orders.get(i).setCreatedAt(createdAt);
+                }
+                logger.info("Import {} already copied the chunk at offset {} to shard {}, publishing its events",
+                        id, chunk.start, shard);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Sets the IDs of orders from the sequence of the shard, with the bucket of their customer.
+     *
+     * @return the IDs, in the order of the orders
+     */
+    private static Long[] nextIds(Connection connection, List<Order> orders) throws SQLException {
+        Long[] ids = new Long[orders.size()];
+        try (PreparedStatement statement = connection.prepareStatement(NEXT_IDS)) {
+            statement.setInt(1, orders.size());
+            try (ResultSet result = statement.executeQuery()) {
+                for (int i = 0; i < ids.length; i++) {
+                    if (!result.next()) {
+                        throw new SQLException("The sequence returned " + i + " of " + ids.length + " IDs");
+                    }
+                    Order order = orders.get(i);
+                    ids[i] = OrderIds.of(result.getLong(1), OrderIds.bucketOf(order.getCustomerName()));
+                    order.setId(ids[i]);
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Marks a chunk imported, and moves the checkpoint past every chunk imported before the oldest one running.
+     */
+    private synchronized void completed(Chunk chunk) throws IOException {
+        chunk.done = true;
+        processed.add(chunk.imported + chunk.rejected);
+        importedRows.increment(chunk.imported);
+        rejectedRows.increment(chunk.rejected);
+        OrderImportCheckpoint advanced = checkpoint;
+        while (!pending.isEmpty() && pending.peekFirst().done) {
+            Chunk head = pending.pollFirst();
+            advanced = advanced.advanced(head.end, head.imported, head.rejected);
+        }
+        if (advanced != checkpoint) {
+            advanced.save(checkpointFile);
+            checkpoint = advanced;
+        }
+    }
+
+    private synchronized void failed(Exception e) {
+        if (failure == null) {
+            failure = e;
+        } else {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * @return the position of the line break ending the line at a position, or the limit of the buffer
+     */
+    private static int lineEnd(ByteBuffer buffer, int position) {
+        while (position < buffer.limit() && buffer.get(position) != '\n') {
+            position++;
+        }
+        return position;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(0, bytes);
+        return bytes;
+    }
+
+    /**
+     * A chunk of the file, from a row to the end of a row, and its outcome once imported.
+     */
+    private static final class Chunk {
+
+        private final long start;
+        private final long end;
+        private final ByteBuffer rows;
+        private boolean done;
+        private int imported;
+        private int rejected;
+
+        private Chunk(long start, long end, ByteBuffer rows) {
+            this.start = start;
+            this.end = end;
+            this.rows = rows;
+        }
+    }
+}
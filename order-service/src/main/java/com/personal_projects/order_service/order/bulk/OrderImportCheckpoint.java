@@ -0,0 +1,98 @@
+package com.personal_projects.order_service.order.bulk;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Progress of an order import, saved after every chunk so that a stopped import resumes where it left off.
+ * <p>
+ * Chunks complete out of order, so the offset is that of the end of the last chunk before which all are
+ * committed and published; the chunks after it may have been committed too, which the import finds out from the
+ * {@code order_import_chunks} table of each shard. The chunks are cut again from the offset, with the same chunk
+ * size, so they start where they did before the import stopped.
+ * </p>
+ *
+ * @param file      the name of the imported file
+ * @param fileSize  the size of the file, which may not change once the import started
+ * @param chunkSize the size of the chunks the file is cut into
+ * @param offset    the offset in the file up to which all rows are imported
+ * @param imported  the orders imported up to the offset
+ * @param rejected  the rows rejected up to the offset
+ * @param completed whether the import completed, leaving nothing to resume
+ */
+record OrderImportCheckpoint(String file,
+                             long fileSize,
+                             int chunkSize,
+                             long offset,
+                             long imported,
+                             long rejected,
+                             boolean completed) {
+
+    /**
+     * @return the checkpoint moved to the end of a chunk imported after it
+     */
+    OrderImportCheckpoint advanced(long end, long importedRows, long rejectedRows) {
+        return new OrderImportCheckpoint(file, fileSize, chunkSize, end, imported + importedRows,
+                rejected + rejectedRows, false);
+    }
+
+    /**
+     * @return the checkpoint of the completed import
+     */
+    OrderImportCheckpoint complete() {
+        return new OrderImportCheckpoint(file, fileSize, chunkSize, fileSize, imported, rejected, true);
+    }
+
+    /**
+     * Reads a checkpoint.
+     *
+     * @param path the checkpoint file
+     * @return the checkpoint, or {@code null} if the import never ran
+     * @throws IOException if the checkpoint cannot be read
+     */
+    static OrderImportCheckpoint load(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return new OrderImportCheckpoint(
+                properties.getProperty("file"),
+                Long.parseLong(properties.getProperty("file-size")),
+                Integer.parseInt(properties.getProperty("chunk-size")),
+                Long.parseLong(properties.getProperty("offset")),
+                Long.parseLong(properties.getProperty("imported")),
+                Long.parseLong(properties.getProperty("rejected")),
+                Boolean.parseBoolean(properties.getProperty("completed")));
+    }
+
+    /**
+     * Writes the checkpoint, replacing the previous one atomically so that a crash leaves either.
+     *
+     * @param path the checkpoint file
+     * @throws IOException if the checkpoint cannot be written
+     */
+    void save(Path path) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("file", file);
+        properties.setProperty("file-size", Long.toString(fileSize));
+        properties.setProperty("chunk-size", Integer.toString(chunkSize));
+        properties.setProperty("offset", Long.toString(offset));
+        properties.setProperty("imported", Long.toString(imported));
+        properties.setProperty("rejected", Long.toString(rejected));
+        properties.setProperty("completed", Boolean.toString(completed));
+        Path written = path.resolveSibling(path.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(written, StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+        Files.move(written, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,51 @@
+package com.personal_projects.order_service.order.bulk;
+
+import com.personal_projects.common.Events.OrderEvent;
+import com.personal_projects.order_service.order.shard.OrderShards;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Configuration of the bulk order import, reading the files of {@code orders.import.directory}.
+ *
+ * <p>The order events of an import are sent by a producer of their own, lingering up to
+ * {@code orders.import.linger-ms} to fill batches of {@code orders.import.batch-size-kb}, compressed with LZ4.
+ * They are neither traced nor journaled: a trace or journal entry per imported row would crowd out those of the
+ * orders created through the API.</p>
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "orders.import.enabled", havingValue = "true", matchIfMissing = true)
+public class OrderImportConfiguration {
+
+    @Bean
+    public OrderImporter orderImporter(OrderShards orderShards,
+                                       ProducerFactory<String, OrderEvent> producerFactory,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${orders.import.directory:imports}") String directory,
+                                       @Value("${orders.import.chunk-size-mb:16}") int chunkSizeMb,
+                                       @Value("${orders.import.parallelism:4}") int parallelism,
+                                       @Value("${orders.import.linger-ms:50}") int lingerMs,
+                                       @Value("${orders.import.batch-size-kb:1024}") int batchSizeKb) {
+        Map<String, Object> batching = Map.of(
+                ProducerConfig.LINGER_MS_CONFIG, lingerMs,
+                ProducerConfig.BATCH_SIZE_CONFIG, batchSizeKb * 1024,
+                ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+        KafkaTemplate<String, OrderEvent> kafkaTemplate = new KafkaTemplate<>(producerFactory, batching);
+        return new OrderImporter(orderShards, kafkaTemplate, meterRegistry, Path.of(directory),
+                chunkSizeMb * 1024 * 1024, parallelism);
+    }
+
+    @Bean
+    public OrderImportEndpoint orderImportEndpoint(OrderImporter orderImporter) {
+        return new OrderImportEndpoint(orderImporter);
+    }
+}
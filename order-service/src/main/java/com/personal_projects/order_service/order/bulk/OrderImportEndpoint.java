@@ -0,0 +1,50 @@
+package com.personal_projects.order_service.order.bulk;
+
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+import java.util.List;
+
+/**
+ * Actuator endpoint listing the bulk order imports at {@code GET /actuator/orderimports}, and starting or resuming
+ * one at {@code POST /actuator/orderimports/{id}} with the {@code file} to import, through the
+ * {@link OrderImporter}.
+ */
+@Endpoint(id = "orderimports")
+public class OrderImportEndpoint {
+
+    private final OrderImporter importer;
+
+    public OrderImportEndpoint(OrderImporter importer) {
+        this.importer = importer;
+    }
+
+    /**
+     * Lists the imports started since the service started.
+     *
+     * @return the imports, with their progress
+     */
+    @ReadOperation
+    public List<OrderImportStatus> imports() {
+        return importer.imports();
+    }
+
+    /**
+     * Starts an import, or resumes it if it failed or was interrupted.
+     *
+     * @param id   the ID of the import
+     * @param file the file to import, in the import directory
+     * @return the status of the import
+     */
+    @WriteOperation
+    public OrderImportStatus start(@Selector String id, String file) {
+        try {
+            return importer.start(id, file);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.personal_projects.order_service.order.bulk;
+
+/**
+ * An order import of the service, as listed by the {@link OrderImportEndpoint}.
+ *
+ * @param id            the ID of the import
+ * @param file          the imported file, in the import directory
+ * @param state         {@code RUNNING}, {@code COMPLETED}, or {@code FAILED}, to be started again to resume
+ * @param offset        the offset in the file up to which all rows are imported
+ * @param size          the size of the file
+ * @param imported      the orders imported up to the offset
+ * @param rejected      the rows rejected up to the offset
+ * @param rowsPerSecond the rows imported or rejected per second since the import was last started
+ * @param error         the cause of the failure of a {@code FAILED} import
+ */
+public record OrderImportStatus(String id,
+                                String file,
+                                String state,
+                                long offset,
+                                long size,
+                                long imported,
+                                long rejected,
+                                double rowsPerSecond,
+                                String error) {
+}
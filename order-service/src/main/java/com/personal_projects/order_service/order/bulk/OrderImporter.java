@@ -0,0 +1,129 @@
+package com.personal_projects.order_service.order.bulk;
+
+import com.personal_projects.common.Events.OrderEvent;
+import com.personal_projects.order_service.order.shard.OrderShards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the {@link OrderImport}s of the files placed in the import directory, each on its own thread.
+ * <p>
+ * An import is identified by an ID chosen when it is started, naming its {@code <id>.checkpoint} file in the
+ * import directory. Starting a failed or interrupted import again with the same ID resumes it; starting a
+ * completed one does nothing, so importing a file again takes a new ID. The imported orders and rejected rows are
+ * counted in {@code orders.import.rows}, by {@code result}.
+ * </p>
+ */
+public class OrderImporter implements AutoCloseable {
+
+    private static final Pattern IMPORT_ID = Pattern.compile("[A-Za-z0-9._-]{1,200}");
+
+    private final OrderShards orderShards;
+    private final KafkaTemplate<String, OrderEvent> kafkaTemplate;
+    private final Path directory;
+    private final int chunkSize;
+    private final int parallelism;
+    private final Counter importedRows;
+    private final Counter rejectedRows;
+    private final Map<String, OrderImport> imports = new LinkedHashMap<>();
+    private final ExecutorService jobs = Executors.newCachedThreadPool(
+            Thread.ofPlatform().name("order-import-", 0).factory());
+
+    /**
+     * Creates the importer, creating the import directory if needed.
+     *
+     * @param orderShards   the shards the orders are copied to
+     * @param kafkaTemplate the template sending the order events, in large batches
+     * @param meterRegistry registry for the row counters
+     * @param directory     the directory of the files to import and of the checkpoints
+     * @param chunkSize     the size of the chunks the files are cut into, in bytes
+     * @param parallelism   the chunks of an import imported concurrently
+     */
+    public OrderImporter(OrderShards orderShards, KafkaTemplate<String, OrderEvent> kafkaTemplate,
+                         MeterRegistry meterRegistry, Path directory, int chunkSize, int parallelism) {
+        if (chunkSize <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("Expected a positive chunk size and parallelism, was " + chunkSize
+                    + " and " + parallelism);
+        }
+        this.orderShards = orderShards;
+        this.kafkaTemplate = kafkaTemplate;
+        this.directory = directory.toAbsolutePath().normalize();
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+        this.importedRows = rows(meterRegistry, "imported");
+        this.rejectedRows = rows(meterRegistry, "rejected");
+        try {
+            Files.createDirectories(this.directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create the import directory " + this.directory, e);
+        }
+    }
+
+    /**
+     * Starts importing a file, or resumes its import.
+     *
+     * @param id       the ID of the import, of letters, digits, dots, dashes and underscores
+     * @param fileName the file, relative to the import directory
+     * @return the status of the import
+     * @throws IllegalArgumentException if the ID or the file is invalid, or the import is already running
+     */
+    public synchronized OrderImportStatus start(String id, String fileName) {
+        if (id == null || !IMPORT_ID.matcher(id).matches()) {
+            throw new IllegalArgumentException("Invalid import ID: " + id);
+        }
+        OrderImport previous = imports.get(id);
+        if (previous != null && previous.running()) {
+            throw new IllegalArgumentException("Import " + id + " is already running");
+        }
+        Path file = fileName == null ? null : directory.resolve(fileName).normalize();
+        if (file == null || !file.startsWith(directory) || !Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("No file " + fileName + " in the import directory " + directory);
+        }
+        OrderImport orderImport = new OrderImport(id, file, directory.resolve(id + ".checkpoint"), orderShards,
+                kafkaTemplate, chunkSize, parallelism, importedRows, rejectedRows);
+        imports.remove(id);
+        imports.put(id, orderImport);
+        jobs.execute(orderImport);
+        return orderImport.status();
+    }
+
+    /**
+     * @return the imports started since the service started, oldest first
+     */
+    public synchronized List<OrderImportStatus> imports() {
+        List<OrderImportStatus> statuses = new ArrayList<>();
+        imports.values().forEach(orderImport -> statuses.add(orderImport.status()));
+        return statuses;
+    }
+
+    /**
+     * Interrupts the running imports, waiting for their chunks in progress, so they resume from a recent
+     * checkpoint when started again.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        jobs.shutdownNow();
+        jobs.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    private static Counter rows(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("orders.import.rows")
+                .description("Rows of the bulk order imports, by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,201 @@
+package com.personal_projects.order_service.order.bulk;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.personal_projects.order_service.data.dto.OrderDTO;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parser of the rows of an order import file, one per line, into the {@link OrderDTO} of the order creation API.
+ * <p>
+ * Rows are read in place from the mapped chunk of the file. A parser keeps a scratch buffer, so it is used by one
+ * thread at a time; {@link #copy()} gives another for the next thread.
+ * </p>
+ */
+abstract class OrderRowParser {
+
+    /**
+     * Columns of the CSV header, matched ignoring case and underscores, e.g. {@code customer_name}.
+     */
+    private static final String[] CSV_COLUMNS =
+            {"customername", "customeraddress", "productname", "quantity", "price"};
+
+    private byte[] scratch = new byte[1024];
+
+    /**
+     * Gets the parser of a file, by its extension: {@code .csv} files start with a header naming the columns, any
+     * other file holds a JSON object per line (NDJSON).
+     *
+     * @param file   the import file
+     * @param header the first line of the file
+     * @return the parser of the rows after the header for a CSV file, of every row otherwise
+     * @throws IllegalArgumentException if the CSV header misses a column
+     */
+    static OrderRowParser of(Path file, String header) {
+        if (file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv")) {
+            return new Csv(header);
+        }
+        return new Json();
+    }
+
+    /**
+     * @return whether the first line of the file is a header rather than a row
+     */
+    abstract boolean hasHeader();
+
+    /**
+     * Parses a row.
+     *
+     * @param chunk the mapped chunk of the file
+     * @param start the position of the row in the chunk
+     * @param end   the position of the end of the row, excluding the line break
+     * @return the order request of the row
+     * @throws IllegalArgumentException if the row is malformed
+     */
+    abstract OrderDTO parse(ByteBuffer chunk, int start, int end);
+
+    /**
+     * @return a parser of the same file, for another thread
+     */
+    abstract OrderRowParser copy();
+
+    /**
+     * Copies a row out of the chunk into the scratch buffer.
+     *
+     * @return the scratch buffer, holding the row from its start
+     */
+    byte[] bytes(ByteBuffer chunk, int start, int end) {
+        int length = end - start;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        chunk.get(start, scratch, 0, length);
+        return scratch;
+    }
+
+    /**
+     * A JSON object per line, with the properties of {@link OrderDTO}; others are ignored.
+     */
+    static final class Json extends OrderRowParser {
+
+        private static final ObjectReader reader = new ObjectMapper()
+                .readerFor(OrderDTO.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+        @Override
+        boolean hasHeader() {
+            return false;
+        }
+
+        @Override
+        OrderDTO parse(ByteBuffer chunk, int start, int end) {
+            try {
+                OrderDTO row = reader.readValue(bytes(chunk, start, end), 0, end - start);
+                if (row == null) {
+                    throw new IllegalArgumentException("Not a JSON object");
+                }
+                return row;
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        OrderRowParser copy() {
+            return new Json();
+        }
+    }
+
+    /**
+     * Comma-separated values, in the column order of the header. Values may be quoted, with {@code ""} standing
+     * for a quote, but may not span lines.
+     */
+    static final class Csv extends OrderRowParser {
+
+        private final String header;
+        private final int[] columns = new int[CSV_COLUMNS.length];
+        private final int width;
+
+        Csv(String header) {
+            this.header = header;
+            List<String> names = split(header);
+            this.width = names.size();
+            for (int column = 0; column < CSV_COLUMNS.length; column++) {
+                columns[column] = -1;
+                for (int i = 0; i < names.size(); i++) {
+                    if (names.get(i).replace("_", "").trim().equalsIgnoreCase(CSV_COLUMNS[column])) {
+                        columns[column] = i;
+                    }
+                }
+                if (columns[column] < 0) {
+                    throw new IllegalArgumentException("The CSV header misses the " + CSV_COLUMNS[column]
+                            + " column: " + header);
+                }
+            }
+        }
+
+        @Override
+        boolean hasHeader() {
+            return true;
+        }
+
+        @Override
+        OrderDTO parse(ByteBuffer chunk, int start, int end) {
+            List<String> values = split(new String(bytes(chunk, start, end), 0, end - start, StandardCharsets.UTF_8));
+            if (values.size() != width) {
+                throw new IllegalArgumentException("Expected " + width + " values, found " + values.size());
+            }
+            return OrderDTO.builder()
+                    .customerName(values.get(columns[0]))
+                    .customerAddress(values.get(columns[1]))
+                    .productName(values.get(columns[2]))
+                    .quantity(Integer.parseInt(values.get(columns[3]).trim()))
+                    .price(Double.parseDouble(values.get(columns[4]).trim()))
+                    .build();
+        }
+
+        @Override
+        OrderRowParser copy() {
+            return new Csv(header);
+        }
+
+        static List<String> split(String line) {
+            List<String> values = new ArrayList<>();
+            StringBuilder value = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c != '"') {
+                        value.append(c);
+                    } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        value.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(value.toString());
+                    value.setLength(0);
+                } else {
+                    value.append(c);
+                }
+            }
+            if (quoted) {
+                throw new IllegalArgumentException("Unterminated quoted value");
+            }
+            values.add(value.toString());
+            return values;
+        }
+    }
+}
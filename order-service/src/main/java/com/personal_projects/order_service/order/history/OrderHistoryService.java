@@ -0,0 +1,196 @@
+package com.personal_projects.order_service.order.history;
+
+import com.personal_projects.order_service.data.dto.OrderHistoryPage;
+import com.personal_projects.order_service.data.dto.OrderSummary;
+import com.personal_projects.order_service.order.OrderRepository;
+import com.personal_projects.order_service.order.shard.OrderShards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.ErrorResponseException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves the order history of a customer, newest first, a page at a time.
+ * <p>
+ * Pages are keyset-paged on {@code (created_at, id)}: the {@code next} cursor of a page encodes its last order,
+ * and the following page is read from the customer history index right after it, by an index-only scan. Unlike an
+ * offset, a cursor costs nothing to skip to, and orders created meanwhile do not shift the pages. The orders of a
+ * customer are all stored in the shard of the customer, so a page is read from that shard alone.
+ * </p>
+ * <p>
+ * The first page of a customer, the one support opens, is cached for {@code history.cache-ttl-ms}, for the last
+ * {@code history.cache-size} customers. Requests are counted in {@code orders.history.requests}, by whether the
+ * page was cached.
+ * </p>
+ */
+@Service
+public class OrderHistoryService {
+
+    private static final char CURSOR_SEPARATOR = '_';
+
+    private final OrderRepository orderRepository;
+    private final OrderShards orderShards;
+    private final int defaultLimit;
+    private final int maxLimit;
+    private final Duration cacheTtl;
+    private final RecentPages recentPages;
+    private final Counter cached;
+    private final Counter queried;
+
+    /**
+     * Constructs the OrderHistoryService with dependencies.
+     *
+     * @param orderRepository the repository reading the history
+     * @param orderShards     the shards the orders are stored in
+     * @param defaultLimit    the orders of a page when the request does not say
+     * @param maxLimit        the most orders a page can hold
+     * @param cacheTtlMs      the millis a first page is served from the cache
+     * @param cacheSize       the number of first pages cached
+     * @param meterRegistry   the registry counting the requests
+     */
+    public OrderHistoryService(OrderRepository orderRepository,
+                               OrderShards orderShards,
+                               @Value("${history.default-limit:20}") int defaultLimit,
+                               @Value("${history.max-limit:100}") int maxLimit,
+                               @Value("${history.cache-ttl-ms:2000}") long cacheTtlMs,
+                               @Value("${history.cache-size:10000}") int cacheSize,
+                               MeterRegistry meterRegistry) {
+        this.orderRepository = orderRepository;
+        this.orderShards = orderShards;
+        this.defaultLimit = defaultLimit;
+        this.maxLimit = maxLimit;
+        this.cacheTtl = Duration.ofMillis(cacheTtlMs);
+        this.recentPages = new RecentPages(cacheSize);
+        this.cached = requests(meterRegistry, "cached");
+        this.queried = requests(meterRegistry, "queried");
+    }
+
+    /**
+     * Reads a page of the order history of a customer.
+     *
+     * @param customerName the customer
+     * @param before       the {@code next} cursor of the previous page, or {@code null} for the first page
+     * @param limit        the orders of the page, or {@code null} for {@code history.default-limit}
+     * @return the page, with the cursor of the next one
+     * @throws ErrorResponseException with a {@code 400} if the cursor or the limit is invalid
+     */
+    public OrderHistoryPage history(String customerName, String before, Integer limit) {
+        int size = limit == null ? defaultLimit : limit;
+        if (size < 1 || size > maxLimit) {
+            throw badRequest("limit must be between 1 and " + maxLimit);
+        }
+        int shard = orderShards.shardOfCustomer(customerName);
+        if (before == null) {
+            String key = size + "/" + customerName;
+            OrderHistoryPage page = recentPages.get(key);
+            if (page != null) {
+                cached.increment();
+                return page;
+            }
+            page = page(orderShards.on(shard,
+                    () -> orderRepository.findHistory(customerName, PageRequest.ofSize(size + 1))), size);
+            recentPages.put(key, page);
+            queried.increment();
+            return page;
+        }
+        Cursor cursor = Cursor.decode(before);
+        queried.increment();
+        return page(orderShards.on(shard, () -> orderRepository.findHistoryBefore(customerName, cursor.createdAt(),
+                cursor.id(), PageRequest.ofSize(size + 1))), size);
+    }
+
+    /**
+     * Builds a page from one more order than it holds, telling whether there is a next page.
+     */
+    private static OrderHistoryPage page(List<OrderSummary> orders, int size) {
+        if (orders.size() <= size) {
+            return new OrderHistoryPage(orders, null);
+        }
+        List<OrderSummary> page = List.copyOf(orders.subList(0, size));
+        OrderSummary last = page.get(size - 1);
+        return new OrderHistoryPage(page, new Cursor(last.createdAt(), last.id()).encode());
+    }
+
+    private static ErrorResponseException badRequest(String detail) {
+        ErrorResponseException badRequest = new ErrorResponseException(HttpStatus.BAD_REQUEST);
+        badRequest.setDetail(detail);
+        return badRequest;
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("orders.history.requests")
+                .description("Customer order history requests, by whether the page was cached")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Position after the last order of a page, opaque to clients.
+     */
+    private record Cursor(LocalDateTime createdAt, long id) {
+
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((createdAt.toString() + CURSOR_SEPARATOR + id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = decoded.lastIndexOf(CURSOR_SEPARATOR);
+                return new Cursor(LocalDateTime.parse(decoded.substring(0, separator)),
+                        Long.parseLong(decoded.substring(separator + 1)));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+                throw badRequest("Invalid before cursor");
+            }
+        }
+    }
+
+    /**
+     * Least recently used first pages, each served for the cache TTL.
+     */
+    private final class RecentPages {
+
+        private final Map<String, CachedPage> pages;
+
+        private RecentPages(int capacity) {
+            this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedPage> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        synchronized OrderHistoryPage get(String key) {
+            CachedPage cached = pages.get(key);
+            if (cached == null) {
+                return null;
+            }
+            if (System.nanoTime() - cached.cachedAt() > cacheTtl.toNanos()) {
+                pages.remove(key);
+                return null;
+            }
+            return cached.page();
+        }
+
+        synchronized void put(String key, OrderHistoryPage page) {
+            pages.put(key, new CachedPage(page, System.nanoTime()));
+        }
+    }
+
+    private record CachedPage(OrderHistoryPage page, long cachedAt) {
+    }
+}
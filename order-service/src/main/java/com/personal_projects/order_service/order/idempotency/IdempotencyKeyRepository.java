@@ -0,0 +1,78 @@
+package com.personal_projects.order_service.order.idempotency;
+
+import com.personal_projects.order_service.data.entity.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repository interface for {@link IdempotencyKey} entities.
+ */
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+    /**
+     * Records a key as being processed, unless it is already recorded.
+     * <p>
+     * The insert is atomic, so of concurrent requests with the same key, on any instance, exactly one claims it.
+     * </p>
+     *
+     * @param key         the idempotency key
+     * @param requestHash the hash of the request body
+     * @param createdAt   the time the request was received
+     * @return {@code 1} if the key was claimed, {@code 0} if it was already recorded
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO idempotency_keys (idempotency_key, request_hash, created_at) "
+            + "VALUES (:key, :requestHash, :createdAt) ON CONFLICT DO NOTHING", nativeQuery = true)
+    int claim(@Param("key") String key, @Param("requestHash") String requestHash,
+              @Param("createdAt") LocalDateTime createdAt);
+
+    /**
+     * Takes over a key whose claim was abandoned: claimed before a time and still without an order, because the
+     * request that claimed it could neither record its order nor release the key, e.g. its instance died.
+     * <p>
+     * The update is atomic and refreshes the claim time, so of concurrent requests taking over the key, exactly one
+     * does.
+     * </p>
+     *
+     * @param key           the idempotency key
+     * @param requestHash   the hash of the request body
+     * @param createdAt     the time the request was received
+     * @param claimedBefore the time before which a claim without an order is abandoned
+     * @return {@code 1} if the key was taken over, {@code 0} if it has an order or a recent claim
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE IdempotencyKey k SET k.requestHash = :requestHash, k.createdAt = :createdAt "
+            + "WHERE k.key = :key AND k.response IS NULL AND k.createdAt < :claimedBefore")
+    int reclaim(@Param("key") String key, @Param("requestHash") String requestHash,
+                @Param("createdAt") LocalDateTime createdAt, @Param("claimedBefore") LocalDateTime claimedBefore);
+
+    /**
+     * Records the order created for a claimed key.
+     *
+     * @param key      the idempotency key
+     * @param orderId  the ID of the created order
+     * @param response the created order, as JSON
+     * @return the number of rows affected (should be 0 or 1)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE IdempotencyKey k SET k.orderId = :orderId, k.response = :response WHERE k.key = :key")
+    int complete(@Param("key") String key, @Param("orderId") Long orderId, @Param("response") String response);
+
+    /**
+     * Deletes the keys received before a time.
+     *
+     * @param before the oldest receive time kept
+     * @return the number of keys deleted
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyKey k WHERE k.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,364 @@
+package com.personal_projects.order_service.order.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.personal_projects.order_service.data.dto.OrderDTO;
+import com.personal_projects.order_service.data.entity.IdempotencyKey;
+import com.personal_projects.order_service.data.entity.Order;
+import com.personal_projects.order_service.order.OrderService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.ErrorResponseException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates orders at most once per {@value #IDEMPOTENCY_KEY} header, so a client retrying a request whose response
+ * it lost does not create, store and publish the order again.
+ * <p>
+ * The first request with a key claims it in the {@code idempotency_keys} table, creates the order, then records
+ * the order there. Retries get the recorded order back without touching the order table or Kafka:
+ * <ul>
+ *     <li>from a small in-memory cache of the last {@code idempotency.cache-size} keys, without a round trip;</li>
+ *     <li>while the first request is running on this instance, by waiting for its result;</li>
+ *     <li>otherwise from the table, or with a {@code 409} and a {@code Retry-After} if the request that claimed the
+ *     key, on another instance, is still running.</li>
+ * </ul>
+ * A key reused with a different body is answered with a {@code 422}. A request that fails releases its key, so it
+ * can be retried. Keys are kept for {@code idempotency.ttl-hours}.
+ * </p>
+ * <p>
+ * The key and the order are written in separate transactions, the key on the first shard and the order on its
+ * customer's. A claim still without an order after {@code idempotency.claim-timeout-ms}, because its request could
+ * neither record the order nor release the key, e.g. its instance died, is taken over by the next request with the
+ * key, which creates the order. If the first request did create it, the order is created twice: a key is never
+ * stuck answering {@code 409} for its whole TTL.
+ * </p>
+ * <p>
+ * Requests with a key are counted in {@code orders.idempotency.requests}, by outcome.
+ * </p>
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    public static final String REPLAYED = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final String IN_PROGRESS_RETRY_AFTER_SECONDS = "1";
+    private static final int RECORD_ATTEMPTS = 3;
+
+    private final OrderService orderService;
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration claimTimeout;
+    private final RecentKeys recentKeys;
+    private final Map<String, CompletableFuture<CompletedKey>> inFlight = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Constructs the IdempotencyService with dependencies.
+     *
+     * @param orderService             the service creating the orders
+     * @param idempotencyKeyRepository the repository of the keys
+     * @param objectMapper             the mapper storing the created orders as JSON
+     * @param ttlHours                 the hours a key is kept
+     * @param claimTimeoutMs           the millis after which a claim without an order is taken over
+     * @param cacheSize                the number of recent keys cached in memory
+     * @param meterRegistry            the registry counting the requests
+     */
+    public IdempotencyService(OrderService orderService,
+                              IdempotencyKeyRepository idempotencyKeyRepository,
+                              ObjectMapper objectMapper,
+                              @Value("${idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${idempotency.claim-timeout-ms:30000}") long claimTimeoutMs,
+                              @Value("${idempotency.cache-size:10000}") int cacheSize,
+                              MeterRegistry meterRegistry) {
+        this.orderService = orderService;
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.objectMapper = objectMapper;
+        this.ttl = Duration.ofHours(ttlHours);
+        this.claimTimeout = Duration.ofMillis(claimTimeoutMs);
+        this.recentKeys = new RecentKeys(cacheSize);
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Creates an order, or returns the order already created for the same key.
+     *
+     * @param idempotencyKey the key sent by the client, or {@code null} to always create the order
+     * @param orderDTO       the order creation request
+     * @return the order, and whether it was created by an earlier request
+     * @throws ErrorResponseException if the key is invalid, reused for another request, or claimed by a request
+     *                                still running on another instance
+     */
+    public IdempotentOrder createOrder(String idempotencyKey, OrderDTO orderDTO) {
+        if (idempotencyKey == null) {
+            return new IdempotentOrder(orderService.createOrder(orderDTO), false);
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            count("invalid");
+            throw problem(HttpStatus.BAD_REQUEST,
+                    IDEMPOTENCY_KEY + " must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+        String requestHash = hash(orderDTO);
+
+        CompletedKey recent = recentKeys.get(idempotencyKey);
+        if (recent != null) {
+            return replay(idempotencyKey, recent, requestHash, "cached");
+        }
+
+        CompletableFuture<CompletedKey> claim = new CompletableFuture<>();
+        CompletableFuture<CompletedKey> running = inFlight.putIfAbsent(idempotencyKey, claim);
+        if (running != null) {
+            return replay(idempotencyKey, await(running), requestHash, "collapsed");
+        }
+        try {
+            return createOnce(idempotencyKey, requestHash, orderDTO, claim);
+        } catch (RuntimeException e) {
+            claim.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(idempotencyKey, claim);
+        }
+    }
+
+    /**
+     * Replays the order of a key from the in-memory cache of recent keys, without a round trip. Run before the
+     * admission control, so a retry is answered even while the service sheds new order creations.
+     *
+     * @param idempotencyKey the key sent by the client, or {@code null}
+     * @param orderDTO       the order creation request
+     * @return the order created for the key, or {@code null} if the key is absent, invalid or not cached
+     * @throws ErrorResponseException if the key was used for a different request
+     */
+    public IdempotentOrder replayCached(String idempotencyKey, OrderDTO orderDTO) {
+        if (idempotencyKey == null || idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            return null;
+        }
+        CompletedKey recent = recentKeys.get(idempotencyKey);
+        return recent == null ? null : replay(idempotencyKey, recent, hash(orderDTO), "cached");
+    }
+
+    /**
+     * Deletes the keys older than the TTL, after which a retry creates a new order.
+     */
+    @Scheduled(fixedDelayString = "${idempotency.cleanup-interval-ms:600000}")
+    public void deleteExpiredKeys() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(ttl);
+        int deleted = idempotencyKeyRepository.deleteCreatedBefore(cutoff);
+        logger.info("Deleted {} idempotency keys received before {}", deleted, cutoff);
+    }
+
+    /**
+     * Claims the key and creates the order, unless another request already claimed it and did not abandon it.
+     */
+    private IdempotentOrder createOnce(String idempotencyKey, String requestHash, OrderDTO orderDTO,
+                                       CompletableFuture<CompletedKey> claim) {
+        LocalDateTime now = LocalDateTime.now();
+        if (idempotencyKeyRepository.claim(idempotencyKey, requestHash, now) == 0) {
+            if (idempotencyKeyRepository.reclaim(idempotencyKey, requestHash, now, now.minus(claimTimeout)) == 0) {
+                CompletedKey stored = stored(idempotencyKey);
+                claim.complete(stored);
+                return replay(idempotencyKey, stored, requestHash, "stored");
+            }
+            logger.warn("Took over idempotency key {}, claimed over {} ago without an order", idempotencyKey,
+                    claimTimeout);
+            count("reclaimed");
+        }
+
+        Order order;
+        try {
+            order = orderService.createOrder(orderDTO);
+        } catch (RuntimeException e) {
+            release(idempotencyKey, e);
+            throw e;
+        }
+
+        CompletedKey completed = new CompletedKey(requestHash, order);
+        // Cached first, so the retries reaching this instance get the order even if it cannot be recorded
+        recentKeys.put(idempotencyKey, completed);
+        record(idempotencyKey, order);
+        claim.complete(completed);
+        count("created");
+        return new IdempotentOrder(order, false);
+    }
+
+    /**
+     * Releases the key of a request whose order could not be created, so it can be retried. A key that cannot be
+     * released either is taken over after the claim timeout.
+     */
+    private void release(String idempotencyKey, RuntimeException failure) {
+        logger.warn("Releasing idempotency key {} after the order creation failed", idempotencyKey);
+        try {
+            idempotencyKeyRepository.deleteById(idempotencyKey);
+        } catch (RuntimeException e) {
+            logger.error("Could not release idempotency key {}, it is taken over after {}", idempotencyKey,
+                    claimTimeout, e);
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Records the created order for the key. The order is stored and published by then, so the key is never
+     * released: if it cannot be recorded, it is taken over after the claim timeout.
+     */
+    private void record(String idempotencyKey, Order order) {
+        String response = toJson(order);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                idempotencyKeyRepository.complete(idempotencyKey, order.getId(), response);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt == RECORD_ATTEMPTS) {
+                    logger.error("Could not record order {} for idempotency key {}, it is taken over after {}",
+                            order.getId(), idempotencyKey, claimTimeout, e);
+                    count("unrecorded");
+                    return;
+                }
+                logger.warn("Could not record order {} for idempotency key {}, attempt {} of {}", order.getId(),
+                        idempotencyKey, attempt, RECORD_ATTEMPTS, e);
+            }
+        }
+    }
+
+    /**
+     * Reads the order recorded for a key claimed by another request.
+     */
+    private CompletedKey stored(String idempotencyKey) {
+        IdempotencyKey stored = idempotencyKeyRepository.findById(idempotencyKey).orElse(null);
+        if (stored == null || stored.getResponse() == null) {
+            // Claimed by a request still running on another instance, or released by one that just failed
+            count("in-progress");
+            ErrorResponseException inProgress = problem(HttpStatus.CONFLICT,
+                    "A request with this " + IDEMPOTENCY_KEY + " is still being processed");
+            inProgress.getHeaders().set(HttpHeaders.RETRY_AFTER, IN_PROGRESS_RETRY_AFTER_SECONDS);
+            throw inProgress;
+        }
+        CompletedKey completed = new CompletedKey(stored.getRequestHash(), fromJson(stored.getResponse()));
+        recentKeys.put(idempotencyKey, completed);
+        return completed;
+    }
+
+    private IdempotentOrder replay(String idempotencyKey, CompletedKey completed, String requestHash, String outcome) {
+        if (!completed.requestHash().equals(requestHash)) {
+            count("mismatch");
+            throw problem(HttpStatus.UNPROCESSABLE_ENTITY,
+                    IDEMPOTENCY_KEY + " " + idempotencyKey + " was already used for a different request");
+        }
+        logger.info("Replaying order {} for idempotency key {}", completed.order().getId(), idempotencyKey);
+        count(outcome);
+        return new IdempotentOrder(completed.order(), true);
+    }
+
+    private static CompletedKey await(CompletableFuture<CompletedKey> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private String hash(OrderDTO orderDTO) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(objectMapper.writeValueAsBytes(orderDTO)));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not hash the order request", e);
+        }
+    }
+
+    private String toJson(Order order) {
+        try {
+            return objectMapper.writeValueAsString(order);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize order " + order.getId(), e);
+        }
+    }
+
+    private Order fromJson(String response) {
+        try {
+            return objectMapper.readValue(response, Order.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not read a stored order", e);
+        }
+    }
+
+    private void count(String outcome) {
+        Counter.builder("orders.idempotency.requests")
+                .description("Order creation requests sent with an Idempotency-Key")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static ErrorResponseException problem(HttpStatus status, String detail) {
+        ErrorResponseException problem = new ErrorResponseException(status);
+        problem.setDetail(detail);
+        return problem;
+    }
+
+    /**
+     * The order created for a key, returned as is to every retry with the same request body.
+     */
+    private record CompletedKey(String requestHash, Order order) {
+    }
+
+    /**
+     * Least recently used keys, dropped after the TTL like their rows.
+     */
+    private final class RecentKeys {
+
+        private final Map<String, CachedKey> keys;
+
+        private RecentKeys(int capacity) {
+            this.keys = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedKey> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        synchronized CompletedKey get(String key) {
+            CachedKey cached = keys.get(key);
+            if (cached == null) {
+                return null;
+            }
+            if (System.nanoTime() - cached.cachedAt() > ttl.toNanos()) {
+                keys.remove(key);
+                return null;
+            }
+            return cached.completed();
+        }
+
+        synchronized void put(String key, CompletedKey completed) {
+            keys.put(key, new CachedKey(completed, System.nanoTime()));
+        }
+    }
+
+    private record CachedKey(CompletedKey completed, long cachedAt) {
+    }
+}
@@ -0,0 +1,12 @@
+package com.personal_projects.order_service.order.idempotency;
+
+import com.personal_projects.order_service.data.entity.Order;
+
+/**
+ * Result of an order creation request sent with an {@code Idempotency-Key}.
+ *
+ * @param order    the order created for the key
+ * @param replayed whether the order was created by an earlier request with the same key
+ */
+public record IdempotentOrder(Order order, boolean replayed) {
+}
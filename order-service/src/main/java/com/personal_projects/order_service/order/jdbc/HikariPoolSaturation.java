@@ -0,0 +1,73 @@
+package com.personal_projects.order_service.order.jdbc;
+
+import com.personal_projects.common.Backpressure.DownstreamPool;
+import com.personal_projects.order_service.order.shard.OrderShards;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Saturation of the order database's Hikari pools, watched by the listeners' circuit breakers when
+ * {@code backpressure.enabled} is set. With several shards, it is that of the most saturated shard.
+ *
+ * <p>The pools are looked up on first use, through the {@link SlowQueryDataSource} wrapping an unsharded data
+ * source.</p>
+ */
+@Component
+public class HikariPoolSaturation implements DownstreamPool {
+
+    private final ObjectProvider<OrderShards> orderShards;
+
+    private volatile List<HikariDataSource> hikari;
+
+    public HikariPoolSaturation(ObjectProvider<OrderShards> orderShards) {
+        this.orderShards = orderShards;
+    }
+
+    @Override
+    public String name() {
+        return "hikari";
+    }
+
+    @Override
+    public double saturation() {
+        double saturation = 0;
+        for (HikariDataSource pool : hikari()) {
+            HikariPoolMXBean stats = pool.getHikariPoolMXBean();
+            if (stats != null) {
+                saturation = Math.max(saturation,
+                        (double) (stats.getActiveConnections() + stats.getThreadsAwaitingConnection())
+                                / Math.max(1, pool.getMaximumPoolSize()));
+            }
+        }
+        return saturation;
+    }
+
+    private List<HikariDataSource> hikari() {
+        if (hikari == null) {
+            OrderShards shards = orderShards.getIfAvailable();
+            if (shards == null) {
+                return List.of();
+            }
+            List<HikariDataSource> pools = new ArrayList<>();
+            try {
+                for (int shard = 0; shard < shards.count(); shard++) {
+                    DataSource dataSource = shards.dataSource(shard);
+                    if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                        pools.add(dataSource.unwrap(HikariDataSource.class));
+                    }
+                }
+            } catch (SQLException e) {
+                return List.of();
+            }
+            hikari = List.copyOf(pools);
+        }
+        return hikari;
+    }
+}
@@ -0,0 +1,97 @@
+package com.personal_projects.order_service.order.jdbc;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Keeps the reads of a client on the primary for a while after it wrote, so that it reads its own writes even
+ * from replicas that are behind.
+ * <p>
+ * A request that may write, i.e. any but {@code GET}, {@code HEAD} and {@code OPTIONS}, runs pinned to the primary,
+ * and its response sets the {@value #COOKIE} cookie to the time until which the client keeps reading from the
+ * primary, {@code datasource.replicas.read-your-writes-ms} later. The requests carrying the cookie until then run
+ * pinned to the primary too. The cookie holds the state, so it follows the client to every instance of the
+ * service; a client that ignores cookies just reads from the replicas.
+ * </p>
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String COOKIE = "read-primary-until";
+
+    private static final Set<String> READ_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private final Duration window;
+
+    /**
+     * Creates the filter.
+     *
+     * @param window the time a client reads from the primary after a write
+     */
+    public ReadYourWritesFilter(Duration window) {
+        this.window = window;
+    }
+
+    /**
+     * @return whether the current request reads from the primary
+     */
+    static boolean primaryPinned() {
+        return PINNED.get() != null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long now = System.currentTimeMillis();
+        boolean pinned;
+        if (READ_METHODS.contains(request.getMethod())) {
+            long until = pinnedUntil(request);
+            // A value further than the window was not set by a write
+            pinned = until > now && until - now <= window.toMillis();
+        } else {
+            // Set before the response is committed by the handler
+            Cookie cookie = new Cookie(COOKIE, Long.toString(now + window.toMillis()));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, window.toSeconds() + 1));
+            response.addCookie(cookie);
+            pinned = true;
+        }
+
+        if (!pinned) {
+            chain.doFilter(request, response);
+            return;
+        }
+        PINNED.set(Boolean.TRUE);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            PINNED.remove();
+        }
+    }
+
+    private static long pinnedUntil(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,206 @@
+package com.personal_projects.order_service.order.jdbc;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures how far behind the primary each read replica of the order database is, and picks the replicas reads can
+ * be served from.
+ * <p>
+ * Every {@code datasource.replicas.lag-check-interval-ms}, the monitor reads the current WAL position of the
+ * primary, then the position each replica has replayed up to. A replica that replayed the position the primary was
+ * at some time ago holds every transaction committed before that time, so its lag is bounded by the age of the
+ * newest such sample. The bound holds whatever the reason a replica falls behind: a slow replay, a paused one, a
+ * broken replication connection, or the replica being unreachable, in which case its lag just grows from its last
+ * successful check. A replica whose lag is over {@code datasource.replicas.max-lag-ms}, counting the time since
+ * its last check, is skipped until it catches up, and a server that is not in recovery is never used as a replica.
+ * </p>
+ * <p>
+ * The lag of each replica is published in {@code orders.datasource.replica.lag}.
+ * </p>
+ */
+public class ReplicaLagMonitor implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    private static final long NEVER = Long.MIN_VALUE / 2;
+
+    private static final String PRIMARY_POSITION = "SELECT pg_wal_lsn_diff(pg_current_wal_lsn(), '0/0')::bigint";
+    private static final String REPLAYED_POSITION =
+            "SELECT pg_is_in_recovery(), pg_wal_lsn_diff(pg_last_wal_replay_lsn(), '0/0')::bigint";
+
+    private final DataSource primary;
+    private final Map<String, Replica> replicas = new LinkedHashMap<>();
+    private final long maxLagNanos;
+    private final JdbcTemplate primaryTemplate;
+    private final Deque<Sample> samples = new ArrayDeque<>();
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Constructs the monitor.
+     *
+     * @param primary       the primary, also the pool closed with the monitor
+     * @param replicas      the replicas by name, closed with the monitor
+     * @param maxLag        the lag from which a replica is skipped
+     * @param meterRegistry registry for the replica lag gauges
+     */
+    public ReplicaLagMonitor(DataSource primary, Map<String, DataSource> replicas, Duration maxLag,
+                             MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.maxLagNanos = maxLag.toNanos();
+        this.primaryTemplate = new JdbcTemplate(primary);
+        replicas.forEach((name, dataSource) -> {
+            Replica replica = new Replica(name, dataSource);
+            this.replicas.put(name, replica);
+            Gauge.builder("orders.datasource.replica.lag", replica, r -> r.lagMillis(System.nanoTime()))
+                    .description("Upper bound of the time the replica is behind the primary, NaN until it caught up")
+                    .baseUnit("milliseconds")
+                    .tag("replica", name)
+                    .register(meterRegistry);
+        });
+    }
+
+    /**
+     * @return the primary
+     */
+    public DataSource primary() {
+        return primary;
+    }
+
+    /**
+     * @return the replicas by name
+     */
+    public Map<String, DataSource> replicas() {
+        Map<String, DataSource> dataSources = new LinkedHashMap<>();
+        replicas.forEach((name, replica) -> dataSources.put(name, replica.dataSource));
+        return dataSources;
+    }
+
+    /**
+     * Picks the next replica within the max lag, in turns.
+     *
+     * @return the name of the replica, or {@code null} if every replica is too far behind
+     */
+    public String nextInSync() {
+        long now = System.nanoTime();
+        List<String> inSync = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas.values()) {
+            if (now - replica.caughtUpAt <= maxLagNanos) {
+                inSync.add(replica.name);
+            }
+        }
+        if (inSync.isEmpty()) {
+            return null;
+        }
+        return inSync.get(Math.floorMod(next.getAndIncrement(), inSync.size()));
+    }
+
+    /**
+     * Samples the position of the primary and compares every replica with the samples.
+     */
+    @Scheduled(fixedDelayString = "${datasource.replicas.lag-check-interval-ms:250}")
+    public synchronized void check() {
+        // Taken before reading the position, so that every transaction committed before it is at or below it
+        long sampledAt = System.nanoTime();
+        try {
+            Long position = primaryTemplate.queryForObject(PRIMARY_POSITION, Long.class);
+            if (position != null) {
+                samples.addLast(new Sample(sampledAt, position));
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not read the WAL position of the primary: {}", e.getMessage());
+        }
+        // Samples older than the max lag cannot make a replica usable
+        while (samples.size() > 1 && sampledAt - samples.peekFirst().sampledAt() > maxLagNanos) {
+            samples.removeFirst();
+        }
+
+        for (Replica replica : replicas.values()) {
+            replica.check(samples);
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas.values()) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+        if (primary instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private record Sample(long sampledAt, long position) {
+    }
+
+    private final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private final JdbcTemplate template;
+        private volatile long caughtUpAt = NEVER;
+        private boolean inSync;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.template = new JdbcTemplate(dataSource);
+        }
+
+        private void check(Deque<Sample> samples) {
+            try {
+                long replayed = template.queryForObject(REPLAYED_POSITION, (row, rowNum) -> {
+                    if (!row.getBoolean(1)) {
+                        throw new IllegalStateException("the server is not in recovery");
+                    }
+                    return row.getLong(2);
+                });
+                for (Iterator<Sample> newestFirst = samples.descendingIterator(); newestFirst.hasNext(); ) {
+                    Sample sample = newestFirst.next();
+                    if (sample.position() <= replayed) {
+                        caughtUpAt = Math.max(caughtUpAt, sample.sampledAt());
+                        break;
+                    }
+                }
+            } catch (RuntimeException e) {
+                logger.debug("Could not check replica {}: {}", name, e.getMessage());
+            }
+
+            long now = System.nanoTime();
+            boolean nowInSync = now - caughtUpAt <= maxLagNanos;
+            if (nowInSync != inSync) {
+                inSync = nowInSync;
+                if (nowInSync) {
+                    logger.info("Replica {} caught up with the primary, serving reads", name);
+                } else {
+                    logger.warn("Replica {} is over {} ms behind the primary, reads fall back to the primary", name,
+                            Duration.ofNanos(maxLagNanos).toMillis());
+                }
+            }
+        }
+
+        private double lagMillis(long now) {
+            if (caughtUpAt == NEVER) {
+                return Double.NaN;
+            }
+            return Duration.ofNanos(now - caughtUpAt).toMillis();
+        }
+    }
+}
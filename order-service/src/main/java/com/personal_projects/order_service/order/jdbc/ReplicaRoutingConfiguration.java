@@ -0,0 +1,121 @@
+package com.personal_projects.order_service.order.jdbc;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Configuration routing the read-only transactions of the order service to read replicas, when
+ * {@code datasource.replicas.enabled} is set.
+ *
+ * <p>The primary pool is built from the {@code spring.datasource.*} settings, replacing the auto-configured one,
+ * and a pool with the same {@code spring.datasource.hikari.*} settings is built for each JDBC URL of
+ * {@code datasource.replicas.urls}, with the credentials of the primary unless {@code datasource.replicas.username}
+ * and {@code datasource.replicas.password} are set. They are exposed as a single {@link DataSource}, a
+ * {@link ReplicaRoutingDataSource} behind a {@link LazyConnectionDataSourceProxy}, so the repositories, Flyway and
+ * the slow query log see one data source as before.</p>
+ *
+ * <p>Replicas more than {@code datasource.replicas.max-lag-ms} behind, as checked by the {@link ReplicaLagMonitor}
+ * every {@code datasource.replicas.lag-check-interval-ms}, are skipped. The requests of a client within
+ * {@code datasource.replicas.read-your-writes-ms} of its last write are pinned to the primary by the
+ * {@link ReadYourWritesFilter}.</p>
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "datasource.replicas.enabled", havingValue = "true")
+public class ReplicaRoutingConfiguration {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingConfiguration.class);
+
+    /**
+     * Builds the primary and replica pools, closed with the monitor.
+     *
+     * @param properties    the {@code spring.datasource.*} settings
+     * @param environment   the environment holding the pool and replica settings
+     * @param meterRegistry registry for the replica pool metrics and lag gauges
+     * @return the monitor of the replica lag
+     */
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(DataSourceProperties properties, Environment environment,
+                                               MeterRegistry meterRegistry) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = pool(properties.initializeDataSourceBuilder(), binder);
+
+        String username = environment.getProperty("datasource.replicas.username", properties.determineUsername());
+        String password = environment.getProperty("datasource.replicas.password", properties.determinePassword());
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        String[] urls = StringUtils.commaDelimitedListToStringArray(
+                environment.getProperty("datasource.replicas.urls", ""));
+        for (String url : urls) {
+            if (url.isBlank()) {
+                continue;
+            }
+            String name = "replica-" + replicas.size();
+            HikariDataSource replica = pool(properties.initializeDataSourceBuilder()
+                    .url(url.trim()).username(username).password(password), binder);
+            replica.setPoolName(name);
+            replica.setReadOnly(true);
+            replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            replicas.put(name, replica);
+        }
+        if (replicas.isEmpty()) {
+            logger.warn("datasource.replicas.enabled is set without any datasource.replicas.urls, "
+                    + "reading from the primary");
+        }
+
+        Duration maxLag = Duration.ofMillis(environment.getProperty("datasource.replicas.max-lag-ms", Long.class,
+                1000L));
+        long checkInterval = environment.getProperty("datasource.replicas.lag-check-interval-ms", Long.class, 250L);
+        if (checkInterval >= maxLag.toMillis()) {
+            logger.warn("datasource.replicas.lag-check-interval-ms ({}) is not below datasource.replicas.max-lag-ms "
+                    + "({}), replicas will be skipped between checks", checkInterval, maxLag.toMillis());
+        }
+        return new ReplicaLagMonitor(primary, replicas, maxLag, meterRegistry);
+    }
+
+    /**
+     * Data source of the order service, routing between the primary and the replicas.
+     *
+     * @param replicaLagMonitor the monitor holding the pools
+     * @param meterRegistry     registry for the read counters
+     * @return the data source
+     */
+    @Bean
+    public DataSource dataSource(ReplicaLagMonitor replicaLagMonitor, MeterRegistry meterRegistry) {
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(replicaLagMonitor, meterRegistry));
+    }
+
+    /**
+     * Filter keeping the clients that just wrote on the primary.
+     *
+     * @param environment the environment holding the read-your-writes window
+     * @return the filter
+     */
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(Environment environment) {
+        return new ReadYourWritesFilter(Duration.ofMillis(
+                environment.getProperty("datasource.replicas.read-your-writes-ms", Long.class, 5000L)));
+    }
+
+    private static HikariDataSource pool(DataSourceBuilder<?> builder, Binder binder) {
+        HikariDataSource pool = builder.type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        return pool;
+    }
+}
@@ -0,0 +1,85 @@
+package com.personal_projects.order_service.order.jdbc;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link javax.sql.DataSource} sending the read-only transactions to the read replicas of the order database, and
+ * everything else to the primary.
+ * <p>
+ * A connection is taken from a replica, picked in turns by the {@link ReplicaLagMonitor} among those within the
+ * max lag, only when:
+ * <ul>
+ *     <li>it is for a transaction declared {@code readOnly}, such as those of the Spring Data repository queries
+ *     serving the reads of {@code OrderService}, joined by no read-write transaction;</li>
+ *     <li>the current request is not pinned to the primary by the {@link ReadYourWritesFilter}, as writing or
+ *     coming from a client that just wrote.</li>
+ * </ul>
+ * Everything else, such as the writes, the Kafka listeners, Flyway and the partition maintenance, uses the primary.
+ * The routing must see the transaction settled before it is asked for the connection, so this data source is
+ * used behind a {@link LazyConnectionDataSourceProxy}, which takes the connection on the first statement.
+ * </p>
+ * <p>
+ * The reads are counted in {@code orders.datasource.reads}, by target and reason: {@code replica}, or
+ * {@code primary} because of a {@code recent-write} or of the {@code replica-lag}.
+ * </p>
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    private final ReplicaLagMonitor replicaLagMonitor;
+    private final Counter replicaReads;
+    private final Counter recentWriteReads;
+    private final Counter laggingReplicaReads;
+
+    /**
+     * Creates the data source, ready to use.
+     *
+     * @param replicaLagMonitor the monitor holding the primary and the replicas
+     * @param meterRegistry     registry for the read counters
+     */
+    public ReplicaRoutingDataSource(ReplicaLagMonitor replicaLagMonitor, MeterRegistry meterRegistry) {
+        this.replicaLagMonitor = replicaLagMonitor;
+        this.replicaReads = reads(meterRegistry, "replica", "replica");
+        this.recentWriteReads = reads(meterRegistry, PRIMARY, "recent-write");
+        this.laggingReplicaReads = reads(meterRegistry, PRIMARY, "replica-lag");
+        Map<Object, Object> targets = new HashMap<>(replicaLagMonitor.replicas());
+        targets.put(PRIMARY, replicaLagMonitor.primary());
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(replicaLagMonitor.primary());
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        if (ReadYourWritesFilter.primaryPinned()) {
+            recentWriteReads.increment();
+            return PRIMARY;
+        }
+        String replica = replicaLagMonitor.nextInSync();
+        if (replica == null) {
+            laggingReplicaReads.increment();
+            return PRIMARY;
+        }
+        replicaReads.increment();
+        return replica;
+    }
+
+    private static Counter reads(MeterRegistry meterRegistry, String target, String reason) {
+        return Counter.builder("orders.datasource.reads")
+                .description("Connections taken for read-only transactions, by the database serving them")
+                .tags("target", target, "reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,57 @@
+package com.personal_projects.order_service.order.jdbc;
+
+import com.personal_projects.common.Queries.ExplainSampler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Configuration wrapping the order database {@link DataSource} in a {@link SlowQueryDataSource}.
+ *
+ * <p>Statements slower than {@code slow-query.threshold-ms} are logged with their literals redacted, and
+ * {@code slow-query.explain-sample-rate} of them are explained, each statement at most once per
+ * {@code slow-query.explain-interval-ms}.</p>
+ *
+ * <p>The wrapping is done by a post-processor so the auto-configured, pooled data source and its
+ * {@code spring.datasource.*} settings are kept.</p>
+ */
+@Configuration
+public class SlowQueryConfiguration {
+
+    /**
+     * Post-processor wrapping every {@link DataSource} bean.
+     *
+     * @param environment   the environment holding the slow query settings
+     * @param meterRegistry registry for the slow statement counter, resolved when the data source is created
+     * @return the post-processor
+     */
+    @Bean
+    public static BeanPostProcessor slowQueryDataSourcePostProcessor(Environment environment,
+                                                                     ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof SlowQueryDataSource) {
+                    return bean;
+                }
+                ExplainSampler explainSampler = new ExplainSampler("sql-explain",
+                        environment.getProperty("slow-query.explain-sample-rate", Double.class, 0.1),
+                        Duration.ofMillis(environment.getProperty("slow-query.explain-interval-ms", Long.class, 60000L)));
+                Counter slowStatements = Counter.builder("jdbc.slow.statements")
+                        .description("SQL statements slower than the slow query threshold")
+                        .tag("datasource", beanName)
+                        .register(meterRegistry.getObject());
+                return new SlowQueryDataSource(dataSource,
+                        Duration.ofMillis(environment.getProperty("slow-query.threshold-ms", Long.class, 100L)),
+                        explainSampler, slowStatements);
+            }
+        };
+    }
+}
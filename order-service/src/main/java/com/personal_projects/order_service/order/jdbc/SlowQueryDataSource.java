@@ -0,0 +1,197 @@
+package com.personal_projects.order_service.order.jdbc;
+
+import com.personal_projects.common.Queries.ExplainSampler;
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DataSource} logging statements slower than a threshold and capturing a sample of their plans.
+ * <p>
+ * Connections and statements are wrapped in proxies timing every {@code execute*} call. A slow statement is
+ * logged with its literals redacted by {@link SqlRedaction}; bound parameters are never logged. It is also
+ * counted in {@code jdbc.slow.statements}. A sample of the slow queries and modifications is explained on a
+ * separate connection through the {@link ExplainSampler}. Statements with parameters are explained with
+ * {@code EXPLAIN (GENERIC_PLAN)}, which plans them without values, so the explain never needs the bound data.
+ * A plan containing a sequential scan is logged as a warning, as it points to a missing index.
+ * </p>
+ * <p>
+ * This replaces {@code spring.jpa.show-sql}, which printed every statement to standard output.
+ * </p>
+ * <p>
+ * Closing it stops the explain thread and closes the wrapped data source: the wrapper takes the place of the
+ * data source bean, so the context closes the wrapper only.
+ * </p>
+ */
+public class SlowQueryDataSource extends DelegatingDataSource implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SlowQueryDataSource.class);
+
+    private final long thresholdNanos;
+    private final ExplainSampler explainSampler;
+    private final Counter slowStatements;
+
+    /**
+     * Creates the data source.
+     *
+     * @param target         the data source to wrap
+     * @param threshold      duration from which a statement is considered slow
+     * @param explainSampler sampler running the explain captures
+     * @param slowStatements counter of slow statements
+     */
+    public SlowQueryDataSource(DataSource target, Duration threshold, ExplainSampler explainSampler,
+                               Counter slowStatements) {
+        super(target);
+        this.thresholdNanos = threshold.toNanos();
+        this.explainSampler = explainSampler;
+        this.slowStatements = slowStatements;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    @Override
+    public void close() throws Exception {
+        explainSampler.close();
+        if (getTargetDataSource() instanceof AutoCloseable target) {
+            target.close();
+        }
+    }
+
+    private Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private void executed(String sql, long elapsedNanos) {
+        if (elapsedNanos < thresholdNanos || sql == null) {
+            return;
+        }
+        slowStatements.increment();
+        String redacted = SqlRedaction.redact(sql);
+        logger.warn("Slow SQL statement ({} ms): {}", TimeUnit.NANOSECONDS.toMillis(elapsedNanos), redacted);
+        if (isExplainable(sql)) {
+            explainSampler.maybeExplain(redacted, () -> explain(sql, redacted));
+        }
+    }
+
+    private static boolean isExplainable(String sql) {
+        String verb = sql.stripLeading().toLowerCase(Locale.ROOT);
+        return verb.startsWith("select") || verb.startsWith("with")
+                || verb.startsWith("update") || verb.startsWith("delete");
+    }
+
+    private void explain(String sql, String redacted) {
+        String numbered = SqlRedaction.numberPlaceholders(sql);
+        String explain = numbered.equals(sql) ? "EXPLAIN " + sql : "EXPLAIN (GENERIC_PLAN) " + numbered;
+        StringJoiner plan = new StringJoiner(System.lineSeparator());
+        try (Connection connection = getTargetDataSource().getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery(explain)) {
+            while (rows.next()) {
+                plan.add(rows.getString(1));
+            }
+        } catch (SQLException e) {
+            logger.warn("Could not explain slow SQL statement {}: {}", redacted, e.getMessage());
+            return;
+        }
+        if (plan.toString().contains("Seq Scan")) {
+            logger.warn("Plan of slow SQL statement {} scans a table sequentially, an index may be missing:{}{}",
+                    redacted, System.lineSeparator(), plan);
+        } else {
+            logger.info("Plan of slow SQL statement {}:{}{}", redacted, System.lineSeparator(), plan);
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Wraps the statements created by a connection, remembering the SQL of prepared statements.
+     */
+    private final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection connection;
+
+        private ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = SlowQueryDataSource.invoke(connection, method, args);
+            if (result instanceof CallableStatement statement) {
+                return wrap(statement, CallableStatement.class, (String) args[0]);
+            }
+            if (result instanceof PreparedStatement statement) {
+                return wrap(statement, PreparedStatement.class, (String) args[0]);
+            }
+            if (result instanceof Statement statement) {
+                return wrap(statement, Statement.class, null);
+            }
+            return result;
+        }
+
+        private Object wrap(Statement statement, Class<? extends Statement> type, String sql) {
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    new StatementHandler(statement, sql));
+        }
+    }
+
+    /**
+     * Times the {@code execute*} calls of a statement.
+     */
+    private final class StatementHandler implements InvocationHandler {
+
+        private final Statement statement;
+        private final String preparedSql;
+
+        private StatementHandler(Statement statement, String preparedSql) {
+            this.statement = statement;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!method.getName().startsWith("execute")) {
+                return SlowQueryDataSource.invoke(statement, method, args);
+            }
+            String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : preparedSql;
+            long start = System.nanoTime();
+            try {
+                return SlowQueryDataSource.invoke(statement, method, args);
+            } finally {
+                executed(sql, System.nanoTime() - start);
+            }
+        }
+    }
+}
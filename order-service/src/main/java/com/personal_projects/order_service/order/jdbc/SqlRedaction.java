@@ -0,0 +1,92 @@
+package com.personal_projects.order_service.order.jdbc;
+
+/**
+ * Rewrites SQL statements for the slow query log and for explains.
+ */
+final class SqlRedaction {
+
+    private SqlRedaction() {
+    }
+
+    /**
+     * Replaces the string and numeric literals of a statement with {@code ?}, so a logged statement carries
+     * its shape but no data. Bound parameters are already {@code ?} placeholders and are never logged.
+     *
+     * @param sql the statement
+     * @return the redacted statement
+     */
+    static String redact(String sql) {
+        StringBuilder redacted = new StringBuilder(sql.length());
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                i = skipQuoted(sql, i, '\'');
+                redacted.append('?');
+            } else if (c == '"') {
+                int end = skipQuoted(sql, i, '"');
+                redacted.append(sql, i, end);
+                i = end;
+            } else if (Character.isDigit(c) && (i == 0 || !isIdentifierPart(sql.charAt(i - 1)))) {
+                while (i < sql.length() && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                redacted.append('?');
+            } else {
+                redacted.append(c);
+                i++;
+            }
+        }
+        return redacted.toString();
+    }
+
+    /**
+     * Numbers the JDBC {@code ?} placeholders outside quotes as {@code $1, $2, ...}, the form PostgreSQL
+     * accepts in {@code EXPLAIN (GENERIC_PLAN)}.
+     *
+     * @param sql the statement
+     * @return the statement with numbered placeholders
+     */
+    static String numberPlaceholders(String sql) {
+        StringBuilder numbered = new StringBuilder(sql.length() + 8);
+        int parameter = 0;
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"') {
+                int end = skipQuoted(sql, i, c);
+                numbered.append(sql, i, end);
+                i = end;
+            } else if (c == '?') {
+                numbered.append('$').append(++parameter);
+                i++;
+            } else {
+                numbered.append(c);
+                i++;
+            }
+        }
+        return numbered.toString();
+    }
+
+    /**
+     * @return the index just past the quoted section starting at {@code start}, handling doubled quotes
+     */
+    private static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return sql.length();
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+}
@@ -1,15 +1,26 @@
 package com.personal_projects.order_service.order.kafka;
 
+import com.personal_projects.common.Backpressure.BackpressureMonitor;
+import com.personal_projects.common.Backpressure.BackpressureRecordInterceptor;
+import com.personal_projects.common.Dedupe.DedupeRecordInterceptor;
+import com.personal_projects.common.Dedupe.DedupeWindow;
 import com.personal_projects.common.Events.PaymentEvent;
 import com.personal_projects.common.Events.ShipmentEvent;
+import com.personal_projects.common.Journal.EventJournal;
+import com.personal_projects.common.Journal.JournalRecordInterceptor;
+import com.personal_projects.common.Membership.GroupMembership;
+import com.personal_projects.common.Parallel.KeyOrderedDispatcher;
+import com.personal_projects.common.Scaling.ConsumerLagMonitor;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 
 import java.util.HashMap;
@@ -59,7 +70,7 @@ public class OrderKafkaConsumer {
         return new DefaultKafkaConsumerFactory<>(
                 consumerConfig(),
                 new StringDeserializer(),
-                deserializer
+                new ErrorHandlingDeserializer<>(deserializer) // Undeserializable records go to the dead-letter topic
         );
     }
 
@@ -75,33 +86,85 @@ public class OrderKafkaConsumer {
         return new DefaultKafkaConsumerFactory<>(
                 consumerConfig(),
                 new StringDeserializer(),
-                deserializer
+                new ErrorHandlingDeserializer<>(deserializer) // Undeserializable records go to the dead-letter topic
         );
     }
 
     /**
      * Creates a {@link ConcurrentKafkaListenerContainerFactory} for handling {@code PaymentEvent} messages.
      *
+     * @param consumerLagMonitor   the monitor timing the records processed by the listener
+     * @param dedupeWindow         the window of processed events, available when deduping is enabled
+     * @param eventJournal         the journal of the consumed records, available when journaling is enabled
+     * @param backpressure         the monitor pausing the listener when the database struggles, available when
+     *                             backpressure is enabled
+     * @param keyOrderedDispatcher the dispatcher of the parallel listeners, available when parallel consumption is
+     *                             enabled
+     * @param groupMembership      the membership of the listeners in their consumer group
      * @return a Kafka listener container factory configured for {@code PaymentEvent}.
      */
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, PaymentEvent> paymentKafkaListenerContainerFactory() {
+    public ConcurrentKafkaListenerContainerFactory<String, PaymentEvent> paymentKafkaListenerContainerFactory(
+            ConsumerLagMonitor consumerLagMonitor,
+            ObjectProvider<DedupeWindow> dedupeWindow,
+            ObjectProvider<EventJournal> eventJournal,
+            ObjectProvider<BackpressureMonitor> backpressure,
+            ObjectProvider<KeyOrderedDispatcher> keyOrderedDispatcher,
+            GroupMembership groupMembership) {
         ConcurrentKafkaListenerContainerFactory<String, PaymentEvent> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(paymentConsumerFactory());
+        factory.getContainerProperties().setObservationEnabled(true); // Restores the trace context from the record headers
+        factory.setContainerCustomizer(container -> {
+            // Joins the group cooperatively, as a static member when the instance has an ID
+            groupMembership.join(container, factory.getConsumerFactory());
+            // Times records, pauses on database trouble, drops redeliveries and journals the rest, on the consumer
+            // thread or, for a parallel listener, on the worker processing the record
+            KeyOrderedDispatcher.install(keyOrderedDispatcher, container,
+                    consumerLagMonitor.interceptors(container,
+                            BackpressureRecordInterceptor.ifAvailable(backpressure, container),
+                            DedupeRecordInterceptor.ifAvailable(dedupeWindow),
+                            JournalRecordInterceptor.ifAvailable(eventJournal)));
+        });
         return factory;
     }
 
     /**
      * Creates a {@link ConcurrentKafkaListenerContainerFactory} for handling {@code ShipmentEvent} messages.
      *
+     * @param consumerLagMonitor   the monitor timing the records processed by the listener
+     * @param dedupeWindow         the window of processed events, available when deduping is enabled
+     * @param eventJournal         the journal of the consumed records, available when journaling is enabled
+     * @param backpressure         the monitor pausing the listener when the database struggles, available when
+     *                             backpressure is enabled
+     * @param keyOrderedDispatcher the dispatcher of the parallel listeners, available when parallel consumption is
+     *                             enabled
+     * @param groupMembership      the membership of the listeners in their consumer group
      * @return a Kafka listener container factory configured for {@code ShipmentEvent}.
      */
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, ShipmentEvent> shipmentKafkaListenerContainerFactory() {
+    public ConcurrentKafkaListenerContainerFactory<String, ShipmentEvent> shipmentKafkaListenerContainerFactory(
+            ConsumerLagMonitor consumerLagMonitor,
+            ObjectProvider<DedupeWindow> dedupeWindow,
+            ObjectProvider<EventJournal> eventJournal,
+            ObjectProvider<BackpressureMonitor> backpressure,
+            ObjectProvider<KeyOrderedDispatcher> keyOrderedDispatcher,
+            GroupMembership groupMembership) {
         ConcurrentKafkaListenerContainerFactory<String, ShipmentEvent> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(shipmentConsumerFactory());
+        factory.getContainerProperties().setObservationEnabled(true); // Restores the trace context from the record headers
+        factory.setContainerCustomizer(container -> {
+            // Joins the group cooperatively, as a static member when the instance has an ID
+            groupMembership.join(container, factory.getConsumerFactory());
+            // Times records, pauses on database trouble, drops redeliveries and journals the rest, on the consumer
+            // thread or, for a parallel listener, on the worker processing the record
+            KeyOrderedDispatcher.install(keyOrderedDispatcher, container,
+                    consumerLagMonitor.interceptors(container,
+                            BackpressureRecordInterceptor.ifAvailable(backpressure, container),
+                            DedupeRecordInterceptor.ifAvailable(dedupeWindow),
+                            JournalRecordInterceptor.ifAvailable(eventJournal)));
+        });
         return factory;
     }
 }
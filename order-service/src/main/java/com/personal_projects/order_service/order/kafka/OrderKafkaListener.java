@@ -3,8 +3,17 @@ package com.personal_projects.order_service.order.kafka;
 import com.personal_projects.common.Enums.OrderStatus;
 import com.personal_projects.common.Events.PaymentEvent;
 import com.personal_projects.common.Events.ShipmentEvent;
+import com.personal_projects.common.Flight.KafkaRecordEvent;
+import com.personal_projects.common.Lifecycle.LifecycleHeaders;
+import com.personal_projects.common.Lifecycle.LifecycleLatencyRecorder;
+import com.personal_projects.common.Retry.RetryTopics;
+import com.personal_projects.common.Retry.RetryableListener;
 import com.personal_projects.order_service.order.OrderService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.annotation.DltHandler;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
 
@@ -15,21 +24,35 @@ import static com.personal_projects.common.Configs.KafkaConfigs.*;
  * Kafka listener component for processing events related to order payments and shipments.
  *
  * <p>This class listens to Kafka topics for {@code PaymentEvent} and {@code ShipmentEvent} messages
- * and updates the order status accordingly using the {@link OrderService}.</p>
+ * and updates the order status accordingly using the {@link OrderService}. The lifecycle latency of
+ * every consumed event is recorded by the {@link LifecycleLatencyRecorder}, and its handling is covered
+ * by a {@link KafkaRecordEvent}.</p>
+ *
+ * <p>The order is updated straight on the shard encoded in its ID, in the partition of its creation time, carried by
+ * the origin timestamp of the record.</p>
+ *
+ * <p>A record that fails, e.g. on an order not found, is retried from the {@code <topic>-order-retry-*} topics
+ * with an exponential backoff, then dead-lettered to {@code <topic>-order-dlt}, without holding up the records
+ * behind it.</p>
  */
 @Component
 public class OrderKafkaListener {
 
+    private static final Logger logger = LoggerFactory.getLogger(OrderKafkaListener.class);
+
     private final OrderService orderService;
+    private final LifecycleLatencyRecorder latencyRecorder;
 
     /**
      * Constructor for dependency injection of {@link OrderService}.
      *
-     * @param orderService the service responsible for handling order-related business logic
+     * @param orderService    the service responsible for handling order-related business logic
+     * @param latencyRecorder the recorder for order lifecycle latencies
      */
     @Autowired
-    public OrderKafkaListener(final OrderService orderService) {
+    public OrderKafkaListener(final OrderService orderService, final LifecycleLatencyRecorder latencyRecorder) {
         this.orderService = orderService;
+        this.latencyRecorder = latencyRecorder;
     }
 
     /**
@@ -38,20 +61,29 @@ public class OrderKafkaListener {
      * <p>If the payment was successful, the corresponding order's status is set to {@code PAID}.
      * Otherwise, it is marked as {@code FAILED}.</p>
      *
-     * @param paymentEvent the payment event consumed from Kafka
+     * @param record the payment event record consumed from Kafka
      */
+    @RetryableListener(
+            retryTopicSuffix = "-order" + RetryTopics.RETRY_SUFFIX,
+            dltTopicSuffix = "-order" + RetryTopics.DLT_SUFFIX)
     @KafkaListener(
+            id = "order-payment-listener",
             topics = PAYMENT_TOPIC,
             groupId = "order-service-group",
             containerFactory = "paymentKafkaListenerContainerFactory"
     )
-    void listener(PaymentEvent paymentEvent) {
-        System.out.println("Listener Received: " + paymentEvent);
+    void listenPayments(ConsumerRecord<String, PaymentEvent> record) {
+        KafkaRecordEvent event = KafkaRecordEvent.start();
+        PaymentEvent paymentEvent = record.value();
+        logger.debug("Listener Received: {}", paymentEvent);
 
-        if (paymentEvent.paymentWasSuccessful()) {
-            orderService.updateOrderStatusById(paymentEvent.getOrderId(), OrderStatus.PAID);
-        } else {
-            orderService.updateOrderStatusById(paymentEvent.getOrderId(), OrderStatus.FAILED);
+        OrderStatus orderStatus = paymentEvent.paymentWasSuccessful() ? OrderStatus.PAID : OrderStatus.FAILED;
+        latencyRecorder.record(record, orderStatus.name());
+        try {
+            orderService.updateOrderStatusById(paymentEvent.getOrderId(),
+                    LifecycleHeaders.originMillis(record.headers()), orderStatus);
+        } finally {
+            event.complete("order-payment-listener", record, paymentEvent.getOrderId(), orderStatus.name());
         }
     }
 
@@ -60,16 +92,41 @@ public class OrderKafkaListener {
      *
      * <p>When a shipment event is received, the order status is updated to {@code SHIPPED}.</p>
      *
-     * @param shipmentEvent the shipment event consumed from Kafka
+     * @param record the shipment event record consumed from Kafka
      */
+    @RetryableListener(
+            retryTopicSuffix = "-order" + RetryTopics.RETRY_SUFFIX,
+            dltTopicSuffix = "-order" + RetryTopics.DLT_SUFFIX)
     @KafkaListener(
+            id = "order-shipment-listener",
             topics = SHIPMENT_TOPIC,
             groupId = "order-service-group",
             containerFactory = "shipmentKafkaListenerContainerFactory"
     )
-    void listener(ShipmentEvent shipmentEvent) {
-        System.out.println("Listener Received: " + shipmentEvent);
+    void listenShipments(ConsumerRecord<String, ShipmentEvent> record) {
+        KafkaRecordEvent event = KafkaRecordEvent.start();
+        ShipmentEvent shipmentEvent = record.value();
+        logger.debug("Listener Received: {}", shipmentEvent);
 
-        orderService.updateOrderStatusById(shipmentEvent.getOrderId(), OrderStatus.SHIPPED);
+        latencyRecorder.record(record, OrderStatus.SHIPPED.name());
+        try {
+            orderService.updateOrderStatusById(shipmentEvent.getOrderId(),
+                    LifecycleHeaders.originMillis(record.headers()), OrderStatus.SHIPPED);
+        } finally {
+            event.complete("order-shipment-listener", record, shipmentEvent.getOrderId(), OrderStatus.SHIPPED.name());
+        }
+    }
+
+    /**
+     * Logs a payment or shipment event record dead-lettered after its last attempt, or straight away when it could
+     * not be deserialized. It stays in the dead-letter topic until replayed through {@code /actuator/deadletters}.
+     * A record that cannot be read here either is logged by the container and skipped, rather than dead-lettered
+     * again.
+     *
+     * @param record the dead-lettered record
+     */
+    @DltHandler
+    void deadLetter(ConsumerRecord<String, ?> record) {
+        logger.error("Dead-lettered event {}", RetryTopics.describe(record));
     }
 }
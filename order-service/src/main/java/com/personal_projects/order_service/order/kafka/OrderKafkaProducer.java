@@ -1,8 +1,11 @@
 package com.personal_projects.order_service.order.kafka;
 
 import com.personal_projects.common.Events.OrderEvent;
+import com.personal_projects.common.Journal.EventJournal;
+import com.personal_projects.common.Journal.JournalProducerListener;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -57,11 +60,16 @@ public class OrderKafkaProducer {
      * Creates a {@link KafkaTemplate} bean for sending messages to Kafka topics.
      *
      * @param producerFactory the producer factory used by the KafkaTemplate
+     * @param eventJournal    the journal of the produced records, available when journaling is enabled
      * @return a KafkaTemplate for String key-value pairs
      */
     @Bean
-    public KafkaTemplate<String, OrderEvent> kafkaTemplate(ProducerFactory<String, OrderEvent> producerFactory )    {
-        return new KafkaTemplate<>(producerFactory);
+    public KafkaTemplate<String, OrderEvent> kafkaTemplate(ProducerFactory<String, OrderEvent> producerFactory,
+                                                       ObjectProvider<EventJournal> eventJournal) {
+        KafkaTemplate<String, OrderEvent> kafkaTemplate = new KafkaTemplate<>(producerFactory);
+        kafkaTemplate.setObservationEnabled(true); // Propagates the trace context in the record headers
+        eventJournal.ifAvailable(journal -> kafkaTemplate.setProducerListener(new JournalProducerListener<>(journal)));
+        return kafkaTemplate;
     }
 
 }
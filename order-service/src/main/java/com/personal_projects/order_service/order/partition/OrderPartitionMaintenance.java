@@ -0,0 +1,170 @@
+package com.personal_projects.order_service.order.partition;
+
+import com.personal_projects.order_service.order.shard.OrderShards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps the monthly partitions of the {@code orders} table, range-partitioned on {@code created_at} by the
+ * {@code V1__orders.sql} migration, ahead of the orders and within the retention.
+ * <p>
+ * Every {@code orders.partitions.maintenance-interval-ms}, starting on boot, it creates the partitions of the
+ * current month and of the next {@code orders.partitions.months-ahead} that are missing. There is no default
+ * partition: it would be scanned on every partition creation, and it rules out detaching concurrently. Partitions
+ * are vacuumed after 2% of their rows changed, keeping the pages all-visible for the index-only scans of the
+ * customer history.
+ * </p>
+ * <p>
+ * With {@code orders.partitions.retention-months} above zero, the partitions of the months before the retention
+ * are detached concurrently, without blocking the queries on the orders table. Their orders leave every query
+ * and the autovacuum of the live table, and stay in their own {@code orders_pYYYYMM} table, to archive or drop.
+ * A detach interrupted half way, e.g. by a restart, is finalized on the next run.
+ * </p>
+ * <p>
+ * Each shard of the orders is maintained in turn.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "orders.partitions.enabled", havingValue = "true", matchIfMissing = true)
+public class OrderPartitionMaintenance {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderPartitionMaintenance.class);
+
+    static final String PARTITION_PREFIX = "orders_p";
+    private static final DateTimeFormatter PARTITION_MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final String VACUUM_SETTINGS =
+            "autovacuum_vacuum_scale_factor = 0.02, autovacuum_vacuum_insert_scale_factor = 0.02";
+
+    private static final String ATTACHED_PARTITIONS = """
+            SELECT child.relname, inh.inhdetachpending
+            FROM pg_inherits inh
+            JOIN pg_class child ON child.oid = inh.inhrelid
+            JOIN pg_class parent ON parent.oid = inh.inhparent
+            WHERE parent.relname = 'orders' AND parent.relnamespace = current_schema()::regnamespace""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OrderShards orderShards;
+    private final int monthsAhead;
+    private final int retentionMonths;
+
+    /**
+     * Constructs the OrderPartitionMaintenance.
+     *
+     * @param jdbcTemplate    the template running the DDL, outside any transaction
+     * @param orderShards     the shards of the orders, each with its orders table
+     * @param monthsAhead     the months after the current one to have a partition for
+     * @param retentionMonths the months before the current one to keep attached, or 0 to keep them all
+     */
+    @Autowired
+    public OrderPartitionMaintenance(JdbcTemplate jdbcTemplate,
+                                     OrderShards orderShards,
+                                     @Value("${orders.partitions.months-ahead:3}") int monthsAhead,
+                                     @Value("${orders.partitions.retention-months:0}") int retentionMonths) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.orderShards = orderShards;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+    }
+
+    OrderPartitionMaintenance(JdbcTemplate jdbcTemplate, int monthsAhead, int retentionMonths) {
+        this(jdbcTemplate, OrderShards.single(jdbcTemplate.getDataSource()), monthsAhead, retentionMonths);
+    }
+
+    /**
+     * Creates the missing partitions and detaches the expired ones.
+     */
+    @Scheduled(fixedDelayString = "${orders.partitions.maintenance-interval-ms:3600000}")
+    public void maintain() {
+        YearMonth current = YearMonth.now();
+        orderShards.forEach(shard -> maintain(current));
+    }
+
+    void maintain(YearMonth current) {
+        Set<YearMonth> attached = new HashSet<>();
+        for (Partition partition : attachedPartitions()) {
+            if (partition.detachPending()) {
+                logger.info("Finalizing the detach of partition {}", partition.name());
+                jdbcTemplate.execute("ALTER TABLE orders DETACH PARTITION " + partition.name() + " FINALIZE");
+            } else if (partition.month() != null) {
+                attached.add(partition.month());
+            }
+        }
+
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = current.plusMonths(i);
+            if (!attached.contains(month)) {
+                create(month);
+            }
+        }
+
+        if (retentionMonths > 0) {
+            YearMonth oldestKept = current.minusMonths(retentionMonths);
+            for (YearMonth month : attached) {
+                if (month.isBefore(oldestKept)) {
+                    detach(month);
+                }
+            }
+        }
+    }
+
+    private void create(YearMonth month) {
+        String name = partitionName(month);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF orders FOR VALUES FROM ('"
+                + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "') WITH (" + VACUUM_SETTINGS
+                + ")");
+        logger.info("Created partition {} of the orders table", name);
+    }
+
+    private void detach(YearMonth month) {
+        String name = partitionName(month);
+        // Waits for the queries using the partition instead of locking them out, hence no transaction around it
+        jdbcTemplate.execute("ALTER TABLE orders DETACH PARTITION " + name + " CONCURRENTLY");
+        logger.info("Detached partition {} from the orders table, past the retention of {} months", name,
+                retentionMonths);
+    }
+
+    List<Partition> attachedPartitions() {
+        return jdbcTemplate.query(ATTACHED_PARTITIONS,
+                (row, rowNum) -> new Partition(row.getString(1), row.getBoolean(2)));
+    }
+
+    static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + PARTITION_MONTH.format(month);
+    }
+
+    /**
+     * A partition attached to the orders table, or being detached from it.
+     *
+     * @param name          the partition table name
+     * @param detachPending whether a concurrent detach of the partition was interrupted
+     */
+    record Partition(String name, boolean detachPending) {
+
+        /**
+         * @return the month the partition holds, or {@code null} if it is not named after one
+         */
+        YearMonth month() {
+            if (!name.startsWith(PARTITION_PREFIX)) {
+                return null;
+            }
+            try {
+                return YearMonth.parse(name.substring(PARTITION_PREFIX.length()), PARTITION_MONTH);
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+    }
+}
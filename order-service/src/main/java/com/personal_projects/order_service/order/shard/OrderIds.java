@@ -0,0 +1,54 @@
+package com.personal_projects.order_service.order.shard;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Layout of the order IDs, which carry the bucket of the order, and so its shard.
+ * <p>
+ * Every order is hashed to one of {@value #BUCKETS} buckets by its customer, so that the orders of a customer are
+ * stored together, and the {@link ShardMap} assigns the buckets to the shards. The ID of an order holds its bucket
+ * in its low {@value #BUCKET_BITS} bits, above a sequence number unique within the bucket, so an order is found
+ * from its ID alone, without a lookup or a broadcast to every shard.
+ * </p>
+ */
+public final class OrderIds {
+
+    static final int BUCKET_BITS = 10;
+    public static final int BUCKETS = 1 << BUCKET_BITS;
+
+    private OrderIds() {
+    }
+
+    /**
+     * @param sequence the sequence number of the order
+     * @param bucket   the bucket of the order
+     * @return the ID of the order
+     */
+    public static long of(long sequence, int bucket) {
+        return sequence << BUCKET_BITS | bucket;
+    }
+
+    /**
+     * @param orderId the ID of an order
+     * @return the bucket the order is stored in
+     */
+    public static int bucket(long orderId) {
+        return (int) (orderId & (BUCKETS - 1));
+    }
+
+    /**
+     * Hashes a customer to its bucket, with a CRC-32 of the name so that the bucket does not depend on the JVM.
+     *
+     * @param customerName the customer, or {@code null}
+     * @return the bucket of the customer's orders
+     */
+    public static int bucketOf(String customerName) {
+        if (customerName == null) {
+            return 0;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(customerName.getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() & (BUCKETS - 1));
+    }
+}
@@ -0,0 +1,257 @@
+package com.personal_projects.order_service.order.shard;
+
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * The shards of the order database, and the binding of the current thread to one of them.
+ * <p>
+ * The {@code orders} statements run on the shard bound with {@link #on(int, Supplier)}, through the
+ * {@link ShardRoutingDataSource}, and on the first shard, which also holds the idempotency keys, when none is bound.
+ * The shard of an order follows from its ID, and that of a new order from its customer, both through the
+ * {@link ShardMap}. A shard must be bound before the transaction of its statements starts, since the transaction
+ * holds its connection until it ends; binding another shard in a running transaction fails. So does binding one
+ * while an {@code EntityManager} is open outside of a transaction, e.g. for a whole request with
+ * {@code spring.jpa.open-in-view}: it holds the connection of its first statement until it closes, whatever the
+ * shard of the next.
+ * </p>
+ * <p>
+ * Queries over every shard are scattered to the shards concurrently, on virtual threads, and their results merged
+ * in the keyset order each shard returned them in by {@link #gather(IntFunction, Comparator, int)}.
+ * </p>
+ * <p>
+ * Without sharding, the service has a single shard, its {@code spring.datasource}, and binding it does nothing.
+ * </p>
+ */
+public class OrderShards implements AutoCloseable {
+
+    private static final ThreadLocal<Integer> BOUND = new ThreadLocal<>();
+
+    private final ShardMap shardMap;
+    private final List<DataSource> dataSources;
+    private final boolean ownsDataSources;
+
+    /**
+     * Creates the shards.
+     *
+     * @param shardMap    the assignment of the buckets to the shards, each shard given at least one bucket
+     * @param dataSources the data source of each shard, by index; those that are pools are closed with the shards
+     */
+    public OrderShards(ShardMap shardMap, List<DataSource> dataSources) {
+        this(shardMap, dataSources, true);
+    }
+
+    private OrderShards(ShardMap shardMap, List<DataSource> dataSources, boolean ownsDataSources) {
+        this.shardMap = shardMap;
+        this.dataSources = List.copyOf(dataSources);
+        this.ownsDataSources = ownsDataSources;
+        boolean[] used = new boolean[this.dataSources.size()];
+        for (int bucket = 0; bucket < OrderIds.BUCKETS; bucket++) {
+            int shard = shardMap.shardOf(bucket);
+            if (shard < 0 || shard >= used.length) {
+                throw new IllegalArgumentException("Bucket " + bucket + " is mapped to shard " + shard + ", out of "
+                        + used.length);
+            }
+            used[shard] = true;
+        }
+        for (int shard = 0; shard < used.length; shard++) {
+            if (!used[shard]) {
+                throw new IllegalArgumentException("No bucket is mapped to shard " + shard);
+            }
+        }
+    }
+
+    /**
+     * @param dataSource the data source of the orders
+     * @return the single shard of an unsharded service
+     */
+    public static OrderShards single(DataSource dataSource) {
+        return new OrderShards(new RangeShardMap(1), List.of(dataSource), false);
+    }
+
+    /**
+     * @return the shard the current thread is bound to, {@code 0} if none
+     */
+    static int current() {
+        Integer bound = BOUND.get();
+        return bound == null ? 0 : bound;
+    }
+
+    /**
+     * @return the number of shards
+     */
+    public int count() {
+        return dataSources.size();
+    }
+
+    /**
+     * @param shard the index of a shard
+     * @return the data source of the shard
+     */
+    public DataSource dataSource(int shard) {
+        return dataSources.get(shard);
+    }
+
+    /**
+     * @param orderId the ID of an order
+     * @return the shard storing the order
+     */
+    public int shardOf(long orderId) {
+        return shardMap.shardOf(OrderIds.bucket(orderId));
+    }
+
+    /**
+     * @param customerName a customer
+     * @return the shard storing the orders of the customer
+     */
+    public int shardOfCustomer(String customerName) {
+        return shardMap.shardOf(OrderIds.bucketOf(customerName));
+    }
+
+    /**
+     * Runs work with the current thread bound to a shard.
+     *
+     * @param shard the index of the shard
+     * @param work  the work, starting its transactions itself
+     * @param <T>   the result type
+     * @return the result of the work
+     * @throws IllegalStateException if a transaction already runs on another shard, or an {@code EntityManager}
+     *                               holding a connection is open
+     */
+    public <T> T on(int shard, Supplier<T> work) {
+        Integer previous = BOUND.get();
+        if (shard != current()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                throw new IllegalStateException("Cannot bind shard " + shard + " in a transaction running on shard "
+                        + current());
+            }
+            if (holdsEntityManager()) {
+                throw new IllegalStateException("Cannot bind shard " + shard + " while an EntityManager is open on "
+                        + "shard " + current() + ", is spring.jpa.open-in-view set?");
+            }
+        }
+        BOUND.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                BOUND.remove();
+            } else {
+                BOUND.set(previous);
+            }
+        }
+    }
+
+    private static boolean holdsEntityManager() {
+        for (Object resource : TransactionSynchronizationManager.getResourceMap().values()) {
+            if (resource instanceof EntityManagerHolder) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs work on every shard, one after the other.
+     *
+     * @param work the work, given the index of the shard it is bound to
+     */
+    public void forEach(IntConsumer work) {
+        for (int shard = 0; shard < count(); shard++) {
+            int bound = shard;
+            on(shard, () -> {
+                work.accept(bound);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Runs a query on every shard concurrently, and merges the results.
+     *
+     * @param query the query, given the index of the shard it is bound to, returning its rows in the given order
+     * @param order the keyset order of the rows
+     * @param limit the most rows returned
+     * @param <T>   the row type
+     * @return the first rows of all the shards, in order
+     */
+    public <T> List<T> gather(IntFunction<List<T>> query, Comparator<? super T> order, int limit) {
+        if (count() == 1) {
+            List<T> rows = on(0, () -> query.apply(0));
+            return rows.size() <= limit ? rows : List.copyOf(rows.subList(0, limit));
+        }
+        List<List<T>> results = new ArrayList<>(count());
+        try (ExecutorService scatter = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<List<T>>> futures = new ArrayList<>(count());
+            for (int shard = 0; shard < count(); shard++) {
+                int bound = shard;
+                futures.add(scatter.submit(() -> on(bound, () -> query.apply(bound))));
+            }
+            for (Future<List<T>> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying the shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Could not query the shards", e.getCause());
+        }
+        return merge(results, order, limit);
+    }
+
+    /**
+     * Merges rows sorted per shard into the first rows overall, taking the next row of the shard whose next row
+     * comes first.
+     */
+    static <T> List<T> merge(List<List<T>> sorted, Comparator<? super T> order, int limit) {
+        record Head<T>(T row, int shard, int index) {
+        }
+        PriorityQueue<Head<T>> heads = new PriorityQueue<>(Math.max(1, sorted.size()),
+                (a, b) -> order.compare(a.row(), b.row()));
+        for (int shard = 0; shard < sorted.size(); shard++) {
+            if (!sorted.get(shard).isEmpty()) {
+                heads.add(new Head<>(sorted.get(shard).get(0), shard, 0));
+            }
+        }
+        List<T> merged = new ArrayList<>();
+        while (merged.size() < limit && !heads.isEmpty()) {
+            Head<T> head = heads.poll();
+            merged.add(head.row());
+            List<T> rows = sorted.get(head.shard());
+            int next = head.index() + 1;
+            if (next < rows.size()) {
+                heads.add(new Head<>(rows.get(next), head.shard(), next));
+            }
+        }
+        return merged;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (!ownsDataSources) {
+            // The data source of an unsharded service is the application's
+            return;
+        }
+        for (DataSource dataSource : dataSources) {
+            if (dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
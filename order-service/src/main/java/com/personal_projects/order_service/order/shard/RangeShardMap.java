@@ -0,0 +1,28 @@
+package com.personal_projects.order_service.order.shard;
+
+/**
+ * {@link ShardMap} giving each shard a contiguous, even range of buckets.
+ * <p>
+ * Doubling the shards splits every range in two, so each existing shard hands half of its buckets to one new
+ * shard and keeps the other half.
+ * </p>
+ */
+public class RangeShardMap implements ShardMap {
+
+    private final int shards;
+
+    /**
+     * @param shards the number of shards, at most {@link OrderIds#BUCKETS}
+     */
+    public RangeShardMap(int shards) {
+        if (shards < 1 || shards > OrderIds.BUCKETS) {
+            throw new IllegalArgumentException("Shards must be between 1 and " + OrderIds.BUCKETS + ": " + shards);
+        }
+        this.shards = shards;
+    }
+
+    @Override
+    public int shardOf(int bucket) {
+        return bucket * shards / OrderIds.BUCKETS;
+    }
+}
@@ -0,0 +1,19 @@
+package com.personal_projects.order_service.order.shard;
+
+/**
+ * Assignment of the {@link OrderIds#BUCKETS} order buckets to the shards of the order database.
+ * <p>
+ * The default, a {@link RangeShardMap}, gives each shard an even range of buckets. Declaring a {@code ShardMap}
+ * bean replaces it, e.g. to move the buckets of a hot shard away, once their orders are copied to their new shard
+ * and its {@code order_sequence} is set past their sequence numbers.
+ * </p>
+ */
+@FunctionalInterface
+public interface ShardMap {
+
+    /**
+     * @param bucket the bucket, from {@code 0} to {@link OrderIds#BUCKETS} excluded
+     * @return the index of the shard storing the bucket, from {@code 0} to the number of shards excluded
+     */
+    int shardOf(int bucket);
+}
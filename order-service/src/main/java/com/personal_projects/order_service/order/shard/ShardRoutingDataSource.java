@@ -0,0 +1,34 @@
+package com.personal_projects.order_service.order.shard;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link javax.sql.DataSource} taking the connections from the shard the current thread is bound to by
+ * {@link OrderShards#on(int, java.util.function.Supplier)}, or from the first shard when none is bound.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    /**
+     * Creates the data source, ready to use.
+     *
+     * @param orderShards the shards
+     */
+    public ShardRoutingDataSource(OrderShards orderShards) {
+        Map<Object, Object> targets = new HashMap<>();
+        for (int shard = 0; shard < orderShards.count(); shard++) {
+            targets.put(shard, orderShards.dataSource(shard));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(orderShards.dataSource(0));
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return OrderShards.current();
+    }
+}
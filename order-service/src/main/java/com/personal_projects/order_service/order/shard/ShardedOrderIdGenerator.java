@@ -0,0 +1,22 @@
+package com.personal_projects.order_service.order.shard;
+
+import com.personal_projects.order_service.data.entity.Order;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+/**
+ * Generator of the order IDs: the next value of the {@code order_sequence} of the shard the order is written to,
+ * with the bucket of the order's customer in its low bits, as laid out by {@link OrderIds}.
+ * <p>
+ * The sequence must be read on every insert, not in blocks, since the service writes to several shards whose
+ * sequences overlap: the bucket bits keep the IDs of different shards apart.
+ * </p>
+ */
+public class ShardedOrderIdGenerator extends SequenceStyleGenerator {
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        long sequence = ((Number) super.generate(session, object)).longValue();
+        return OrderIds.of(sequence, OrderIds.bucketOf(((Order) object).getCustomerName()));
+    }
+}
@@ -0,0 +1,121 @@
+package com.personal_projects.order_service.order.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration of the {@link OrderShards} the orders are stored in.
+ *
+ * <p>By default the service has a single shard, the auto-configured {@code spring.datasource}. With
+ * {@code orders.shards.enabled} set, the orders are spread over the databases of {@code orders.shards.urls}, the
+ * first also holding the idempotency keys. Each gets its own pool, with the {@code spring.datasource.hikari.*}
+ * settings and the {@code spring.datasource} credentials, named after the shard in the {@code hikari.*} metrics.
+ * They are exposed as a single {@link DataSource}, a {@link ShardRoutingDataSource}, so the repositories and the
+ * slow query log see one data source as before. Flyway migrates every shard, and the buckets are assigned to the
+ * shards by the {@link ShardMap} bean, a {@link RangeShardMap} unless one is declared.</p>
+ *
+ * <p>Sharding replaces the {@code dataSource} bean, like the read replicas, so the two cannot be enabled
+ * together.</p>
+ */
+@Configuration(proxyBeanMethods = false)
+public class ShardingConfiguration {
+
+    /**
+     * The single shard of an unsharded service.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(name = "orders.shards.enabled", havingValue = "false", matchIfMissing = true)
+    static class Unsharded {
+
+        @Bean
+        public OrderShards orderShards(DataSource dataSource) {
+            return OrderShards.single(dataSource);
+        }
+    }
+
+    /**
+     * The shards of {@code orders.shards.urls}.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(name = "orders.shards.enabled", havingValue = "true")
+    static class Sharded {
+
+        private static final Logger logger = LoggerFactory.getLogger(Sharded.class);
+
+        @Bean
+        @ConditionalOnMissingBean
+        public ShardMap shardMap(Environment environment) {
+            return new RangeShardMap(urls(environment).size());
+        }
+
+        @Bean
+        public OrderShards orderShards(ShardMap shardMap, DataSourceProperties properties, Environment environment,
+                                       MeterRegistry meterRegistry) {
+            Binder binder = Binder.get(environment);
+            List<DataSource> pools = new ArrayList<>();
+            for (String url : urls(environment)) {
+                HikariDataSource pool = properties.initializeDataSourceBuilder().url(url)
+                        .type(HikariDataSource.class).build();
+                binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+                pool.setPoolName("shard-" + pools.size());
+                pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+                pools.add(pool);
+            }
+            logger.info("Storing the orders in {} shards", pools.size());
+            return new OrderShards(shardMap, pools);
+        }
+
+        @Bean
+        public DataSource dataSource(OrderShards orderShards) {
+            return new ShardRoutingDataSource(orderShards);
+        }
+
+        /**
+         * Applies the migrations configured for the first shard to every shard.
+         */
+        @Bean
+        public FlywayMigrationStrategy shardedMigration(OrderShards orderShards) {
+            return flyway -> {
+                for (int shard = 0; shard < orderShards.count(); shard++) {
+                    logger.info("Migrating shard {}", shard);
+                    Flyway.configure().configuration(flyway.getConfiguration())
+                            .dataSource(orderShards.dataSource(shard))
+                            .load()
+                            .migrate();
+                }
+            };
+        }
+
+        private static List<String> urls(Environment environment) {
+            List<String> urls = new ArrayList<>();
+            for (String url : StringUtils.commaDelimitedListToStringArray(
+                    environment.getProperty("orders.shards.urls", ""))) {
+                if (!url.isBlank()) {
+                    urls.add(url.trim());
+                }
+            }
+            if (urls.isEmpty()) {
+                throw new IllegalStateException("orders.shards.enabled is set without any orders.shards.urls");
+            }
+            return urls;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.personal_projects.order_service.util;
 
 import com.personal_projects.common.Enums.OrderStatus;
 import com.personal_projects.common.Events.OrderEvent;
+import com.personal_projects.common.Flight.MappingEvent;
 import com.personal_projects.order_service.data.dto.OrderDTO;
 import com.personal_projects.order_service.data.entity.Order;
 
@@ -12,6 +13,11 @@ import java.time.LocalDateTime;
  */
 public class OrderMapper {
 
+    /**
+     * Longest text stored in a column of the {@code orders} table.
+     */
+    public static final int MAX_TEXT_LENGTH = 255;
+
     /**
      * Converts an OrderRequest to an Order entity with calculated fields.
      * Sets default status (CREATED) and creation timestamp.
@@ -20,15 +26,72 @@ public class OrderMapper {
      * @return mapped Order entity with calculated totalAmount
      */
     public static Order toOrder(OrderDTO request) {
-        return Order.builder()
+        return toOrder(request, LocalDateTime.now());
+    }
+
+    /**
+     * Converts an OrderRequest to an Order entity with calculated fields, created at the given time.
+     * Sets default status (CREATED).
+     *
+     * @param request   the order request data
+     * @param createdAt the creation timestamp of the order
+     * @return mapped Order entity with calculated totalAmount
+     */
+    public static Order toOrder(OrderDTO request, LocalDateTime createdAt) {
+        MappingEvent mapping = MappingEvent.start();
+        Order order = Order.builder()
                 .customerName(request.getCustomerName())
+                .customerAddress(request.getCustomerAddress())
                 .productName(request.getProductName())
                 .quantity(request.getQuantity())
                 .price(request.getPrice())
                 .totalAmount(request.getQuantity() * request.getPrice())  // Auto-calculate
                 .status(OrderStatus.CREATED)  // Default status
-                .createdAt(LocalDateTime.now())
+                .createdAt(createdAt)
                 .build();
+        mapping.complete("OrderMapper.toOrder", 0);
+        return order;
+    }
+
+    /**
+     * Checks that a request maps to an order the {@code orders} table can store and downstream services can
+     * process: a customer, address and product of at most {@link #MAX_TEXT_LENGTH} characters, a positive
+     * quantity, and a finite, non-negative price and total amount.
+     *
+     * @param request the order request data
+     * @return the first rule the request breaks, or {@code null} if it is valid
+     */
+    public static String violation(OrderDTO request) {
+        String text = textViolation("customerName", request.getCustomerName());
+        if (text == null) {
+            text = textViolation("customerAddress", request.getCustomerAddress());
+        }
+        if (text == null) {
+            text = textViolation("productName", request.getProductName());
+        }
+        if (text != null) {
+            return text;
+        }
+        if (request.getQuantity() <= 0) {
+            return "quantity must be positive";
+        }
+        if (!Double.isFinite(request.getPrice()) || request.getPrice() < 0) {
+            return "price must be a finite, non-negative amount";
+        }
+        if (!Double.isFinite(request.getQuantity() * request.getPrice())) {
+            return "totalAmount must be finite";
+        }
+        return null;
+    }
+
+    private static String textViolation(String field, String value) {
+        if (value == null || value.isBlank()) {
+            return field + " is required";
+        }
+        if (value.length() > MAX_TEXT_LENGTH) {
+            return field + " is longer than " + MAX_TEXT_LENGTH + " characters";
+        }
+        return null;
     }
 
     /**
@@ -39,10 +102,14 @@ public class OrderMapper {
      * @return simplified OrderEvent for publishing
      */
     public static OrderEvent toOrderEvent(Order order) {
-        return OrderEvent.builder()
+        MappingEvent mapping = MappingEvent.start();
+        OrderEvent event = OrderEvent.builder()
                 .orderId(order.getId())
                 .customerName(order.getCustomerName())
+                .customerAddress(order.getCustomerAddress())
                 .totalAmount(order.getTotalAmount())
                 .build();
+        mapping.complete("OrderMapper.toOrderEvent", order.getId());
+        return event;
     }
 }
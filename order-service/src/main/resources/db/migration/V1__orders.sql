@@ -0,0 +1,46 @@
+-- Orders, range-partitioned by month on created_at. The partitions, orders_pYYYYMM, are created ahead of time and
+-- detached past the retention by OrderPartitionMaintenance; the first months are created here so the service can
+-- take orders before its first maintenance run.
+
+CREATE SEQUENCE order_sequence START WITH 1 INCREMENT BY 1;
+
+CREATE TABLE orders (
+    id               bigint       NOT NULL,
+    customer_name    varchar(255),
+    customer_address varchar(255),
+    product_name     varchar(255),
+    quantity         integer      NOT NULL,
+    price            float8       NOT NULL,
+    total_amount     float8       NOT NULL,
+    status           varchar(255),
+    created_at       timestamp(6) NOT NULL,
+    -- The key of a partitioned table must hold the partition key; the sequence keeps id unique on its own
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- Created on every partition: status dashboards and sweeps by age, and the orders of a customer by time
+CREATE INDEX orders_status_created_at_idx ON orders (status, created_at);
+CREATE INDEX orders_customer_name_created_at_idx ON orders (customer_name, created_at);
+
+DO $$
+DECLARE
+    first_month timestamp := date_trunc('month', localtimestamp);
+BEGIN
+    FOR i IN 0..2 LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF orders FOR VALUES FROM (%L) TO (%L)',
+                       'orders_p' || to_char(first_month + make_interval(months => i), 'YYYYMM'),
+                       first_month + make_interval(months => i),
+                       first_month + make_interval(months => i + 1));
+    END LOOP;
+END
+$$;
+
+CREATE TABLE idempotency_keys (
+    idempotency_key varchar(255) NOT NULL PRIMARY KEY,
+    request_hash    varchar(64)  NOT NULL,
+    order_id        bigint,
+    response        text,
+    created_at      timestamp(6) NOT NULL
+);
+
+CREATE INDEX idempotency_keys_created_at_idx ON idempotency_keys (created_at);
@@ -0,0 +1,11 @@
+-- Chunks of the bulk order imports committed to this database, with the IDs given to their orders in file order.
+-- A chunk is recorded in the transaction copying its orders, so a resumed import skips it and only publishes its
+-- events again; the rows of an import are deleted once it completes.
+
+CREATE TABLE order_import_chunks (
+    import_id    varchar(255) NOT NULL,
+    chunk_offset bigint       NOT NULL,
+    order_ids    bigint[]     NOT NULL,
+    created_at   timestamp(6) NOT NULL,
+    PRIMARY KEY (import_id, chunk_offset)
+);
@@ -0,0 +1,84 @@
+package com.personal_projects.order_service.order;
+
+import com.personal_projects.common.Enums.OrderStatus;
+import com.personal_projects.common.Lifecycle.LifecycleHeaders;
+import com.personal_projects.order_service.order.shard.OrderShards;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Updates order statuses from events through a mock repository, checking which partitions each update searches.
+ */
+class OrderServiceTest {
+
+	private static final long ORDER_ID = 42;
+	private static final long CREATED_AT_MILLIS = 1_700_000_000_123L;
+	private static final LocalDateTime CREATED_AT = LocalDateTime.ofInstant(Instant.ofEpochMilli(CREATED_AT_MILLIS),
+			ZoneId.systemDefault());
+
+	private final OrderRepository orderRepository = mock(OrderRepository.class);
+	@SuppressWarnings("unchecked")
+	private final OrderService orderService = new OrderService(orderRepository, mock(KafkaTemplate.class),
+			OrderShards.single(mock(DataSource.class)));
+
+	@Test
+	void updatesTheOrderInThePartitionOfItsCreationTime() {
+		whenUpdatedWithinRange(1);
+
+		orderService.updateOrderStatusById(ORDER_ID, CREATED_AT_MILLIS, OrderStatus.PAID);
+
+		verify(orderRepository).updateOrderStatusByIdCreatedBetween(eq(ORDER_ID), eq(CREATED_AT.minusSeconds(1)),
+				eq(CREATED_AT.plusSeconds(1)), eq(OrderStatus.PAID), eq(OrderStatus.PAID.predecessors()));
+		verify(orderRepository, never()).existsByIdCreatedBetween(anyLong(), any(), any());
+		verify(orderRepository, never()).updateOrderStatusById(anyLong(), any(), any());
+	}
+
+	@Test
+	void leavesAnOrderPastTheNewStatusWithoutSearchingEveryPartition() {
+		whenUpdatedWithinRange(0);
+		when(orderRepository.existsByIdCreatedBetween(ORDER_ID, CREATED_AT.minusSeconds(1),
+				CREATED_AT.plusSeconds(1))).thenReturn(true);
+
+		// A payment event redelivered after the order shipped
+		orderService.updateOrderStatusById(ORDER_ID, CREATED_AT_MILLIS, OrderStatus.PAID);
+
+		verify(orderRepository, never()).updateOrderStatusById(anyLong(), any(), any());
+	}
+
+	@Test
+	void searchesEveryPartitionForAnOrderOutsideTheCreationRange() {
+		whenUpdatedWithinRange(0);
+		when(orderRepository.existsByIdCreatedBetween(anyLong(), any(), any())).thenReturn(false);
+
+		orderService.updateOrderStatusById(ORDER_ID, CREATED_AT_MILLIS, OrderStatus.PAID);
+
+		verify(orderRepository).updateOrderStatusById(ORDER_ID, OrderStatus.PAID, OrderStatus.PAID.predecessors());
+	}
+
+	@Test
+	void searchesEveryPartitionWithoutACreationTime() {
+		orderService.updateOrderStatusById(ORDER_ID, LifecycleHeaders.UNKNOWN, OrderStatus.SHIPPED);
+
+		verify(orderRepository, never()).updateOrderStatusByIdCreatedBetween(anyLong(), any(), any(), any(), any());
+		verify(orderRepository).updateOrderStatusById(ORDER_ID, OrderStatus.SHIPPED,
+				OrderStatus.SHIPPED.predecessors());
+	}
+
+	private void whenUpdatedWithinRange(int rows) {
+		when(orderRepository.updateOrderStatusByIdCreatedBetween(anyLong(), any(), any(), any(), any()))
+				.thenReturn(rows);
+	}
+}
@@ -0,0 +1,131 @@
+package com.personal_projects.order_service.order.admission;
+
+import com.personal_projects.order_service.order.admission.AdaptiveConcurrencyLimit.Outcome;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.web.ErrorResponseException;
+
+import java.sql.SQLTransientConnectionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Adapts an {@link AdaptiveConcurrencyLimit} to the outcomes and latencies of its calls, on a clock of its own.
+ */
+class AdaptiveConcurrencyLimitTest {
+
+	private static final long TARGET = 250_000_000L;
+	private static final long FAST = TARGET / 10;
+	private static final long SLOW = TARGET * 2;
+
+	@Test
+	void admitsUpToTheLimit() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, TARGET);
+
+		assertTrue(limit.tryAcquire());
+		assertTrue(limit.tryAcquire());
+		assertFalse(limit.tryAcquire());
+		limit.release(FAST, Outcome.FAILED, 0);
+		assertTrue(limit.tryAcquire());
+		assertEquals(2, limit.inFlight());
+	}
+
+	@Test
+	void raisesALimitInUseByAboutOnePerRoundOfFastCalls() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 1, 100, TARGET);
+		while (limit.tryAcquire()) {
+			// Saturated, as under a steady load
+		}
+
+		for (int round = 0; round < 5; round++) {
+			for (int call = limit.limit(); call > 0; call--) {
+				limit.release(FAST, Outcome.SUCCEEDED, 0);
+				while (limit.tryAcquire()) {
+					// The next call starts as soon as there is room
+				}
+			}
+		}
+
+		assertTrue(limit.limit() >= 14 && limit.limit() <= 15, "limit " + limit.limit());
+		assertEquals(limit.limit(), limit.inFlight());
+	}
+
+	@Test
+	void keepsTheLimitOfAnIdleService() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 1, 100, TARGET);
+
+		for (int i = 0; i < 100; i++) {
+			run(limit, 1, FAST, Outcome.SUCCEEDED, 0);
+		}
+
+		assertEquals(10, limit.limit());
+	}
+
+	@Test
+	void cutsTheLimitOncePerTargetIntervalOfSlowOrOverloadedCalls() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(100, 1, 100, TARGET);
+		long now = System.nanoTime();
+
+		run(limit, 10, SLOW, Outcome.SUCCEEDED, now);
+		assertEquals(90, limit.limit(), "one burst of slow calls cuts the limit once");
+
+		run(limit, 1, FAST, Outcome.OVERLOADED, now + TARGET);
+		assertEquals(81, limit.limit());
+	}
+
+	@Test
+	void neverCutsBelowTheMinimum() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(5, 4, 100, TARGET);
+		long now = System.nanoTime();
+
+		for (int i = 1; i <= 10; i++) {
+			run(limit, 1, SLOW, Outcome.OVERLOADED, now + i * TARGET);
+		}
+
+		assertEquals(4, limit.limit());
+	}
+
+	@Test
+	void leavesTheLimitAfterACallFailingForAnotherReason() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 1, 100, TARGET);
+		long now = System.nanoTime();
+
+		run(limit, 10, SLOW, Outcome.FAILED, now);
+		run(limit, 10, FAST, Outcome.FAILED, now);
+
+		assertEquals(10, limit.limit());
+		assertEquals(0, limit.inFlight());
+	}
+
+	@Test
+	void classifiesTimeoutsAndExhaustedPoolsAsOverload() {
+		assertEquals(Outcome.OVERLOADED, OrderAdmission.outcomeOf(new QueryTimeoutException("statement timeout")));
+		assertEquals(Outcome.OVERLOADED, OrderAdmission.outcomeOf(new CannotCreateTransactionException(
+				"Could not open a JPA EntityManager", new SQLTransientConnectionException("Connection is not available"))));
+		assertEquals(Outcome.OVERLOADED, OrderAdmission.outcomeOf(new CannotGetJdbcConnectionException("pool")));
+		assertEquals(Outcome.OVERLOADED, OrderAdmission.outcomeOf(new RuntimeException(
+				new org.apache.kafka.common.errors.TimeoutException("buffer exhausted"))));
+
+		assertEquals(Outcome.FAILED, OrderAdmission.outcomeOf(new DataIntegrityViolationException("duplicate")));
+		assertEquals(Outcome.FAILED, OrderAdmission.outcomeOf(new ErrorResponseException(HttpStatus.CONFLICT)));
+		assertEquals(Outcome.FAILED, OrderAdmission.outcomeOf(new IllegalArgumentException("bad order")));
+	}
+
+	/**
+	 * Runs calls concurrently, all ending with the same latency and outcome.
+	 */
+	private static void run(AdaptiveConcurrencyLimit limit, int calls, long latency, Outcome outcome, long now) {
+		for (int i = 0; i < calls; i++) {
+			assertTrue(limit.tryAcquire());
+		}
+		for (int i = 0; i < calls; i++) {
+			limit.release(latency, outcome, now);
+		}
+	}
+}
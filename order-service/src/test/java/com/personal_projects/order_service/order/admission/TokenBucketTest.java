@@ -0,0 +1,51 @@
+package com.personal_projects.order_service.order.admission;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Refills and drains a {@link TokenBucket} on a clock of its own.
+ */
+class TokenBucketTest {
+
+	private static final long SECOND = 1_000_000_000L;
+
+	@Test
+	void admitsABurstThenTheRate() {
+		TokenBucket bucket = new TokenBucket(5, 3, 0);
+
+		for (int i = 0; i < 3; i++) {
+			assertEquals(0, bucket.tryAcquire(0), "token " + i + " of the burst");
+		}
+		assertEquals(SECOND / 5, bucket.tryAcquire(0), "the next token is due in a fifth of a second");
+		assertEquals(SECOND / 10, bucket.tryAcquire(SECOND / 10));
+		assertEquals(0, bucket.tryAcquire(SECOND / 5));
+	}
+
+	@Test
+	void refillsUpToTheBurstOnly() {
+		TokenBucket bucket = new TokenBucket(5, 3, 0);
+		for (int i = 0; i < 3; i++) {
+			bucket.tryAcquire(0);
+		}
+
+		long later = 60 * SECOND;
+		for (int i = 0; i < 3; i++) {
+			assertEquals(0, bucket.tryAcquire(later));
+		}
+		assertTrue(bucket.tryAcquire(later) > 0, "a long idle time does not add more than the burst");
+	}
+
+	@Test
+	void isFullOnceRefilled() {
+		TokenBucket bucket = new TokenBucket(5, 3, 0);
+		assertTrue(bucket.isFull(0));
+
+		bucket.tryAcquire(0);
+		assertFalse(bucket.isFull(SECOND / 10));
+		assertTrue(bucket.isFull(SECOND / 5));
+	}
+}
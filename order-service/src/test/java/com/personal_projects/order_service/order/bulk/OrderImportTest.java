@@ -0,0 +1,229 @@
+package com.personal_projects.order_service.order.bulk;
+
+import com.personal_projects.common.Events.OrderEvent;
+import com.personal_projects.order_service.order.shard.OrderShards;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Imports files of orders into Postgres, with the events sent to a template recording them.
+ */
+@Testcontainers
+class OrderImportTest {
+
+	@Container
+	private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine")
+			.withCommand("postgres", "-c", "fsync=off", "-c", "synchronous_commit=off");
+
+	@TempDir
+	static Path directory;
+
+	private static HikariDataSource pool;
+	private static OrderShards shards;
+	private static JdbcTemplate jdbcTemplate;
+
+	@BeforeAll
+	static void migrate() {
+		pool = new HikariDataSource();
+		pool.setJdbcUrl(postgres.getJdbcUrl());
+		pool.setUsername(postgres.getUsername());
+		pool.setPassword(postgres.getPassword());
+		pool.setMaximumPoolSize(8);
+		Flyway.configure().dataSource(pool).load().migrate();
+		shards = OrderShards.single(pool);
+		jdbcTemplate = new JdbcTemplate(pool);
+	}
+
+	@AfterAll
+	static void close() {
+		pool.close();
+	}
+
+	@Test
+	void importsTheValidRowsAndRejectsTheOthers() throws IOException {
+		Path file = Files.writeString(directory.resolve("valid.ndjson"), String.join("\n",
+				row("valid-1", 2, 9.5),
+				row("valid-2", 1, 100),
+				"{\"customerName\": \"valid-3\", \"quantity\": ",
+				"",
+				row("valid-4", 0, 10),
+				row("valid-" + "x".repeat(300), 1, 1),
+				row("valid-5", 3, 1.25) + "\r",
+				row("valid-6", 1, 0)));
+		RecordingKafkaTemplate kafkaTemplate = new RecordingKafkaTemplate(Long.MAX_VALUE);
+
+		OrderImport orderImport = orderImport("valid", file, kafkaTemplate, 1024 * 1024);
+		orderImport.run();
+
+		OrderImportStatus status = orderImport.status();
+		assertEquals("COMPLETED", status.state(), status.error());
+		assertEquals(4, status.imported());
+		assertEquals(3, status.rejected());
+		assertEquals(Files.size(file), status.offset());
+		assertEquals(Map.of("valid-1", 19.0, "valid-2", 100.0, "valid-5", 3.75, "valid-6", 0.0),
+				totals("valid-"));
+		assertEquals(ids("valid-"), kafkaTemplate.published);
+		assertEquals(0, jdbcTemplate.queryForObject(
+				"SELECT count(*) FROM order_import_chunks WHERE import_id = 'valid'", Integer.class));
+
+		OrderImport again = orderImport("valid", file, kafkaTemplate, 1024 * 1024);
+		again.run();
+		assertEquals("COMPLETED", again.status().state());
+		assertEquals(4, ids("valid-").size(), "a completed import is not imported again");
+	}
+
+	@Test
+	void importsCsvInTheColumnOrderOfTheHeader() throws IOException {
+		Path file = Files.writeString(directory.resolve("orders.csv"), """
+				product_name,customer_name,customer_address,quantity,price
+				"book, signed",csv-1,"1 ""Main"" St",2,7.5
+				pen,csv-2,2 Side St,10,0.5
+				pen,csv-3,3 Side St,ten,0.5
+				""");
+
+		OrderImport orderImport = orderImport("csv", file, new RecordingKafkaTemplate(Long.MAX_VALUE), 1024 * 1024);
+		orderImport.run();
+
+		assertEquals(2, orderImport.status().imported());
+		assertEquals(1, orderImport.status().rejected());
+		assertEquals(Map.of("csv-1", 15.0, "csv-2", 5.0), totals("csv-"));
+		assertEquals(List.of("book, signed", "1 \"Main\" St"), jdbcTemplate.queryForObject(
+				"SELECT product_name, customer_address FROM orders WHERE customer_name = 'csv-1'",
+				(row, rowNum) -> List.of(row.getString(1), row.getString(2))));
+	}
+
+	@Test
+	void resumesAFailedImportWithoutDuplicatingOrders() throws IOException {
+		Path file = write("resumed.ndjson", "resumed-", 5_000);
+		RecordingKafkaTemplate failing = new RecordingKafkaTemplate(2_000);
+
+		// Chunks of about 30 rows, some of them committed past the failed one
+		OrderImport failed = orderImport("resumed", file, failing, 4096);
+		failed.run();
+		assertEquals("FAILED", failed.status().state());
+		assertTrue(failed.status().offset() < Files.size(file));
+
+		// Cut into the chunks of the checkpoint, whatever the configured size
+		RecordingKafkaTemplate kafkaTemplate = new RecordingKafkaTemplate(Long.MAX_VALUE);
+		OrderImport resumed = orderImport("resumed", file, kafkaTemplate, 1024 * 1024);
+		resumed.run();
+
+		assertEquals("COMPLETED", resumed.status().state(), resumed.status().error());
+		assertEquals(5_000, resumed.status().imported());
+		assertEquals(5_000, jdbcTemplate.queryForObject(
+				"SELECT count(DISTINCT customer_name) FROM orders WHERE customer_name LIKE 'resumed-%'",
+				Integer.class));
+		Set<Long> ids = ids("resumed-");
+		assertEquals(5_000, ids.size());
+		Set<Long> published = new HashSet<>(failing.published);
+		published.addAll(kafkaTemplate.published);
+		assertEquals(ids, published, "every order is published, once or more");
+	}
+
+	@Test
+	void importsHundredsOfThousandsOfRowsPerSecond() throws IOException {
+		assumeTrue(Runtime.getRuntime().availableProcessors() >= 4, "needs a CPU per worker");
+		Path file = write("bulk.ndjson", "bulk-", 1_000_000);
+
+		OrderImport orderImport = orderImport("bulk", file, new RecordingKafkaTemplate(Long.MAX_VALUE),
+				16 * 1024 * 1024);
+		orderImport.run();
+
+		OrderImportStatus status = orderImport.status();
+		assertEquals("COMPLETED", status.state(), status.error());
+		assertEquals(1_000_000, status.imported());
+		assertTrue(status.rowsPerSecond() >= 100_000, String.format("%.0f rows/s", status.rowsPerSecond()));
+	}
+
+	private static OrderImport orderImport(String id, Path file, KafkaTemplate<String, OrderEvent> kafkaTemplate,
+										   int chunkSize) {
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		return new OrderImport(id, file, directory.resolve(id + ".checkpoint"), shards, kafkaTemplate, chunkSize, 4,
+				meterRegistry.counter("imported"), meterRegistry.counter("rejected"));
+	}
+
+	private static String row(String customer, int quantity, double price) {
+		return "{\"customerName\": \"" + customer + "\", \"customerAddress\": \"1 Main St\", \"productName\": "
+				+ "\"book\", \"quantity\": " + quantity + ", \"price\": " + price + ", \"source\": \"backfill\"}";
+	}
+
+	private static Path write(String name, String prefix, int rows) throws IOException {
+		Path file = directory.resolve(name);
+		try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+			for (int i = 0; i < rows; i++) {
+				writer.write(row(prefix + i, 1 + i % 5, 2.5));
+				writer.newLine();
+			}
+		}
+		return file;
+	}
+
+	private static Map<String, Double> totals(String prefix) {
+		Map<String, Double> totals = new HashMap<>();
+		jdbcTemplate.query("SELECT customer_name, total_amount FROM orders WHERE customer_name LIKE ?",
+				row -> {
+					totals.put(row.getString(1), row.getDouble(2));
+				}, prefix + "%");
+		return totals;
+	}
+
+	private static Set<Long> ids(String prefix) {
+		return new HashSet<>(jdbcTemplate.queryForList("SELECT id FROM orders WHERE customer_name LIKE ?",
+				Long.class, prefix + "%"));
+	}
+
+	/**
+	 * Template recording the events sent, acknowledging them until it fails the sends after the given number.
+	 */
+	private static final class RecordingKafkaTemplate extends KafkaTemplate<String, OrderEvent> {
+
+		private final Set<Long> published = ConcurrentHashMap.newKeySet();
+		private final AtomicLong sent = new AtomicLong();
+		private final long failAfter;
+
+		RecordingKafkaTemplate(long failAfter) {
+			super(new DefaultKafkaProducerFactory<>(Map.of()));
+			this.failAfter = failAfter;
+		}
+
+		@Override
+		public CompletableFuture<SendResult<String, OrderEvent>> send(ProducerRecord<String, OrderEvent> record) {
+			if (sent.incrementAndGet() > failAfter) {
+				return CompletableFuture.failedFuture(new KafkaException("Broker unavailable"));
+			}
+			published.add(record.value().getOrderId());
+			return CompletableFuture.completedFuture(null);
+		}
+	}
+}
@@ -0,0 +1,273 @@
+package com.personal_projects.order_service.order.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.personal_projects.common.Enums.OrderStatus;
+import com.personal_projects.order_service.data.dto.OrderDTO;
+import com.personal_projects.order_service.data.entity.IdempotencyKey;
+import com.personal_projects.order_service.data.entity.Order;
+import com.personal_projects.order_service.order.OrderService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.ErrorResponseException;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Creates orders through {@link IdempotencyService}s sharing an in-memory table of keys, as the instances of the
+ * service share the {@code idempotency_keys} table.
+ */
+class IdempotencyServiceTest {
+
+	private static final OrderDTO REQUEST = new OrderDTO("customer", "1 Main St", "book", 2, 9.5);
+	private static final OrderDTO OTHER_REQUEST = new OrderDTO("customer", "1 Main St", "book", 3, 9.5);
+
+	private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+	private final Map<String, IdempotencyKey> keys = new ConcurrentHashMap<>();
+	private final AtomicLong orderIds = new AtomicLong();
+	private IdempotencyKeyRepository repository;
+	private OrderService orderService;
+	private SimpleMeterRegistry meterRegistry;
+
+	@BeforeEach
+	void setUp() {
+		repository = repository();
+		orderService = mock(OrderService.class);
+		when(orderService.createOrder(any())).thenAnswer(invocation -> order());
+		meterRegistry = new SimpleMeterRegistry();
+	}
+
+	@Test
+	void replaysTheOrderToARetryWithTheSameKey() {
+		IdempotencyService service = service();
+
+		IdempotentOrder first = service.createOrder("key", REQUEST);
+		IdempotentOrder retry = service.createOrder("key", REQUEST);
+		IdempotentOrder elsewhere = service().createOrder("key", REQUEST);
+
+		assertFalse(first.replayed());
+		assertTrue(retry.replayed());
+		assertEquals(first.order().getId(), retry.order().getId());
+		assertTrue(elsewhere.replayed(), "another instance reads the recorded order");
+		assertEquals(first.order().getId(), elsewhere.order().getId());
+		verify(orderService, times(1)).createOrder(any());
+		assertEquals(1, outcome("cached"));
+		assertEquals(1, outcome("stored"));
+	}
+
+	@Test
+	void replaysACachedOrderWithoutTheTable() {
+		IdempotencyService service = service();
+		assertNull(service.replayCached("key", REQUEST));
+		assertNull(service.replayCached(null, REQUEST));
+		IdempotentOrder first = service.createOrder("key", REQUEST);
+
+		IdempotentOrder cached = service.replayCached("key", REQUEST);
+
+		assertTrue(cached.replayed());
+		assertEquals(first.order().getId(), cached.order().getId());
+		verify(repository, times(0)).findById(anyString());
+		ErrorResponseException mismatch = assertThrows(ErrorResponseException.class,
+				() -> service.replayCached("key", OTHER_REQUEST));
+		assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, mismatch.getStatusCode());
+	}
+
+	@Test
+	void collapsesTheRetriesArrivingWhileTheFirstRequestRuns() throws Exception {
+		CountDownLatch creating = new CountDownLatch(1);
+		CountDownLatch created = new CountDownLatch(1);
+		when(orderService.createOrder(any())).thenAnswer(invocation -> {
+			creating.countDown();
+			assertTrue(created.await(5, TimeUnit.SECONDS));
+			return order();
+		});
+		IdempotencyService service = service();
+
+		CompletableFuture<IdempotentOrder> first = CompletableFuture.supplyAsync(
+				() -> service.createOrder("key", REQUEST));
+		assertTrue(creating.await(5, TimeUnit.SECONDS));
+		CompletableFuture<IdempotentOrder> retry = CompletableFuture.supplyAsync(
+				() -> service.createOrder("key", REQUEST));
+		Thread.sleep(200);
+		assertFalse(retry.isDone(), "the retry waits for the first request");
+		created.countDown();
+
+		assertEquals(first.get(5, TimeUnit.SECONDS).order().getId(), retry.get(5, TimeUnit.SECONDS).order().getId());
+		assertTrue(retry.get().replayed());
+		verify(orderService, times(1)).createOrder(any());
+		assertEquals(1, outcome("collapsed"));
+	}
+
+	@Test
+	void rejectsAKeyReusedForAnotherRequest() {
+		IdempotencyService service = service();
+		service.createOrder("key", REQUEST);
+
+		ErrorResponseException cached = assertThrows(ErrorResponseException.class,
+				() -> service.createOrder("key", OTHER_REQUEST));
+		ErrorResponseException stored = assertThrows(ErrorResponseException.class,
+				() -> service().createOrder("key", OTHER_REQUEST));
+
+		assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, cached.getStatusCode());
+		assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, stored.getStatusCode());
+		verify(orderService, times(1)).createOrder(any());
+		assertEquals(2, outcome("mismatch"));
+	}
+
+	@Test
+	void releasesTheKeyWhenTheOrderCannotBeCreated() {
+		when(orderService.createOrder(any()))
+				.thenThrow(new DataAccessResourceFailureException("Shard unavailable"))
+				.thenAnswer(invocation -> order());
+		IdempotencyService service = service();
+
+		assertThrows(DataAccessResourceFailureException.class, () -> service.createOrder("key", REQUEST));
+		assertNull(keys.get("key"), "the key is released");
+
+		IdempotentOrder retry = service.createOrder("key", REQUEST);
+		assertFalse(retry.replayed());
+		assertNotNull(keys.get("key").getResponse());
+	}
+
+	@Test
+	void answersAConflictWhileAnotherInstanceHoldsTheKey() {
+		keys.put("key", claim(LocalDateTime.now()));
+
+		ErrorResponseException conflict = assertThrows(ErrorResponseException.class,
+				() -> service().createOrder("key", REQUEST));
+
+		assertEquals(HttpStatus.CONFLICT, conflict.getStatusCode());
+		assertEquals("1", conflict.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+		verify(orderService, times(0)).createOrder(any());
+	}
+
+	@Test
+	void takesOverAKeyAbandonedWithoutAnOrder() {
+		keys.put("key", claim(LocalDateTime.now().minusMinutes(1)));
+
+		IdempotentOrder order = service().createOrder("key", REQUEST);
+
+		assertFalse(order.replayed());
+		assertEquals(order.order().getId(), keys.get("key").getOrderId());
+		assertEquals(1, outcome("reclaimed"));
+	}
+
+	@Test
+	void keepsTheClaimOfAnOrderThatCannotBeRecorded() {
+		when(repository.complete(anyString(), anyLong(), anyString()))
+				.thenThrow(new DataAccessResourceFailureException("Shard unavailable"));
+		IdempotencyService service = service();
+
+		IdempotentOrder first = service.createOrder("key", REQUEST);
+		IdempotentOrder retry = service.createOrder("key", REQUEST);
+
+		assertEquals(first.order().getId(), retry.order().getId(), "replayed from the cache");
+		assertNotNull(keys.get("key"), "the key is not released, so no retry creates the order again");
+		verify(repository, times(3)).complete(anyString(), anyLong(), anyString());
+		verify(orderService, times(1)).createOrder(any());
+		assertEquals(1, outcome("unrecorded"));
+	}
+
+	@Test
+	void deletesTheKeysOlderThanTheTtl() {
+		keys.put("expired", claim(LocalDateTime.now().minusHours(25)));
+		keys.put("recent", claim(LocalDateTime.now().minusHours(23)));
+
+		service().deleteExpiredKeys();
+
+		assertEquals(Map.of("recent", keys.get("recent")), keys);
+	}
+
+	private IdempotencyService service() {
+		return new IdempotencyService(orderService, repository, objectMapper, 24, 30_000, 100, meterRegistry);
+	}
+
+	private double outcome(String outcome) {
+		return meterRegistry.counter("orders.idempotency.requests", "outcome", outcome).count();
+	}
+
+	private Order order() {
+		return Order.builder()
+				.id(orderIds.incrementAndGet())
+				.customerName("customer")
+				.status(OrderStatus.CREATED)
+				.createdAt(LocalDateTime.now())
+				.build();
+	}
+
+	private static IdempotencyKey claim(LocalDateTime createdAt) {
+		return IdempotencyKey.builder().key("key").requestHash("hash").createdAt(createdAt).build();
+	}
+
+	/**
+	 * Repository over {@link #keys}, with the atomicity of the statements on Postgres.
+	 */
+	private IdempotencyKeyRepository repository() {
+		IdempotencyKeyRepository repository = mock(IdempotencyKeyRepository.class);
+		when(repository.claim(anyString(), anyString(), any())).thenAnswer(invocation -> keys.putIfAbsent(
+				invocation.getArgument(0), IdempotencyKey.builder()
+						.key(invocation.getArgument(0))
+						.requestHash(invocation.getArgument(1))
+						.createdAt(invocation.getArgument(2))
+						.build()) == null ? 1 : 0);
+		when(repository.reclaim(anyString(), anyString(), any(), any())).thenAnswer(invocation -> {
+			LocalDateTime claimedBefore = invocation.getArgument(3);
+			IdempotencyKey reclaimed = keys.computeIfPresent(invocation.getArgument(0), (key, stored) ->
+					stored.getResponse() == null && stored.getCreatedAt().isBefore(claimedBefore)
+							? IdempotencyKey.builder()
+									.key(key)
+									.requestHash(invocation.getArgument(1))
+									.createdAt(invocation.getArgument(2))
+									.build()
+							: stored);
+			return reclaimed != null && reclaimed.getCreatedAt().equals(invocation.getArgument(2)) ? 1 : 0;
+		});
+		when(repository.complete(anyString(), anyLong(), anyString())).thenAnswer(invocation -> {
+			IdempotencyKey completed = keys.computeIfPresent(invocation.getArgument(0), (key, stored) ->
+					IdempotencyKey.builder()
+							.key(key)
+							.requestHash(stored.getRequestHash())
+							.orderId(invocation.getArgument(1))
+							.response(invocation.getArgument(2))
+							.createdAt(stored.getCreatedAt())
+							.build());
+			return completed == null ? 0 : 1;
+		});
+		when(repository.findById(anyString())).thenAnswer(invocation ->
+				Optional.ofNullable(keys.get(invocation.<String>getArgument(0))));
+		doAnswer(invocation -> keys.remove(invocation.<String>getArgument(0))).when(repository).deleteById(anyString());
+		when(repository.deleteCreatedBefore(any())).thenAnswer(invocation -> {
+			LocalDateTime before = invocation.getArgument(0);
+			int size = keys.size();
+			keys.values().removeIf(key -> key.getCreatedAt().isBefore(before));
+			return size - keys.size();
+		});
+		return repository;
+	}
+}
@@ -0,0 +1,200 @@
+package com.personal_projects.order_service.order.jdbc;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.Cookie;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.Network;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.images.builder.Transferable;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Routes reads between two Postgres servers, a primary and a streaming replica of it.
+ */
+@Testcontainers
+class ReplicaRoutingTest {
+
+	private static final Duration MAX_LAG = Duration.ofSeconds(2);
+	private static final Duration READ_YOUR_WRITES = Duration.ofSeconds(5);
+	private static final String PRIMARY_ALIAS = "primary";
+
+	private static final Network network = Network.newNetwork();
+
+	@Container
+	private static final PostgreSQLContainer<?> primary = new PostgreSQLContainer<>("postgres:16-alpine")
+			.withNetwork(network)
+			.withNetworkAliases(PRIMARY_ALIAS)
+			// Lets the replica stream the WAL with the superuser the container creates
+			.withCopyToContainer(Transferable.of(
+					"echo 'host replication all all scram-sha-256' >> \"$PGDATA/pg_hba.conf\"", 0755),
+					"/docker-entrypoint-initdb.d/replication.sh");
+
+	@Container
+	private static final GenericContainer<?> replica = new GenericContainer<>("postgres:16-alpine")
+			.withNetwork(network)
+			.dependsOn(primary)
+			.withEnv("PGPASSWORD", "test")
+			.withCreateContainerCmdModifier(command -> command.withUser("postgres"))
+			// Clones the primary, configured to follow it as a hot standby
+			.withCommand("sh", "-c", "pg_basebackup -h " + PRIMARY_ALIAS + " -U test -D \"$PGDATA\" -R -X stream "
+					+ "-c fast && chmod 700 \"$PGDATA\" && exec postgres")
+			.withExposedPorts(5432)
+			.waitingFor(Wait.forLogMessage(".*ready to accept read-only connections.*", 1));
+
+	private static DataSource primaryDataSource;
+	private static DataSource replicaDataSource;
+
+	private SimpleMeterRegistry meterRegistry;
+	private ReplicaLagMonitor replicaLagMonitor;
+	private TransactionTemplate readOnly;
+	private TransactionTemplate readWrite;
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeAll
+	static void migrate() {
+		primaryDataSource = new DriverManagerDataSource(primary.getJdbcUrl(), primary.getUsername(),
+				primary.getPassword());
+		replicaDataSource = new DriverManagerDataSource("jdbc:postgresql://" + replica.getHost() + ":"
+				+ replica.getMappedPort(5432) + "/" + primary.getDatabaseName(), primary.getUsername(),
+				primary.getPassword());
+		Flyway.configure().dataSource(primaryDataSource).load().migrate();
+	}
+
+	@AfterAll
+	static void closeNetwork() {
+		network.close();
+	}
+
+	@BeforeEach
+	void route() {
+		meterRegistry = new SimpleMeterRegistry();
+		replicaLagMonitor = new ReplicaLagMonitor(primaryDataSource, Map.of("replica-0", replicaDataSource), MAX_LAG,
+				meterRegistry);
+		DataSource dataSource = new LazyConnectionDataSourceProxy(
+				new ReplicaRoutingDataSource(replicaLagMonitor, meterRegistry));
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+		readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+		readWrite = new TransactionTemplate(transactionManager);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	@AfterEach
+	void resumeReplay() {
+		new JdbcTemplate(replicaDataSource).execute("SELECT pg_wal_replay_resume()");
+	}
+
+	@Test
+	void readOnlyTransactionsAreServedByTheReplica() {
+		insertOrder(1);
+		awaitReadOnlyServedByReplica(true);
+
+		assertEquals(1, (int) readOnly.execute(status -> jdbcTemplate.queryForObject(
+				"SELECT count(*) FROM orders WHERE id = 1", Integer.class)), "the replica has the order");
+		assertFalse((boolean) readWrite.execute(status -> inRecovery()), "read-write transactions use the primary");
+		assertFalse(inRecovery(), "statements outside a transaction use the primary");
+		assertTrue(reads("replica") > 0);
+	}
+
+	@Test
+	void requestsAfterAWriteOfTheClientReadFromThePrimary() throws Exception {
+		awaitReadOnlyServedByReplica(true);
+		ReadYourWritesFilter filter = new ReadYourWritesFilter(READ_YOUR_WRITES);
+
+		MockHttpServletResponse written = new MockHttpServletResponse();
+		AtomicReference<Boolean> servedByReplica = new AtomicReference<>();
+		filter.doFilter(new MockHttpServletRequest("POST", "/api/v1/order"), written,
+				(request, response) -> servedByReplica.set(readOnly.execute(status -> inRecovery())));
+		assertFalse(servedByReplica.get(), "the write request reads from the primary");
+		Cookie cookie = written.getCookie(ReadYourWritesFilter.COOKIE);
+		assertNotNull(cookie);
+
+		MockHttpServletRequest ownRead = new MockHttpServletRequest("GET", "/api/v1/order/1");
+		ownRead.setCookies(cookie);
+		filter.doFilter(ownRead, new MockHttpServletResponse(),
+				(request, response) -> servedByReplica.set(readOnly.execute(status -> inRecovery())));
+		assertFalse(servedByReplica.get(), "the writing client reads from the primary");
+
+		filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/order/1"), new MockHttpServletResponse(),
+				(request, response) -> servedByReplica.set(readOnly.execute(status -> inRecovery())));
+		assertTrue(servedByReplica.get(), "other clients read from the replica");
+		assertTrue(reads("recent-write") > 0);
+	}
+
+	@Test
+	void readsFallBackToThePrimaryWhileTheReplicaLags() {
+		awaitReadOnlyServedByReplica(true);
+
+		new JdbcTemplate(replicaDataSource).execute("SELECT pg_wal_replay_pause()");
+		insertOrder(2);
+		awaitReadOnlyServedByReplica(false);
+		assertEquals(1, (int) readOnly.execute(status -> jdbcTemplate.queryForObject(
+				"SELECT count(*) FROM orders WHERE id = 2", Integer.class)), "the primary serves the new order");
+		assertTrue(reads("replica-lag") > 0);
+
+		new JdbcTemplate(replicaDataSource).execute("SELECT pg_wal_replay_resume()");
+		awaitReadOnlyServedByReplica(true);
+		assertEquals(1, (int) readOnly.execute(status -> jdbcTemplate.queryForObject(
+				"SELECT count(*) FROM orders WHERE id = 2", Integer.class)), "the replica caught up");
+	}
+
+	/**
+	 * Checks the replica lag until the read-only transactions are served by the replica or not.
+	 */
+	private void awaitReadOnlyServedByReplica(boolean expected) {
+		long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+		while (System.nanoTime() < deadline) {
+			replicaLagMonitor.check();
+			if (readOnly.execute(status -> inRecovery()) == expected) {
+				return;
+			}
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				fail(e);
+			}
+		}
+		fail("read-only transactions were not " + (expected ? "served by" : "taken off") + " the replica in time");
+	}
+
+	private boolean inRecovery() {
+		return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT pg_is_in_recovery()", Boolean.class));
+	}
+
+	private double reads(String reason) {
+		return meterRegistry.get("orders.datasource.reads").tag("reason", reason).counter().count();
+	}
+
+	private static void insertOrder(long id) {
+		new JdbcTemplate(primaryDataSource).update("INSERT INTO orders (id, customer_name, customer_address, "
+				+ "product_name, quantity, price, total_amount, status, created_at) VALUES (?, 'customer', 'address', "
+				+ "'product', 1, 1, 1, 'CREATED', now())", id);
+	}
+}
@@ -0,0 +1,46 @@
+package com.personal_projects.order_service.order.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Redaction of the logged SQL statements and numbering of their placeholders for the explains.
+ */
+class SqlRedactionTest {
+
+	@Test
+	void replacesStringAndNumericLiterals() {
+		assertEquals("SELECT * FROM orders WHERE customer_name = ? AND total_amount > ? AND id = ?",
+				SqlRedaction.redact("SELECT * FROM orders WHERE customer_name = 'O''Brien' AND total_amount > 12.50 "
+						+ "AND id = ?"));
+		assertEquals("UPDATE orders SET quantity = ?, price = -? WHERE id IN (?, ?)",
+				SqlRedaction.redact("UPDATE orders SET quantity = 3, price = -0.5 WHERE id IN (7, 8)"));
+	}
+
+	@Test
+	void keepsIdentifiersWithDigitsAndQuotedIdentifiers() {
+		assertEquals("SELECT col1, t2.\"Order 1\" FROM orders_2024 t2 LIMIT ?",
+				SqlRedaction.redact("SELECT col1, t2.\"Order 1\" FROM orders_2024 t2 LIMIT 10"));
+	}
+
+	@Test
+	void redactsAnUnterminatedStringToTheEnd() {
+		assertEquals("SELECT * FROM orders WHERE customer_address = ?",
+				SqlRedaction.redact("SELECT * FROM orders WHERE customer_address = 'Rua Augusta 10, 1100"));
+	}
+
+	@Test
+	void numbersThePlaceholdersOutsideQuotes() {
+		assertEquals("UPDATE orders SET status = $1 WHERE id = $2 AND note <> '?' AND \"what?\" = $3",
+				SqlRedaction.numberPlaceholders(
+						"UPDATE orders SET status = ? WHERE id = ? AND note <> '?' AND \"what?\" = ?"));
+	}
+
+	@Test
+	void leavesAStatementWithoutPlaceholdersUnchanged() {
+		String sql = "SELECT count(*) FROM orders WHERE status = 'PAID'";
+
+		assertEquals(sql, SqlRedaction.numberPlaceholders(sql));
+	}
+}
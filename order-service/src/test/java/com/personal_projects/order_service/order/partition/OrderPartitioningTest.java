@@ -0,0 +1,191 @@
+package com.personal_projects.order_service.order.partition;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the migrations and the partition maintenance on Postgres, and checks the plans of the orders queries.
+ */
+@Testcontainers
+class OrderPartitioningTest {
+
+	private static final Pattern PARTITION = Pattern.compile(OrderPartitionMaintenance.PARTITION_PREFIX + "\\d{6}");
+	private static final Pattern SORT_NODE = Pattern.compile("(?m)^\\s*(->\\s*)?Sort\\s+\\(");
+
+	@Container
+	private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+	private static JdbcTemplate jdbcTemplate;
+
+	@BeforeAll
+	static void migrate() {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(postgres.getJdbcUrl(),
+				postgres.getUsername(), postgres.getPassword());
+		Flyway.configure().dataSource(dataSource).load().migrate();
+		jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	@Test
+	void ordersIsPartitionedByCreationTime() {
+		assertEquals("p", jdbcTemplate.queryForObject(
+				"SELECT relkind::text FROM pg_class WHERE relname = 'orders'", String.class));
+		assertTrue(attached().contains(OrderPartitionMaintenance.partitionName(YearMonth.now())),
+				"the migration created the partition of the current month");
+	}
+
+	@Test
+	void maintenanceCreatesMonthsAheadAndDetachesExpiredMonths() {
+		YearMonth current = YearMonth.now();
+		YearMonth expired = current.minusMonths(4);
+		new OrderPartitionMaintenance(jdbcTemplate, 0, 0).maintain(expired);
+		insertOrder(1_000, expired.atDay(15).atStartOfDay());
+
+		new OrderPartitionMaintenance(jdbcTemplate, 3, 2).maintain(current);
+
+		Set<String> attached = attached();
+		for (int i = 0; i <= 3; i++) {
+			assertTrue(attached.contains(OrderPartitionMaintenance.partitionName(current.plusMonths(i))));
+		}
+		String expiredName = OrderPartitionMaintenance.partitionName(expired);
+		assertFalse(attached.contains(expiredName), "the partition past the retention was detached");
+		assertNotNull(jdbcTemplate.queryForObject("SELECT to_regclass(?)::text", String.class, expiredName),
+				"the detached partition is kept as a table");
+		assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM " + expiredName, Integer.class));
+		assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM orders WHERE id = 1000", Integer.class));
+	}
+
+	@Test
+	void statusUpdateWithinCreationRangeIsPrunedToOnePartition() {
+		LocalDateTime createdAt = LocalDateTime.now();
+		insertOrder(2_000, createdAt);
+
+		// As generated for OrderRepository#updateOrderStatusByIdCreatedBetween
+		Set<String> scanned = scannedPartitions(
+				"UPDATE orders SET status = ? WHERE id = ? AND created_at >= ? AND created_at < ? AND status IN (?)",
+				"PAID", 2_000L, Timestamp.valueOf(createdAt.minusSeconds(1)),
+				Timestamp.valueOf(createdAt.plusSeconds(1)), "CREATED");
+
+		assertEquals(Set.of(OrderPartitionMaintenance.partitionName(YearMonth.from(createdAt))), scanned);
+		// As generated for OrderRepository#existsByIdCreatedBetween, when the update left the order as it is
+		assertEquals(scanned, scannedPartitions(
+				"SELECT count(*) > 0 FROM orders WHERE id = ? AND created_at >= ? AND created_at < ?",
+				2_000L, Timestamp.valueOf(createdAt.minusSeconds(1)), Timestamp.valueOf(createdAt.plusSeconds(1))));
+	}
+
+	@Test
+	void statusAndCustomerQueriesWithinCreationRangeArePruned() {
+		YearMonth current = YearMonth.now();
+		Timestamp from = Timestamp.valueOf(current.atDay(1).atStartOfDay());
+		Timestamp to = Timestamp.valueOf(current.plusMonths(1).atDay(1).atStartOfDay());
+		Set<String> currentPartition = Set.of(OrderPartitionMaintenance.partitionName(current));
+
+		assertEquals(currentPartition, scannedPartitions(
+				"SELECT id FROM orders WHERE status = ? AND created_at >= ? AND created_at < ?", "CREATED", from, to));
+		assertEquals(currentPartition, scannedPartitions(
+				"SELECT id FROM orders WHERE customer_name = ? AND created_at >= ? AND created_at < ?",
+				"customer", from, to));
+	}
+
+	@Test
+	void customerHistoryPageIsAnIndexOnlyScanInPageOrder() {
+		LocalDateTime now = LocalDateTime.now();
+		for (long id = 3_000; id < 3_100; id++) {
+			insertOrder(id, now.minusSeconds(id - 3_000));
+		}
+		jdbcTemplate.execute("VACUUM ANALYZE orders");
+
+		// As generated for OrderRepository#findHistoryBefore, on a table too small to be worth an index otherwise
+		List<String> plan = jdbcTemplate.execute((ConnectionCallback<List<String>>) connection -> {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("SET enable_seqscan = off");
+				statement.execute("SET enable_bitmapscan = off");
+			}
+			return new JdbcTemplate(new SingleConnectionDataSource(connection, true)).queryForList(
+					"EXPLAIN SELECT id, product_name, total_amount, status, created_at FROM orders "
+							+ "WHERE customer_name = ? AND created_at <= ? AND (created_at, id) < (?, ?) "
+							+ "ORDER BY created_at DESC, id DESC LIMIT 21",
+					String.class, "customer", Timestamp.valueOf(now.minusSeconds(10)),
+					Timestamp.valueOf(now.minusSeconds(10)), 3_010L);
+		});
+
+		String text = String.join("\n", plan);
+		assertTrue(text.contains("Index Only Scan using"), text);
+		assertTrue(text.contains("customer_history_idx"), text);
+		assertFalse(SORT_NODE.matcher(text).find(), "the index returns the rows in page order\n" + text);
+	}
+
+	@Test
+	void customerHistoryPageSkipsThePartitionsNewerThanTheCursor() {
+		YearMonth current = YearMonth.now();
+		new OrderPartitionMaintenance(jdbcTemplate, 2, 0).maintain(current);
+		Timestamp cursor = Timestamp.valueOf(current.atDay(1).atStartOfDay().plusHours(1));
+		String ahead = OrderPartitionMaintenance.partitionName(current.plusMonths(1));
+
+		// As generated for OrderRepository#findHistoryBefore
+		Set<String> scanned = scannedPartitions("SELECT id FROM orders WHERE customer_name = ? AND created_at <= ? "
+				+ "AND (created_at, id) < (?, ?) ORDER BY created_at DESC, id DESC LIMIT 21",
+				"customer", cursor, cursor, 3_010L);
+
+		assertTrue(scanned.contains(OrderPartitionMaintenance.partitionName(current)), scanned.toString());
+		for (String partition : scanned) {
+			assertTrue(partition.compareTo(OrderPartitionMaintenance.partitionName(current)) <= 0,
+					"scanned " + partition + " newer than the cursor");
+		}
+		assertTrue(scannedPartitions("SELECT id FROM orders WHERE customer_name = ? AND (created_at, id) < (?, ?) "
+						+ "ORDER BY created_at DESC, id DESC LIMIT 21", "customer", cursor, 3_010L).contains(ahead),
+				"the row comparison alone does not prune");
+	}
+
+	private static void insertOrder(long id, LocalDateTime createdAt) {
+		jdbcTemplate.update("INSERT INTO orders (id, customer_name, customer_address, product_name, quantity, price, "
+						+ "total_amount, status, created_at) VALUES (?, 'customer', 'address', 'product', 1, 1, 1, "
+						+ "'CREATED', ?)", id, Timestamp.valueOf(createdAt));
+	}
+
+	private static Set<String> attached() {
+		Set<String> names = new TreeSet<>();
+		for (OrderPartitionMaintenance.Partition partition :
+				new OrderPartitionMaintenance(jdbcTemplate, 0, 0).attachedPartitions()) {
+			names.add(partition.name());
+		}
+		return names;
+	}
+
+	/**
+	 * @return the partitions in the plan of a statement, bound to the arguments as the repository binds them
+	 */
+	private static Set<String> scannedPartitions(String sql, Object... args) {
+		List<String> plan = jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, args);
+		Set<String> partitions = new TreeSet<>();
+		for (String line : plan) {
+			Matcher matcher = PARTITION.matcher(line);
+			while (matcher.find()) {
+				partitions.add(matcher.group());
+			}
+		}
+		return partitions;
+	}
+}
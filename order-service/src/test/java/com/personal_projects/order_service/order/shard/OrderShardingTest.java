@@ -0,0 +1,182 @@
+package com.personal_projects.order_service.order.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.lifecycle.Startables;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Stores orders across four Postgres shards, each limited to half a CPU so that the shards, not the writers of the
+ * test, bound the throughput.
+ */
+class OrderShardingTest {
+
+	private static final int SHARDS = 4;
+	private static final int WRITERS = 32;
+	private static final Duration WARMUP = Duration.ofSeconds(2);
+	private static final Duration MEASURED = Duration.ofSeconds(5);
+	private static final Comparator<Row> NEWEST_FIRST =
+			Comparator.comparing(Row::createdAt).thenComparingLong(Row::id).reversed();
+
+	// As generated for an Order saved with the ShardedOrderIdGenerator
+	private static final String INSERT = "INSERT INTO orders (id, customer_name, customer_address, product_name, "
+			+ "quantity, price, total_amount, status, created_at) VALUES (?, ?, 'address', 'product', 1, 1, 1, "
+			+ "'CREATED', ?)";
+
+	private static final List<PostgreSQLContainer<?>> containers = new ArrayList<>();
+	private static final List<DataSource> pools = new ArrayList<>();
+
+	@BeforeAll
+	static void startShards() {
+		for (int shard = 0; shard < SHARDS; shard++) {
+			containers.add(new PostgreSQLContainer<>("postgres:16-alpine")
+					// The containers share the host disk: without syncing, commits only cost CPU
+					.withCommand("postgres", "-c", "fsync=off", "-c", "synchronous_commit=off")
+					.withCreateContainerCmdModifier(command -> command.getHostConfig().withNanoCPUs(500_000_000L)));
+		}
+		Startables.deepStart(containers).join();
+		for (PostgreSQLContainer<?> container : containers) {
+			HikariDataSource pool = new HikariDataSource();
+			pool.setJdbcUrl(container.getJdbcUrl());
+			pool.setUsername(container.getUsername());
+			pool.setPassword(container.getPassword());
+			pool.setMaximumPoolSize(WRITERS / SHARDS);
+			Flyway.configure().dataSource(pool).load().migrate();
+			pools.add(pool);
+		}
+	}
+
+	@AfterAll
+	static void stopShards() throws Exception {
+		new OrderShards(new RangeShardMap(SHARDS), pools).close();
+		containers.forEach(PostgreSQLContainer::stop);
+	}
+
+	@Test
+	void ordersAreStoredInTheShardTheirIdEncodes() {
+		OrderShards shards = new OrderShards(new RangeShardMap(SHARDS), pools);
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(new ShardRoutingDataSource(shards));
+
+		boolean[] used = new boolean[SHARDS];
+		for (int i = 0; i < 200; i++) {
+			String customer = "customer-" + i;
+			long id = insert(shards, jdbcTemplate, customer);
+			int shard = shards.shardOf(id);
+			assertEquals(shards.shardOfCustomer(customer), shard);
+			used[shard] = true;
+			for (int other = 0; other < SHARDS; other++) {
+				assertEquals(other == shard ? 1 : 0, new JdbcTemplate(pools.get(other)).queryForObject(
+						"SELECT count(*) FROM orders WHERE id = ?", Integer.class, id), "order " + id + " on shard " + other);
+			}
+			// As routed for a status update from the listeners
+			assertEquals(1, shards.on(shards.shardOf(id), () -> jdbcTemplate.update(
+					"UPDATE orders SET status = 'PAID' WHERE id = ?", id)));
+		}
+		for (int shard = 0; shard < SHARDS; shard++) {
+			assertTrue(used[shard], "shard " + shard + " got orders");
+		}
+	}
+
+	@Test
+	void gatherMergesTheShardsInKeysetOrder() {
+		OrderShards shards = new OrderShards(new RangeShardMap(SHARDS), pools);
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(new ShardRoutingDataSource(shards));
+		for (int i = 0; i < 100; i++) {
+			insert(shards, jdbcTemplate, "gathered-" + i);
+		}
+
+		int limit = 50;
+		List<Row> gathered = shards.gather(shard -> jdbcTemplate.query(
+				"SELECT id, created_at FROM orders ORDER BY created_at DESC, id DESC LIMIT ?",
+				(row, rowNum) -> new Row(row.getLong(1), row.getTimestamp(2).toLocalDateTime()), limit),
+				NEWEST_FIRST, limit);
+
+		List<Row> expected = new ArrayList<>();
+		for (DataSource pool : pools) {
+			expected.addAll(new JdbcTemplate(pool).query("SELECT id, created_at FROM orders",
+					(row, rowNum) -> new Row(row.getLong(1), row.getTimestamp(2).toLocalDateTime())));
+		}
+		expected.sort(NEWEST_FIRST);
+		assertEquals(expected.subList(0, limit), gathered);
+	}
+
+	@Test
+	void writesScaleWithTheShards() throws Exception {
+		assumeTrue(Runtime.getRuntime().availableProcessors() >= 4, "needs a CPU per two shards, and the writers'");
+
+		double one = ordersPerSecond(1);
+		double two = ordersPerSecond(2);
+		double four = ordersPerSecond(4);
+
+		String throughput = String.format("%.0f, %.0f and %.0f orders/s on 1, 2 and 4 shards", one, two, four);
+		assertTrue(two >= 1.6 * one, throughput);
+		assertTrue(four >= 2.8 * one, throughput);
+	}
+
+	private static double ordersPerSecond(int shardCount) throws Exception {
+		OrderShards shards = new OrderShards(new RangeShardMap(shardCount), pools.subList(0, shardCount));
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(new ShardRoutingDataSource(shards));
+		write(shards, jdbcTemplate, WARMUP);
+		return write(shards, jdbcTemplate, MEASURED) / (double) MEASURED.toSeconds();
+	}
+
+	/**
+	 * Writes orders of random customers from all the writers for a while.
+	 *
+	 * @return the number of orders written
+	 */
+	private static long write(OrderShards shards, JdbcTemplate jdbcTemplate, Duration duration) throws Exception {
+		long deadline = System.nanoTime() + duration.toNanos();
+		List<Callable<Long>> writers = new ArrayList<>();
+		for (int i = 0; i < WRITERS; i++) {
+			writers.add(() -> {
+				long written = 0;
+				while (System.nanoTime() < deadline) {
+					insert(shards, jdbcTemplate, "customer-" + ThreadLocalRandom.current().nextInt(1_000_000));
+					written++;
+				}
+				return written;
+			});
+		}
+		long written = 0;
+		try (ExecutorService executor = Executors.newFixedThreadPool(WRITERS)) {
+			for (Future<Long> writer : executor.invokeAll(writers)) {
+				written += writer.get();
+			}
+		}
+		return written;
+	}
+
+	private static long insert(OrderShards shards, JdbcTemplate jdbcTemplate, String customer) {
+		return shards.on(shards.shardOfCustomer(customer), () -> {
+			long id = OrderIds.of(jdbcTemplate.queryForObject("SELECT nextval('order_sequence')", Long.class),
+					OrderIds.bucketOf(customer));
+			jdbcTemplate.update(INSERT, id, customer, Timestamp.valueOf(LocalDateTime.now()));
+			return id;
+		});
+	}
+
+	private record Row(long id, LocalDateTime createdAt) {
+	}
+}
@@ -0,0 +1,178 @@
+package com.personal_projects.order_service.order.shard;
+
+import com.personal_projects.common.Enums.OrderStatus;
+import com.personal_projects.order_service.data.dto.OrderDTO;
+import com.personal_projects.order_service.data.entity.Order;
+import com.personal_projects.order_service.order.OrderRepository;
+import com.personal_projects.order_service.order.idempotency.IdempotencyKeyRepository;
+import com.personal_projects.order_service.util.OrderMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Stores orders through the JPA repositories over two Postgres shards, as the service does with
+ * {@code orders.shards.enabled}, the order IDs coming from the {@link ShardedOrderIdGenerator}.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Testcontainers
+class ShardedOrderStorageTest {
+
+	@Container
+	private static final PostgreSQLContainer<?> first = new PostgreSQLContainer<>("postgres:16-alpine");
+
+	@Container
+	private static final PostgreSQLContainer<?> second = new PostgreSQLContainer<>("postgres:16-alpine");
+
+	@DynamicPropertySource
+	static void shards(DynamicPropertyRegistry registry) {
+		registry.add("orders.shards.enabled", () -> "true");
+		registry.add("orders.shards.urls", () -> first.getJdbcUrl() + "," + second.getJdbcUrl());
+		registry.add("spring.datasource.username", first::getUsername);
+		registry.add("spring.datasource.password", first::getPassword);
+	}
+
+	@Autowired
+	private OrderShards orderShards;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private IdempotencyKeyRepository idempotencyKeyRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Test
+	void ordersAreStoredOnTheShardTheirGeneratedIdEncodes() {
+		boolean[] used = new boolean[orderShards.count()];
+		for (int i = 0; i < 50; i++) {
+			String customer = "customer-" + i;
+			// As saved by OrderService#createOrder
+			long id = orderShards.on(orderShards.shardOfCustomer(customer),
+					() -> orderRepository.save(OrderMapper.toOrder(order(customer)))).getId();
+
+			int shard = orderShards.shardOf(id);
+			assertEquals(orderShards.shardOfCustomer(customer), shard, "order " + id + " of " + customer);
+			used[shard] = true;
+			for (int other = 0; other < orderShards.count(); other++) {
+				assertEquals(other == shard ? 1 : 0, count(other, id), "order " + id + " on shard " + other);
+			}
+			Optional<Order> found = orderShards.on(shard, () -> orderRepository.findById(id));
+			assertTrue(found.isPresent(), "order " + id + " found by its ID");
+			assertEquals(1, orderShards.on(shard, () -> orderRepository.updateOrderStatusById(id, OrderStatus.PAID,
+					OrderStatus.PAID.predecessors())));
+		}
+		for (int shard = 0; shard < used.length; shard++) {
+			assertTrue(used[shard], "shard " + shard + " got orders");
+		}
+	}
+
+	@Test
+	void idempotencyKeysStayOnTheFirstShard() {
+		String key = UUID.randomUUID().toString();
+
+		assertEquals(1, idempotencyKeyRepository.claim(key, "hash", LocalDateTime.now()));
+
+		assertEquals(1, keys(0, key));
+		assertEquals(0, keys(1, key));
+	}
+
+	@Test
+	void refusesAnotherShardWhileAnEntityManagerIsOpenForTheRequest() {
+		String customer = customerOf(1);
+		String key = UUID.randomUUID().toString();
+		// As bound for the request by spring.jpa.open-in-view
+		EntityManagerHolder request = new EntityManagerHolder(entityManagerFactory.createEntityManager());
+		TransactionSynchronizationManager.bindResource(entityManagerFactory, request);
+		try {
+			// As claimed by IdempotencyService#createOnce, holding a connection to the first shard
+			idempotencyKeyRepository.claim(key, "hash", LocalDateTime.now());
+
+			assertThrows(IllegalStateException.class, () -> orderShards.on(orderShards.shardOfCustomer(customer),
+					() -> orderRepository.save(OrderMapper.toOrder(order(customer)))));
+		} finally {
+			TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+			request.getEntityManager().close();
+		}
+
+		for (int shard = 0; shard < orderShards.count(); shard++) {
+			assertEquals(0, new JdbcTemplate(orderShards.dataSource(shard)).queryForObject(
+					"SELECT count(*) FROM orders WHERE customer_name = ?", Integer.class, customer));
+		}
+	}
+
+	private String customerOf(int shard) {
+		for (int i = 0; ; i++) {
+			String customer = "request-" + i;
+			if (orderShards.shardOfCustomer(customer) == shard) {
+				return customer;
+			}
+		}
+	}
+
+	private int count(int shard, long id) {
+		return new JdbcTemplate(orderShards.dataSource(shard)).queryForObject(
+				"SELECT count(*) FROM orders WHERE id = ?", Integer.class, id);
+	}
+
+	private int keys(int shard, String key) {
+		return new JdbcTemplate(orderShards.dataSource(shard)).queryForObject(
+				"SELECT count(*) FROM idempotency_keys WHERE idempotency_key = ?", Integer.class, key);
+	}
+
+	private static OrderDTO order(String customer) {
+		return OrderDTO.builder()
+				.customerName(customer)
+				.customerAddress("1 Main St")
+				.productName("book")
+				.quantity(2)
+				.price(9.5)
+				.build();
+	}
+
+	/**
+	 * The order storage alone: the entities, the repositories and the shards, without the Kafka side of the service.
+	 */
+	@SpringBootConfiguration
+	@EntityScan(basePackageClasses = Order.class)
+	@EnableJpaRepositories(basePackageClasses = OrderRepository.class)
+	@Import(ShardingConfiguration.class)
+	static class Storage {
+
+		@Bean
+		MeterRegistry meterRegistry() {
+			return new SimpleMeterRegistry();
+		}
+	}
+}
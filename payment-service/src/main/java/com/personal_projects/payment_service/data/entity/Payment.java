@@ -7,6 +7,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -17,6 +19,7 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @NoArgsConstructor
 @Document(collection = "payments")  // MongoDB collection name
+@CompoundIndex(name = "status_paidAt", def = "{'status': 1, 'paidAt': 1}")  // Finds payments to archive
 public class Payment {
 
     /**
@@ -30,6 +33,11 @@ public class Payment {
      */
     private String clientName;
 
+    /**
+     * Address the order is shipped to, forwarded to the shipping service once paid.
+     */
+    private String customerAddress;
+
     /**
      * Amount paid.
      */
@@ -53,8 +61,14 @@ public class Payment {
     /**
      * ID of the order referent to this payment.
      */
+    @Indexed(name = "orderId")
     private long orderId;
 
+    /**
+     * Epoch millis at which the order was created, carried onto the payment event as the lifecycle origin.
+     */
+    private long originTimestamp;
+
     /**
      * Checks if the payment has already been processed.
      * <p>
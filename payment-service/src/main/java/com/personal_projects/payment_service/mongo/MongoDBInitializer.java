@@ -1,8 +1,14 @@
 package com.personal_projects.payment_service.mongo;
 
+import com.personal_projects.payment_service.data.entity.Payment;
+import com.personal_projects.payment_service.payment.PaymentArchiveRepository;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
 import org.springframework.stereotype.Component;
 
 
@@ -24,6 +30,8 @@ public class MongoDBInitializer implements ApplicationListener<ContextRefreshedE
      * Handles the {@link ContextRefreshedEvent}, which is triggered when the Spring application context is initialized or refreshed.
      * <p>
      * This implementation drops the entire MongoDB database configured in {@code application.yml} or {@code application.properties}.
+     * Dropping the database also drops the indexes created by {@code auto-index-creation}, so the indexes
+     * declared on {@link Payment} and the {@code orderId} index of the archive are re-created afterwards.
      * </p>
      *
      * @param event the context refreshed event
@@ -32,5 +40,13 @@ public class MongoDBInitializer implements ApplicationListener<ContextRefreshedE
     public void onApplicationEvent(ContextRefreshedEvent event) {
         System.out.println("Initializing MongoDB...");
         mongoTemplate.getDb().drop();
+
+        IndexOperations paymentIndexes = mongoTemplate.indexOps(Payment.class);
+        new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext())
+                .resolveIndexFor(Payment.class)
+                .forEach(paymentIndexes::ensureIndex);
+        // Reads by orderId fall through to the archive when the hot collection misses.
+        mongoTemplate.indexOps(PaymentArchiveRepository.ARCHIVE_COLLECTION)
+                .ensureIndex(new Index().on("orderId", Sort.Direction.ASC).named("orderId"));
     }
 }
@@ -0,0 +1,71 @@
+package com.personal_projects.payment_service.mongo;
+
+import com.personal_projects.common.Enums.PaymentStatus;
+import com.personal_projects.common.Tiering.CollectionTiering;
+import com.personal_projects.payment_service.data.entity.Payment;
+import com.personal_projects.payment_service.payment.PaymentArchiveRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Moves settled payments from the hot {@code payments} collection to the {@code payments_archive} collection.
+ * <p>
+ * Every run archives payments that are {@code COMPLETED} or {@code FAILED} and were paid more than
+ * {@code payment.tiering.min-age-ms} ago, through a {@link CollectionTiering} moving batches of
+ * {@code payment.tiering.batch-size} within {@code payment.tiering.duty-cycle} of the wall-clock time, at most
+ * {@code payment.tiering.max-batches-per-run} batches per run. Its metrics are the {@code payment.tiering.*}
+ * gauges and counter.
+ * </p>
+ * <p>
+ * Enabled with {@code payment.tiering.enabled=true}.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "payment.tiering.enabled", havingValue = "true")
+public class PaymentTieringJob {
+
+    private static final List<PaymentStatus> TERMINAL_STATUSES = List.of(PaymentStatus.COMPLETED, PaymentStatus.FAILED);
+
+    private final CollectionTiering<Payment> tiering;
+    private final Duration minAge;
+
+    /**
+     * Constructs the tiering job.
+     *
+     * @param mongoTemplate    template used to read, archive and remove payments
+     * @param meterRegistry    registry for the tiering metrics
+     * @param minAgeMillis     how long a settled payment stays in the hot collection
+     * @param batchSize        payments moved per batch
+     * @param maxBatchesPerRun batches moved per run at most
+     * @param dutyCycle        fraction of wall-clock time the job may spend moving batches, in {@code (0, 1]}
+     */
+    public PaymentTieringJob(MongoTemplate mongoTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${payment.tiering.min-age-ms:604800000}") long minAgeMillis,
+                             @Value("${payment.tiering.batch-size:500}") int batchSize,
+                             @Value("${payment.tiering.max-batches-per-run:100}") int maxBatchesPerRun,
+                             @Value("${payment.tiering.duty-cycle:0.2}") double dutyCycle) {
+        this.tiering = new CollectionTiering<>(mongoTemplate, Payment.class, PaymentArchiveRepository.ARCHIVE_COLLECTION,
+                "payment.tiering", meterRegistry, batchSize, maxBatchesPerRun, dutyCycle);
+        this.minAge = Duration.ofMillis(minAgeMillis);
+    }
+
+    /**
+     * Archives settled payments older than the configured age, batch by batch.
+     */
+    @Scheduled(fixedDelayString = "${payment.tiering.interval-ms:3600000}")
+    public void archiveSettledPayments() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(minAge);
+        tiering.archive(Query.query(Criteria.where("status").in(TERMINAL_STATUSES).and("paidAt").lt(cutoff)));
+    }
+}
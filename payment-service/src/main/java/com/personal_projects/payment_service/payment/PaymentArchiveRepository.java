@@ -0,0 +1,23 @@
+package com.personal_projects.payment_service.payment;
+
+import com.personal_projects.payment_service.data.entity.Payment;
+
+import java.util.Optional;
+
+/**
+ * Custom query fragment of {@link PaymentRepository} for reads that span the hot {@code payments}
+ * collection and the {@code payments_archive} collection filled by the {@code PaymentTieringJob}.
+ */
+public interface PaymentArchiveRepository {
+
+    /** Collection holding payments moved out of the hot collection. */
+    String ARCHIVE_COLLECTION = "payments_archive";
+
+    /**
+     * Finds a payment by its order ID, falling through to the archive when the hot collection has none.
+     *
+     * @param orderId the ID of the order associated with the payment
+     * @return an {@link Optional} containing the payment if found in either collection
+     */
+    Optional<Payment> findByOrderIdIncludingArchive(long orderId);
+}
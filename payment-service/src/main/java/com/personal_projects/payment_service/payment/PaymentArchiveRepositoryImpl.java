@@ -0,0 +1,30 @@
+package com.personal_projects.payment_service.payment;
+
+import com.personal_projects.payment_service.data.entity.Payment;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Optional;
+
+/**
+ * {@link MongoTemplate} based implementation of {@link PaymentArchiveRepository}.
+ */
+public class PaymentArchiveRepositoryImpl implements PaymentArchiveRepository {
+
+    private final MongoTemplate mongoTemplate;
+
+    public PaymentArchiveRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Optional<Payment> findByOrderIdIncludingArchive(long orderId) {
+        Query byOrderId = Query.query(Criteria.where("orderId").is(orderId));
+        Payment payment = mongoTemplate.findOne(byOrderId, Payment.class);
+        if (payment == null) {
+            payment = mongoTemplate.findOne(byOrderId, Payment.class, ARCHIVE_COLLECTION);
+        }
+        return Optional.ofNullable(payment);
+    }
+}
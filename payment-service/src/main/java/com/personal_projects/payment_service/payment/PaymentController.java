@@ -35,6 +35,18 @@ public class PaymentController {
         return paymentService.getAllPayments();
     }
 
+    /**
+     * Endpoint to get the payment of an order.
+     *
+     * @param orderId The ID of the order whose payment is requested.
+     * @return The payment of the order.
+     */
+    @Operation(summary = "Get the payment of an order")
+    @GetMapping("{order_id}")
+    public Payment getPaymentByOrderId(@PathVariable("order_id") long orderId) {
+        return paymentService.getPaymentByOrderId(orderId);
+    }
+
     /**
      * Processes a pending payment using the associated order ID and payment details.
      *
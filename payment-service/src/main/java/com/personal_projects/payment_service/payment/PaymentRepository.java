@@ -14,7 +14,7 @@ import java.util.Optional;
  * on {@link Payment} entities. It also defines custom queries, such as searching for payments by their
  * associated order ID.
  */
-public interface PaymentRepository extends MongoRepository<Payment, Long> {
+public interface PaymentRepository extends MongoRepository<Payment, Long>, PaymentArchiveRepository {
     /**
      * Finds a payment by its associated order ID.
      * <p>
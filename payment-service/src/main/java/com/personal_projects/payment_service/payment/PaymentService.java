@@ -1,12 +1,15 @@
 package com.personal_projects.payment_service.payment;
 
 
-import com.personal_projects.common.Enums.PaymentStatus;
 import com.personal_projects.common.Events.PaymentEvent;
 import com.personal_projects.common.Events.ShipmentEvent;
+import com.personal_projects.common.Flight.ServiceCallEvent;
+import com.personal_projects.common.Lifecycle.LifecycleHeaders;
 import com.personal_projects.payment_service.data.dto.PaymentDTO;
 import com.personal_projects.payment_service.data.entity.Payment;
+import com.personal_projects.payment_service.util.PaymentMapper;
 import jakarta.persistence.EntityNotFoundException;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
@@ -63,6 +66,9 @@ public class PaymentService {
      * - If the amount does not match, the payment is marked as failed. <br>
      * - On success, marks the payment as completed, sends a status update, and triggers shipment.
      * </p>
+     * <p>
+     * The call is covered by a {@link ServiceCallEvent}.
+     * </p>
      *
      * @param orderId        the ID of the order associated with the payment
      * @param paymentDTO the payment details submitted by the client
@@ -70,25 +76,42 @@ public class PaymentService {
      */
     @Transactional
     public void processPayment(final Long orderId, final PaymentDTO paymentDTO) {
-        logger.info("Processing payment with orderId: {}", orderId);
-        Payment payment = paymentRepository.findByOrderId(orderId)
-                .orElseThrow(() -> new EntityNotFoundException("Payment not found for orderId: " + orderId));
-
-        if (payment.isAlreadyProcessed()) {
-            logger.warn("Payment with orderId {} is not in PENDING status. Current status: {}", orderId, payment.getStatus());
-            return;
-        }
-
-        if (!payment.isAmountMatching(paymentDTO.getAmount())) {
-            markPaymentAsFailed(payment, "Amount mismatch");
-            logger.warn("Payment FAILED for orderId {} due to amount mismatch. Expected: {}, Received: {}",
-                    orderId, payment.getAmount(), paymentDTO.getAmount());
-            publishPaymentFailedEvent(payment.getId(), orderId);
-            return;
+        ServiceCallEvent event = ServiceCallEvent.start();
+        try {
+            logger.info("Processing payment with orderId: {}", orderId);
+            Payment payment = paymentRepository.findByOrderIdIncludingArchive(orderId)
+                    .orElseThrow(() -> new EntityNotFoundException("Payment not found for orderId: " + orderId));
+
+            if (payment.isAlreadyProcessed()) {
+                logger.warn("Payment with orderId {} is not in PENDING status. Current status: {}", orderId, payment.getStatus());
+                return;
+            }
+
+            if (!payment.isAmountMatching(paymentDTO.getAmount())) {
+                markPaymentAsFailed(payment, "Amount mismatch");
+                logger.warn("Payment FAILED for orderId {} due to amount mismatch. Expected: {}, Received: {}",
+                        orderId, payment.getAmount(), paymentDTO.getAmount());
+                publishPaymentFailedEvent(payment);
+                return;
+            }
+
+            markPaymentAsCompleted(payment);
+            publishPaymentCompleteEvent(payment);
+        } finally {
+            event.complete("PaymentService.processPayment", orderId);
         }
+    }
 
-        markPaymentAsCompleted(payment);
-        publishPaymentCompleteEvent(payment.getId(), orderId);
+    /**
+     * Retrieves the payment of an order, including payments already moved to the archive.
+     *
+     * @param orderId the ID of the order associated with the payment
+     * @return the payment
+     * @throws EntityNotFoundException if no payment is found for the given order ID
+     */
+    public Payment getPaymentByOrderId(final long orderId) {
+        return paymentRepository.findByOrderIdIncludingArchive(orderId)
+                .orElseThrow(() -> new EntityNotFoundException("Payment not found for orderId: " + orderId));
     }
 
     /**
@@ -138,30 +161,48 @@ public class PaymentService {
     /**
      * Sends a Kafka event indicating that payment has failed.
      *
-     * @param orderId the order ID related to the failed payment
+     * @param payment the failed payment
      */
-    public void publishPaymentFailedEvent(String paymentId, long orderId) {
-        publishPaymentEvent(new PaymentEvent(paymentId, orderId, PaymentStatus.FAILED));
+    public void publishPaymentFailedEvent(Payment payment) {
+        publishPaymentEvent(payment);
     }
 
 
-    public void publishPaymentCompleteEvent(String paymentId, long orderId) {
-        publishPaymentEvent(new PaymentEvent(paymentId, orderId, PaymentStatus.COMPLETED));
+    /**
+     * Sends a Kafka event indicating that payment has completed, carrying the customer details
+     * the shipping service needs to assign a carrier.
+     *
+     * @param payment the completed payment
+     */
+    public void publishPaymentCompleteEvent(Payment payment) {
+        publishPaymentEvent(payment);
     }
 
-    public void publishPaymentEvent(PaymentEvent event) {
-        sendEvent(event, paymentKafkaTemplate);
+    /**
+     * Sends the payment event of a settled payment, stamped with the order's lifecycle origin and with the
+     * payment's creation as the start of the payment stage.
+     *
+     * @param payment the settled payment
+     */
+    private void publishPaymentEvent(Payment payment) {
+        sendEvent(LifecycleHeaders.record(
+                PAYMENT_TOPIC,
+                payment.getOrderId(),
+                PaymentMapper.toPaymentEvent(payment),
+                payment.getOriginTimestamp(),
+                LifecycleHeaders.epochMillis(payment.getCreatedAt())
+        ), paymentKafkaTemplate);
     }
 
 
     /**
-     * Generic method to send a Kafka event to a specific topic using the given KafkaTemplate.
+     * Generic method to send a Kafka record using the given KafkaTemplate.
      *
      * @param <T>           the type of the event
-     * @param event         the event payload
+     * @param record        the record carrying the event payload
      * @param kafkaTemplate the KafkaTemplate used to publish the event
      */
-    private <T> void sendEvent(T event, KafkaTemplate<String, T> kafkaTemplate) {
-        kafkaTemplate.send(PAYMENT_TOPIC, event);
+    private <T> void sendEvent(ProducerRecord<String, T> record, KafkaTemplate<String, T> kafkaTemplate) {
+        kafkaTemplate.send(record);
     }
 }
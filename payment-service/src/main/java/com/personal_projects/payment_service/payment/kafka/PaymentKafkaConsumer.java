@@ -1,10 +1,20 @@
 package com.personal_projects.payment_service.payment.kafka;
 
+import com.personal_projects.common.Backpressure.BackpressureMonitor;
+import com.personal_projects.common.Backpressure.BackpressureRecordInterceptor;
+import com.personal_projects.common.Dedupe.DedupeRecordInterceptor;
+import com.personal_projects.common.Dedupe.DedupeWindow;
 import com.personal_projects.common.Events.OrderEvent;
+import com.personal_projects.common.Journal.EventJournal;
+import com.personal_projects.common.Journal.JournalRecordInterceptor;
+import com.personal_projects.common.Membership.GroupMembership;
+import com.personal_projects.common.Parallel.KeyOrderedDispatcher;
+import com.personal_projects.common.Scaling.ConsumerLagMonitor;
 import jakarta.persistence.criteria.Order;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -13,6 +23,7 @@ import org.springframework.kafka.config.KafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 
 import java.util.HashMap;
@@ -59,7 +70,7 @@ public class PaymentKafkaConsumer {
         return new DefaultKafkaConsumerFactory<>(
                 consumerConfig(),
                 new StringDeserializer(),
-                new JsonDeserializer<>(OrderEvent.class)
+                new ErrorHandlingDeserializer<>(new JsonDeserializer<>(OrderEvent.class)) // Undeserializable records go to the dead-letter topic
         );
     }
 
@@ -69,14 +80,39 @@ public class PaymentKafkaConsumer {
      * This factory is used by {@code @KafkaListener} methods in the Payment service to consume Kafka messages.
      * </p>
      *
+     * @param consumerLagMonitor   the monitor timing the records processed by the listener
+     * @param dedupeWindow         the window of processed events, available when deduping is enabled
+     * @param eventJournal         the journal of the consumed records, available when journaling is enabled
+     * @param backpressure         the monitor pausing the listener when the database struggles, available when
+     *                             backpressure is enabled
+     * @param keyOrderedDispatcher the dispatcher of the parallel listeners, available when parallel consumption is
+     *                             enabled
+     * @param groupMembership      the membership of the listeners in their consumer group
      * @return a configured Kafka listener container factory
      */
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, OrderEvent> paymentKafkaListenerContainerFactory() {
+    public ConcurrentKafkaListenerContainerFactory<String, OrderEvent> paymentKafkaListenerContainerFactory(
+            ConsumerLagMonitor consumerLagMonitor,
+            ObjectProvider<DedupeWindow> dedupeWindow,
+            ObjectProvider<EventJournal> eventJournal,
+            ObjectProvider<BackpressureMonitor> backpressure,
+            ObjectProvider<KeyOrderedDispatcher> keyOrderedDispatcher,
+            GroupMembership groupMembership) {
         ConcurrentKafkaListenerContainerFactory<String, OrderEvent> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
+        factory.getContainerProperties().setObservationEnabled(true); // Restores the trace context from the record headers
+        factory.setContainerCustomizer(container -> {
+            // Joins the group cooperatively, as a static member when the instance has an ID
+            groupMembership.join(container, factory.getConsumerFactory());
+            // Times records, pauses on database trouble, drops redeliveries and journals the rest, on the consumer
+            // thread or, for a parallel listener, on the worker processing the record
+            KeyOrderedDispatcher.install(keyOrderedDispatcher, container,
+                    consumerLagMonitor.interceptors(container,
+                            BackpressureRecordInterceptor.ifAvailable(backpressure, container),
+                            DedupeRecordInterceptor.ifAvailable(dedupeWindow),
+                            JournalRecordInterceptor.ifAvailable(eventJournal)));
+        });
         return factory;
     }
 }
-
@@ -1,9 +1,19 @@
 package com.personal_projects.payment_service.payment.kafka;
 
+import com.personal_projects.common.Enums.OrderStatus;
 import com.personal_projects.common.Events.OrderEvent;
+import com.personal_projects.common.Flight.KafkaRecordEvent;
+import com.personal_projects.common.Lifecycle.LifecycleHeaders;
+import com.personal_projects.common.Lifecycle.LifecycleLatencyRecorder;
+import com.personal_projects.common.Retry.RetryTopics;
+import com.personal_projects.common.Retry.RetryableListener;
 import com.personal_projects.payment_service.payment.PaymentService;
 import com.personal_projects.payment_service.util.PaymentMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.annotation.DltHandler;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
 
@@ -20,33 +30,68 @@ import static com.personal_projects.common.Configs.KafkaConfigs.ORDER_TOPIC;
 @Component
 public class PaymentKafkaListener {
 
+    private static final Logger logger = LoggerFactory.getLogger(PaymentKafkaListener.class);
+
     private final PaymentService paymentService;
+    private final LifecycleLatencyRecorder latencyRecorder;
 
     /**
      * Constructs a new {@code PaymentKafkaListener} with the given {@link PaymentService}.
      *
-     * @param paymentService the service used to handle payment-related operations
+     * @param paymentService  the service used to handle payment-related operations
+     * @param latencyRecorder the recorder for order lifecycle latencies
      */
     @Autowired
-    public PaymentKafkaListener(final PaymentService paymentService) {
+    public PaymentKafkaListener(final PaymentService paymentService, final LifecycleLatencyRecorder latencyRecorder) {
         this.paymentService = paymentService;
+        this.latencyRecorder = latencyRecorder;
     }
 
     /**
      * Listens to the Kafka topic defined by {@code ORDER_TOPIC} and processes incoming {@link OrderEvent} messages.
      * <p>
      * When an order event is received, it is transformed into a {@code Payment} object and saved using the {@link PaymentService}.
+     * The payment keeps the lifecycle origin of the order so the payment event can carry it on.
+     * The handling is covered by a {@link KafkaRecordEvent}.
+     * </p>
+     * <p>
+     * A record that fails, e.g. on a Mongo timeout, is retried from the {@code order-topic-payment-retry-*} topics
+     * with an exponential backoff, then dead-lettered to {@code order-topic-payment-dlt}.
      * </p>
      *
-     * @param orderEvent the order event received from Kafka
+     * @param record the order event record received from Kafka
      */
+    @RetryableListener(
+            retryTopicSuffix = "-payment" + RetryTopics.RETRY_SUFFIX,
+            dltTopicSuffix = "-payment" + RetryTopics.DLT_SUFFIX)
     @KafkaListener(
+            id = "payment-order-listener",
             topics = ORDER_TOPIC,
             groupId = "payment-service-group",
             containerFactory = "paymentKafkaListenerContainerFactory"
     )
-    void listener(OrderEvent orderEvent) {
-        System.out.println("Listener Received: " + orderEvent);
-        paymentService.savePayment(PaymentMapper.toPayment(orderEvent));
+    void listener(ConsumerRecord<String, OrderEvent> record) {
+        KafkaRecordEvent event = KafkaRecordEvent.start();
+        OrderEvent orderEvent = record.value();
+        logger.debug("Listener Received: {}", orderEvent);
+        latencyRecorder.record(record, OrderStatus.CREATED.name());
+        try {
+            paymentService.savePayment(PaymentMapper.toPayment(orderEvent, LifecycleHeaders.originMillis(record.headers())));
+        } finally {
+            event.complete("payment-order-listener", record, orderEvent.getOrderId(), OrderStatus.CREATED.name());
+        }
+    }
+
+    /**
+     * Logs an order event record dead-lettered after its last attempt, or straight away when it could not be
+     * deserialized. It stays in the dead-letter topic until replayed through {@code /actuator/deadletters}.
+     * A record that cannot be read here either is logged by the container and skipped, rather than dead-lettered
+     * again.
+     *
+     * @param record the dead-lettered record
+     */
+    @DltHandler
+    void deadLetter(ConsumerRecord<String, OrderEvent> record) {
+        logger.error("Dead-lettered order event {}", RetryTopics.describe(record));
     }
-}
\ No newline at end of file
+}
@@ -2,8 +2,11 @@ package com.personal_projects.payment_service.payment.kafka;
 
 import com.personal_projects.common.Events.PaymentEvent;
 import com.personal_projects.common.Events.ShipmentEvent;
+import com.personal_projects.common.Journal.EventJournal;
+import com.personal_projects.common.Journal.JournalProducerListener;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -56,10 +59,14 @@ public class PaymentKafkaProducer {
     /**
      * Creates a {@link KafkaTemplate} for sending {@link PaymentEvent} messages.
      *
+     * @param eventJournal the journal of the produced records, available when journaling is enabled
      * @return a Kafka template for {@link PaymentEvent}
      */
     @Bean
-    public KafkaTemplate<String, PaymentEvent> paymentKafkaTemplate() {
-        return new KafkaTemplate<>(paymentProducerFactory());
+    public KafkaTemplate<String, PaymentEvent> paymentKafkaTemplate(ObjectProvider<EventJournal> eventJournal) {
+        KafkaTemplate<String, PaymentEvent> kafkaTemplate = new KafkaTemplate<>(paymentProducerFactory());
+        kafkaTemplate.setObservationEnabled(true); // Propagates the trace context in the record headers
+        eventJournal.ifAvailable(journal -> kafkaTemplate.setProducerListener(new JournalProducerListener<>(journal)));
+        return kafkaTemplate;
     }
 }
\ No newline at end of file
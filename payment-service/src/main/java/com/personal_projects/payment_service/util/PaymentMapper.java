@@ -3,6 +3,8 @@ package com.personal_projects.payment_service.util;
 import com.personal_projects.common.Enums.OrderStatus;
 import com.personal_projects.common.Enums.PaymentStatus;
 import com.personal_projects.common.Events.OrderEvent;
+import com.personal_projects.common.Events.PaymentEvent;
+import com.personal_projects.common.Flight.MappingEvent;
 import com.personal_projects.payment_service.data.entity.Payment;
 
 import java.time.LocalDateTime;
@@ -10,23 +12,32 @@ import java.time.LocalDateTime;
 public class PaymentMapper {
 
 
-    public static Payment toPayment(OrderEvent event) {
-        return Payment.builder()
+    public static Payment toPayment(OrderEvent event, long originTimestamp) {
+        MappingEvent mapping = MappingEvent.start();
+        Payment payment = Payment.builder()
                 .clientName(event.getCustomerName())
+                .customerAddress(event.getCustomerAddress())
                 .amount(event.getTotalAmount())
                 .status(PaymentStatus.PENDING)  // Default status
                 .createdAt(LocalDateTime.now())
                 .orderId(event.getOrderId())
+                .originTimestamp(originTimestamp)
                 .build();
+        mapping.complete("PaymentMapper.toPayment", event.getOrderId());
+        return payment;
     }
 
-
-//    public static OrderEvent toPaymentEvent(Order order) {
-//        return OrderEvent.builder()
-//                .orderId(order.getId())
-//                .customerName(order.getCustomerName())
-//                .totalAmount(order.getTotalAmount())
-//                .build();
-//    }
+    public static PaymentEvent toPaymentEvent(Payment payment) {
+        MappingEvent mapping = MappingEvent.start();
+        PaymentEvent event = PaymentEvent.builder()
+                .paymentId(payment.getId())
+                .orderId(payment.getOrderId())
+                .paymentStatus(payment.getStatus())
+                .customerName(payment.getClientName())
+                .customerAddress(payment.getCustomerAddress())
+                .build();
+        mapping.complete("PaymentMapper.toPaymentEvent", payment.getOrderId());
+        return event;
+    }
 
 }
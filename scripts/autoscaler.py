@@ -0,0 +1,104 @@
+#!/usr/bin/env python3
+"""
+Local autoscaler driven by the services' /actuator/consumerlag endpoint.
+
+Every interval it polls one instance of each service, takes the highest desiredInstances over the
+service's listeners, and, when it differs from the current instance count for longer than the
+cool-down, runs the scale command with the new count. Without --scale-command it only prints the
+decisions, which is useful to check the signal before letting it act.
+
+Example:
+    scripts/autoscaler.py \
+        --service payment-service=http://localhost:8082 \
+        --service shipping-service=http://localhost:8083 \
+        --scale-command 'docker compose up -d --no-recreate --scale {service}={instances}'
+"""
+import argparse
+import json
+import subprocess
+import sys
+import time
+import urllib.error
+import urllib.request
+
+
+def fetch_listeners(base_url, timeout):
+    with urllib.request.urlopen(base_url.rstrip("/") + "/actuator/consumerlag", timeout=timeout) as response:
+        return json.load(response)
+
+
+def parse_services(values):
+    services = {}
+    for value in values:
+        name, sep, url = value.partition("=")
+        if not sep or not name or not url:
+            raise argparse.ArgumentTypeError(f"expected NAME=URL, got {value!r}")
+        services[name] = url
+    return services
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument("--service", action="append", required=True, metavar="NAME=URL",
+                        help="service name and the base URL of one of its instances; repeatable")
+    parser.add_argument("--scale-command", metavar="CMD",
+                        help="command run to scale, with {service} and {instances} substituted")
+    parser.add_argument("--interval", type=float, default=10, help="seconds between polls (default 10)")
+    parser.add_argument("--cooldown", type=float, default=60,
+                        help="seconds a new instance count must persist before scaling (default 60)")
+    parser.add_argument("--min-instances", type=int, default=1)
+    parser.add_argument("--max-instances", type=int, default=10)
+    parser.add_argument("--timeout", type=float, default=5, help="HTTP timeout in seconds (default 5)")
+    args = parser.parse_args()
+    services = parse_services(args.service)
+
+    current = {}
+    pending = {}
+    while True:
+        for name, url in services.items():
+            try:
+                listeners = fetch_listeners(url, args.timeout)
+            except (urllib.error.URLError, OSError, ValueError) as e:
+                print(f"{name}: could not poll {url}: {e}", file=sys.stderr)
+                continue
+            if not listeners:
+                continue
+
+            desired = max(listener["desiredInstances"] for listener in listeners)
+            desired = max(args.min_instances, min(args.max_instances, desired))
+            summary = ", ".join(
+                f"{l['listenerId']} lag={l['lag']} in={l['producedPerSecond']:.1f}/s "
+                f"out={l['recordsPerSecond']:.1f}/s proc={l['meanProcessingMicros']:.0f}us "
+                f"desired={l['desiredInstances']}"
+                for l in listeners)
+            print(f"{name}: {summary}")
+
+            if name not in current:
+                current[name] = max(args.min_instances, max(l["members"] // max(1, l["concurrency"]) for l in listeners))
+            if desired == current[name]:
+                pending.pop(name, None)
+                continue
+
+            since = pending.setdefault(name, (desired, time.monotonic()))
+            if since[0] != desired:
+                pending[name] = (desired, time.monotonic())
+                continue
+            if time.monotonic() - since[1] < args.cooldown:
+                continue
+
+            print(f"{name}: scaling {current[name]} -> {desired}")
+            if args.scale_command:
+                command = args.scale_command.format(service=name, instances=desired)
+                if subprocess.run(command, shell=True).returncode != 0:
+                    print(f"{name}: scale command failed: {command}", file=sys.stderr)
+                    continue
+            current[name] = desired
+            pending.pop(name, None)
+        time.sleep(args.interval)
+
+
+if __name__ == "__main__":
+    try:
+        main()
+    except KeyboardInterrupt:
+        pass
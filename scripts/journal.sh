@@ -0,0 +1,20 @@
+#!/usr/bin/env sh
+# Runs the event journal CLI from a service jar, which carries the common module and its dependencies.
+#
+# Examples:
+#   scripts/journal.sh order-service tail journal order-service --follow
+#   scripts/journal.sh payment-service grep journal payment-service 42
+#   scripts/journal.sh payment-service replay journal/payment-service-00000000000000000003.journal localhost:9092
+set -e
+
+if [ $# -lt 2 ]; then
+    echo "Usage: $0 <service> <tail|grep|replay> [args...]" >&2
+    exit 1
+fi
+
+service=$1
+shift
+jar=$(ls "$(dirname "$0")/../$service"/target/"$service"-*-exec.jar | head -n 1)
+
+exec java -Dloader.main=com.personal_projects.common.Journal.JournalCli -cp "$jar" \
+    org.springframework.boot.loader.launch.PropertiesLauncher "$@"
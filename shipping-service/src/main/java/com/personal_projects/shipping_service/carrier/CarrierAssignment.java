@@ -0,0 +1,20 @@
+package com.personal_projects.shipping_service.carrier;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * The carrier chosen for a shipment and the delivery date it promises.
+ */
+@Data
+@AllArgsConstructor
+public class CarrierAssignment {
+
+    /** Name of the carrier that will handle the shipment */
+    private String carrier;
+
+    /** Estimated delivery date based on the carrier's transit time to the destination zone */
+    private LocalDateTime estimatedDeliveryDate;
+}
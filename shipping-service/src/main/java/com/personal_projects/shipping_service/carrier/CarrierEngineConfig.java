@@ -0,0 +1,40 @@
+package com.personal_projects.shipping_service.carrier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Configuration of the {@link CarrierSelectionEngine}.
+ * <p>
+ * The default engine reads the transit table from {@code shipping.carrier.table-file} when it is set and
+ * otherwise from the table bundled with the service. Declaring another {@link CarrierSelectionEngine}
+ * bean replaces it.
+ * </p>
+ */
+@Configuration
+public class CarrierEngineConfig {
+
+    @Value("${shipping.carrier.table-file:}")
+    private String tableFile;
+
+    @Value("classpath:carrier/transit-table.txt")
+    private Resource defaultTable;
+
+    /**
+     * Creates the transit-table backed carrier selection engine.
+     *
+     * @return the carrier selection engine
+     * @throws IOException if the initial table cannot be read
+     */
+    @Bean
+    @ConditionalOnMissingBean(CarrierSelectionEngine.class)
+    public TransitTableCarrierEngine carrierSelectionEngine() throws IOException {
+        return new TransitTableCarrierEngine(tableFile.isBlank() ? null : Path.of(tableFile), defaultTable);
+    }
+}
@@ -0,0 +1,32 @@
+package com.personal_projects.shipping_service.carrier;
+
+import java.time.LocalDateTime;
+
+/**
+ * Chooses a carrier and estimates the delivery date for a shipment.
+ * <p>
+ * Implementations are called from the Kafka listener thread for every paid order, so they must be
+ * thread-safe and must not block on I/O.
+ * </p>
+ */
+public interface CarrierSelectionEngine {
+
+    /**
+     * Assigns a carrier to a shipment going to the given address.
+     *
+     * @param customerAddress the destination address; may be {@code null}
+     * @param shipDate        the time the shipment is created
+     * @return the chosen carrier and estimated delivery date
+     */
+    CarrierAssignment assign(String customerAddress, LocalDateTime shipDate);
+
+    /**
+     * Gives back the capacity taken by an assignment whose shipment was not saved, so a retried or redelivered
+     * event does not take it twice. Engines that do not track capacity ignore it.
+     *
+     * @param assignment the assignment returned by {@link #assign}
+     * @param shipDate   the ship date it was assigned for
+     */
+    default void release(CarrierAssignment assignment, LocalDateTime shipDate) {
+    }
+}
@@ -0,0 +1,234 @@
+package com.personal_projects.shipping_service.carrier;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable snapshot of the carrier capacity and zone transit-time tables, flattened into primitive arrays.
+ * <p>
+ * Destinations are mapped to zones by the leading {@code prefixDigits} digits of their postal code.
+ * For every zone the carriers that serve it are pre-ranked by transit time, so a lookup is an array index
+ * for the zone followed by a short scan of that zone's ranking.
+ * </p>
+ * <p>
+ * The text format is line based; blank lines and lines starting with {@code #} are ignored:
+ * <pre>
+ * prefix-digits 2
+ * default-zone 0
+ * carrier DHL 5000           # name, daily capacity
+ * zone 1 10-19 25            # zone id, postal prefixes or prefix ranges
+ * transit 1 DHL 2            # zone id, carrier, transit days
+ * </pre>
+ * Prefixes listed by more than one {@code zone} line belong to the zone of the last one, so a catch-all zone
+ * goes first and the more specific zones after it.
+ * </p>
+ */
+final class TransitTable {
+
+    static final byte NOT_SERVED = -1;
+
+    static final int POSTAL_CODE_MIN_DIGITS = 4;
+    static final int POSTAL_CODE_MAX_DIGITS = 5;
+
+    final int prefixDigits;
+    final int defaultZone;
+    final String[] carriers;
+    final int[] dailyCapacity;
+    /** Zone index for every postal prefix in {@code [0, 10^prefixDigits)}. */
+    final short[] zoneByPrefix;
+    /** Transit days, indexed by {@code zone * carriers.length + carrier}, or {@link #NOT_SERVED}. */
+    final byte[] transitDays;
+    /** Carriers serving each zone ordered by transit days, indexed like {@link #transitDays}; unused slots are -1. */
+    final byte[] rankedCarriers;
+
+    private TransitTable(int prefixDigits, int defaultZone, String[] carriers, int[] dailyCapacity,
+                         short[] zoneByPrefix, byte[] transitDays, byte[] rankedCarriers) {
+        this.prefixDigits = prefixDigits;
+        this.defaultZone = defaultZone;
+        this.carriers = carriers;
+        this.dailyCapacity = dailyCapacity;
+        this.zoneByPrefix = zoneByPrefix;
+        this.transitDays = transitDays;
+        this.rankedCarriers = rankedCarriers;
+    }
+
+    int carrierCount() {
+        return carriers.length;
+    }
+
+    /**
+     * Resolves the zone of an address from the first digits of its postal code. The postal code is the last
+     * group of {@value #POSTAL_CODE_MIN_DIGITS} to {@value #POSTAL_CODE_MAX_DIGITS} digits, preferring one with
+     * a dashed extension such as {@code 1100-053}, so house numbers and the extension itself are not mistaken for
+     * it. Addresses without a usable postal code fall into the default zone.
+     *
+     * @param address the destination address; may be {@code null}
+     * @return the zone index
+     */
+    int zoneOf(String address) {
+        if (address == null) {
+            return defaultZone;
+        }
+        int length = address.length();
+        int code = -1;
+        boolean codeExtended = false;
+        int i = 0;
+        while (i < length) {
+            if (!isDigit(address, i)) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < length && isDigit(address, i)) {
+                i++;
+            }
+            int digits = i - start;
+            boolean isExtension = start > 1 && address.charAt(start - 1) == '-' && isDigit(address, start - 2);
+            if (isExtension || digits < POSTAL_CODE_MIN_DIGITS || digits > POSTAL_CODE_MAX_DIGITS) {
+                continue;
+            }
+            boolean extended = i + 1 < length && address.charAt(i) == '-' && isDigit(address, i + 1);
+            if (extended || !codeExtended) {
+                code = start;
+                codeExtended = extended;
+            }
+        }
+        if (code < 0) {
+            return defaultZone;
+        }
+        int prefix = 0;
+        for (int j = code; j < code + prefixDigits; j++) {
+            prefix = prefix * 10 + (address.charAt(j) - '0');
+        }
+        return zoneByPrefix[prefix];
+    }
+
+    private static boolean isDigit(String text, int index) {
+        char c = text.charAt(index);
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Parses a table in the format described on the class.
+     *
+     * @param source the table text
+     * @return the parsed table
+     * @throws IOException              if the source cannot be read
+     * @throws IllegalArgumentException if the table is malformed
+     */
+    static TransitTable parse(Reader source) throws IOException {
+        int prefixDigits = 1;
+        int defaultZone = 0;
+        List<String> carrierNames = new ArrayList<>();
+        List<Integer> capacities = new ArrayList<>();
+        List<int[]> zoneRanges = new ArrayList<>();
+        List<int[]> transits = new ArrayList<>();
+        int zoneCount = 1;
+
+        BufferedReader reader = new BufferedReader(source);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            String[] tokens = line.trim().split("\\s+");
+            if (tokens[0].isEmpty()) {
+                continue;
+            }
+            try {
+                switch (tokens[0]) {
+                    case "prefix-digits" -> prefixDigits = Integer.parseInt(tokens[1]);
+                    case "default-zone" -> defaultZone = Integer.parseInt(tokens[1]);
+                    case "carrier" -> {
+                        carrierNames.add(tokens[1]);
+                        capacities.add(Integer.parseInt(tokens[2]));
+                    }
+                    case "zone" -> {
+                        int zone = Integer.parseInt(tokens[1]);
+                        zoneCount = Math.max(zoneCount, zone + 1);
+                        for (int i = 2; i < tokens.length; i++) {
+                            String[] bounds = tokens[i].split("-", 2);
+                            int from = Integer.parseInt(bounds[0]);
+                            int to = bounds.length == 2 ? Integer.parseInt(bounds[1]) : from;
+                            zoneRanges.add(new int[]{zone, from, to});
+                        }
+                    }
+                    case "transit" -> {
+                        int zone = Integer.parseInt(tokens[1]);
+                        int carrier = carrierNames.indexOf(tokens[2]);
+                        if (carrier < 0) {
+                            throw new IllegalArgumentException("unknown carrier " + tokens[2]);
+                        }
+                        zoneCount = Math.max(zoneCount, zone + 1);
+                        transits.add(new int[]{zone, carrier, Integer.parseInt(tokens[3])});
+                    }
+                    default -> throw new IllegalArgumentException("unknown directive " + tokens[0]);
+                }
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid transit table at line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+
+        if (carrierNames.isEmpty() || carrierNames.size() > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Transit table must define between 1 and 127 carriers");
+        }
+        if (prefixDigits < 1 || prefixDigits > 4) {
+            throw new IllegalArgumentException("prefix-digits must be between 1 and 4");
+        }
+        zoneCount = Math.max(zoneCount, defaultZone + 1);
+        if (zoneCount > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many zones: " + zoneCount);
+        }
+
+        int prefixCount = (int) Math.pow(10, prefixDigits);
+        short[] zoneByPrefix = new short[prefixCount];
+        Arrays.fill(zoneByPrefix, (short) defaultZone);
+        // In file order, so the last zone listing a prefix wins
+        for (int[] range : zoneRanges) {
+            for (int prefix = Math.max(0, range[1]); prefix <= Math.min(prefixCount - 1, range[2]); prefix++) {
+                zoneByPrefix[prefix] = (short) range[0];
+            }
+        }
+
+        int carrierCount = carrierNames.size();
+        byte[] transitDays = new byte[zoneCount * carrierCount];
+        Arrays.fill(transitDays, NOT_SERVED);
+        for (int[] transit : transits) {
+            transitDays[transit[0] * carrierCount + transit[1]] = (byte) Math.min(transit[2], Byte.MAX_VALUE);
+        }
+
+        byte[] rankedCarriers = new byte[zoneCount * carrierCount];
+        Arrays.fill(rankedCarriers, (byte) -1);
+        for (int zone = 0; zone < zoneCount; zone++) {
+            int base = zone * carrierCount;
+            Integer[] order = new Integer[carrierCount];
+            for (int c = 0; c < carrierCount; c++) {
+                order[c] = c;
+            }
+            Arrays.sort(order, (a, b) -> Integer.compare(transitDays[base + a], transitDays[base + b]));
+            int slot = 0;
+            for (int c : order) {
+                if (transitDays[base + c] != NOT_SERVED) {
+                    rankedCarriers[base + slot++] = (byte) c;
+                }
+            }
+        }
+
+        return new TransitTable(
+                prefixDigits,
+                defaultZone,
+                carrierNames.toArray(String[]::new),
+                capacities.stream().mapToInt(Integer::intValue).toArray(),
+                zoneByPrefix,
+                transitDays,
+                rankedCarriers
+        );
+    }
+}
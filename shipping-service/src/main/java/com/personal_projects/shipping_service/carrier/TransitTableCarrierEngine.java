@@ -0,0 +1,198 @@
+package com.personal_projects.shipping_service.carrier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link CarrierSelectionEngine} backed by an in-memory {@link TransitTable}.
+ * <p>
+ * For every shipment the engine picks the fastest carrier serving the destination zone that still has
+ * capacity left today, falling back to the fastest carrier when all of them are full. Lookups only read
+ * primitive arrays and bump an atomic counter, so they take well under a microsecond.
+ * </p>
+ * <p>
+ * The table can be reloaded from a local file while the service is running. The new table is parsed on the
+ * scheduler thread and published with a single volatile write, so listener threads never wait for a reload.
+ * The capacity used today is counted per carrier name, apart from the table, so a reload keeps it for the
+ * carriers the new table still lists.
+ * </p>
+ */
+public class TransitTableCarrierEngine implements CarrierSelectionEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransitTableCarrierEngine.class);
+
+    private final Path tableFile;
+    private final Resource defaultTable;
+
+    private volatile State state;
+    private volatile long tableFileModified = Long.MIN_VALUE;
+
+    /**
+     * Creates the engine and loads the initial table.
+     *
+     * @param tableFile    local file to load and watch for changes, or {@code null} to only use the default table
+     * @param defaultTable table used when no file is configured or the file does not exist yet
+     * @throws IOException if the initial table cannot be read
+     */
+    public TransitTableCarrierEngine(Path tableFile, Resource defaultTable) throws IOException {
+        this.tableFile = tableFile;
+        this.defaultTable = defaultTable;
+        if (tableFile != null && Files.exists(tableFile)) {
+            reload();
+        } else {
+            try (Reader reader = new InputStreamReader(defaultTable.getInputStream(), StandardCharsets.UTF_8)) {
+                Ledger ledger = new Ledger(LocalDateTime.now().toLocalDate().toEpochDay());
+                this.state = new State(TransitTable.parse(reader), ledger);
+            }
+        }
+    }
+
+    @Override
+    public CarrierAssignment assign(String customerAddress, LocalDateTime shipDate) {
+        State current = currentState(shipDate.toLocalDate().toEpochDay());
+        TransitTable table = current.table;
+        int carriers = table.carrierCount();
+
+        int zone = table.zoneOf(customerAddress);
+        if (table.rankedCarriers[zone * carriers] < 0) {
+            zone = table.defaultZone;
+        }
+        int base = zone * carriers;
+
+        int chosen = table.rankedCarriers[base];
+        for (int slot = 0; slot < carriers; slot++) {
+            int carrier = table.rankedCarriers[base + slot];
+            if (carrier < 0) {
+                break;
+            }
+            if (current.tryReserve(carrier)) {
+                chosen = carrier;
+                break;
+            }
+        }
+        if (chosen < 0) {
+            // Neither the destination zone nor the default zone is served by anyone.
+            return new CarrierAssignment(table.carriers[0], shipDate.plusDays(Byte.MAX_VALUE));
+        }
+        return new CarrierAssignment(table.carriers[chosen], shipDate.plusDays(table.transitDays[base + chosen]));
+    }
+
+    @Override
+    public void release(CarrierAssignment assignment, LocalDateTime shipDate) {
+        Ledger ledger = state.ledger;
+        if (ledger.epochDay != shipDate.toLocalDate().toEpochDay()) {
+            return;
+        }
+        AtomicInteger used = ledger.usedByCarrier.get(assignment.getCarrier());
+        if (used != null) {
+            used.getAndUpdate(count -> Math.max(0, count - 1));
+        }
+    }
+
+    /**
+     * Reloads the table file if it changed since the last load. Invalid tables are logged and ignored,
+     * leaving the previous table in place.
+     */
+    @Scheduled(fixedDelayString = "${shipping.carrier.reload-interval-ms:5000}")
+    public void reloadIfModified() {
+        if (tableFile == null || !Files.exists(tableFile)) {
+            return;
+        }
+        try {
+            if (Files.getLastModifiedTime(tableFile).toMillis() != tableFileModified) {
+                reload();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Failed to reload transit table from {}, keeping the current table", tableFile, e);
+        }
+    }
+
+    private void reload() throws IOException {
+        long modified = Files.getLastModifiedTime(tableFile).toMillis();
+        TransitTable table;
+        try (Reader reader = Files.newBufferedReader(tableFile, StandardCharsets.UTF_8)) {
+            table = TransitTable.parse(reader);
+        }
+        synchronized (this) {
+            State current = state;
+            Ledger ledger = current == null ? new Ledger(LocalDateTime.now().toLocalDate().toEpochDay()) : current.ledger;
+            this.state = new State(table, ledger);
+        }
+        this.tableFileModified = modified;
+        logger.info("Loaded transit table from {} with {} carriers", tableFile, table.carrierCount());
+    }
+
+    /**
+     * Returns the state for the given day, starting a fresh capacity ledger when the day rolls over.
+     */
+    private State currentState(long epochDay) {
+        State current = state;
+        if (current.ledger.epochDay == epochDay) {
+            return current;
+        }
+        // Losing this race only means another thread already rolled the ledger over.
+        synchronized (this) {
+            if (state.ledger.epochDay != epochDay) {
+                state = new State(state.table, new Ledger(epochDay));
+            }
+            return state;
+        }
+    }
+
+    /**
+     * The capacity used by every carrier on one day, by carrier name. Replaced at midnight.
+     */
+    private static final class Ledger {
+        final long epochDay;
+        final ConcurrentHashMap<String, AtomicInteger> usedByCarrier = new ConcurrentHashMap<>();
+
+        Ledger(long epochDay) {
+            this.epochDay = epochDay;
+        }
+    }
+
+    /**
+     * A table together with the ledger of the day, its counters resolved by carrier index.
+     * Replaced as a whole on reload and at midnight.
+     */
+    private static final class State {
+        final TransitTable table;
+        final Ledger ledger;
+        final AtomicInteger[] used;
+
+        State(TransitTable table, Ledger ledger) {
+            this.table = table;
+            this.ledger = ledger;
+            this.used = new AtomicInteger[table.carrierCount()];
+            for (int carrier = 0; carrier < used.length; carrier++) {
+                used[carrier] = ledger.usedByCarrier.computeIfAbsent(table.carriers[carrier], name -> new AtomicInteger());
+            }
+        }
+
+        boolean tryReserve(int carrier) {
+            int capacity = table.dailyCapacity[carrier];
+            AtomicInteger counter = used[carrier];
+            while (true) {
+                int current = counter.get();
+                if (current >= capacity) {
+                    return false;
+                }
+                if (counter.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.personal_projects.shipping_service.carrier.label;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A shipping label issued by a carrier.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CarrierLabel {
+
+    /** Shipment the label was issued for */
+    private String shippingId;
+
+    private String carrier;
+
+    /** Tracking number assigned by the carrier */
+    private String trackingNumber;
+}
@@ -0,0 +1,305 @@
+package com.personal_projects.shipping_service.carrier.label;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Non-blocking client requesting shipping labels from carriers in batches.
+ * <p>
+ * Requests are grouped per carrier and sent as one HTTP call once {@code batchSize} requests are waiting or
+ * {@code lingerMs} has passed since the first one. Each carrier has at most {@code maxConcurrencyPerCarrier}
+ * batches in flight, which bounds the connections the shared {@link HttpClient} opens to it; further batches
+ * queue up in memory and are sent as earlier ones complete, so callers never block.
+ * </p>
+ * <p>
+ * A batch that has not answered after {@code hedgeDelayMs} is sent again on a second connection if the
+ * carrier has a free slot, and the first answer wins. Failed or timed out attempts are retried until
+ * {@code maxAttempts} attempts have been made. Carriers are expected to treat a repeated batch idempotently,
+ * keyed by {@code shippingId}.
+ * </p>
+ */
+public class CarrierLabelClient implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CarrierLabelClient.class);
+
+    private static final TypeReference<List<CarrierLabel>> LABEL_LIST = new TypeReference<>() {
+    };
+
+    private final CarrierLabelProperties properties;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, CarrierQueue> queues = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the client.
+     *
+     * @param properties   batching, concurrency, timeout and hedging settings
+     * @param objectMapper mapper used to encode batches and decode labels
+     */
+    public CarrierLabelClient(CarrierLabelProperties properties, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "carrier-label-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(properties.getTimeoutMs()))
+                .build();
+    }
+
+    /**
+     * Requests a label. The request is added to the current batch of its carrier.
+     *
+     * @param request the label request
+     * @return a future completed with the label, or exceptionally if every attempt failed
+     */
+    public CompletableFuture<CarrierLabel> requestLabel(LabelRequest request) {
+        CompletableFuture<CarrierLabel> label = new CompletableFuture<>();
+        queues.computeIfAbsent(request.getCarrier(), CarrierQueue::new).add(new Pending(request, label));
+        return label;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private URI endpointFor(String carrier) {
+        return URI.create(properties.getEndpoints().getOrDefault(carrier, properties.getDefaultEndpoint()));
+    }
+
+    private record Pending(LabelRequest request, CompletableFuture<CarrierLabel> label) {
+    }
+
+    /**
+     * The batch being filled, the in-flight limit and the queue of batches waiting for a slot of one carrier.
+     */
+    private final class CarrierQueue {
+
+        private final String carrier;
+        private final URI endpoint;
+        private final Semaphore slots;
+        private final Queue<List<Pending>> waitingBatches = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger waitingCount = new AtomicInteger();
+
+        private List<Pending> filling = new ArrayList<>();
+        private ScheduledFuture<?> lingerTask;
+
+        CarrierQueue(String carrier) {
+            this.carrier = carrier;
+            this.endpoint = endpointFor(carrier);
+            this.slots = new Semaphore(properties.getMaxConcurrencyPerCarrier());
+        }
+
+        void add(Pending pending) {
+            List<Pending> full = null;
+            synchronized (this) {
+                filling.add(pending);
+                if (filling.size() >= properties.getBatchSize()) {
+                    full = takeFilling();
+                } else if (filling.size() == 1) {
+                    lingerTask = scheduler.schedule(this::flushLingering, properties.getLingerMs(), TimeUnit.MILLISECONDS);
+                }
+            }
+            if (full != null) {
+                submit(full);
+            }
+        }
+
+        private void flushLingering() {
+            List<Pending> batch;
+            synchronized (this) {
+                if (filling.isEmpty()) {
+                    return;
+                }
+                batch = takeFilling();
+            }
+            submit(batch);
+        }
+
+        private List<Pending> takeFilling() {
+            List<Pending> batch = filling;
+            filling = new ArrayList<>();
+            if (lingerTask != null) {
+                lingerTask.cancel(false);
+                lingerTask = null;
+            }
+            return batch;
+        }
+
+        private void submit(List<Pending> batch) {
+            if (waitingCount.incrementAndGet() > properties.getMaxQueuedBatchesPerCarrier()) {
+                waitingCount.decrementAndGet();
+                RejectedExecutionException rejected =
+                        new RejectedExecutionException("Too many label batches queued for carrier " + carrier);
+                batch.forEach(pending -> pending.label().completeExceptionally(rejected));
+                return;
+            }
+            waitingBatches.add(batch);
+            drain();
+        }
+
+        /**
+         * Starts waiting batches while the carrier has free slots.
+         */
+        private void drain() {
+            while (!waitingBatches.isEmpty() && slots.tryAcquire()) {
+                List<Pending> batch = waitingBatches.poll();
+                if (batch == null) {
+                    slots.release();
+                    return;
+                }
+                waitingCount.decrementAndGet();
+                new BatchCall(batch).start();
+            }
+        }
+
+        /**
+         * One batch with its attempts. The slot taken in {@link #drain()} belongs to the first attempt;
+         * hedged attempts take an additional slot only if one is free.
+         */
+        private final class BatchCall {
+
+            private final List<Pending> batch;
+            private final CompletableFuture<List<CarrierLabel>> result = new CompletableFuture<>();
+            private final AtomicInteger attempts = new AtomicInteger();
+            private final AtomicInteger inFlight = new AtomicInteger();
+            private final byte[] body;
+
+            BatchCall(List<Pending> batch) {
+                this.batch = batch;
+                byte[] encoded;
+                try {
+                    encoded = objectMapper.writeValueAsBytes(batch.stream().map(Pending::request).toList());
+                } catch (IOException e) {
+                    encoded = null;
+                    result.completeExceptionally(e);
+                }
+                this.body = encoded;
+            }
+
+            void start() {
+                result.whenComplete((labels, error) -> complete(labels, error));
+                if (result.isDone()) {
+                    slots.release();
+                    drain();
+                    return;
+                }
+                attempt(true);
+                scheduler.schedule(this::hedge, properties.getHedgeDelayMs(), TimeUnit.MILLISECONDS);
+            }
+
+            private void hedge() {
+                if (!result.isDone() && attempts.get() < properties.getMaxAttempts() && slots.tryAcquire()) {
+                    logger.debug("Hedging label batch of {} for carrier {}", batch.size(), carrier);
+                    attempt(false);
+                }
+            }
+
+            /**
+             * Sends one attempt. Its slot is released when the attempt ends, except for the primary
+             * attempt's slot, which is held until the whole batch completes so retries reuse it.
+             */
+            private void attempt(boolean primary) {
+                int attempt = attempts.incrementAndGet();
+                inFlight.incrementAndGet();
+                HttpRequest request = HttpRequest.newBuilder(endpoint)
+                        .timeout(Duration.ofMillis(properties.getTimeoutMs()))
+                        .header("Content-Type", "application/json")
+                        .header("X-Attempt", Integer.toString(attempt))
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                        .build();
+
+                httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                        .thenApply(this::decode)
+                        .whenComplete((labels, error) -> {
+                            int stillInFlight = inFlight.decrementAndGet();
+                            if (error == null) {
+                                result.complete(labels);
+                            } else if (!result.isDone()) {
+                                onFailedAttempt(error, primary, stillInFlight);
+                            }
+                            if (!primary) {
+                                slots.release();
+                                drain();
+                            }
+                        });
+            }
+
+            /**
+             * Retries a failed primary attempt while attempts are left. The batch fails once no attempt
+             * is in flight and none is left; a failed hedge leaves the primary attempt running.
+             */
+            private void onFailedAttempt(Throwable error, boolean primary, int stillInFlight) {
+                if (primary && attempts.get() < properties.getMaxAttempts()) {
+                    logger.warn("Label batch attempt for carrier {} failed, retrying: {}", carrier, error.toString());
+                    attempt(true);
+                } else if (stillInFlight == 0) {
+                    result.completeExceptionally(error);
+                }
+            }
+
+            private List<CarrierLabel> decode(HttpResponse<byte[]> response) {
+                if (response.statusCode() / 100 != 2) {
+                    throw new IllegalStateException("Carrier " + carrier + " answered " + response.statusCode());
+                }
+                try {
+                    return objectMapper.readValue(response.body(), LABEL_LIST);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Invalid label response from carrier " + carrier, e);
+                }
+            }
+
+            private void complete(List<CarrierLabel> labels, Throwable error) {
+                if (body != null) {
+                    slots.release();
+                    drain();
+                }
+                if (error != null) {
+                    batch.forEach(pending -> pending.label().completeExceptionally(error));
+                    return;
+                }
+                Map<String, CarrierLabel> byShipment = labels.stream()
+                        .collect(Collectors.toMap(CarrierLabel::getShippingId, Function.identity(), (a, b) -> a));
+                for (Pending pending : batch) {
+                    CarrierLabel label = byShipment.get(pending.request().getShippingId());
+                    if (label != null) {
+                        pending.label().complete(label);
+                    } else {
+                        pending.label().completeExceptionally(new IllegalStateException(
+                                "Carrier " + carrier + " returned no label for shipment " + pending.request().getShippingId()));
+                    }
+                }
+            }
+        }
+    }
+}
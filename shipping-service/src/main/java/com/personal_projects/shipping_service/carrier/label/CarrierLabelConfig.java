@@ -0,0 +1,28 @@
+package com.personal_projects.shipping_service.carrier.label;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration of the {@link CarrierLabelClient}, created when {@code shipping.carrier.labels.enabled=true}.
+ */
+@Configuration
+@EnableConfigurationProperties(CarrierLabelProperties.class)
+public class CarrierLabelConfig {
+
+    /**
+     * Creates the batched carrier label client.
+     *
+     * @param properties   the label client settings
+     * @param objectMapper the application's JSON mapper
+     * @return the carrier label client
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "shipping.carrier.labels.enabled", havingValue = "true")
+    public CarrierLabelClient carrierLabelClient(CarrierLabelProperties properties, ObjectMapper objectMapper) {
+        return new CarrierLabelClient(properties, objectMapper);
+    }
+}
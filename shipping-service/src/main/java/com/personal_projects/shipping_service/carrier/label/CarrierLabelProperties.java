@@ -0,0 +1,54 @@
+package com.personal_projects.shipping_service.carrier.label;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings of the {@link CarrierLabelClient}, bound from {@code shipping.carrier.labels.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "shipping.carrier.labels")
+public class CarrierLabelProperties {
+
+    /** Whether shipping an order requests a label from the carrier */
+    private boolean enabled = false;
+
+    /** Batch endpoint used for carriers without an entry in {@link #endpoints} */
+    private String defaultEndpoint = "http://localhost:8099/labels";
+
+    /** Batch endpoint per carrier name */
+    private Map<String, String> endpoints = new HashMap<>();
+
+    /** Maximum number of label requests per batch */
+    private int batchSize = 50;
+
+    /** How long a partial batch waits for more requests before it is sent */
+    private long lingerMs = 5;
+
+    /** Maximum number of batches in flight per carrier, which bounds the connections per carrier */
+    private int maxConcurrencyPerCarrier = 4;
+
+    /** Maximum number of batches waiting for a free slot per carrier before new requests are rejected */
+    private int maxQueuedBatchesPerCarrier = 1000;
+
+    /** Timeout of a single batch attempt */
+    private long timeoutMs = 2000;
+
+    /** Delay after which a second, hedged attempt is sent if the first has not answered yet */
+    private long hedgeDelayMs = 200;
+
+    /** Maximum number of attempts per batch, including hedged attempts and retries */
+    private int maxAttempts = 3;
+
+    /**
+     * How long the label request of a shipment counts as in flight. A request still unanswered past it, e.g.
+     * because the instance sending it stopped, may be sent again by shipping the order again.
+     */
+    private long inFlightTimeoutMs = 60000;
+
+    /** Failed label requests after which the shipment is marked FAILED instead of being retried */
+    private int maxLabelFailures = 3;
+}
@@ -0,0 +1,27 @@
+package com.personal_projects.shipping_service.carrier.label;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A request for a shipping label, sent to the carrier as part of a batch.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class LabelRequest {
+
+    /** Shipment the label is for; used to match labels in the batch response */
+    private String shippingId;
+
+    private long orderId;
+
+    private String carrier;
+
+    private String customerName;
+
+    private String customerAddress;
+}
@@ -0,0 +1,33 @@
+package com.personal_projects.shipping_service.carrier.stub;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+/**
+ * Starts a {@link StubCarrierServer} inside the shipping service when {@code shipping.carrier.stub.enabled=true},
+ * so the label flow can run locally without a real carrier.
+ */
+@Configuration
+@ConditionalOnProperty(name = "shipping.carrier.stub.enabled", havingValue = "true")
+public class StubCarrierConfig {
+
+    /**
+     * Starts the stub carrier server.
+     *
+     * @return the running stub server
+     * @throws IOException if the server cannot bind
+     */
+    @Bean(destroyMethod = "close")
+    public StubCarrierServer stubCarrierServer(
+            @Value("${shipping.carrier.stub.port:8099}") int port,
+            @Value("${shipping.carrier.stub.base-latency-ms:20}") long baseLatencyMs,
+            @Value("${shipping.carrier.stub.jitter-ms:10}") long jitterMs,
+            @Value("${shipping.carrier.stub.slow-probability:0.01}") double slowProbability,
+            @Value("${shipping.carrier.stub.slow-latency-ms:1000}") long slowLatencyMs) throws IOException {
+        return new StubCarrierServer(port, baseLatencyMs, jitterMs, slowProbability, slowLatencyMs);
+    }
+}
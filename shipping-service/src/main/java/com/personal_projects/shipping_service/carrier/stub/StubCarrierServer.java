@@ -0,0 +1,178 @@
+package com.personal_projects.shipping_service.carrier.stub;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.personal_projects.shipping_service.carrier.label.CarrierLabel;
+import com.personal_projects.shipping_service.carrier.label.LabelRequest;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for a carrier label API, used to benchmark the {@code CarrierLabelClient} offline.
+ * <p>
+ * {@code POST /labels} accepts a JSON array of {@link LabelRequest}s and answers with one {@link CarrierLabel}
+ * per request. Every response is delayed by {@code baseLatencyMs} plus a uniform jitter, and with probability
+ * {@code slowProbability} by {@code slowLatencyMs} instead, which produces the latency tail hedging is meant to
+ * cut. Delays are scheduled rather than slept, so slow responses do not hold server threads.
+ * </p>
+ * <p>
+ * Run standalone with {@code java ... StubCarrierServer [port] [baseLatencyMs] [jitterMs] [slowProbability]
+ * [slowLatencyMs]}, or inside the shipping service with {@code shipping.carrier.stub.enabled=true}.
+ * </p>
+ */
+public class StubCarrierServer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(StubCarrierServer.class);
+
+    private static final TypeReference<List<LabelRequest>> REQUEST_LIST = new TypeReference<>() {
+    };
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final ScheduledExecutorService delayer;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong issuedLabels = new AtomicLong();
+    private final AtomicLong receivedBatches = new AtomicLong();
+
+    private final long baseLatencyMs;
+    private final long jitterMs;
+    private final double slowProbability;
+    private final long slowLatencyMs;
+
+    /**
+     * Starts the stub carrier.
+     *
+     * @param port            port to listen on, or 0 for an ephemeral port
+     * @param baseLatencyMs   latency added to every response
+     * @param jitterMs        maximum uniform jitter added on top of the base latency
+     * @param slowProbability probability that a response is slow
+     * @param slowLatencyMs   latency of slow responses
+     * @throws IOException if the server cannot bind
+     */
+    public StubCarrierServer(int port, long baseLatencyMs, long jitterMs, double slowProbability, long slowLatencyMs)
+            throws IOException {
+        this.baseLatencyMs = baseLatencyMs;
+        this.jitterMs = jitterMs;
+        this.slowProbability = slowProbability;
+        this.slowLatencyMs = slowLatencyMs;
+        this.handlers = Executors.newFixedThreadPool(4);
+        this.delayer = Executors.newScheduledThreadPool(2);
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.server.setExecutor(handlers);
+        this.server.createContext("/labels", this::handle);
+        this.server.start();
+        logger.info("Stub carrier listening on port {}", getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return the number of labels issued since the server started, including repeated requests
+     */
+    public long getIssuedLabels() {
+        return issuedLabels.get();
+    }
+
+    /**
+     * @return the number of batches received since the server started, including invalid and repeated ones
+     */
+    public long getReceivedBatches() {
+        return receivedBatches.get();
+    }
+
+    /**
+     * Answers a batch after its latency. Every exchange is closed, whether it is answered, rejected as invalid
+     * or dropped because the server is closing.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            reject(exchange, 405);
+            return;
+        }
+        receivedBatches.incrementAndGet();
+        byte[] body;
+        try {
+            List<LabelRequest> requests = objectMapper.readValue(exchange.getRequestBody(), REQUEST_LIST);
+            List<CarrierLabel> labels = requests.stream()
+                    .map(request -> new CarrierLabel(
+                            request.getShippingId(),
+                            request.getCarrier(),
+                            // Derived from the shipment so repeated (hedged) requests get the same label.
+                            "STUB-" + request.getCarrier() + "-" + Integer.toHexString(
+                                    String.valueOf(request.getShippingId()).hashCode())))
+                    .toList();
+            body = objectMapper.writeValueAsBytes(labels);
+            issuedLabels.addAndGet(labels.size());
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Stub carrier rejected an invalid batch: {}", e.toString());
+            reject(exchange, 400);
+            return;
+        }
+
+        try {
+            delayer.schedule(() -> respond(exchange, body), nextLatencyMs(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            exchange.close();
+        }
+    }
+
+    private static void reject(HttpExchange exchange, int status) throws IOException {
+        try (exchange) {
+            exchange.sendResponseHeaders(status, -1);
+        }
+    }
+
+    private void respond(HttpExchange exchange, byte[] body) {
+        try (exchange) {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (IOException e) {
+            // The client gave up on this attempt, typically because a hedged attempt already answered.
+            logger.debug("Stub carrier could not send response: {}", e.toString());
+        }
+    }
+
+    private long nextLatencyMs() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < slowProbability) {
+            return slowLatencyMs;
+        }
+        return baseLatencyMs + (jitterMs > 0 ? random.nextLong(jitterMs + 1) : 0);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        delayer.shutdownNow();
+        handlers.shutdownNow();
+    }
+
+    public static void main(String[] args) throws IOException {
+        new StubCarrierServer(
+                args.length > 0 ? Integer.parseInt(args[0]) : 8099,
+                args.length > 1 ? Long.parseLong(args[1]) : 20,
+                args.length > 2 ? Long.parseLong(args[2]) : 10,
+                args.length > 3 ? Double.parseDouble(args[3]) : 0.01,
+                args.length > 4 ? Long.parseLong(args[4]) : 1000
+        );
+    }
+}
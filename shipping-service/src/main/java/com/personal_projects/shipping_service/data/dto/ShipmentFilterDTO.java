@@ -0,0 +1,48 @@
+package com.personal_projects.shipping_service.data.dto;
+
+import com.personal_projects.common.Enums.ShipmentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Filter, projection and paging parameters for listing shipments.
+ * <p>
+ * Every field is optional; {@code null} means "do not filter on this field".
+ * </p>
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ShipmentFilterDTO {
+
+    private ShipmentStatus shipmentStatus;
+
+    private String carrier;
+
+    /** Inclusive lower bound on {@code createdAt}. */
+    private LocalDateTime createdFrom;
+
+    /** Exclusive upper bound on {@code createdAt}. */
+    private LocalDateTime createdTo;
+
+    /** Inclusive lower bound on {@code estimatedDeliveryDate}. */
+    private LocalDateTime estimatedFrom;
+
+    /** Exclusive upper bound on {@code estimatedDeliveryDate}. */
+    private LocalDateTime estimatedTo;
+
+    /** Fields to return; all fields are returned when empty. */
+    private List<String> fields;
+
+    /** Opaque cursor returned by the previous page, or {@code null} for the first page. */
+    private String cursor;
+
+    /** Maximum number of shipments to return. */
+    private int limit;
+}
@@ -0,0 +1,24 @@
+package com.personal_projects.shipping_service.data.dto;
+
+import com.personal_projects.shipping_service.data.entity.Shipment;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A single page of shipments together with the cursor to request the next one.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ShipmentPageDTO {
+
+    private List<Shipment> shipments;
+
+    /** Cursor for the next page, or {@code null} when this is the last page. */
+    private String nextCursor;
+}
@@ -0,0 +1,75 @@
+package com.personal_projects.shipping_service.data.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Paid orders of one customer and destination waiting to be consolidated into a single shipment,
+ * stored in the "shipment_consolidation_buffer" collection so they survive restarts.
+ * <p>
+ * A buffer is open while {@code sealed} is false and receives new orders. Once its window has elapsed
+ * it is sealed and leased to the instance turning it into a shipment, then deleted. At most one open buffer
+ * exists per {@code key}, which is enforced by a partial unique index.
+ * </p>
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "shipment_consolidation_buffer")
+public class ConsolidationBuffer {
+
+    @Id
+    private String id;
+
+    /** Customer and destination the buffered orders share. */
+    private String key;
+
+    private String customerName;
+    private String customerAddress;
+
+    /** Time the first order entered the buffer; the window is measured from here. */
+    @Indexed(name = "windowStart")
+    private LocalDateTime windowStart;
+
+    private boolean sealed;
+
+    /** Instance that sealed the buffer and is turning it into a shipment. */
+    private String owner;
+
+    /** Time until which the buffer is left to its owner; past it, any instance may claim it again. */
+    private LocalDateTime leaseUntil;
+
+    @Builder.Default
+    private List<BufferedOrder> orders = new ArrayList<>();
+
+    /**
+     * A paid order waiting in a consolidation buffer.
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class BufferedOrder {
+
+        /** Indexed so a redelivered payment finds the buffer its order is already in. */
+        @Indexed(name = "orders_orderId")
+        private long orderId;
+
+        private String paymentId;
+
+        /** Time the order entered the buffer, used to measure the latency added by consolidation. */
+        private LocalDateTime bufferedAt;
+
+        /** Epoch millis at which the order was created, the origin of its lifecycle. */
+        private long originTimestamp;
+    }
+}
@@ -2,32 +2,58 @@ package com.personal_projects.shipping_service.data.entity;
 
 
 import com.personal_projects.common.Enums.ShipmentStatus;
-import jakarta.persistence.Id;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 
 /**
  * Represents a shipment entity stored in the "shipment" collection in MongoDB.
+ * <p>
+ * The compound indexes back the cursor-paged shipment listing: every filter is an equality
+ * prefix followed by the {@code createdAt desc, _id desc} keyset used for paging, so the
+ * listing and the status counts never fall back to a collection scan. The estimated delivery date is a range
+ * filter, so it follows the keyset in {@code createdAt_id_eta}: pages are read in keyset order, without sorting,
+ * and the range is checked on the index keys before any document is fetched. {@code status_updatedAt} lets the
+ * tiering job find finished shipments to archive.
+ * </p>
  */
 @Data
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
 @Document(collection = "shipment")
+@CompoundIndexes({
+        @CompoundIndex(name = "createdAt_id_eta", def = "{'createdAt': -1, '_id': -1, 'estimatedDeliveryDate': -1}"),
+        @CompoundIndex(name = "status_createdAt_id", def = "{'shipmentStatus': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "carrier_createdAt_id", def = "{'carrier': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "status_updatedAt", def = "{'shipmentStatus': 1, 'updatedAt': 1}")
+})
 public class Shipment {
 
     @Id
     private String shippingId;
 
+    /** The order this shipment was created for; the first order of a consolidated shipment. */
     private long orderId;
     private String paymentId;
 
+    /**
+     * Every order carried by this shipment, more than one when orders were consolidated. Unique, so an order is
+     * never carried by two shipments, whatever creates them.
+     */
+    @Indexed(name = "orderIds_unique", unique = true, sparse = true)
+    private List<Long> orderIds;
+
     private String customerName;
     private String customerAddress;
 
@@ -40,6 +66,43 @@ public class Shipment {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
+    /**
+     * Epoch millis at which the order was created, carried onto the shipment events as the lifecycle origin.
+     * For a consolidated shipment this is the creation of its first order.
+     */
+    private long originTimestamp;
+
+    /**
+     * Lifecycle origins of the orders of a consolidated shipment, in the order of {@link #orderIds}, so each
+     * shipment event carries the creation of its own order.
+     */
+    private List<Long> originTimestamps;
+
+    /**
+     * Time the carrier label was requested, while the request is in flight; shipping the order again meanwhile
+     * does not request a second label.
+     */
+    private LocalDateTime labelRequestedAt;
+
+    /** Label requests that failed after every attempt of the carrier label client. */
+    private int labelFailures;
+
+
+    /**
+     * Looks up the lifecycle origin of one of the orders of this shipment.
+     *
+     * @param orderId the ID of an order carried by this shipment
+     * @return the epoch millis at which the order was created, or the shipment's origin if it was not recorded
+     */
+    public long originTimestampOf(long orderId) {
+        if (orderIds != null && originTimestamps != null) {
+            int index = orderIds.indexOf(orderId);
+            if (index >= 0 && index < originTimestamps.size()) {
+                return originTimestamps.get(index);
+            }
+        }
+        return originTimestamp;
+    }
 
     /**
      * Checks whether the shipment is currently in transit.
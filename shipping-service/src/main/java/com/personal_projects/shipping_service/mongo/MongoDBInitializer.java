@@ -1,21 +1,37 @@
 package com.personal_projects.shipping_service.mongo;
 
+import com.personal_projects.shipping_service.data.entity.ConsolidationBuffer;
+import com.personal_projects.shipping_service.data.entity.Shipment;
+import com.personal_projects.shipping_service.shipment.ShipmentQueryRepository;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Component;
 
+import java.util.Set;
+
 
 /**
  * Initializes the MongoDB database when the Spring application context is refreshed.
  * <p>
- * This component listens for {@link ContextRefreshedEvent} and drops the entire MongoDB
+ * This component listens for {@link ContextRefreshedEvent} and drops the collections of the MongoDB
  * database configured in {@code application.yml} or {@code application.properties}.
+ * The consolidation buffers are kept, since they hold paid orders that have no shipment yet.
+ * Dropping collections also drops the indexes created by {@code auto-index-creation},
+ * so the indexes declared on the mapped documents are re-created afterwards.
  * </p>
  */
 @Component
 public class MongoDBInitializer implements ApplicationListener<ContextRefreshedEvent> {
 
+    private static final Set<String> PRESERVED_COLLECTIONS = Set.of("shipment_consolidation_buffer");
+
     private final MongoTemplate mongoTemplate;
 
     /**
@@ -35,6 +51,33 @@ public class MongoDBInitializer implements ApplicationListener<ContextRefreshedE
     @Override
     public void onApplicationEvent(ContextRefreshedEvent event) {
         System.out.println("Initializing MongoDB...");
-        mongoTemplate.getDb().drop();
+        for (String collection : mongoTemplate.getCollectionNames()) {
+            if (!PRESERVED_COLLECTIONS.contains(collection)) {
+                mongoTemplate.dropCollection(collection);
+            }
+        }
+        ensureIndexes(Shipment.class);
+        ensureIndexes(ConsolidationBuffer.class);
+        // Only one open buffer may exist per customer and destination.
+        mongoTemplate.indexOps(ConsolidationBuffer.class).ensureIndex(new Index()
+                .on("key", Sort.Direction.ASC)
+                .named("open_key")
+                .unique()
+                .partial(PartialIndexFilter.of(Criteria.where("sealed").is(false))));
+        // Reads by orderId fall through to the archive when the hot collection misses.
+        mongoTemplate.indexOps(ShipmentQueryRepository.ARCHIVE_COLLECTION)
+                .ensureIndex(new Index().on("orderIds", Sort.Direction.ASC).named("orderIds"));
+    }
+
+    /**
+     * Creates the indexes declared on the given document class.
+     *
+     * @param documentClass the mapped document class
+     */
+    private void ensureIndexes(Class<?> documentClass) {
+        IndexOperations indexOperations = mongoTemplate.indexOps(documentClass);
+        new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext())
+                .resolveIndexFor(documentClass)
+                .forEach(indexOperations::ensureIndex);
     }
 }
@@ -0,0 +1,72 @@
+package com.personal_projects.shipping_service.mongo;
+
+import com.personal_projects.common.Enums.ShipmentStatus;
+import com.personal_projects.common.Tiering.CollectionTiering;
+import com.personal_projects.shipping_service.data.entity.Shipment;
+import com.personal_projects.shipping_service.shipment.ShipmentQueryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Moves finished shipments from the hot {@code shipment} collection to the {@code shipment_archive} collection.
+ * <p>
+ * Every run archives shipments that are {@code DELIVERED} or {@code FAILED} and were last updated more than
+ * {@code shipping.tiering.min-age-ms} ago, through a {@link CollectionTiering} moving batches of
+ * {@code shipping.tiering.batch-size} within {@code shipping.tiering.duty-cycle} of the wall-clock time, at most
+ * {@code shipping.tiering.max-batches-per-run} batches per run. Its metrics are the {@code shipping.tiering.*}
+ * gauges and counter.
+ * </p>
+ * <p>
+ * Enabled with {@code shipping.tiering.enabled=true}.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "shipping.tiering.enabled", havingValue = "true")
+public class ShipmentTieringJob {
+
+    private static final List<ShipmentStatus> TERMINAL_STATUSES = List.of(ShipmentStatus.DELIVERED, ShipmentStatus.FAILED);
+
+    private final CollectionTiering<Shipment> tiering;
+    private final Duration minAge;
+
+    /**
+     * Constructs the tiering job.
+     *
+     * @param mongoTemplate    template used to read, archive and remove shipments
+     * @param meterRegistry    registry for the tiering metrics
+     * @param minAgeMillis     how long a finished shipment stays in the hot collection
+     * @param batchSize        shipments moved per batch
+     * @param maxBatchesPerRun batches moved per run at most
+     * @param dutyCycle        fraction of wall-clock time the job may spend moving batches, in {@code (0, 1]}
+     */
+    public ShipmentTieringJob(MongoTemplate mongoTemplate,
+                              MeterRegistry meterRegistry,
+                              @Value("${shipping.tiering.min-age-ms:604800000}") long minAgeMillis,
+                              @Value("${shipping.tiering.batch-size:500}") int batchSize,
+                              @Value("${shipping.tiering.max-batches-per-run:100}") int maxBatchesPerRun,
+                              @Value("${shipping.tiering.duty-cycle:0.2}") double dutyCycle) {
+        this.tiering = new CollectionTiering<>(mongoTemplate, Shipment.class, ShipmentQueryRepository.ARCHIVE_COLLECTION,
+                "shipping.tiering", meterRegistry, batchSize, maxBatchesPerRun, dutyCycle);
+        this.minAge = Duration.ofMillis(minAgeMillis);
+    }
+
+    /**
+     * Archives finished shipments older than the configured age, batch by batch.
+     */
+    @Scheduled(fixedDelayString = "${shipping.tiering.interval-ms:3600000}")
+    public void archiveFinishedShipments() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(minAge);
+        tiering.archive(Query.query(
+                Criteria.where("shipmentStatus").in(TERMINAL_STATUSES).and("updatedAt").lt(cutoff)));
+    }
+}
@@ -1,13 +1,20 @@
 package com.personal_projects.shipping_service.shipment;
 
+import com.personal_projects.common.Enums.ShipmentStatus;
+import com.personal_projects.shipping_service.data.dto.ShipmentFilterDTO;
+import com.personal_projects.shipping_service.data.dto.ShipmentPageDTO;
 import com.personal_projects.shipping_service.data.entity.Shipment;
 import io.swagger.v3.oas.annotations.Operation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * REST controller for handling shipment-related operations.
@@ -36,12 +43,79 @@ public class ShipmentController {
      * @return a list of all {@link Shipment} records
      */
     @Operation(summary = "Get all shipments", description = "Retrieve a list of all existing shipments")
-    @GetMapping
+    @GetMapping("all")
     public List<Shipment> getAllShipments() {
         logger.info("Fetching all shipments");
         return shipmentService.getAllShipments();
     }
 
+    /**
+     * Retrieve one page of shipments, newest first, optionally filtered and projected.
+     *
+     * @param shipmentStatus only return shipments in this status
+     * @param carrier        only return shipments handled by this carrier
+     * @param createdFrom    inclusive lower bound on the creation time
+     * @param createdTo      exclusive upper bound on the creation time
+     * @param estimatedFrom  inclusive lower bound on the estimated delivery date
+     * @param estimatedTo    exclusive upper bound on the estimated delivery date
+     * @param fields         fields to return; all fields when omitted
+     * @param cursor         cursor returned by the previous page
+     * @param limit          maximum number of shipments to return
+     * @return the page of shipments and the cursor for the next page
+     */
+    @Operation(summary = "Get shipments", description = "Retrieve a cursor-paged, filtered list of shipments")
+    @GetMapping
+    public ShipmentPageDTO getShipments(
+            @RequestParam(value = "shipmentStatus", required = false) ShipmentStatus shipmentStatus,
+            @RequestParam(value = "carrier", required = false) String carrier,
+            @RequestParam(value = "createdFrom", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+            @RequestParam(value = "createdTo", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+            @RequestParam(value = "estimatedFrom", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime estimatedFrom,
+            @RequestParam(value = "estimatedTo", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime estimatedTo,
+            @RequestParam(value = "fields", required = false) List<String> fields,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        logger.debug("Fetching shipments page with cursor {}", cursor);
+        return shipmentService.getShipments(ShipmentFilterDTO.builder()
+                .shipmentStatus(shipmentStatus)
+                .carrier(carrier)
+                .createdFrom(createdFrom)
+                .createdTo(createdTo)
+                .estimatedFrom(estimatedFrom)
+                .estimatedTo(estimatedTo)
+                .fields(fields)
+                .cursor(cursor)
+                .limit(limit)
+                .build());
+    }
+
+    /**
+     * Count shipments per status.
+     *
+     * @return the number of shipments for every status
+     */
+    @Operation(summary = "Count shipments by status")
+    @GetMapping("status_counts")
+    public Map<ShipmentStatus, Long> getShipmentStatusCounts() {
+        return shipmentService.countShipmentsByStatus();
+    }
+
+    /**
+     * Retrieve the shipment carrying an order, whether it is still active or already archived.
+     *
+     * @param orderId the unique identifier of the order
+     * @return the {@link Shipment} carrying the order
+     */
+    @Operation(summary = "Get the shipment of an order")
+    @GetMapping("{order_id}")
+    public Shipment getShipmentByOrderId(@PathVariable("order_id") long orderId) {
+        return shipmentService.getShipmentByOrderId(orderId);
+    }
+
     /**
      * Trigger the shipment process for an order by order ID.
      *
@@ -54,4 +128,17 @@ public class ShipmentController {
         shipmentService.shipOrder(orderId);
     }
 
+    /**
+     * Maps invalid query parameters, such as a malformed cursor or unknown projected field, to {@code 400}.
+     *
+     * @param e the exception raised while building the query
+     * @return the error message
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String handleInvalidQuery(IllegalArgumentException e) {
+        logger.warn("Rejected shipment query: {}", e.getMessage());
+        return e.getMessage();
+    }
+
 }
@@ -0,0 +1,67 @@
+package com.personal_projects.shipping_service.shipment;
+
+import com.personal_projects.common.Enums.ShipmentStatus;
+import com.personal_projects.shipping_service.data.dto.ShipmentFilterDTO;
+import com.personal_projects.shipping_service.data.dto.ShipmentPageDTO;
+import com.personal_projects.shipping_service.data.entity.Shipment;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Custom query fragment of {@link ShipmentRepository} for queries that derived methods cannot express:
+ * keyset-paged listings with optional filters and projections, server-side status counts, and lookups
+ * that fall through to the {@code shipment_archive} collection filled by the {@code ShipmentTieringJob}.
+ */
+public interface ShipmentQueryRepository {
+
+    /** Collection holding shipments moved out of the hot collection. */
+    String ARCHIVE_COLLECTION = "shipment_archive";
+
+    /**
+     * Finds one page of shipments ordered by {@code createdAt desc, _id desc}.
+     *
+     * @param filter the filters, projection and cursor to apply
+     * @return the page of shipments and the cursor for the next page
+     * @throws IllegalArgumentException if the cursor or a projected field is invalid
+     */
+    ShipmentPageDTO findPage(ShipmentFilterDTO filter);
+
+    /**
+     * Counts shipments per status with an index-covered aggregation.
+     *
+     * @return the number of shipments for every {@link ShipmentStatus}, including zero counts
+     */
+    Map<ShipmentStatus, Long> countByStatus();
+
+    /**
+     * Finds the shipment carrying an order, falling through to the archive when the hot collection has none.
+     *
+     * @param orderId the ID of an order carried by the shipment
+     * @return an {@link Optional} containing the shipment if found in either collection
+     */
+    Optional<Shipment> findByOrderIdIncludingArchive(long orderId);
+
+    /**
+     * Marks the label of a shipment as requested, unless it is no longer PENDING or a label request for it is
+     * in flight since {@code staleBefore} or later.
+     *
+     * @param orderId     the ID of an order carried by the shipment
+     * @param now         the time the label is requested
+     * @param staleBefore requests made before this time are considered lost
+     * @return true if the caller may request the label
+     */
+    boolean claimLabelRequest(long orderId, LocalDateTime now, LocalDateTime staleBefore);
+
+    /**
+     * Records a failed label request and ends it, so shipping the order again requests the label again.
+     * Once {@code maxFailures} requests have failed the shipment is marked {@link ShipmentStatus#FAILED}.
+     *
+     * @param orderId     the ID of an order carried by the shipment
+     * @param maxFailures the failed requests after which the shipment fails
+     * @param now         the time of the failure
+     * @return true if the shipment was marked failed
+     */
+    boolean releaseFailedLabelRequest(long orderId, int maxFailures, LocalDateTime now);
+}
@@ -0,0 +1,221 @@
+package com.personal_projects.shipping_service.shipment;
+
+import com.personal_projects.common.Enums.ShipmentStatus;
+import com.personal_projects.shipping_service.data.dto.ShipmentFilterDTO;
+import com.personal_projects.shipping_service.data.dto.ShipmentPageDTO;
+import com.personal_projects.shipping_service.data.entity.Shipment;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * {@link MongoTemplate} based implementation of {@link ShipmentQueryRepository}.
+ * <p>
+ * Paging uses a keyset cursor on {@code (createdAt, _id)} instead of skip/limit, so every page costs
+ * the same regardless of how deep the caller has paged. The cursor is the base64url encoding of the
+ * last returned {@code createdAt} and {@code _id}.
+ * </p>
+ */
+public class ShipmentQueryRepositoryImpl implements ShipmentQueryRepository {
+
+    static final int DEFAULT_LIMIT = 50;
+    static final int MAX_LIMIT = 500;
+
+    private static final String CREATED_AT = "createdAt";
+    private static final String ID = "shippingId";
+
+    private static final Set<String> PROJECTABLE_FIELDS = Set.of(
+            "orderId", "orderIds", "paymentId", "customerName", "customerAddress", "shipmentStatus",
+            "carrier", "trackingNumber", "estimatedDeliveryDate", "createdAt", "updatedAt"
+    );
+
+    private final MongoTemplate mongoTemplate;
+
+    public ShipmentQueryRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public ShipmentPageDTO findPage(ShipmentFilterDTO filter) {
+        int limit = effectiveLimit(filter.getLimit());
+        Query query = buildQuery(filter).limit(limit + 1);
+        List<Shipment> shipments = mongoTemplate.find(query, Shipment.class);
+
+        String nextCursor = null;
+        if (shipments.size() > limit) {
+            shipments = new ArrayList<>(shipments.subList(0, limit));
+            Shipment last = shipments.get(limit - 1);
+            nextCursor = encodeCursor(last.getCreatedAt(), last.getShippingId());
+        }
+        return new ShipmentPageDTO(shipments, nextCursor);
+    }
+
+    @Override
+    public Optional<Shipment> findByOrderIdIncludingArchive(long orderId) {
+        Query byOrderId = Query.query(Criteria.where("orderIds").is(orderId));
+        Shipment shipment = mongoTemplate.findOne(byOrderId, Shipment.class);
+        if (shipment == null) {
+            shipment = mongoTemplate.findOne(byOrderId, Shipment.class, ARCHIVE_COLLECTION);
+        }
+        return Optional.ofNullable(shipment);
+    }
+
+    @Override
+    public boolean claimLabelRequest(long orderId, LocalDateTime now, LocalDateTime staleBefore) {
+        Query claimable = Query.query(Criteria.where("orderIds").is(orderId)
+                .and("shipmentStatus").is(ShipmentStatus.PENDING)
+                .and("labelRequestedAt").not().gte(staleBefore));
+        return mongoTemplate.updateFirst(claimable, Update.update("labelRequestedAt", now), Shipment.class)
+                .getModifiedCount() == 1;
+    }
+
+    @Override
+    public boolean releaseFailedLabelRequest(long orderId, int maxFailures, LocalDateTime now) {
+        Query byOrderId = Query.query(Criteria.where("orderIds").is(orderId));
+        Shipment released = mongoTemplate.findAndModify(byOrderId,
+                new Update().unset("labelRequestedAt").inc("labelFailures", 1).set("updatedAt", now),
+                FindAndModifyOptions.options().returnNew(true), Shipment.class);
+        if (released == null || released.getLabelFailures() < maxFailures) {
+            return false;
+        }
+        Query notShipped = Query.query(Criteria.where("orderIds").is(orderId)
+                .and("shipmentStatus").is(ShipmentStatus.PENDING));
+        return mongoTemplate.updateFirst(notShipped, Update.update("shipmentStatus", ShipmentStatus.FAILED)
+                .set("updatedAt", now), Shipment.class).getModifiedCount() == 1;
+    }
+
+    @Override
+    public Map<ShipmentStatus, Long> countByStatus() {
+        Map<ShipmentStatus, Long> counts = new EnumMap<>(ShipmentStatus.class);
+        for (ShipmentStatus status : ShipmentStatus.values()) {
+            counts.put(status, 0L);
+        }
+        for (Document row : mongoTemplate.aggregate(statusCountAggregation(), Document.class).getMappedResults()) {
+            Object status = row.get("_id");
+            if (status != null) {
+                counts.put(ShipmentStatus.valueOf(status.toString()), ((Number) row.get("count")).longValue());
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Builds the filtered, sorted and projected query for one page, without the page limit.
+     *
+     * @param filter the filters, projection and cursor to apply
+     * @return the query
+     */
+    Query buildQuery(ShipmentFilterDTO filter) {
+        List<Criteria> criteria = new ArrayList<>();
+
+        if (filter.getShipmentStatus() != null) {
+            criteria.add(Criteria.where("shipmentStatus").is(filter.getShipmentStatus()));
+        }
+        if (filter.getCarrier() != null) {
+            criteria.add(Criteria.where("carrier").is(filter.getCarrier()));
+        }
+        addRange(criteria, CREATED_AT, filter.getCreatedFrom(), filter.getCreatedTo());
+        addRange(criteria, "estimatedDeliveryDate", filter.getEstimatedFrom(), filter.getEstimatedTo());
+
+        if (filter.getCursor() != null && !filter.getCursor().isBlank()) {
+            String[] cursor = decodeCursor(filter.getCursor());
+            LocalDateTime createdAt = LocalDateTime.parse(cursor[0]);
+            criteria.add(new Criteria().orOperator(
+                    Criteria.where(CREATED_AT).lt(createdAt),
+                    new Criteria().andOperator(
+                            Criteria.where(CREATED_AT).is(createdAt),
+                            Criteria.where(ID).lt(cursor[1])
+                    )
+            ));
+        }
+
+        Query query = criteria.isEmpty()
+                ? new Query()
+                : new Query(new Criteria().andOperator(criteria));
+        query.with(Sort.by(Sort.Direction.DESC, CREATED_AT, ID));
+
+        if (filter.getFields() != null && !filter.getFields().isEmpty()) {
+            for (String field : filter.getFields()) {
+                if (!PROJECTABLE_FIELDS.contains(field)) {
+                    throw new IllegalArgumentException("Unknown shipment field: " + field);
+                }
+                query.fields().include(field);
+            }
+            // The keyset columns are always needed to build the next cursor.
+            query.fields().include(CREATED_AT);
+        }
+        return query;
+    }
+
+    /**
+     * Builds the status count aggregation. Sorting on the indexed {@code shipmentStatus} and projecting only
+     * that field lets MongoDB answer the whole pipeline from the {@code status_createdAt_id} index.
+     *
+     * @return the typed aggregation
+     */
+    TypedAggregation<Shipment> statusCountAggregation() {
+        return Aggregation.newAggregation(
+                Shipment.class,
+                Aggregation.sort(Sort.Direction.ASC, "shipmentStatus"),
+                Aggregation.project("shipmentStatus").andExclude("_id"),
+                Aggregation.group("shipmentStatus").count().as("count")
+        );
+    }
+
+    private static void addRange(List<Criteria> criteria, String field, LocalDateTime from, LocalDateTime to) {
+        if (from == null && to == null) {
+            return;
+        }
+        Criteria range = Criteria.where(field);
+        if (from != null) {
+            range.gte(from);
+        }
+        if (to != null) {
+            range.lt(to);
+        }
+        criteria.add(range);
+    }
+
+    private static int effectiveLimit(int requested) {
+        if (requested <= 0) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.min(requested, MAX_LIMIT);
+    }
+
+    static String encodeCursor(LocalDateTime createdAt, String shippingId) {
+        String raw = createdAt + "|" + shippingId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            LocalDateTime.parse(parts[0]);
+            return parts;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
@@ -8,22 +8,33 @@ import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.Update;
 
 import java.time.LocalDateTime;
-import java.util.Optional;
+import java.util.List;
 
 
-public interface ShipmentRepository extends MongoRepository<Shipment, Long> {
+public interface ShipmentRepository extends MongoRepository<Shipment, Long>, ShipmentQueryRepository {
 
     /**
-     * Find the latest shipment by orderId.
+     * Finds the shipments carrying the given order, including consolidated shipments. The unique
+     * {@code orderIds} index leaves at most one.
      *
      * @param orderId the order ID
-     * @return an optional Shipment
+     * @return the shipments carrying the order
      */
-    Optional<Shipment> getShipmentsByOrderId(long orderId);
+    @Query("{ 'orderIds' : ?0 }")
+    List<Shipment> getShipmentsByOrderId(long orderId);
+
+    /**
+     * Checks whether a shipment carrying the given order exists in the hot collection.
+     *
+     * @param orderId the order ID
+     * @return true if a shipment carries the order
+     */
+    @Query(value = "{ 'orderIds' : ?0 }", exists = true)
+    boolean existsByOrderId(long orderId);
 
 
     /**
-     * Updates the shipment status, tracking number, and updatedAt timestamp for a given orderId.
+     * Updates the shipment status, tracking number, and updatedAt timestamp of the shipment carrying a given orderId.
      *
      * @param orderId       the order ID to update
      * @param status        the new shipping status
@@ -32,12 +43,34 @@ public interface ShipmentRepository extends MongoRepository<Shipment, Long> {
      * @return the number of documents updated
      */
     @Modifying
-    @Query("{ 'orderId' : ?0 }")
-    @Update("{$set: { shippingStatus: ?1, trackingNumber: ?2, updatedAt: ?3 }}")
+    @Query("{ 'orderIds' : ?0 }")
+    @Update("{$set: { shipmentStatus: ?1, trackingNumber: ?2, updatedAt: ?3 }}")
     long updateStatusByOrderId(
             long orderId,
             ShipmentStatus status,
             String trackingNumber,
             LocalDateTime updatedAt
     );
+
+    /**
+     * Moves the shipment carrying a given orderId from one status to another, setting its tracking number and
+     * updatedAt timestamp, if it is still in the expected status.
+     *
+     * @param orderId        the order ID to update
+     * @param expected       the status the shipment must be in
+     * @param status         the new shipping status
+     * @param trackingNumber the tracking number
+     * @param updatedAt      the updated time
+     * @return the number of documents updated, 0 if the shipment was not in the expected status
+     */
+    @Modifying
+    @Query("{ 'orderIds' : ?0, 'shipmentStatus' : ?1 }")
+    @Update("{$set: { shipmentStatus: ?2, trackingNumber: ?3, updatedAt: ?4 }}")
+    long updateStatusByOrderIdAndStatus(
+            long orderId,
+            ShipmentStatus expected,
+            ShipmentStatus status,
+            String trackingNumber,
+            LocalDateTime updatedAt
+    );
 }
@@ -2,15 +2,27 @@ package com.personal_projects.shipping_service.shipment;
 
 import com.personal_projects.common.Enums.ShipmentStatus;
 import com.personal_projects.common.Events.ShipmentEvent;
+import com.personal_projects.common.Flight.ServiceCallEvent;
+import com.personal_projects.common.Lifecycle.LifecycleHeaders;
+import com.personal_projects.shipping_service.carrier.label.CarrierLabelClient;
+import com.personal_projects.shipping_service.carrier.label.CarrierLabelProperties;
+import com.personal_projects.shipping_service.carrier.label.LabelRequest;
+import com.personal_projects.shipping_service.data.dto.ShipmentFilterDTO;
+import com.personal_projects.shipping_service.data.dto.ShipmentPageDTO;
 import com.personal_projects.shipping_service.data.entity.Shipment;
 import jakarta.persistence.EntityNotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.web.ErrorResponseException;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 import static com.personal_projects.common.Configs.KafkaConfigs.SHIPMENT_TOPIC;
 
@@ -24,18 +36,25 @@ public class ShipmentService {
 
     private final ShipmentRepository shipmentRepository;
     private final KafkaTemplate<String, ShipmentEvent> shipmentKafkaTemplate;
-
+    private final CarrierLabelClient carrierLabelClient;
+    private final CarrierLabelProperties labelProperties;
 
     /**
      * Constructs the ShipmentService with required dependencies.
      *
      * @param shipmentRepository Repository for interacting with shipment data
      * @param shipmentKafkaTemplate Kafka template to publish order status updates
+     * @param carrierLabelClient client requesting carrier labels, available when labels are enabled
+     * @param labelProperties settings of the label requests
      */
     public ShipmentService(ShipmentRepository shipmentRepository,
-                           KafkaTemplate<String, ShipmentEvent> shipmentKafkaTemplate) {
+                           KafkaTemplate<String, ShipmentEvent> shipmentKafkaTemplate,
+                           ObjectProvider<CarrierLabelClient> carrierLabelClient,
+                           CarrierLabelProperties labelProperties) {
         this.shipmentRepository = shipmentRepository;
         this.shipmentKafkaTemplate = shipmentKafkaTemplate;
+        this.carrierLabelClient = carrierLabelClient.getIfAvailable();
+        this.labelProperties = labelProperties;
     }
 
     /**
@@ -47,6 +66,37 @@ public class ShipmentService {
         return shipmentRepository.findAll();
     }
 
+    /**
+     * Retrieves one cursor-paged, filtered and optionally projected page of shipments.
+     *
+     * @param filter the filters, projection and cursor to apply
+     * @return the page of shipments and the cursor for the next page
+     */
+    public ShipmentPageDTO getShipments(ShipmentFilterDTO filter) {
+        return shipmentRepository.findPage(filter);
+    }
+
+    /**
+     * Counts shipments per status without loading them into the application.
+     *
+     * @return the number of shipments for every status
+     */
+    public Map<ShipmentStatus, Long> countShipmentsByStatus() {
+        return shipmentRepository.countByStatus();
+    }
+
+    /**
+     * Retrieves the shipment carrying an order, including shipments already moved to the archive.
+     *
+     * @param orderId the ID of an order carried by the shipment
+     * @return the shipment
+     * @throws EntityNotFoundException if no shipment carries the given order
+     */
+    public Shipment getShipmentByOrderId(final long orderId) {
+        return shipmentRepository.findByOrderIdIncludingArchive(orderId)
+                .orElseThrow(() -> new EntityNotFoundException("Shipment not found for orderId: " + orderId));
+    }
+
     /**
      * Persists a new shipment document.
      *
@@ -56,31 +106,138 @@ public class ShipmentService {
         shipmentRepository.save(shipment);
     }
 
+    /**
+     * Checks whether a shipment was already created for an order, e.g. before handling a redelivered payment.
+     *
+     * @param orderId the ID of the order
+     * @return true if a shipment carries the order
+     */
+    public boolean hasShipment(final long orderId) {
+        return shipmentRepository.existsByOrderId(orderId);
+    }
+
     /**
      * Ships an order by changing its status to IN_TRANSIT and sending an ORDER_STATUS_UPDATES_TOPIC Kafka event.
+     * <p>
+     * When the order is part of a consolidated shipment the whole shipment is shipped and every order
+     * it carries receives its own event.
+     * </p>
+     * <p>
+     * When carrier labels are enabled, the label is requested through the batched {@link CarrierLabelClient}
+     * and the shipment is marked IN_TRANSIT with the carrier's tracking number once the label arrives,
+     * without blocking the caller. The request is recorded on the shipment first, so shipping the order again
+     * while it is in flight neither requests a second label nor publishes a second event. A request that fails
+     * after every attempt of the client is recorded as a failure and ended, so shipping the order again retries
+     * it; after {@code shipping.carrier.labels.max-label-failures} failures the shipment is marked FAILED.
+     * </p>
+     * <p>
+     * The call, up to requesting the label, is covered by a {@link ServiceCallEvent}.
+     * </p>
      *
      * @param orderId the ID of the order to ship
+     * @throws EntityNotFoundException if no active shipment carries the order
+     * @throws ErrorResponseException  with a {@code 409} if the shipment is not PENDING
      */
     public void shipOrder(final long orderId) {
-        Shipment shipment = shipmentRepository.getShipmentsByOrderId(orderId)
-                .orElseThrow(() -> new EntityNotFoundException("Shipment not found for orderId: " + orderId));
+        ServiceCallEvent event = ServiceCallEvent.start();
+        try {
+            // Archived shipments are finished, so only the hot collection holds shipments that can still ship
+            Shipment shipment = shipmentRepository.getShipmentsByOrderId(orderId).stream().findFirst()
+                    .orElseThrow(() -> new EntityNotFoundException("Shipment not found for orderId: " + orderId));
 
-        if ( shipment.isInTransit() ) {
-            logger.warn("Shipment with orderId {} is not in PENDING status. Current status: {}", orderId, shipment.getShipmentStatus());
-            return;
+            if (shipment.getShipmentStatus() != ShipmentStatus.PENDING) {
+                logger.warn("Shipment with orderId {} is not in PENDING status. Current status: {}", orderId, shipment.getShipmentStatus());
+                ErrorResponseException notPending = new ErrorResponseException(HttpStatus.CONFLICT);
+                notPending.setDetail("Shipment for orderId " + orderId + " is " + shipment.getShipmentStatus()
+                        + ", only PENDING shipments can be shipped");
+                throw notPending;
+            }
+
+            if (carrierLabelClient == null) {
+                markShipped(orderId, shipment);
+                return;
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            if (!shipmentRepository.claimLabelRequest(
+                    orderId, now, now.minus(Duration.ofMillis(labelProperties.getInFlightTimeoutMs())))) {
+                logger.info("A label for orderId {} is already being requested", orderId);
+                return;
+            }
+
+            carrierLabelClient.requestLabel(LabelRequest.builder()
+                            .shippingId(shipment.getShippingId())
+                            .orderId(orderId)
+                            .carrier(shipment.getCarrier())
+                            .customerName(shipment.getCustomerName())
+                            .customerAddress(shipment.getCustomerAddress())
+                            .build())
+                    .whenComplete((label, error) -> {
+                        if (error != null) {
+                            labelFailed(orderId, shipment, error);
+                            return;
+                        }
+                        shipment.setTrackingNumber(label.getTrackingNumber());
+                        markShipped(orderId, shipment);
+                    });
+        } finally {
+            event.complete("ShipmentService.shipOrder", orderId);
+        }
+    }
+
+    /**
+     * Ends a failed label request, failing the shipment once too many requests failed.
+     *
+     * @param orderId  the ID of the order the shipment was looked up by
+     * @param shipment the shipment whose label was requested
+     * @param error    the error the request failed with
+     */
+    private void labelFailed(final long orderId, final Shipment shipment, final Throwable error) {
+        if (shipmentRepository.releaseFailedLabelRequest(
+                orderId, labelProperties.getMaxLabelFailures(), LocalDateTime.now())) {
+            logger.error("Could not get a label from {} for orderId {} after {} requests, shipment FAILED",
+                    shipment.getCarrier(), orderId, labelProperties.getMaxLabelFailures(), error);
+        } else {
+            logger.warn("Could not get a label from {} for orderId {}, shipping it again retries: {}",
+                    shipment.getCarrier(), orderId, error.toString());
         }
+    }
 
-        updateShipment(orderId, ShipmentStatus.IN_TRANSIT, shipment);
-        publishShipmentEvent(shipment.getShippingId(), orderId);
+    /**
+     * Moves a PENDING shipment to IN_TRANSIT and publishes a shipment event for every order it carries. A shipment
+     * shipped or failed concurrently is left as it is, without events.
+     *
+     * @param orderId  the ID of the order the shipment was looked up by
+     * @param shipment the shipment being shipped
+     */
+    private void markShipped(final long orderId, final Shipment shipment) {
+        long updated = shipmentRepository.updateStatusByOrderIdAndStatus(orderId, ShipmentStatus.PENDING,
+                ShipmentStatus.IN_TRANSIT, shipment.getTrackingNumber(), LocalDateTime.now());
+        if (updated == 0) {
+            logger.warn("Shipment with orderId {} is no longer PENDING, not shipping it again", orderId);
+            return;
+        }
+        List<Long> orderIds = shipment.getOrderIds() == null ? List.of(orderId) : shipment.getOrderIds();
+        for (long shippedOrderId : orderIds) {
+            publishShipmentEvent(shipment, shippedOrderId);
+        }
     }
 
     /**
-     * Sends a Kafka message to notify that the order has been shipped.
+     * Sends a Kafka message to notify that the order has been shipped, stamped with the order's lifecycle
+     * origin and with the shipment's creation as the start of the shipping stage.
      *
-     * @param orderId the ID of the order whose shipment status is updated
+     * @param shipment the shipment carrying the order
+     * @param orderId  the ID of the order whose shipment status is updated
      */
-    public void publishShipmentEvent(final String shipmentId, final long orderId) {
-        shipmentKafkaTemplate.send(SHIPMENT_TOPIC, new ShipmentEvent(shipmentId, orderId, ShipmentStatus.IN_TRANSIT));
+    public void publishShipmentEvent(final Shipment shipment, final long orderId) {
+        shipmentKafkaTemplate.send(LifecycleHeaders.record(
+                SHIPMENT_TOPIC,
+                orderId,
+                new ShipmentEvent(shipment.getShippingId(), orderId, ShipmentStatus.IN_TRANSIT),
+                shipment.originTimestampOf(orderId),
+                LifecycleHeaders.epochMillis(shipment.getCreatedAt())
+        ));
     }
 
 
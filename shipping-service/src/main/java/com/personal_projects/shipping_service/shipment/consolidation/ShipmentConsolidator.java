@@ -0,0 +1,226 @@
+package com.personal_projects.shipping_service.shipment.consolidation;
+
+import com.personal_projects.common.Events.PaymentEvent;
+import com.personal_projects.shipping_service.carrier.CarrierAssignment;
+import com.personal_projects.shipping_service.carrier.CarrierSelectionEngine;
+import com.personal_projects.shipping_service.data.entity.ConsolidationBuffer;
+import com.personal_projects.shipping_service.data.entity.Shipment;
+import com.personal_projects.shipping_service.shipment.ShipmentRepository;
+import com.personal_projects.shipping_service.util.ShipmentMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Consolidates paid orders of the same customer and destination into a single shipment.
+ * <p>
+ * Each paid order is appended to the open {@link ConsolidationBuffer} for its customer and address. Once a
+ * buffer is older than {@code shipping.consolidation.window-ms} it is sealed, turned into one shipment
+ * carrying every buffered order, and deleted. Buffers live in MongoDB, so orders waiting for their window
+ * survive restarts.
+ * </p>
+ * <p>
+ * Every instance flushes, so a buffer is claimed before it is turned into a shipment: sealing it records the
+ * instance as its {@code owner} for {@code shipping.consolidation.lease-ms}. A buffer still sealed when its
+ * lease runs out, because its owner stopped or failed halfway, is claimed again by the next flush of any
+ * instance. The unique {@code orderIds} index of the shipments keeps a second claim from creating a second
+ * shipment, and orders that already have one are left out of the consolidated shipment.
+ * </p>
+ * <p>
+ * Enabled with {@code shipping.consolidation.enabled=true}. The consolidation ratio is published as the
+ * {@code shipping.consolidation.orders.per.shipment} distribution and the delay added to each order as the
+ * {@code shipping.consolidation.added.latency} timer.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "shipping.consolidation.enabled", havingValue = "true")
+public class ShipmentConsolidator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShipmentConsolidator.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final ShipmentRepository shipmentRepository;
+    private final CarrierSelectionEngine carrierSelectionEngine;
+    private final Duration window;
+    private final Duration lease;
+    private final String owner = UUID.randomUUID().toString();
+
+    private final Counter bufferedOrders;
+    private final DistributionSummary ordersPerShipment;
+    private final Timer addedLatency;
+
+    /**
+     * Constructs the consolidator.
+     *
+     * @param mongoTemplate          template used to store the consolidation buffers
+     * @param shipmentRepository     repository the consolidated shipments are saved to
+     * @param carrierSelectionEngine engine assigning a carrier to consolidated shipments
+     * @param meterRegistry          registry for the consolidation metrics
+     * @param windowMillis           how long orders are buffered before their shipment is created
+     * @param leaseMillis            how long a claimed buffer is left to its owner before others may claim it
+     */
+    public ShipmentConsolidator(MongoTemplate mongoTemplate,
+                                ShipmentRepository shipmentRepository,
+                                CarrierSelectionEngine carrierSelectionEngine,
+                                MeterRegistry meterRegistry,
+                                @Value("${shipping.consolidation.window-ms:120000}") long windowMillis,
+                                @Value("${shipping.consolidation.lease-ms:30000}") long leaseMillis) {
+        this.mongoTemplate = mongoTemplate;
+        this.shipmentRepository = shipmentRepository;
+        this.carrierSelectionEngine = carrierSelectionEngine;
+        this.window = Duration.ofMillis(windowMillis);
+        this.lease = Duration.ofMillis(leaseMillis);
+
+        this.bufferedOrders = Counter.builder("shipping.consolidation.buffered.orders")
+                .description("Paid orders added to a consolidation buffer")
+                .register(meterRegistry);
+        this.ordersPerShipment = DistributionSummary.builder("shipping.consolidation.orders.per.shipment")
+                .description("Orders carried by each consolidated shipment")
+                .register(meterRegistry);
+        this.addedLatency = Timer.builder("shipping.consolidation.added.latency")
+                .description("Time an order waited in a consolidation buffer")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Adds a paid order to the open buffer of its customer and destination, opening one if needed. A redelivered
+     * payment of an order that is already buffered, or already has its shipment, is ignored.
+     *
+     * @param paymentEvent    the successful payment event of the order
+     * @param originTimestamp epoch millis at which the order was created
+     */
+    public void buffer(PaymentEvent paymentEvent, long originTimestamp) {
+        long orderId = paymentEvent.getOrderId();
+        // Buffers first: a buffer is only deleted once its shipment is saved, so the order is seen in either
+        if (mongoTemplate.exists(Query.query(Criteria.where("orders.orderId").is(orderId)), ConsolidationBuffer.class)
+                || shipmentRepository.existsByOrderId(orderId)) {
+            logger.debug("Order {} is already consolidated, ignoring the redelivered payment", orderId);
+            return;
+        }
+        String key = consolidationKey(paymentEvent.getCustomerName(), paymentEvent.getCustomerAddress());
+        LocalDateTime now = LocalDateTime.now();
+
+        Query openBuffer = Query.query(Criteria.where("key").is(key).and("sealed").is(false));
+        Update update = new Update()
+                .setOnInsert("customerName", paymentEvent.getCustomerName())
+                .setOnInsert("customerAddress", paymentEvent.getCustomerAddress())
+                .setOnInsert("windowStart", now)
+                .push("orders", new ConsolidationBuffer.BufferedOrder(
+                        paymentEvent.getOrderId(), paymentEvent.getPaymentId(), now, originTimestamp));
+
+        try {
+            mongoTemplate.upsert(openBuffer, update, ConsolidationBuffer.class);
+        } catch (DuplicateKeyException e) {
+            // Another thread opened the buffer concurrently; it exists now, so the retry appends to it.
+            mongoTemplate.upsert(openBuffer, update, ConsolidationBuffer.class);
+        }
+        bufferedOrders.increment();
+        logger.debug("Buffered order {} for consolidation under key {}", paymentEvent.getOrderId(), key);
+    }
+
+    /**
+     * Turns every buffer whose window has elapsed into a shipment. Buffers whose owner let its lease run out
+     * are finished first.
+     */
+    @Scheduled(fixedDelayString = "${shipping.consolidation.flush-interval-ms:1000}")
+    public void flushExpiredBuffers() {
+        LocalDateTime now = LocalDateTime.now();
+        Query abandoned = Query.query(Criteria.where("sealed").is(true).and("leaseUntil").not().gt(now));
+        Query expired = Query.query(Criteria.where("sealed").is(false).and("windowStart").lte(now.minus(window)));
+
+        ConsolidationBuffer buffer;
+        while ((buffer = claim(abandoned)) != null) {
+            createShipment(buffer);
+        }
+        while ((buffer = claim(expired)) != null) {
+            createShipment(buffer);
+        }
+    }
+
+    /**
+     * Seals one buffer matching the query and leases it to this instance.
+     *
+     * @return the claimed buffer, or {@code null} if none is left
+     */
+    private ConsolidationBuffer claim(Query query) {
+        Update claim = new Update()
+                .set("sealed", true)
+                .set("owner", owner)
+                .set("leaseUntil", LocalDateTime.now().plus(lease));
+        return mongoTemplate.findAndModify(query, claim, FindAndModifyOptions.options().returnNew(true),
+                ConsolidationBuffer.class);
+    }
+
+    /**
+     * Creates the shipment for a claimed buffer and deletes the buffer. Orders that already have a shipment,
+     * because an earlier claim stopped between the two steps, are left out; if none is left only the buffer is
+     * deleted.
+     */
+    private void createShipment(ConsolidationBuffer buffer) {
+        List<Long> bufferedIds = buffer.getOrders().stream().map(ConsolidationBuffer.BufferedOrder::getOrderId).toList();
+        Query shipped = Query.query(Criteria.where("orderIds").in(bufferedIds));
+        shipped.fields().include("orderIds");
+        Set<Long> shippedIds = new HashSet<>();
+        mongoTemplate.find(shipped, Shipment.class).forEach(shipment -> shippedIds.addAll(shipment.getOrderIds()));
+        buffer.setOrders(buffer.getOrders().stream()
+                .filter(order -> !shippedIds.contains(order.getOrderId()))
+                .toList());
+
+        if (!buffer.getOrders().isEmpty()) {
+            Shipment shipment = ShipmentMapper.mapConsolidationBufferToShipment(buffer, carrierSelectionEngine);
+            try {
+                shipmentRepository.insert(shipment);
+            } catch (RuntimeException e) {
+                carrierSelectionEngine.release(
+                        new CarrierAssignment(shipment.getCarrier(), shipment.getEstimatedDeliveryDate()),
+                        shipment.getCreatedAt());
+                if (e instanceof DuplicateKeyException) {
+                    // Another claim shipped some of the orders meanwhile; the buffer is retried once the lease ends
+                    logger.warn("Orders of buffer {} were shipped concurrently, retrying after its lease", buffer.getId());
+                    return;
+                }
+                throw e;
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            ordersPerShipment.record(shipment.getOrderIds().size());
+            buffer.getOrders().forEach(order -> addedLatency.record(Duration.between(order.getBufferedAt(), now)));
+            logger.info("Consolidated orders {} into shipment {}", shipment.getOrderIds(), shipment.getShippingId());
+        }
+        mongoTemplate.remove(Query.query(Criteria.where("_id").is(buffer.getId()).and("owner").is(owner)),
+                ConsolidationBuffer.class);
+    }
+
+    /**
+     * Builds the key grouping orders that can travel together: same customer, same normalized address.
+     */
+    static String consolidationKey(String customerName, String customerAddress) {
+        return normalize(customerName) + "|" + normalize(customerAddress);
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,11 +1,24 @@
 package com.personal_projects.shipping_service.shipment.kafka;
 
+import com.personal_projects.common.Enums.OrderStatus;
 import com.personal_projects.common.Events.PaymentEvent;
-import com.personal_projects.common.Events.ShipmentEvent;
+import com.personal_projects.common.Flight.KafkaRecordEvent;
+import com.personal_projects.common.Lifecycle.LifecycleHeaders;
+import com.personal_projects.common.Lifecycle.LifecycleLatencyRecorder;
+import com.personal_projects.common.Retry.RetryTopics;
+import com.personal_projects.common.Retry.RetryableListener;
+import com.personal_projects.shipping_service.carrier.CarrierAssignment;
+import com.personal_projects.shipping_service.carrier.CarrierSelectionEngine;
 import com.personal_projects.shipping_service.data.entity.Shipment;
 import com.personal_projects.shipping_service.shipment.ShipmentService;
+import com.personal_projects.shipping_service.shipment.consolidation.ShipmentConsolidator;
 import com.personal_projects.shipping_service.util.ShipmentMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.annotation.DltHandler;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
 
@@ -20,31 +33,102 @@ import static com.personal_projects.common.Configs.KafkaConfigs.PAYMENT_TOPIC;
 @Component
 public class ShipmentKafkaListener {
 
+    private static final Logger logger = LoggerFactory.getLogger(ShipmentKafkaListener.class);
+
     private final ShipmentService shipmentService;
+    private final CarrierSelectionEngine carrierSelectionEngine;
+    private final ShipmentConsolidator shipmentConsolidator;
+    private final LifecycleLatencyRecorder latencyRecorder;
 
     /**
      * Constructs a new {@code ShipmentKafkaListener} with the given {@link ShipmentService}.
      *
-     * @param shipmentService the service responsible for shipment business logic
+     * @param shipmentService        the service responsible for shipment business logic
+     * @param carrierSelectionEngine the engine assigning a carrier and delivery estimate to new shipments
+     * @param shipmentConsolidator   the consolidation stage, available when consolidation is enabled
+     * @param latencyRecorder        the recorder for order lifecycle latencies
      */
     @Autowired
-    public ShipmentKafkaListener(final ShipmentService shipmentService) {
+    public ShipmentKafkaListener(final ShipmentService shipmentService,
+                                 final CarrierSelectionEngine carrierSelectionEngine,
+                                 final ObjectProvider<ShipmentConsolidator> shipmentConsolidator,
+                                 final LifecycleLatencyRecorder latencyRecorder) {
         this.shipmentService = shipmentService;
+        this.carrierSelectionEngine = carrierSelectionEngine;
+        this.shipmentConsolidator = shipmentConsolidator.getIfAvailable();
+        this.latencyRecorder = latencyRecorder;
     }
 
     /**
      * Kafka listener method that is invoked when a {@link PaymentEvent} is received from the configured topic.
-     * It processes the payment event and creates a shipment using the shipment service.
+     * It creates a shipment for successful payments, with a carrier chosen by the {@link CarrierSelectionEngine}.
+     * Failed payments are ignored so they do not consume carrier capacity, and so are payments redelivered after
+     * their shipment was created. The capacity of a shipment that could not be saved is released before the record
+     * is retried. When consolidation is enabled the
+     * order is buffered instead, and its shipment is created once the consolidation window has elapsed.
+     * The lifecycle origin of the order is kept on the shipment so the shipment events can carry it on.
+     * The handling is covered by a {@link KafkaRecordEvent}.
+     * <p>
+     * A record that fails, e.g. on a Mongo timeout, is retried from the {@code payment-topic-shipping-retry-*}
+     * topics with an exponential backoff, then dead-lettered to {@code payment-topic-shipping-dlt}.
+     * </p>
      *
-     * @param paymentEvent the payment event received from Kafka
+     * @param record the payment event record received from Kafka
      */
+    @RetryableListener(
+            retryTopicSuffix = "-shipping" + RetryTopics.RETRY_SUFFIX,
+            dltTopicSuffix = "-shipping" + RetryTopics.DLT_SUFFIX)
     @KafkaListener(
+            id = "shipment-payment-listener",
             topics = PAYMENT_TOPIC,
             groupId = "shipment-service-group",
             containerFactory = "shipmentKafkaListenerContainerFactory"
     )
-    void listener(PaymentEvent paymentEvent) {
-        System.out.println("Listener Received: " + paymentEvent);
-        shipmentService.createShipment(ShipmentMapper.mapPaymentEventToShipment(paymentEvent));
+    void listener(ConsumerRecord<String, PaymentEvent> record) {
+        KafkaRecordEvent event = KafkaRecordEvent.start();
+        PaymentEvent paymentEvent = record.value();
+        logger.debug("Listener Received: {}", paymentEvent);
+        OrderStatus stage = paymentEvent.paymentWasSuccessful() ? OrderStatus.PAID : OrderStatus.FAILED;
+        latencyRecorder.record(record, stage.name());
+        try {
+            if (stage == OrderStatus.FAILED) {
+                return;
+            }
+            long originTimestamp = LifecycleHeaders.originMillis(record.headers());
+            if (shipmentConsolidator != null) {
+                shipmentConsolidator.buffer(paymentEvent, originTimestamp);
+                return;
+            }
+            if (shipmentService.hasShipment(paymentEvent.getOrderId())) {
+                logger.debug("Shipment for orderId {} already exists, ignoring the redelivered payment",
+                        paymentEvent.getOrderId());
+                return;
+            }
+            Shipment shipment =
+                    ShipmentMapper.mapPaymentEventToShipment(paymentEvent, originTimestamp, carrierSelectionEngine);
+            try {
+                shipmentService.createShipment(shipment);
+            } catch (RuntimeException e) {
+                carrierSelectionEngine.release(
+                        new CarrierAssignment(shipment.getCarrier(), shipment.getEstimatedDeliveryDate()),
+                        shipment.getCreatedAt());
+                throw e;
+            }
+        } finally {
+            event.complete("shipment-payment-listener", record, paymentEvent.getOrderId(), stage.name());
+        }
+    }
+
+    /**
+     * Logs a payment event record dead-lettered after its last attempt, or straight away when it could not be
+     * deserialized. It stays in the dead-letter topic until replayed through {@code /actuator/deadletters}.
+     * A record that cannot be read here either is logged by the container and skipped, rather than dead-lettered
+     * again.
+     *
+     * @param record the dead-lettered record
+     */
+    @DltHandler
+    void deadLetter(ConsumerRecord<String, PaymentEvent> record) {
+        logger.error("Dead-lettered payment event {}", RetryTopics.describe(record));
     }
 }
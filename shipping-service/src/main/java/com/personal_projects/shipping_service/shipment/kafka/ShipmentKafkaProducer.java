@@ -3,8 +3,11 @@ package com.personal_projects.shipping_service.shipment.kafka;
 
 import com.personal_projects.common.Events.PaymentEvent;
 import com.personal_projects.common.Events.ShipmentEvent;
+import com.personal_projects.common.Journal.EventJournal;
+import com.personal_projects.common.Journal.JournalProducerListener;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -61,11 +64,15 @@ public class ShipmentKafkaProducer {
     /**
      * Creates a {@link KafkaTemplate} bean to send {@link ShipmentEvent} messages to Kafka.
      *
+     * @param eventJournal the journal of the produced records, available when journaling is enabled
      * @return a Kafka template for sending {@code ShipmentEvent} messages
      */
     @Bean
-    public KafkaTemplate<String, ShipmentEvent> shipmentKafkaTemplate() {
-        return new KafkaTemplate<>(shipmentProducerFactory());
+    public KafkaTemplate<String, ShipmentEvent> shipmentKafkaTemplate(ObjectProvider<EventJournal> eventJournal) {
+        KafkaTemplate<String, ShipmentEvent> kafkaTemplate = new KafkaTemplate<>(shipmentProducerFactory());
+        kafkaTemplate.setObservationEnabled(true); // Propagates the trace context in the record headers
+        eventJournal.ifAvailable(journal -> kafkaTemplate.setProducerListener(new JournalProducerListener<>(journal)));
+        return kafkaTemplate;
     }
 }
 
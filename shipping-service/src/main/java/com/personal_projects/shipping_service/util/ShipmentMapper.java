@@ -3,38 +3,92 @@ package com.personal_projects.shipping_service.util;
 import com.personal_projects.common.Enums.ShipmentStatus;
 import com.personal_projects.common.Events.PaymentEvent;
 import com.personal_projects.common.Events.ShipmentEvent;
+import com.personal_projects.common.Flight.MappingEvent;
+import com.personal_projects.shipping_service.carrier.CarrierAssignment;
+import com.personal_projects.shipping_service.carrier.CarrierSelectionEngine;
+import com.personal_projects.shipping_service.data.entity.ConsolidationBuffer;
 import com.personal_projects.shipping_service.data.entity.Shipment;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public class ShipmentMapper {
 
-    public static Shipment mapPaymentEventToShipment(PaymentEvent paymentEvent) {
+    public static Shipment mapPaymentEventToShipment(PaymentEvent paymentEvent,
+                                                     long originTimestamp,
+                                                     CarrierSelectionEngine carrierSelectionEngine) {
+        MappingEvent mapping = MappingEvent.start();
         LocalDateTime now = LocalDateTime.now();
+        CarrierAssignment assignment = carrierSelectionEngine.assign(paymentEvent.getCustomerAddress(), now);
 
-        return Shipment.builder()
+        Shipment shipment = Shipment.builder()
                 .orderId(paymentEvent.getOrderId())
+                .orderIds(List.of(paymentEvent.getOrderId()))
                 .paymentId(paymentEvent.getPaymentId())
-                .carrier("DEFAULT_CARRIER")
+                .customerName(paymentEvent.getCustomerName())
+                .customerAddress(paymentEvent.getCustomerAddress())
+                .carrier(assignment.getCarrier())
                 .trackingNumber(generateTrackingNumber())
-                .estimatedDeliveryDate(estimateDeliveryDate())
+                .estimatedDeliveryDate(assignment.getEstimatedDeliveryDate())
                 .shipmentStatus(ShipmentStatus.PENDING)
                 .createdAt(now)
                 .updatedAt(now)
+                .originTimestamp(originTimestamp)
                 .build();
+        mapping.complete("ShipmentMapper.mapPaymentEventToShipment", paymentEvent.getOrderId());
+        return shipment;
+    }
+
+    /**
+     * Builds one shipment carrying every order of a consolidation buffer.
+     *
+     * @param buffer                 the sealed consolidation buffer
+     * @param carrierSelectionEngine the engine assigning a carrier and delivery estimate
+     * @return the consolidated shipment
+     */
+    public static Shipment mapConsolidationBufferToShipment(ConsolidationBuffer buffer,
+                                                            CarrierSelectionEngine carrierSelectionEngine) {
+        MappingEvent mapping = MappingEvent.start();
+        LocalDateTime now = LocalDateTime.now();
+        CarrierAssignment assignment = carrierSelectionEngine.assign(buffer.getCustomerAddress(), now);
+        Map<Long, Long> origins = new LinkedHashMap<>();
+        for (ConsolidationBuffer.BufferedOrder order : buffer.getOrders()) {
+            origins.putIfAbsent(order.getOrderId(), order.getOriginTimestamp());
+        }
+        List<Long> orderIds = List.copyOf(origins.keySet());
+        List<Long> originTimestamps = List.copyOf(origins.values());
+
+        Shipment shipment = Shipment.builder()
+                .orderId(orderIds.get(0))
+                .orderIds(orderIds)
+                .paymentId(buffer.getOrders().get(0).getPaymentId())
+                .customerName(buffer.getCustomerName())
+                .customerAddress(buffer.getCustomerAddress())
+                .carrier(assignment.getCarrier())
+                .trackingNumber(generateTrackingNumber())
+                .estimatedDeliveryDate(assignment.getEstimatedDeliveryDate())
+                .shipmentStatus(ShipmentStatus.PENDING)
+                .createdAt(now)
+                .updatedAt(now)
+                .originTimestamp(originTimestamps.get(0))
+                .originTimestamps(originTimestamps)
+                .build();
+        mapping.complete("ShipmentMapper.mapConsolidationBufferToShipment", orderIds.get(0));
+        return shipment;
     }
 
     public static ShipmentEvent mapShipmentToShipmentEvent(Shipment shipment) {
-        return ShipmentEvent.builder()
+        MappingEvent mapping = MappingEvent.start();
+        ShipmentEvent event = ShipmentEvent.builder()
                 .shipmentId(shipment.getShippingId())
                 .orderId(shipment.getOrderId())
                 .shipmentStatus(shipment.getShipmentStatus())
                 .build();
-    }
-
-    private static LocalDateTime estimateDeliveryDate() {
-        return LocalDateTime.now().plusDays(3);
+        mapping.complete("ShipmentMapper.mapShipmentToShipmentEvent", shipment.getOrderId());
+        return event;
     }
 
     private static String generateTrackingNumber() {
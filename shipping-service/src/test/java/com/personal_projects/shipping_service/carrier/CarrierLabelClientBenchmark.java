@@ -0,0 +1,97 @@
+package com.personal_projects.shipping_service.carrier;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.personal_projects.shipping_service.carrier.label.CarrierLabelClient;
+import com.personal_projects.shipping_service.carrier.label.CarrierLabelProperties;
+import com.personal_projects.shipping_service.carrier.label.LabelRequest;
+import com.personal_projects.shipping_service.carrier.stub.StubCarrierServer;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Offline throughput and tail-latency benchmark of the {@link CarrierLabelClient} against a local
+ * {@link StubCarrierServer}.
+ * <p>
+ * Requests are issued open-loop at a fixed rate and latency is measured from each request's scheduled
+ * start, so a stalled client shows up as latency instead of silently lowering the offered load.
+ * Run from the shipping-service module with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.personal_projects.shipping_service.carrier.CarrierLabelClientBenchmark
+ * -Dexec.args="<requests> <requestsPerSecond> <batchSize> <hedgeDelayMs>"}.
+ * </p>
+ */
+public class CarrierLabelClientBenchmark {
+
+    private static final String[] CARRIERS = {"DHL", "UPS", "FEDEX"};
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int ratePerSecond = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+        int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        long hedgeDelayMs = args.length > 3 ? Long.parseLong(args[3]) : 100;
+
+        try (StubCarrierServer stub = new StubCarrierServer(0, 20, 10, 0.01, 1000)) {
+            CarrierLabelProperties properties = new CarrierLabelProperties();
+            properties.setDefaultEndpoint("http://localhost:" + stub.getPort() + "/labels");
+            properties.setBatchSize(batchSize);
+            properties.setHedgeDelayMs(hedgeDelayMs);
+
+            try (CarrierLabelClient client = new CarrierLabelClient(properties, new ObjectMapper())) {
+                run(client, 2_000, ratePerSecond);   // warm-up
+                long[] latencies = run(client, requests, ratePerSecond);
+                report(requests, ratePerSecond, batchSize, hedgeDelayMs, latencies, stub.getIssuedLabels());
+            }
+        }
+    }
+
+    private static long[] run(CarrierLabelClient client, int requests, int ratePerSecond) {
+        long[] latencies = new long[requests];
+        AtomicLong failures = new AtomicLong();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[requests];
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long start = System.nanoTime();
+
+        for (int i = 0; i < requests; i++) {
+            long intendedStart = start + i * intervalNanos;
+            long wait = intendedStart - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            int index = i;
+            futures[i] = client.requestLabel(LabelRequest.builder()
+                            .shippingId("bench-" + System.nanoTime() + "-" + i)
+                            .orderId(i)
+                            .carrier(CARRIERS[i % CARRIERS.length])
+                            .customerName("Benchmark Customer")
+                            .customerAddress("Rua Augusta 10, 1100-053 Lisboa")
+                            .build())
+                    .whenComplete((label, error) -> {
+                        latencies[index] = System.nanoTime() - intendedStart;
+                        if (error != null) {
+                            failures.incrementAndGet();
+                        }
+                    });
+        }
+        CompletableFuture.allOf(futures).exceptionally(error -> null).join();
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("completed %d requests in %.2fs (%.0f req/s), %d failed%n",
+                requests, elapsed / 1e9, requests / (elapsed / 1e9), failures.get());
+        return latencies;
+    }
+
+    private static void report(int requests, int rate, int batchSize, long hedgeDelayMs,
+                               long[] latencies, long issuedLabels) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        System.out.printf("requests=%d rate=%d/s batchSize=%d hedgeDelay=%dms labelsIssuedByStub=%d%n",
+                requests, rate, batchSize, hedgeDelayMs, issuedLabels);
+        for (double percentile : new double[]{50, 90, 99, 99.9, 100}) {
+            int index = Math.min(sorted.length - 1, (int) Math.ceil(percentile / 100 * sorted.length) - 1);
+            System.out.printf("  p%-5s %8.2f ms%n", percentile, sorted[Math.max(0, index)] / 1e6);
+        }
+    }
+}
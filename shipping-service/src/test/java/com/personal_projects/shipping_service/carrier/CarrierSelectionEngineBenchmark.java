@@ -0,0 +1,75 @@
+package com.personal_projects.shipping_service.carrier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the carrier lookup path used by the shipment listener.
+ * <p>
+ * Run from the shipping-service module with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.personal_projects.shipping_service.carrier.CarrierSelectionEngineBenchmark}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CarrierSelectionEngineBenchmark {
+
+    private static final String[] ADDRESSES = {
+            "Rua Augusta 10, 1100-053 Lisboa",
+            "Avenida da Boavista 1200, 4100-130 Porto",
+            "Largo da Se, 3000-383 Coimbra",
+            "Rua de Santo Antonio 5, 8000-283 Faro",
+            "No postal code at all",
+            null
+    };
+
+    private TransitTableCarrierEngine engine;
+    private LocalDateTime shipDate;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        engine = new TransitTableCarrierEngine(null, new ClassPathResource("carrier/transit-table.txt"));
+        shipDate = LocalDateTime.now();
+    }
+
+    @Benchmark
+    public CarrierAssignment assign() {
+        String address = ADDRESSES[next++ % ADDRESSES.length];
+        return engine.assign(address, shipDate);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public CarrierAssignment assignContended() {
+        return engine.assign(ADDRESSES[0], shipDate);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CarrierSelectionEngineBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
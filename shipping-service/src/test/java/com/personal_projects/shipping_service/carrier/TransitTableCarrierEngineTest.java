@@ -0,0 +1,90 @@
+package com.personal_projects.shipping_service.carrier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Assigns carriers through the engine, checking how their daily capacity is used, released, rolled over at
+ * midnight and kept across reloads.
+ */
+class TransitTableCarrierEngineTest {
+
+    private static final String ADDRESS = "Rua Augusta 10, 1100-053 Lisboa";
+    private static final LocalDateTime TODAY = LocalDateTime.now();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void fallsBackToTheNextFastestCarrierWhenTheFastestIsFull() throws IOException {
+        TransitTableCarrierEngine engine = engine(table(2));
+
+        assertEquals("DHL", engine.assign(ADDRESS, TODAY).getCarrier());
+        assertEquals("DHL", engine.assign(ADDRESS, TODAY).getCarrier());
+        CarrierAssignment third = engine.assign(ADDRESS, TODAY);
+        assertEquals("UPS", third.getCarrier());
+        assertEquals(TODAY.plusDays(2), third.getEstimatedDeliveryDate());
+    }
+
+    @Test
+    void startsAFreshLedgerWhenTheDayRollsOver() throws IOException {
+        TransitTableCarrierEngine engine = engine(table(1));
+
+        assertEquals("DHL", engine.assign(ADDRESS, TODAY).getCarrier());
+        assertEquals("UPS", engine.assign(ADDRESS, TODAY).getCarrier());
+        assertEquals("DHL", engine.assign(ADDRESS, TODAY.plusDays(1)).getCarrier());
+        assertEquals("UPS", engine.assign(ADDRESS, TODAY.plusDays(1)).getCarrier());
+    }
+
+    @Test
+    void releasedCapacityCanBeAssignedAgain() throws IOException {
+        TransitTableCarrierEngine engine = engine(table(1));
+
+        CarrierAssignment unsaved = engine.assign(ADDRESS, TODAY);
+        engine.release(unsaved, TODAY);
+        assertEquals("DHL", engine.assign(ADDRESS, TODAY).getCarrier());
+        // Releasing on another day leaves today's ledger alone
+        engine.release(unsaved, TODAY.minusDays(1));
+        assertEquals("UPS", engine.assign(ADDRESS, TODAY).getCarrier());
+    }
+
+    @Test
+    void keepsTheCapacityUsedTodayAcrossReloads() throws IOException {
+        Path file = Files.writeString(directory.resolve("transit-table.txt"), table(2));
+        TransitTableCarrierEngine engine = new TransitTableCarrierEngine(file, new ByteArrayResource(new byte[0]));
+        assertEquals("DHL", engine.assign(ADDRESS, LocalDateTime.now()).getCarrier());
+        assertEquals("DHL", engine.assign(ADDRESS, LocalDateTime.now()).getCarrier());
+
+        Files.writeString(file, table(3));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+        engine.reloadIfModified();
+
+        assertEquals("DHL", engine.assign(ADDRESS, LocalDateTime.now()).getCarrier());
+        assertEquals("UPS", engine.assign(ADDRESS, LocalDateTime.now()).getCarrier());
+    }
+
+    private static TransitTableCarrierEngine engine(String table) throws IOException {
+        return new TransitTableCarrierEngine(null, new ByteArrayResource(table.getBytes()));
+    }
+
+    private static String table(int dhlCapacity) {
+        return """
+                prefix-digits 1
+                carrier DHL %d
+                carrier UPS 100
+                zone 1 1
+                transit 0 DHL 3
+                transit 1 DHL 1
+                transit 1 UPS 2
+                """.formatted(dhlCapacity);
+    }
+}
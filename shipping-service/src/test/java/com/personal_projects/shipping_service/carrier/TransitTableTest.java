@@ -0,0 +1,97 @@
+package com.personal_projects.shipping_service.carrier;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Parses transit tables and resolves the zones of addresses against them.
+ */
+class TransitTableTest {
+
+    private static final String TABLE = """
+            # comment line
+            prefix-digits 2
+            default-zone 0
+
+            carrier DHL 10
+            carrier UPS 5     # trailing comment
+            zone 0 00-99
+            zone 1 10-19 25
+            zone 2 15
+            transit 0 DHL 3
+            transit 1 UPS 1
+            transit 1 DHL 2
+            transit 2 DHL 4
+            """;
+
+    @Test
+    void parsesCarriersZonesAndRankings() throws IOException {
+        TransitTable table = parse(TABLE);
+
+        assertEquals(2, table.prefixDigits);
+        assertArrayEquals(new String[]{"DHL", "UPS"}, table.carriers);
+        assertArrayEquals(new int[]{10, 5}, table.dailyCapacity);
+        assertEquals(1, table.zoneByPrefix[10]);
+        assertEquals(1, table.zoneByPrefix[25]);
+        assertEquals(0, table.zoneByPrefix[20]);
+        // UPS is the faster carrier of zone 1, zone 2 is only served by DHL
+        assertEquals(1, table.rankedCarriers[2]);
+        assertEquals(0, table.rankedCarriers[3]);
+        assertEquals(0, table.rankedCarriers[4]);
+        assertEquals(-1, table.rankedCarriers[5]);
+        assertEquals(TransitTable.NOT_SERVED, table.transitDays[2 * 2 + 1]);
+    }
+
+    @Test
+    void overlappingPrefixesBelongToTheLastZoneListingThem() throws IOException {
+        TransitTable table = parse(TABLE);
+
+        assertEquals(2, table.zoneByPrefix[15]);
+        assertEquals(1, table.zoneByPrefix[14]);
+        assertEquals(1, table.zoneByPrefix[16]);
+    }
+
+    @Test
+    void rejectsMalformedTablesWithTheLineNumber() {
+        IllegalArgumentException unknownCarrier = assertThrows(IllegalArgumentException.class,
+                () -> parse("carrier DHL 10\ntransit 0 UPS 1\n"));
+        assertTrue(unknownCarrier.getMessage().contains("line 2"), unknownCarrier.getMessage());
+
+        assertThrows(IllegalArgumentException.class, () -> parse("carrier DHL ten\n"));
+        assertThrows(IllegalArgumentException.class, () -> parse("carrier DHL 10\nroute 0 DHL 1\n"));
+        assertThrows(IllegalArgumentException.class, () -> parse("zone 0 0-9\n"));
+        assertThrows(IllegalArgumentException.class, () -> parse("prefix-digits 5\ncarrier DHL 10\n"));
+    }
+
+    @Test
+    void resolvesTheZoneFromThePostalCode() throws IOException {
+        TransitTable table = parse(TABLE);
+
+        assertEquals(1, table.zoneOf("Rua Augusta 10, 1100-053 Lisboa"));
+        assertEquals(1, table.zoneOf("Avenida da Boavista 2000, 1400-130 Porto"));
+        assertEquals(2, table.zoneOf("Largo da Se 1, 15000 Coimbra"));
+        assertEquals(1, table.zoneOf("742 Evergreen Terrace, Springfield 25010"));
+        assertEquals(0, table.zoneOf("Rua de Santo Antonio 25, Faro"));
+        assertEquals(0, table.zoneOf("No postal code at all"));
+        assertEquals(0, table.zoneOf(""));
+        assertEquals(0, table.zoneOf(null));
+    }
+
+    @Test
+    void prefersTheDashedPostalCodeOverHouseNumbers() throws IOException {
+        TransitTable table = parse(TABLE);
+
+        // The house number 1599 comes last, but 2599-100 is the postal code
+        assertEquals(1, table.zoneOf("2599-100 Lisboa, Rua Augusta 1599"));
+        // Without a dashed code, the last group of four or five digits is taken
+        assertEquals(2, table.zoneOf("Rua Augusta 2599, 1500 Lisboa"));
+    }
+
+    private static TransitTable parse(String text) throws IOException {
+        return TransitTable.parse(new StringReader(text));
+    }
+}
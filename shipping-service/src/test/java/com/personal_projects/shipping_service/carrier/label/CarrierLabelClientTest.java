@@ -0,0 +1,207 @@
+package com.personal_projects.shipping_service.carrier.label;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Requests labels from a local carrier whose answer to every attempt is set by the test, to check the batching,
+ * retries, hedging and queue limit of the {@link CarrierLabelClient}.
+ */
+class CarrierLabelClientTest {
+
+    private static final TypeReference<List<LabelRequest>> REQUEST_LIST = new TypeReference<>() {
+    };
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private final ExecutorService handlers = Executors.newCachedThreadPool();
+
+    /** Answer to the attempt of the given number, from 1. */
+    private volatile AttemptAnswer answer = attempt -> new Answer(200, 0);
+
+    private HttpServer server;
+    private CarrierLabelProperties properties;
+
+    @BeforeEach
+    void startCarrier() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(0), 128);
+        server.setExecutor(handlers);
+        server.createContext("/labels", this::handle);
+        server.start();
+
+        properties = new CarrierLabelProperties();
+        properties.setDefaultEndpoint("http://localhost:" + server.getAddress().getPort() + "/labels");
+        properties.setLingerMs(20);
+        properties.setHedgeDelayMs(10_000);
+        properties.setTimeoutMs(5_000);
+    }
+
+    @AfterEach
+    void stopCarrier() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    @Test
+    void batchesRequestsPerCarrierUpToTheBatchSize() {
+        properties.setBatchSize(10);
+
+        try (CarrierLabelClient client = new CarrierLabelClient(properties, objectMapper)) {
+            List<CompletableFuture<CarrierLabel>> labels = new ArrayList<>();
+            for (int i = 0; i < 25; i++) {
+                labels.add(client.requestLabel(request("shipment-" + i, "DHL")));
+            }
+            labels.add(client.requestLabel(request("shipment-ups", "UPS")));
+
+            for (int i = 0; i < 25; i++) {
+                CarrierLabel label = labels.get(i).join();
+                assertEquals("shipment-" + i, label.getShippingId());
+                assertEquals("TRK-shipment-" + i, label.getTrackingNumber());
+            }
+            assertEquals("UPS", labels.get(25).join().getCarrier());
+            assertEquals(List.of(1, 5, 10, 10), batchSizes.stream().sorted().toList());
+        }
+    }
+
+    @Test
+    void retriesAFailedAttempt() {
+        answer = attempt -> new Answer(attempt == 1 ? 503 : 200, 0);
+
+        try (CarrierLabelClient client = new CarrierLabelClient(properties, objectMapper)) {
+            assertEquals("TRK-shipment-1", client.requestLabel(request("shipment-1", "DHL")).join().getTrackingNumber());
+            assertEquals(2, batchSizes.size());
+        }
+    }
+
+    @Test
+    void failsTheLabelsOnceEveryAttemptFailed() {
+        answer = attempt -> new Answer(500, 0);
+
+        try (CarrierLabelClient client = new CarrierLabelClient(properties, objectMapper)) {
+            CompletableFuture<CarrierLabel> label = client.requestLabel(request("shipment-1", "DHL"));
+
+            CompletionException failure = assertThrows(CompletionException.class, label::join);
+            assertTrue(failure.getCause().getMessage().contains("500"), failure.getCause().getMessage());
+            assertEquals(properties.getMaxAttempts(), batchSizes.size());
+        }
+    }
+
+    @Test
+    void failsTheLabelsMissingFromTheResponse() {
+        properties.setBatchSize(2);
+        answer = attempt -> new Answer(200, 0, "shipment-2");
+
+        try (CarrierLabelClient client = new CarrierLabelClient(properties, objectMapper)) {
+            CompletableFuture<CarrierLabel> returned = client.requestLabel(request("shipment-1", "DHL"));
+            CompletableFuture<CarrierLabel> missing = client.requestLabel(request("shipment-2", "DHL"));
+
+            assertEquals("TRK-shipment-1", returned.join().getTrackingNumber());
+            assertThrows(CompletionException.class, missing::join);
+        }
+    }
+
+    @Test
+    void hedgesASlowBatchOnASecondConnection() {
+        properties.setHedgeDelayMs(50);
+        answer = attempt -> new Answer(200, attempt == 1 ? 3_000 : 0);
+
+        try (CarrierLabelClient client = new CarrierLabelClient(properties, objectMapper)) {
+            long start = System.nanoTime();
+            CarrierLabel label = client.requestLabel(request("shipment-1", "DHL")).join();
+
+            assertEquals("TRK-shipment-1", label.getTrackingNumber());
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2_000,
+                    "answered by the hedged attempt");
+        }
+    }
+
+    @Test
+    void rejectsRequestsOnceTooManyBatchesAreQueued() {
+        properties.setBatchSize(1);
+        properties.setMaxConcurrencyPerCarrier(1);
+        properties.setMaxQueuedBatchesPerCarrier(1);
+        answer = attempt -> new Answer(200, 500);
+
+        try (CarrierLabelClient client = new CarrierLabelClient(properties, objectMapper)) {
+            CompletableFuture<CarrierLabel> inFlight = client.requestLabel(request("shipment-1", "DHL"));
+            CompletableFuture<CarrierLabel> queued = client.requestLabel(request("shipment-2", "DHL"));
+            CompletableFuture<CarrierLabel> rejected = client.requestLabel(request("shipment-3", "DHL"));
+
+            CompletionException failure = assertThrows(CompletionException.class, rejected::join);
+            assertInstanceOf(RejectedExecutionException.class, failure.getCause());
+            assertEquals("TRK-shipment-1", inFlight.join().getTrackingNumber());
+            assertEquals("TRK-shipment-2", queued.join().getTrackingNumber());
+        }
+    }
+
+    private static LabelRequest request(String shippingId, String carrier) {
+        return LabelRequest.builder()
+                .shippingId(shippingId)
+                .orderId(1)
+                .carrier(carrier)
+                .customerName("Ana")
+                .customerAddress("Rua Augusta 10, 1100-053 Lisboa")
+                .build();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            List<LabelRequest> requests = objectMapper.readValue(exchange.getRequestBody(), REQUEST_LIST);
+            batchSizes.add(requests.size());
+            Answer attemptAnswer = answer.to(Integer.parseInt(exchange.getRequestHeaders().getFirst("X-Attempt")));
+            if (attemptAnswer.delayMs() > 0) {
+                Thread.sleep(attemptAnswer.delayMs());
+            }
+            if (attemptAnswer.status() != 200) {
+                exchange.sendResponseHeaders(attemptAnswer.status(), -1);
+                return;
+            }
+            List<CarrierLabel> labels = requests.stream()
+                    .filter(request -> !attemptAnswer.omitted().contains(request.getShippingId()))
+                    .map(request -> new CarrierLabel(request.getShippingId(), request.getCarrier(),
+                            "TRK-" + request.getShippingId()))
+                    .toList();
+            byte[] body = objectMapper.writeValueAsBytes(labels);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private interface AttemptAnswer {
+        Answer to(int attempt);
+    }
+
+    /**
+     * Status and delay of the answer to an attempt, leaving out the labels of the given shipments.
+     */
+    private record Answer(int status, long delayMs, List<String> omitted) {
+
+        Answer(int status, long delayMs, String... omitted) {
+            this(status, delayMs, List.of(omitted));
+        }
+    }
+}
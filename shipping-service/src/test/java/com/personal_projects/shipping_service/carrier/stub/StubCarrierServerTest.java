@@ -0,0 +1,59 @@
+package com.personal_projects.shipping_service.carrier.stub;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Sends valid and invalid batches to the stub carrier.
+ */
+class StubCarrierServerTest {
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+    @Test
+    void issuesTheSameLabelForARepeatedRequest() throws IOException, InterruptedException {
+        try (StubCarrierServer stub = new StubCarrierServer(0, 0, 0, 0, 0)) {
+            String batch = "[{\"shippingId\": \"s-1\", \"orderId\": 1, \"carrier\": \"DHL\"}]";
+
+            HttpResponse<String> first = post(stub, batch);
+            HttpResponse<String> repeated = post(stub, batch);
+
+            assertEquals(200, first.statusCode());
+            assertTrue(first.body().contains("STUB-DHL-"), first.body());
+            assertEquals(first.body(), repeated.body());
+            assertEquals(2, stub.getIssuedLabels());
+        }
+    }
+
+    @Test
+    void answersInvalidBatchesWithABadRequestAndKeepsServing() throws IOException, InterruptedException {
+        try (StubCarrierServer stub = new StubCarrierServer(0, 0, 0, 0, 0)) {
+            // More invalid batches than the stub has handler threads, each answered and closed
+            for (int i = 0; i < 10; i++) {
+                assertEquals(400, post(stub, "{\"not\": \"a batch\"").statusCode());
+            }
+            assertEquals(400, post(stub, "[{\"carrier\": \"DHL\", \"orderId\": \"one\"}]").statusCode());
+
+            assertEquals(200, post(stub, "[]").statusCode());
+            assertEquals(12, stub.getReceivedBatches());
+            assertEquals(0, stub.getIssuedLabels());
+        }
+    }
+
+    private HttpResponse<String> post(StubCarrierServer stub, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + stub.getPort() + "/labels"))
+                .timeout(Duration.ofSeconds(5))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,117 @@
+package com.personal_projects.shipping_service.mongo;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.personal_projects.common.Enums.ShipmentStatus;
+import com.personal_projects.shipping_service.data.entity.Shipment;
+import com.personal_projects.shipping_service.shipment.ShipmentQueryRepository;
+import com.personal_projects.shipping_service.shipment.ShipmentQueryRepositoryImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Archives shipments against a real MongoDB, through the tiering shared with the payment service.
+ */
+@Testcontainers
+class ShipmentTieringJobTest {
+
+    @Container
+    static final GenericContainer<?> mongo = new GenericContainer<>("mongo:7.0").withExposedPorts(27017);
+
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeAll
+    static void setUp() {
+        client = MongoClients.create("mongodb://" + mongo.getHost() + ":" + mongo.getMappedPort(27017));
+        mongoTemplate = new MongoTemplate(client, "shipment-tiering-test");
+    }
+
+    @AfterAll
+    static void tearDown() {
+        client.close();
+    }
+
+    @BeforeEach
+    void clear() {
+        mongoTemplate.remove(new Query(), Shipment.class);
+        mongoTemplate.remove(new Query(), ShipmentQueryRepository.ARCHIVE_COLLECTION);
+    }
+
+    @Test
+    void movesFinishedShipmentsOlderThanTheMinimumAgeInBatches() {
+        LocalDateTime old = LocalDateTime.now().minusDays(10);
+        List<Shipment> shipments = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            shipments.add(shipment(i, i % 2 == 0 ? ShipmentStatus.DELIVERED : ShipmentStatus.FAILED, old));
+        }
+        shipments.add(shipment(100, ShipmentStatus.IN_TRANSIT, old));
+        shipments.add(shipment(101, ShipmentStatus.DELIVERED, LocalDateTime.now()));
+        mongoTemplate.insertAll(shipments);
+
+        job(10, 100).archiveFinishedShipments();
+
+        assertEquals(2, mongoTemplate.count(new Query(), Shipment.class));
+        assertEquals(25, mongoTemplate.count(new Query(), ShipmentQueryRepository.ARCHIVE_COLLECTION));
+        assertEquals(25, meterRegistry.get("shipping.tiering.archived").counter().count());
+        ShipmentQueryRepositoryImpl repository = new ShipmentQueryRepositoryImpl(mongoTemplate);
+        assertEquals(ShipmentStatus.FAILED, repository.findByOrderIdIncludingArchive(7).orElseThrow().getShipmentStatus());
+        assertEquals(ShipmentStatus.IN_TRANSIT,
+                repository.findByOrderIdIncludingArchive(100).orElseThrow().getShipmentStatus());
+    }
+
+    @Test
+    void stopsAfterTheMaximumBatchesOfARun() {
+        LocalDateTime old = LocalDateTime.now().minusDays(10);
+        List<Shipment> shipments = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            shipments.add(shipment(i, ShipmentStatus.DELIVERED, old));
+        }
+        mongoTemplate.insertAll(shipments);
+
+        ShipmentTieringJob job = job(10, 2);
+        job.archiveFinishedShipments();
+        assertEquals(10, mongoTemplate.count(new Query(), Shipment.class));
+
+        job.archiveFinishedShipments();
+        assertEquals(0, mongoTemplate.count(new Query(), Shipment.class));
+        assertEquals(30, meterRegistry.get("shipping.tiering.archived").counter().count());
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> job(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new ShipmentTieringJob(mongoTemplate,
+                new SimpleMeterRegistry(), 0, 10, 1, 1.5));
+    }
+
+    private ShipmentTieringJob job(int batchSize, int maxBatchesPerRun) {
+        return new ShipmentTieringJob(mongoTemplate, meterRegistry, 86_400_000, batchSize, maxBatchesPerRun, 1);
+    }
+
+    private static Shipment shipment(long orderId, ShipmentStatus status, LocalDateTime updatedAt) {
+        return Shipment.builder()
+                .orderId(orderId)
+                .orderIds(List.of(orderId))
+                .shipmentStatus(status)
+                .createdAt(updatedAt)
+                .updatedAt(updatedAt)
+                .build();
+    }
+}
@@ -0,0 +1,211 @@
+package com.personal_projects.shipping_service.shipment;
+
+import com.mongodb.ExplainVerbosity;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.personal_projects.common.Enums.ShipmentStatus;
+import com.personal_projects.shipping_service.data.dto.ShipmentFilterDTO;
+import com.personal_projects.shipping_service.data.dto.ShipmentPageDTO;
+import com.personal_projects.shipping_service.data.entity.Shipment;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.query.Query;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies the shipment listing and status counts against a real MongoDB, including that the
+ * query plans use the indexes declared on {@link Shipment}.
+ */
+@Testcontainers
+class ShipmentQueryRepositoryImplTest {
+
+    @Container
+    static final GenericContainer<?> mongo = new GenericContainer<>("mongo:7.0").withExposedPorts(27017);
+
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+    private static ShipmentQueryRepositoryImpl repository;
+
+    @BeforeAll
+    static void setUp() {
+        client = MongoClients.create("mongodb://" + mongo.getHost() + ":" + mongo.getMappedPort(27017));
+        mongoTemplate = new MongoTemplate(client, "shipment-query-test");
+        repository = new ShipmentQueryRepositoryImpl(mongoTemplate);
+
+        IndexOperations indexOperations = mongoTemplate.indexOps(Shipment.class);
+        new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext())
+                .resolveIndexFor(Shipment.class)
+                .forEach(indexOperations::ensureIndex);
+
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 0, 0);
+        List<Shipment> shipments = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            shipments.add(Shipment.builder()
+                    .orderId(i)
+                    .carrier(i % 2 == 0 ? "DHL" : "UPS")
+                    .shipmentStatus(ShipmentStatus.values()[i % ShipmentStatus.values().length])
+                    .trackingNumber("TRK-" + i)
+                    // Pairs of shipments share a timestamp so the _id tie-breaker is exercised.
+                    .createdAt(base.plusMinutes(i / 2))
+                    .estimatedDeliveryDate(base.plusDays(3).plusMinutes(i))
+                    .build());
+        }
+        mongoTemplate.insertAll(shipments);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        client.close();
+    }
+
+    @Test
+    void pagesThroughAllMatchingShipmentsWithoutDuplicates() {
+        Set<String> seen = new HashSet<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            ShipmentPageDTO page = repository.findPage(ShipmentFilterDTO.builder()
+                    .carrier("DHL").cursor(cursor).limit(7).build());
+            page.getShipments().forEach(s -> {
+                assertEquals("DHL", s.getCarrier());
+                assertTrue(seen.add(s.getShippingId()));
+            });
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(60, seen.size());
+        assertEquals(9, pages);
+    }
+
+    @Test
+    void projectionOnlyReturnsRequestedFields() {
+        ShipmentPageDTO page = repository.findPage(ShipmentFilterDTO.builder()
+                .fields(List.of("trackingNumber")).limit(5).build());
+
+        Shipment first = page.getShipments().get(0);
+        assertNotNull(first.getTrackingNumber());
+        assertNotNull(first.getCreatedAt());
+        assertNull(first.getCarrier());
+        assertNotNull(page.getNextCursor());
+    }
+
+    @Test
+    void rejectsUnknownProjectionField() {
+        assertThrows(IllegalArgumentException.class, () -> repository.findPage(
+                ShipmentFilterDTO.builder().fields(List.of("password")).build()));
+    }
+
+    @Test
+    void countsEveryStatus() {
+        Map<ShipmentStatus, Long> counts = repository.countByStatus();
+
+        assertEquals(ShipmentStatus.values().length, counts.size());
+        assertEquals(120L, counts.values().stream().mapToLong(Long::longValue).sum());
+        assertEquals(30L, counts.get(ShipmentStatus.PENDING));
+    }
+
+    @Test
+    void filteredPagesUseAnIndex() {
+        assertIndexScan(ShipmentFilterDTO.builder().shipmentStatus(ShipmentStatus.PENDING).build());
+        assertIndexScan(ShipmentFilterDTO.builder().carrier("UPS").build());
+        assertIndexScan(ShipmentFilterDTO.builder()
+                .createdFrom(LocalDateTime.of(2025, 1, 1, 0, 10))
+                .createdTo(LocalDateTime.of(2025, 1, 1, 0, 20))
+                .build());
+
+        ShipmentPageDTO firstPage = repository.findPage(ShipmentFilterDTO.builder().limit(10).build());
+        assertIndexScan(ShipmentFilterDTO.builder().cursor(firstPage.getNextCursor()).build());
+    }
+
+    @Test
+    void estimatedDeliveryFilterIsCheckedOnTheKeysetIndex() {
+        ShipmentFilterDTO filter = ShipmentFilterDTO.builder()
+                .estimatedFrom(LocalDateTime.of(2025, 1, 4, 0, 30))
+                .estimatedTo(LocalDateTime.of(2025, 1, 4, 1, 0))
+                .build();
+        assertIndexScan(filter);
+
+        Document explain = explain(filter, ExplainVerbosity.EXECUTION_STATS);
+        String plan = withoutRejectedPlans(explain).toJson();
+        assertTrue(plan.contains("\"createdAt_id_eta\""), plan);
+        Document stats = explain.get("executionStats", Document.class);
+        assertEquals(30, stats.getInteger("nReturned"));
+        assertEquals(stats.getInteger("nReturned"), stats.getInteger("totalDocsExamined"),
+                "only the shipments in the range are fetched: " + stats.toJson());
+    }
+
+    @Test
+    void statusCountsAreCoveredByAnIndex() {
+        Document explain = mongoTemplate.aggregate(
+                repository.statusCountAggregation()
+                        .withOptions(AggregationOptions.builder().explain(true).build()),
+                Document.class
+        ).getRawResults();
+
+        String plan = withoutRejectedPlans(explain).toJson();
+        assertTrue(plan.contains("IXSCAN"), plan);
+        assertFalse(plan.contains("COLLSCAN"), plan);
+        assertFalse(plan.contains("\"FETCH\""), plan);
+    }
+
+    private static void assertIndexScan(ShipmentFilterDTO filter) {
+        String plan = withoutRejectedPlans(explain(filter, ExplainVerbosity.QUERY_PLANNER)).toJson();
+        assertTrue(plan.contains("IXSCAN"), plan);
+        assertFalse(plan.contains("COLLSCAN"), plan);
+        assertFalse(plan.contains("\"SORT\""), plan);
+    }
+
+    private static Document explain(ShipmentFilterDTO filter, ExplainVerbosity verbosity) {
+        Query query = repository.buildQuery(filter).limit(ShipmentQueryRepositoryImpl.DEFAULT_LIMIT + 1);
+        QueryMapper mapper = new QueryMapper(mongoTemplate.getConverter());
+        var entity = mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(Shipment.class);
+
+        return mongoTemplate.getCollection("shipment")
+                .find(mapper.getMappedObject(query.getQueryObject(), entity))
+                .sort(mapper.getMappedSort(query.getSortObject(), entity))
+                .limit(query.getLimit())
+                .explain(verbosity);
+    }
+
+    /**
+     * Strips the candidate plans the optimizer rejected, so assertions only look at the winning plan.
+     */
+    private static Document withoutRejectedPlans(Document explain) {
+        Document copy = new Document();
+        explain.forEach((key, value) -> {
+            if (!"rejectedPlans".equals(key)) {
+                copy.put(key, strip(value));
+            }
+        });
+        return copy;
+    }
+
+    private static Object strip(Object value) {
+        if (value instanceof Document document) {
+            return withoutRejectedPlans(document);
+        }
+        if (value instanceof List<?> list) {
+            return list.stream().map(ShipmentQueryRepositoryImplTest::strip).toList();
+        }
+        return value;
+    }
+}
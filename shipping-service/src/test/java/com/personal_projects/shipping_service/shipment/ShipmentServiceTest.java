@@ -0,0 +1,227 @@
+package com.personal_projects.shipping_service.shipment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.personal_projects.common.Enums.ShipmentStatus;
+import com.personal_projects.common.Events.ShipmentEvent;
+import com.personal_projects.shipping_service.carrier.label.CarrierLabel;
+import com.personal_projects.shipping_service.carrier.label.CarrierLabelClient;
+import com.personal_projects.shipping_service.carrier.label.CarrierLabelProperties;
+import com.personal_projects.shipping_service.carrier.label.LabelRequest;
+import com.personal_projects.shipping_service.data.entity.Shipment;
+import jakarta.persistence.EntityNotFoundException;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+import org.springframework.http.HttpStatus;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.web.ErrorResponseException;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Ships orders against a real MongoDB, with a label client answering when the test says so.
+ */
+@Testcontainers
+class ShipmentServiceTest {
+
+    @Container
+    static final GenericContainer<?> mongo = new GenericContainer<>("mongo:7.0").withExposedPorts(27017);
+
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+    private static ShipmentRepository shipmentRepository;
+
+    private final CarrierLabelProperties labelProperties = new CarrierLabelProperties();
+    private final RecordingKafkaTemplate kafkaTemplate = new RecordingKafkaTemplate();
+    private ControlledLabelClient labelClient;
+    private ShipmentService shipmentService;
+
+    @BeforeAll
+    static void setUp() {
+        client = MongoClients.create("mongodb://" + mongo.getHost() + ":" + mongo.getMappedPort(27017));
+        mongoTemplate = new MongoTemplate(client, "shipment-service-test");
+        shipmentRepository = new MongoRepositoryFactory(mongoTemplate).getRepository(ShipmentRepository.class,
+                RepositoryFragments.just(new ShipmentQueryRepositoryImpl(mongoTemplate)));
+    }
+
+    @AfterAll
+    static void tearDown() {
+        client.close();
+    }
+
+    @BeforeEach
+    void createService() {
+        mongoTemplate.remove(new Query(), Shipment.class);
+        mongoTemplate.remove(new Query(), ShipmentQueryRepository.ARCHIVE_COLLECTION);
+        labelProperties.setMaxLabelFailures(2);
+        labelClient = new ControlledLabelClient(labelProperties);
+        shipmentService = new ShipmentService(shipmentRepository, kafkaTemplate,
+                new StaticListableBeanFactory(Map.of("carrierLabelClient", labelClient))
+                        .getBeanProvider(CarrierLabelClient.class),
+                labelProperties);
+    }
+
+    @Test
+    void shipsOnceWhileTheLabelIsInFlight() {
+        shipmentRepository.insert(pending(1));
+
+        shipmentService.shipOrder(1);
+        shipmentService.shipOrder(1);
+        assertEquals(1, labelClient.requests.size(), "no second label while the first is in flight");
+        assertEquals(ShipmentStatus.PENDING, shipment(1).getShipmentStatus());
+
+        labelClient.answer(0, new CarrierLabel("ignored", "DHL", "DHL-123"));
+        assertEquals(HttpStatus.CONFLICT.value(),
+                assertThrows(ErrorResponseException.class, () -> shipmentService.shipOrder(1)).getStatusCode().value());
+
+        Shipment shipped = shipment(1);
+        assertEquals(ShipmentStatus.IN_TRANSIT, shipped.getShipmentStatus());
+        assertEquals("DHL-123", shipped.getTrackingNumber());
+        assertEquals(1, labelClient.requests.size());
+        assertEquals(1, kafkaTemplate.sent.size());
+    }
+
+    @Test
+    void requestsTheLabelAgainOnceTheInFlightRequestIsStale() {
+        shipmentRepository.insert(pending(2));
+
+        shipmentService.shipOrder(2);
+        // As if the instance requesting it had stopped before the answer
+        mongoTemplate.updateFirst(Query.query(Criteria.where("orderIds").is(2L)),
+                Update.update("labelRequestedAt", LocalDateTime.now().minusMinutes(2)), Shipment.class);
+        shipmentService.shipOrder(2);
+
+        assertEquals(2, labelClient.requests.size());
+    }
+
+    @Test
+    void retriesAFailedLabelAndFailsTheShipmentAfterTooManyFailures() {
+        shipmentRepository.insert(pending(3));
+
+        shipmentService.shipOrder(3);
+        labelClient.fail(0);
+        Shipment afterFirstFailure = shipment(3);
+        assertEquals(ShipmentStatus.PENDING, afterFirstFailure.getShipmentStatus());
+        assertNull(afterFirstFailure.getLabelRequestedAt());
+        assertEquals(1, afterFirstFailure.getLabelFailures());
+
+        shipmentService.shipOrder(3);
+        assertEquals(2, labelClient.requests.size(), "shipping again retries the failed label");
+        labelClient.fail(1);
+
+        assertEquals(ShipmentStatus.FAILED, shipment(3).getShipmentStatus());
+        assertTrue(kafkaTemplate.sent.isEmpty());
+    }
+
+    @Test
+    void shipsPendingShipmentsOnlyWithoutLabels() {
+        ShipmentService withoutLabels = new ShipmentService(shipmentRepository, kafkaTemplate,
+                new StaticListableBeanFactory().getBeanProvider(CarrierLabelClient.class), labelProperties);
+        shipmentRepository.insert(pending(4));
+        Shipment delivered = pending(5);
+        delivered.setShipmentStatus(ShipmentStatus.DELIVERED);
+        shipmentRepository.insert(delivered);
+
+        withoutLabels.shipOrder(4);
+        assertThrows(ErrorResponseException.class, () -> withoutLabels.shipOrder(4));
+        assertThrows(ErrorResponseException.class, () -> withoutLabels.shipOrder(5));
+
+        assertEquals(ShipmentStatus.IN_TRANSIT, shipment(4).getShipmentStatus());
+        assertEquals(ShipmentStatus.DELIVERED, shipment(5).getShipmentStatus());
+        assertEquals(1, kafkaTemplate.sent.size());
+    }
+
+    @Test
+    void doesNotShipArchivedShipments() {
+        Shipment archived = pending(6);
+        archived.setShipmentStatus(ShipmentStatus.DELIVERED);
+        mongoTemplate.insert(archived, ShipmentQueryRepository.ARCHIVE_COLLECTION);
+
+        assertThrows(EntityNotFoundException.class, () -> shipmentService.shipOrder(6));
+        assertTrue(labelClient.requests.isEmpty());
+    }
+
+    private static Shipment pending(long orderId) {
+        LocalDateTime now = LocalDateTime.now();
+        return Shipment.builder()
+                .orderId(orderId)
+                .orderIds(List.of(orderId))
+                .carrier("DHL")
+                .shipmentStatus(ShipmentStatus.PENDING)
+                .trackingNumber("TRK-" + orderId)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+    }
+
+    private static Shipment shipment(long orderId) {
+        return shipmentRepository.getShipmentsByOrderId(orderId).get(0);
+    }
+
+    /**
+     * Label client keeping the label futures for the test to complete.
+     */
+    private static final class ControlledLabelClient extends CarrierLabelClient {
+
+        private final List<CompletableFuture<CarrierLabel>> requests = new CopyOnWriteArrayList<>();
+
+        ControlledLabelClient(CarrierLabelProperties properties) {
+            super(properties, new ObjectMapper());
+        }
+
+        @Override
+        public CompletableFuture<CarrierLabel> requestLabel(LabelRequest request) {
+            CompletableFuture<CarrierLabel> label = new CompletableFuture<>();
+            requests.add(label);
+            return label;
+        }
+
+        void answer(int request, CarrierLabel label) {
+            requests.get(request).complete(label);
+        }
+
+        void fail(int request) {
+            requests.get(request).completeExceptionally(new IllegalStateException("Carrier DHL answered 503"));
+        }
+    }
+
+    /**
+     * Template recording the events sent instead of sending them.
+     */
+    private static final class RecordingKafkaTemplate extends KafkaTemplate<String, ShipmentEvent> {
+
+        private final List<ShipmentEvent> sent = new CopyOnWriteArrayList<>();
+
+        RecordingKafkaTemplate() {
+            super(new DefaultKafkaProducerFactory<>(Map.of()));
+        }
+
+        @Override
+        public CompletableFuture<SendResult<String, ShipmentEvent>> send(ProducerRecord<String, ShipmentEvent> record) {
+            sent.add(record.value());
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
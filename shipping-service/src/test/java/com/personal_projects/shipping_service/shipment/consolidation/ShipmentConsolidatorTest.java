@@ -0,0 +1,211 @@
+package com.personal_projects.shipping_service.shipment.consolidation;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.personal_projects.common.Enums.PaymentStatus;
+import com.personal_projects.common.Events.PaymentEvent;
+import com.personal_projects.shipping_service.carrier.CarrierAssignment;
+import com.personal_projects.shipping_service.carrier.CarrierSelectionEngine;
+import com.personal_projects.shipping_service.data.entity.ConsolidationBuffer;
+import com.personal_projects.shipping_service.data.entity.Shipment;
+import com.personal_projects.shipping_service.shipment.ShipmentQueryRepositoryImpl;
+import com.personal_projects.shipping_service.shipment.ShipmentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Consolidates paid orders against a real MongoDB, with several consolidators flushing the same buffers the way
+ * several instances of the service do.
+ */
+@Testcontainers
+class ShipmentConsolidatorTest {
+
+    @Container
+    static final GenericContainer<?> mongo = new GenericContainer<>("mongo:7.0").withExposedPorts(27017);
+
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+    private static ShipmentRepository shipmentRepository;
+
+    private final AtomicInteger assigned = new AtomicInteger();
+    private final AtomicInteger released = new AtomicInteger();
+    private final CarrierSelectionEngine carrierSelectionEngine = new CarrierSelectionEngine() {
+        @Override
+        public CarrierAssignment assign(String customerAddress, LocalDateTime shipDate) {
+            assigned.incrementAndGet();
+            return new CarrierAssignment("DHL", shipDate.plusDays(1));
+        }
+
+        @Override
+        public void release(CarrierAssignment assignment, LocalDateTime shipDate) {
+            released.incrementAndGet();
+        }
+    };
+
+    @BeforeAll
+    static void setUp() {
+        client = MongoClients.create("mongodb://" + mongo.getHost() + ":" + mongo.getMappedPort(27017));
+        mongoTemplate = new MongoTemplate(client, "shipment-consolidation-test");
+        shipmentRepository = new MongoRepositoryFactory(mongoTemplate).getRepository(ShipmentRepository.class,
+                RepositoryFragments.just(new ShipmentQueryRepositoryImpl(mongoTemplate)));
+        ensureIndexes(Shipment.class);
+        ensureIndexes(ConsolidationBuffer.class);
+        mongoTemplate.indexOps(ConsolidationBuffer.class).ensureIndex(new Index()
+                .on("key", Sort.Direction.ASC)
+                .named("open_key")
+                .unique()
+                .partial(PartialIndexFilter.of(Criteria.where("sealed").is(false))));
+    }
+
+    @AfterAll
+    static void tearDown() {
+        client.close();
+    }
+
+    @BeforeEach
+    void clear() {
+        mongoTemplate.remove(new Query(), Shipment.class);
+        mongoTemplate.remove(new Query(), ConsolidationBuffer.class);
+    }
+
+    @Test
+    void consolidatesTheOrdersOfOneCustomerAndAddress() {
+        ShipmentConsolidator consolidator = consolidator(0);
+        consolidator.buffer(payment(1, "Ana", "Rua Augusta 10, 1100-053 Lisboa"), 1_000);
+        consolidator.buffer(payment(2, " ana ", "Rua  Augusta 10, 1100-053 LISBOA"), 2_000);
+        consolidator.buffer(payment(3, "Rui", "Rua Augusta 10, 1100-053 Lisboa"), 3_000);
+
+        consolidator.flushExpiredBuffers();
+
+        Shipment consolidated = shipmentRepository.getShipmentsByOrderId(2).get(0);
+        assertEquals(List.of(1L, 2L), consolidated.getOrderIds());
+        assertEquals(1_000, consolidated.originTimestampOf(1));
+        assertEquals(2_000, consolidated.originTimestampOf(2), "each order keeps its own lifecycle origin");
+        assertEquals(List.of(3L), shipmentRepository.getShipmentsByOrderId(3).get(0).getOrderIds());
+        assertEquals(0, mongoTemplate.count(new Query(), ConsolidationBuffer.class));
+    }
+
+    @Test
+    void concurrentFlushesCreateOneShipmentPerOrder() {
+        ShipmentConsolidator first = consolidator(0);
+        for (int i = 0; i < 200; i++) {
+            first.buffer(payment(i, "customer-" + i % 50, "Street " + i % 50), 0);
+        }
+        List<ShipmentConsolidator> instances = List.of(first, consolidator(0), consolidator(0), consolidator(0));
+
+        List<CompletableFuture<Void>> flushes = new ArrayList<>();
+        instances.forEach(instance -> flushes.add(CompletableFuture.runAsync(instance::flushExpiredBuffers)));
+        flushes.forEach(CompletableFuture::join);
+
+        List<Shipment> shipments = mongoTemplate.findAll(Shipment.class);
+        assertEquals(50, shipments.size());
+        assertEquals(200, shipments.stream().mapToLong(shipment -> shipment.getOrderIds().size()).sum());
+        assertEquals(50, assigned.get() - released.get(), "capacity is taken once per shipment");
+        assertEquals(0, mongoTemplate.count(new Query(), ConsolidationBuffer.class));
+    }
+
+    @Test
+    void finishesBuffersWhoseLeaseRanOutAndLeavesLeasedOnesToTheirOwner() {
+        ShipmentConsolidator consolidator = consolidator(60_000);
+        mongoTemplate.insert(sealedBuffer("abandoned", 10, LocalDateTime.now().minusSeconds(1)));
+        mongoTemplate.insert(sealedBuffer("leased", 20, LocalDateTime.now().plusMinutes(1)));
+
+        consolidator.flushExpiredBuffers();
+
+        assertEquals(1, shipmentRepository.getShipmentsByOrderId(10).size());
+        assertTrue(shipmentRepository.getShipmentsByOrderId(20).isEmpty());
+        assertNotNull(mongoTemplate.findById("leased", ConsolidationBuffer.class));
+    }
+
+    @Test
+    void leavesOrdersShippedByAnEarlierClaimOutOfTheShipment() {
+        ShipmentConsolidator consolidator = consolidator(60_000);
+        ConsolidationBuffer buffer = sealedBuffer("half-done", 30, LocalDateTime.now().minusSeconds(1));
+        buffer.getOrders().add(new ConsolidationBuffer.BufferedOrder(31, "payment-31", LocalDateTime.now(), 0));
+        mongoTemplate.insert(buffer);
+        shipmentRepository.insert(Shipment.builder().orderId(30).orderIds(List.of(30L)).build());
+
+        consolidator.flushExpiredBuffers();
+
+        assertEquals(List.of(31L), shipmentRepository.getShipmentsByOrderId(31).get(0).getOrderIds());
+        assertEquals(1, shipmentRepository.getShipmentsByOrderId(30).size());
+        assertNull(mongoTemplate.findById("half-done", ConsolidationBuffer.class));
+    }
+
+    @Test
+    void ignoresPaymentsRedeliveredWhileBufferedOrAfterConsolidation() {
+        ShipmentConsolidator consolidator = consolidator(0);
+        PaymentEvent payment = payment(40, "Ana", "Rua Augusta 10, 1100-053 Lisboa");
+        consolidator.buffer(payment, 0);
+        consolidator.buffer(payment, 0);
+
+        consolidator.flushExpiredBuffers();
+        consolidator.buffer(payment, 0);
+        consolidator.flushExpiredBuffers();
+
+        List<Shipment> shipments = shipmentRepository.getShipmentsByOrderId(40);
+        assertEquals(1, shipments.size());
+        assertEquals(List.of(40L), shipments.get(0).getOrderIds());
+        assertEquals(0, mongoTemplate.count(new Query(), ConsolidationBuffer.class));
+    }
+
+    private ShipmentConsolidator consolidator(long windowMillis) {
+        return new ShipmentConsolidator(mongoTemplate, shipmentRepository, carrierSelectionEngine,
+                new SimpleMeterRegistry(), windowMillis, 30_000);
+    }
+
+    private static PaymentEvent payment(long orderId, String customerName, String customerAddress) {
+        return PaymentEvent.builder()
+                .paymentId("payment-" + orderId)
+                .orderId(orderId)
+                .paymentStatus(PaymentStatus.COMPLETED)
+                .customerName(customerName)
+                .customerAddress(customerAddress)
+                .build();
+    }
+
+    private static ConsolidationBuffer sealedBuffer(String id, long orderId, LocalDateTime leaseUntil) {
+        List<ConsolidationBuffer.BufferedOrder> orders = new ArrayList<>();
+        orders.add(new ConsolidationBuffer.BufferedOrder(orderId, "payment-" + orderId, LocalDateTime.now(), 0));
+        return ConsolidationBuffer.builder()
+                .id(id)
+                .key(id)
+                .windowStart(LocalDateTime.now())
+                .sealed(true)
+                .owner("stopped-instance")
+                .leaseUntil(leaseUntil)
+                .orders(orders)
+                .build();
+    }
+
+    private static void ensureIndexes(Class<?> documentClass) {
+        IndexOperations indexOperations = mongoTemplate.indexOps(documentClass);
+        new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext())
+                .resolveIndexFor(documentClass)
+                .forEach(indexOperations::ensureIndex);
+    }
+}
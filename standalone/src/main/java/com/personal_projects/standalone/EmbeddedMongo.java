@@ -0,0 +1,39 @@
+package com.personal_projects.standalone;
+
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * A {@code mongod} started on a free local port for the payment and shipping services, each using its own
+ * database. The binary is downloaded and cached on first use.
+ */
+public class EmbeddedMongo implements DisposableBean {
+
+    private final TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+
+    /**
+     * Starts the server.
+     *
+     * @param version the MongoDB version to run
+     */
+    public EmbeddedMongo(Version.Main version) {
+        this.mongod = Mongod.instance().start(version);
+    }
+
+    /**
+     * @return the {@code host:port} of the server
+     */
+    public String address() {
+        ServerAddress address = mongod.current().getServerAddress();
+        return address.getHost() + ":" + address.getPort();
+    }
+
+    @Override
+    public void destroy() {
+        mongod.close();
+    }
+}
@@ -0,0 +1,57 @@
+package com.personal_projects.standalone;
+
+import com.personal_projects.order_service.OrderServiceApplication;
+import com.personal_projects.payment_service.PaymentServiceApplication;
+import com.personal_projects.shipping_service.ShippingServiceApplication;
+import com.personal_projects.standalone.bus.InProcessKafkaConfiguration;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Runs the order, payment and shipping services in a single JVM, for development, CI performance runs and small
+ * sites.
+ * <p>
+ * A parent context holds the {@link com.personal_projects.standalone.bus.InProcessEventBus} and an
+ * {@link EmbeddedMongo}. Each service runs in a child context with its usual configuration, on its usual port,
+ * with the {@code standalone} profile and the {@link InProcessKafkaConfiguration}: its Kafka traffic goes
+ * through the bus, the order service uses an in-memory H2 database and the payment and shipping services their
+ * own database on the embedded server. Without a broker or database round trip, a flow through this deployment
+ * measures the overhead of the services themselves.
+ * </p>
+ * <p>
+ * The settings of each service are loaded by name, e.g. {@code order-service.properties}, followed by the
+ * {@code -standalone} overrides of this module; the parent reads {@code standalone.properties}.
+ * </p>
+ */
+public final class StandaloneApplication {
+
+    private StandaloneApplication() {
+    }
+
+    public static void main(String[] args) {
+        ConfigurableApplicationContext parent = new SpringApplicationBuilder(StandaloneConfiguration.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .properties("spring.config.name=standalone")
+                .run(args);
+        String mongoAddress = parent.getBean(EmbeddedMongo.class).address();
+
+        // The consumers subscribe before the order service accepts orders.
+        start(parent, PaymentServiceApplication.class, "payment-service", args, mongoAddress);
+        start(parent, ShippingServiceApplication.class, "shipping-service", args, mongoAddress);
+        start(parent, OrderServiceApplication.class, "order-service", args, mongoAddress);
+        System.out.println("Delivery System Started in a single JVM");
+    }
+
+    private static void start(ConfigurableApplicationContext parent, Class<?> application, String name,
+                              String[] args, String mongoAddress) {
+        new SpringApplicationBuilder(application, InProcessKafkaConfiguration.class)
+                .parent(parent)
+                .bannerMode(Banner.Mode.OFF)
+                .profiles("standalone")
+                .properties("spring.config.name=" + name, "standalone.mongodb.address=" + mongoAddress)
+                .run(args);
+    }
+}
@@ -0,0 +1,29 @@
+package com.personal_projects.standalone;
+
+import com.personal_projects.standalone.bus.InProcessEventBus;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Parent context of the single-JVM deployment, holding what the three services share.
+ */
+@Configuration(proxyBeanMethods = false)
+public class StandaloneConfiguration {
+
+    @Bean
+    public InProcessEventBus inProcessEventBus(
+            @Value("${standalone.bus.partitions:3}") int partitions,
+            @Value("${standalone.bus.partition-capacity:8192}") int partitionCapacity,
+            @Value("${standalone.bus.max-block-ms:60000}") long maxBlockMs) {
+        return new InProcessEventBus(partitions, partitionCapacity, Duration.ofMillis(maxBlockMs));
+    }
+
+    @Bean
+    public EmbeddedMongo embeddedMongo(@Value("${standalone.mongodb.version:V6_0}") String version) {
+        return new EmbeddedMongo(Version.Main.valueOf(version));
+    }
+}
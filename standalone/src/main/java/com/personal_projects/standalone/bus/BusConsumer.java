@@ -0,0 +1,272 @@
+package com.personal_projects.standalone.bus;
+
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.InterruptException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Kafka {@link org.apache.kafka.clients.consumer.Consumer} reading from the {@link InProcessEventBus}.
+ * <p>
+ * It builds on {@link MockConsumer} for the positions, pausing and commit bookkeeping the listener containers
+ * rely on. A poll first applies any rebalance of its group, calling the rebalance listener on the polling thread
+ * as Kafka does, then reads the records of its assigned partitions from the bus, deserializing them with the
+ * service's deserializers, and waits for appends when there are none. Commits are forwarded to the bus, which
+ * releases the records every group has consumed.
+ * </p>
+ * <p>
+ * A rebalance revokes the partitions first and gives them back to the bus once the rebalance listener, which
+ * commits the processed records, has returned. A reassigned partition is only taken once its previous owner gave
+ * it back, on a later poll if need be, and read from the offset that owner committed. Closing the consumer
+ * revokes its partitions the same way.
+ * </p>
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class BusConsumer<K, V> extends MockConsumer<K, V> {
+
+    /**
+     * Rebalance listener of a consumer subscribed without one.
+     */
+    private static final ConsumerRebalanceListener NO_REBALANCE_LISTENER = new ConsumerRebalanceListener() {
+
+        @Override
+        public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        }
+
+        @Override
+        public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+        }
+    };
+
+    private final InProcessEventBus bus;
+    private final String group;
+    private final Deserializer<K> keyDeserializer;
+    private final Deserializer<V> valueDeserializer;
+    private final int maxPollRecords;
+
+    private volatile boolean wakeupRequested;
+    private ConsumerRebalanceListener rebalanceListener = NO_REBALANCE_LISTENER;
+    private long rebalancedGeneration = -1;
+    private Set<TopicPartition> target = Set.of();
+    private boolean subscribed;
+
+    /**
+     * Creates a consumer.
+     *
+     * @param bus               the bus to read from
+     * @param group             the consumer group
+     * @param keyDeserializer   deserializer of the record keys
+     * @param valueDeserializer deserializer of the record values
+     * @param maxPollRecords    maximum number of records returned by a poll
+     */
+    public BusConsumer(InProcessEventBus bus, String group, Deserializer<K> keyDeserializer,
+                       Deserializer<V> valueDeserializer, int maxPollRecords) {
+        super(OffsetResetStrategy.EARLIEST);
+        this.bus = bus;
+        this.group = group;
+        this.keyDeserializer = keyDeserializer;
+        this.valueDeserializer = valueDeserializer;
+        this.maxPollRecords = maxPollRecords;
+    }
+
+    String group() {
+        return group;
+    }
+
+    boolean wakeupRequested() {
+        return wakeupRequested;
+    }
+
+    @Override
+    public void subscribe(Collection<String> topics) {
+        subscribe(topics, NO_REBALANCE_LISTENER);
+    }
+
+    @Override
+    public void subscribe(Collection<String> topics, ConsumerRebalanceListener listener) {
+        super.subscribe(topics, listener);
+        this.rebalanceListener = listener;
+        this.subscribed = true;
+        bus.join(this, topics);
+    }
+
+    @Override
+    public void subscribe(Pattern pattern, ConsumerRebalanceListener listener) {
+        throw new UnsupportedOperationException("The in-process bus only supports subscribing to topic names");
+    }
+
+    @Override
+    public void unsubscribe() {
+        leave();
+        super.unsubscribe();
+    }
+
+    @Override
+    public ConsumerRecords<K, V> poll(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        try {
+            while (true) {
+                long seenAppends = bus.appends();
+                rebalanceIfNeeded();
+                long remaining = deadline - System.nanoTime();
+                if (fetch() || remaining <= 0 || wakeupRequested) {
+                    break;
+                }
+                bus.await(seenAppends, this, remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptException(e);
+        }
+        wakeupRequested = false;
+        // Hands the fetched records out, advancing the positions, or throws the WakeupException.
+        return super.poll(Duration.ZERO);
+    }
+
+    @Override
+    public void wakeup() {
+        super.wakeup();
+        wakeupRequested = true;
+        bus.signalAll();
+    }
+
+    @Override
+    public synchronized void commitAsync(Map<TopicPartition, OffsetAndMetadata> offsets, OffsetCommitCallback callback) {
+        bus.commit(group, offsets);
+        super.commitAsync(offsets, callback);
+    }
+
+    @Override
+    public synchronized void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets) {
+        bus.commit(group, offsets);
+        super.commitSync(offsets);
+    }
+
+    @Override
+    public synchronized void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets, Duration timeout) {
+        bus.commit(group, offsets);
+        super.commitSync(offsets, timeout);
+    }
+
+    @Override
+    public void close() {
+        close(Duration.ZERO);
+    }
+
+    @Override
+    public void close(Duration timeout) {
+        leave();
+        super.close(timeout);
+    }
+
+    private void leave() {
+        if (subscribed) {
+            subscribed = false;
+            revoke();
+            target = Set.of();
+            bus.leave(this);
+        }
+    }
+
+    /**
+     * Applies the assignment of the current group generation like Kafka's eager rebalance protocol: when it
+     * changed, every partition is revoked and given back to the bus. The partitions of the assignment are then
+     * claimed at their committed offsets, those still owned by another consumer on a later poll, once it gave them
+     * back.
+     */
+    private void rebalanceIfNeeded() {
+        long generation = bus.generation();
+        if (!subscribed || generation == rebalancedGeneration) {
+            return;
+        }
+        rebalancedGeneration = generation;
+        Set<TopicPartition> assigned = bus.assignment(this);
+        boolean changed = !assigned.equals(target);
+        if (changed) {
+            revoke();
+            target = assigned;
+        }
+        Set<TopicPartition> owned = new HashSet<>(assignment());
+        Set<TopicPartition> claimed = new HashSet<>();
+        for (TopicPartition partition : target) {
+            if (!owned.contains(partition) && bus.claim(this, partition)) {
+                claimed.add(partition);
+            }
+        }
+        if (!changed && claimed.isEmpty()) {
+            return;
+        }
+        owned.addAll(claimed);
+        rebalance(owned);
+        for (TopicPartition partition : claimed) {
+            seek(partition, bus.committed(group, partition));
+        }
+        rebalanceListener.onPartitionsAssigned(claimed);
+    }
+
+    /**
+     * Revokes every owned partition, then gives them back to the bus for their next owner.
+     */
+    private void revoke() {
+        Set<TopicPartition> owned = new HashSet<>(assignment());
+        if (owned.isEmpty()) {
+            return;
+        }
+        rebalanceListener.onPartitionsRevoked(owned);
+        rebalance(Set.of());
+        bus.release(this, owned);
+    }
+
+    /**
+     * Reads the available records of the assigned, unpaused partitions.
+     *
+     * @return whether any record was read
+     */
+    private boolean fetch() {
+        Set<TopicPartition> paused = paused();
+        int budget = maxPollRecords;
+        for (TopicPartition partition : assignment()) {
+            if (budget == 0) {
+                break;
+            }
+            if (paused.contains(partition)) {
+                continue;
+            }
+            List<BusRecord> records = bus.read(partition, position(partition), budget);
+            for (BusRecord record : records) {
+                addRecord(deserialize(partition, record));
+            }
+            budget -= records.size();
+        }
+        return budget < maxPollRecords;
+    }
+
+    private ConsumerRecord<K, V> deserialize(TopicPartition partition, BusRecord record) {
+        // Deserializers may add or remove headers, so every delivery gets its own copy.
+        RecordHeaders headers = new RecordHeaders(record.headers());
+        K key = record.key() == null ? null : keyDeserializer.deserialize(partition.topic(), headers, record.key());
+        V value = record.value() == null ? null : valueDeserializer.deserialize(partition.topic(), headers, record.value());
+        return new ConsumerRecord<>(partition.topic(), partition.partition(), record.offset(), record.timestamp(),
+                TimestampType.CREATE_TIME, record.key() == null ? -1 : record.key().length,
+                record.value() == null ? -1 : record.value().length, key, value, headers, Optional.empty());
+    }
+}
@@ -0,0 +1,99 @@
+package com.personal_projects.standalone.bus;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.errors.ApiException;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * Kafka {@link org.apache.kafka.clients.producer.Producer} appending to the {@link InProcessEventBus}.
+ * <p>
+ * Records are serialized with the service's serializers, headers included, and appended synchronously: the
+ * returned future is complete and the callback has run when {@code send} returns. Like a Kafka producer, a send
+ * failing with an {@link ApiException}, such as the {@code TimeoutException} of a full partition, is reported
+ * through the callback and the future, while serialization errors are thrown. A single producer is shared by
+ * the templates of a service and is never closed by them.
+ * </p>
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class BusProducer<K, V> extends MockProducer<K, V> {
+
+    private final InProcessEventBus bus;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+
+    /**
+     * Creates a producer.
+     *
+     * @param bus             the bus to append to
+     * @param keySerializer   serializer of the record keys
+     * @param valueSerializer serializer of the record values
+     */
+    public BusProducer(InProcessEventBus bus, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        super(true, keySerializer, valueSerializer);
+        this.bus = bus;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+    }
+
+    @Override
+    public Future<RecordMetadata> send(ProducerRecord<K, V> record) {
+        return send(record, null);
+    }
+
+    @Override
+    public Future<RecordMetadata> send(ProducerRecord<K, V> record, Callback callback) {
+        byte[] key = keySerializer.serialize(record.topic(), record.headers(), record.key());
+        byte[] value = valueSerializer.serialize(record.topic(), record.headers(), record.value());
+        long timestamp = record.timestamp() != null ? record.timestamp() : System.currentTimeMillis();
+        RecordMetadata metadata;
+        try {
+            metadata = bus.append(record.topic(), record.partition(), key, value, record.headers().toArray(), timestamp);
+        } catch (ApiException e) {
+            if (callback != null) {
+                callback.onCompletion(null, e);
+            }
+            return CompletableFuture.failedFuture(e);
+        }
+        if (callback != null) {
+            callback.onCompletion(metadata, null);
+        }
+        return CompletableFuture.completedFuture(metadata);
+    }
+
+    @Override
+    public List<PartitionInfo> partitionsFor(String topic) {
+        List<PartitionInfo> partitions = new ArrayList<>();
+        for (int p = 0; p < bus.partitionCount(); p++) {
+            partitions.add(new PartitionInfo(topic, p, null, new Node[0], new Node[0]));
+        }
+        return partitions;
+    }
+
+    @Override
+    public void flush() {
+        // Every send is complete when it returns.
+    }
+
+    @Override
+    public void close() {
+        // Shared by the templates of the service, which close their producer after every send.
+    }
+
+    @Override
+    public void close(Duration timeout) {
+        // Shared by the templates of the service, which close their producer after every send.
+    }
+}
@@ -0,0 +1,15 @@
+package com.personal_projects.standalone.bus;
+
+import org.apache.kafka.common.header.Header;
+
+/**
+ * A record held by a partition of the {@link InProcessEventBus}, serialized as it would be on a broker.
+ *
+ * @param offset    position of the record in its partition
+ * @param timestamp creation time, epoch millis
+ * @param key       serialized key, may be {@code null}
+ * @param value     serialized value, may be {@code null}
+ * @param headers   record headers, including the trace context and lifecycle timestamps
+ */
+public record BusRecord(long offset, long timestamp, byte[] key, byte[] value, Header[] headers) {
+}
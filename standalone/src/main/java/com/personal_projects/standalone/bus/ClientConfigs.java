@@ -0,0 +1,37 @@
+package com.personal_projects.standalone.bus;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ClassUtils;
+
+import java.util.Map;
+
+/**
+ * Creates the serializers and deserializers a Kafka client configuration names by class.
+ */
+final class ClientConfigs {
+
+    private ClientConfigs() {
+    }
+
+    /**
+     * Creates the instance configured under a key, given as an instance, a class or a class name.
+     *
+     * @param config the client configuration
+     * @param key    the configuration key
+     * @param type   the expected type
+     * @return the instance, not yet configured unless the configuration held an instance
+     * @throws IllegalStateException if nothing is configured under the key
+     */
+    static <T> T instantiate(Map<String, Object> config, String key, Class<T> type) {
+        Object configured = config.get(key);
+        if (configured == null) {
+            throw new IllegalStateException("No " + key + " configured");
+        }
+        if (type.isInstance(configured)) {
+            return type.cast(configured);
+        }
+        Class<?> configuredClass = configured instanceof Class<?> clazz
+                ? clazz : ClassUtils.resolveClassName(configured.toString(), ClassUtils.getDefaultClassLoader());
+        return type.cast(BeanUtils.instantiateClass(configuredClass));
+    }
+}
@@ -0,0 +1,91 @@
+package com.personal_projects.standalone.bus;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.core.ConsumerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * {@link ConsumerFactory} creating {@link BusConsumer}s in place of the Kafka consumers of a service's own
+ * factory, whose configuration and deserializers it reuses. Offsets are always committed by the listener
+ * containers, never automatically.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class InProcessConsumerFactory<K, V> implements ConsumerFactory<K, V> {
+
+    private static final int DEFAULT_MAX_POLL_RECORDS = 500;
+
+    private final InProcessEventBus bus;
+    private final Map<String, Object> config;
+    private final Deserializer<K> keyDeserializer;
+    private final Deserializer<V> valueDeserializer;
+
+    /**
+     * Wraps a service's consumer factory.
+     *
+     * @param bus      the bus the records are read from
+     * @param delegate the factory configured by the service
+     */
+    @SuppressWarnings("unchecked")
+    public InProcessConsumerFactory(InProcessEventBus bus, ConsumerFactory<K, V> delegate) {
+        this.bus = bus;
+        Map<String, Object> config = new HashMap<>(delegate.getConfigurationProperties());
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        this.config = Collections.unmodifiableMap(config);
+        if (delegate.getKeyDeserializer() != null) {
+            this.keyDeserializer = delegate.getKeyDeserializer();
+        } else {
+            this.keyDeserializer = ClientConfigs.instantiate(config, ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, Deserializer.class);
+            this.keyDeserializer.configure(config, true);
+        }
+        if (delegate.getValueDeserializer() != null) {
+            this.valueDeserializer = delegate.getValueDeserializer();
+        } else {
+            this.valueDeserializer = ClientConfigs.instantiate(config, ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, Deserializer.class);
+            this.valueDeserializer.configure(config, false);
+        }
+    }
+
+    @Override
+    public Consumer<K, V> createConsumer(String groupId, String clientIdPrefix, String clientIdSuffix) {
+        return createConsumer(groupId, clientIdPrefix, clientIdSuffix, null);
+    }
+
+    @Override
+    public Consumer<K, V> createConsumer(String groupId, String clientIdPrefix, String clientIdSuffix,
+                                         Properties properties) {
+        String group = groupId != null ? groupId : (String) config.get(ConsumerConfig.GROUP_ID_CONFIG);
+        Object maxPollRecords = properties != null && properties.containsKey(ConsumerConfig.MAX_POLL_RECORDS_CONFIG)
+                ? properties.get(ConsumerConfig.MAX_POLL_RECORDS_CONFIG)
+                : config.getOrDefault(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, DEFAULT_MAX_POLL_RECORDS);
+        return new BusConsumer<>(bus, group, keyDeserializer, valueDeserializer,
+                Integer.parseInt(maxPollRecords.toString()));
+    }
+
+    @Override
+    public boolean isAutoCommit() {
+        return false;
+    }
+
+    @Override
+    public Map<String, Object> getConfigurationProperties() {
+        return config;
+    }
+
+    @Override
+    public Deserializer<K> getKeyDeserializer() {
+        return keyDeserializer;
+    }
+
+    @Override
+    public Deserializer<V> getValueDeserializer() {
+        return valueDeserializer;
+    }
+}
@@ -0,0 +1,430 @@
+package com.personal_projects.standalone.bus;
+
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.InterruptException;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.utils.Utils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process replacement for the Kafka broker when the services run in a single JVM.
+ * <p>
+ * Every topic has a fixed number of partitions, each a bounded ring buffer of serialized records. Records are
+ * partitioned by the murmur2 hash of their key, like the Kafka default partitioner, so the events of an order
+ * stay in one partition and are consumed in order. Within a consumer group, the partitions of a topic are
+ * spread over the group's consumers, and are reassigned when a consumer joins or leaves.
+ * </p>
+ * <p>
+ * Delivery is at least once: a record stays in its partition until every consumer group reading the topic has
+ * committed past it, and a consumer assigned a partition resumes from its group's committed offset, so records
+ * polled but not committed before a rebalance are delivered again. A group joining a topic starts from the
+ * oldest retained record. When a partition holds {@code partitionCapacity} uncommitted records, producers block
+ * until the slowest group catches up, and fail with a {@link TimeoutException} after {@code maxBlock}, as a Kafka
+ * producer does when its buffer stays full. A group left by its last consumer no longer holds records back: its
+ * offsets are dropped, as Kafka does once the offsets of an empty group expire.
+ * </p>
+ * <p>
+ * A partition has at most one owner per group. A consumer gives its partitions back once it has revoked them,
+ * which commits what its listener processed, and only then may the consumer they are reassigned to claim them,
+ * so two consumers of a group never read a partition at the same time.
+ * </p>
+ */
+public class InProcessEventBus {
+
+    private final int partitionCount;
+    private final int partitionCapacity;
+    private final long maxBlockNanos;
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+
+    private final Object membership = new Object();
+    private final AtomicLong generation = new AtomicLong();
+
+    private final ReentrantLock signalLock = new ReentrantLock();
+    private final Condition signal = signalLock.newCondition();
+    private final AtomicLong appends = new AtomicLong();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * Creates the bus.
+     *
+     * @param partitionCount    partitions of every topic
+     * @param partitionCapacity uncommitted records a partition holds, rounded up to a power of two
+     * @param maxBlock          time a producer waits for room in a full partition
+     */
+    public InProcessEventBus(int partitionCount, int partitionCapacity, Duration maxBlock) {
+        if (partitionCount <= 0 || partitionCapacity <= 0) {
+            throw new IllegalArgumentException("The bus needs at least one partition of at least one record");
+        }
+        this.partitionCount = partitionCount;
+        this.partitionCapacity = partitionCapacity == 1 ? 1 : Integer.highestOneBit(partitionCapacity - 1) << 1;
+        this.maxBlockNanos = maxBlock.toNanos();
+    }
+
+    /**
+     * @return the number of partitions of every topic
+     */
+    public int partitionCount() {
+        return partitionCount;
+    }
+
+    /**
+     * Appends a record, waiting for room if its partition is full.
+     *
+     * @param topic     the topic
+     * @param partition the partition, or {@code null} to choose it from the key
+     * @param key       the serialized key
+     * @param value     the serialized value
+     * @param headers   the record headers
+     * @param timestamp the record timestamp, epoch millis
+     * @return the partition and offset of the record
+     * @throws TimeoutException   if the partition stayed full for {@code maxBlock}
+     * @throws InterruptException if the producing thread is interrupted while waiting
+     */
+    public RecordMetadata append(String topic, Integer partition, byte[] key, byte[] value, Header[] headers,
+                                 long timestamp) {
+        Topic target = topic(topic);
+        Partition destination = target.partitions[partition != null ? partition : target.partitionFor(key)];
+        long offset = destination.append(key, value, headers, timestamp);
+        appends.incrementAndGet();
+        if (waiting.get() > 0) {
+            signalAll();
+        }
+        return new RecordMetadata(destination.id, offset, 0, timestamp,
+                key == null ? -1 : key.length, value == null ? -1 : value.length);
+    }
+
+    /**
+     * Reads the records of a partition from an offset.
+     *
+     * @param partition the partition
+     * @param offset    the first offset to read
+     * @param max       the maximum number of records
+     * @return the records, oldest first, empty if none are available
+     */
+    public List<BusRecord> read(TopicPartition partition, long offset, int max) {
+        return topic(partition.topic()).partitions[partition.partition()].read(offset, max);
+    }
+
+    /**
+     * @return the offset committed by a group on a partition, or the oldest retained offset if it committed none
+     */
+    public long committed(String group, TopicPartition partition) {
+        return topic(partition.topic()).partitions[partition.partition()].committed(group);
+    }
+
+    /**
+     * Commits the offsets of a group, releasing the records every group has committed past.
+     *
+     * @param group   the consumer group
+     * @param offsets the next offset to consume, by partition
+     */
+    public void commit(String group, Map<TopicPartition, OffsetAndMetadata> offsets) {
+        offsets.forEach((partition, offset) ->
+                topic(partition.topic()).partitions[partition.partition()].commit(group, offset.offset()));
+    }
+
+    /**
+     * Adds a consumer to its group on the topics it subscribes to, triggering a rebalance of the group.
+     */
+    void join(BusConsumer<?, ?> consumer, Collection<String> subscribed) {
+        synchronized (membership) {
+            for (String name : subscribed) {
+                Topic topic = topic(name);
+                for (Partition partition : topic.partitions) {
+                    partition.register(consumer.group());
+                }
+                List<BusConsumer<?, ?>> members = topic.members.computeIfAbsent(consumer.group(), g -> new ArrayList<>());
+                if (!members.contains(consumer)) {
+                    members.add(consumer);
+                }
+            }
+            generation.incrementAndGet();
+        }
+        signalAll();
+    }
+
+    /**
+     * Removes a consumer from every group membership, triggering a rebalance of its group.
+     */
+    void leave(BusConsumer<?, ?> consumer) {
+        synchronized (membership) {
+            for (Topic topic : topics.values()) {
+                List<BusConsumer<?, ?>> members = topic.members.get(consumer.group());
+                if (members == null) {
+                    continue;
+                }
+                members.remove(consumer);
+                for (Partition partition : topic.partitions) {
+                    partition.owners.remove(consumer.group(), consumer);
+                    if (members.isEmpty()) {
+                        partition.unregister(consumer.group());
+                    }
+                }
+                if (members.isEmpty()) {
+                    topic.members.remove(consumer.group());
+                }
+            }
+            generation.incrementAndGet();
+        }
+        signalAll();
+    }
+
+    /**
+     * Makes a consumer the owner of a partition for its group, unless another consumer of the group still owns
+     * it.
+     *
+     * @return whether the consumer owns the partition
+     */
+    boolean claim(BusConsumer<?, ?> consumer, TopicPartition partition) {
+        synchronized (membership) {
+            BusConsumer<?, ?> owner = topic(partition.topic()).partitions[partition.partition()].owners
+                    .putIfAbsent(consumer.group(), consumer);
+            return owner == null || owner == consumer;
+        }
+    }
+
+    /**
+     * Gives revoked partitions back, waking the consumers waiting to claim them.
+     */
+    void release(BusConsumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        synchronized (membership) {
+            for (TopicPartition partition : partitions) {
+                topic(partition.topic()).partitions[partition.partition()].owners.remove(consumer.group(), consumer);
+            }
+            generation.incrementAndGet();
+        }
+        signalAll();
+    }
+
+    /**
+     * @return a counter incremented by every membership change
+     */
+    long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Computes the partitions of a consumer: partition {@code p} of a topic goes to the consumer at index
+     * {@code p % members} among the group's consumers of that topic.
+     */
+    Set<TopicPartition> assignment(BusConsumer<?, ?> consumer) {
+        Set<TopicPartition> assignment = new HashSet<>();
+        synchronized (membership) {
+            for (Topic topic : topics.values()) {
+                List<BusConsumer<?, ?>> members = topic.members.get(consumer.group());
+                int index = members == null ? -1 : members.indexOf(consumer);
+                if (index < 0) {
+                    continue;
+                }
+                for (int p = index; p < partitionCount; p += members.size()) {
+                    assignment.add(topic.partitions[p].id);
+                }
+            }
+        }
+        return assignment;
+    }
+
+    /**
+     * @return a counter incremented by every append, to detect appends while a consumer was reading
+     */
+    long appends() {
+        return appends.get();
+    }
+
+    /**
+     * Waits until a record is appended after {@code seenAppends}, the membership changes, the consumer is woken
+     * up or the timeout elapses.
+     *
+     * @param seenAppends the value of {@link #appends()} before the consumer last read
+     * @param consumer    the waiting consumer
+     * @param nanos       the maximum time to wait
+     */
+    void await(long seenAppends, BusConsumer<?, ?> consumer, long nanos) throws InterruptedException {
+        long seenGeneration = generation.get();
+        signalLock.lock();
+        waiting.incrementAndGet();
+        try {
+            while (nanos > 0 && appends.get() == seenAppends && generation.get() == seenGeneration
+                    && !consumer.wakeupRequested()) {
+                nanos = signal.awaitNanos(nanos);
+            }
+        } finally {
+            waiting.decrementAndGet();
+            signalLock.unlock();
+        }
+    }
+
+    /**
+     * Wakes every waiting consumer up.
+     */
+    void signalAll() {
+        signalLock.lock();
+        try {
+            signal.signalAll();
+        } finally {
+            signalLock.unlock();
+        }
+    }
+
+    private Topic topic(String name) {
+        Topic topic = topics.get(name);
+        return topic != null ? topic : topics.computeIfAbsent(name, Topic::new);
+    }
+
+    private final class Topic {
+
+        private final Partition[] partitions;
+        private final AtomicInteger nextPartition = new AtomicInteger();
+        /** Consumers by group, guarded by {@code membership}. */
+        private final Map<String, List<BusConsumer<?, ?>>> members = new HashMap<>();
+
+        private Topic(String name) {
+            partitions = new Partition[partitionCount];
+            for (int p = 0; p < partitionCount; p++) {
+                partitions[p] = new Partition(new TopicPartition(name, p));
+            }
+        }
+
+        private int partitionFor(byte[] key) {
+            if (key == null) {
+                return Utils.toPositive(nextPartition.getAndIncrement()) % partitionCount;
+            }
+            return Utils.toPositive(Utils.murmur2(key)) % partitionCount;
+        }
+    }
+
+    private final class Partition {
+
+        private final TopicPartition id;
+        private final BusRecord[] ring = new BusRecord[partitionCapacity];
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notFull = lock.newCondition();
+        /** Next offset to append. */
+        private long head;
+        /** Oldest retained offset, the lowest offset committed by the groups. */
+        private long tail;
+        private final Map<String, Long> committed = new HashMap<>();
+        /** Consumer reading the partition, by group, guarded by {@code membership}. */
+        private final Map<String, BusConsumer<?, ?>> owners = new HashMap<>();
+
+        private Partition(TopicPartition id) {
+            this.id = id;
+        }
+
+        private long append(byte[] key, byte[] value, Header[] headers, long timestamp) {
+            lock.lock();
+            try {
+                long nanos = maxBlockNanos;
+                while (head - tail >= ring.length) {
+                    if (nanos <= 0) {
+                        throw new TimeoutException("Partition " + id + " of the in-process bus stayed full for "
+                                + TimeUnit.NANOSECONDS.toMillis(maxBlockNanos) + " ms");
+                    }
+                    nanos = notFull.awaitNanos(nanos);
+                }
+                long offset = head++;
+                ring[index(offset)] = new BusRecord(offset, timestamp, key, value, headers);
+                return offset;
+            } catch (InterruptedException e) {
+                throw new InterruptException(e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private List<BusRecord> read(long offset, int max) {
+            lock.lock();
+            try {
+                long from = Math.max(offset, tail);
+                long to = Math.min(head, from + max);
+                if (from >= to) {
+                    return List.of();
+                }
+                List<BusRecord> records = new ArrayList<>((int) (to - from));
+                for (long o = from; o < to; o++) {
+                    records.add(ring[index(o)]);
+                }
+                return records;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void register(String group) {
+            lock.lock();
+            try {
+                committed.putIfAbsent(group, tail);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private long committed(String group) {
+            lock.lock();
+            try {
+                return committed.getOrDefault(group, tail);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void unregister(String group) {
+            lock.lock();
+            try {
+                committed.remove(group);
+                releaseConsumed();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void commit(String group, long offset) {
+            lock.lock();
+            try {
+                // A group that left commits nothing, so its revoked partitions hold no records back
+                committed.computeIfPresent(group, (g, current) -> Math.max(current, Math.min(offset, head)));
+                releaseConsumed();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Frees the records every group has committed past, waking the producers waiting for room.
+         */
+        private void releaseConsumed() {
+            long lowest = head;
+            for (long groupOffset : committed.values()) {
+                lowest = Math.min(lowest, groupOffset);
+            }
+            if (lowest > tail) {
+                for (long o = tail; o < lowest; o++) {
+                    ring[index(o)] = null;
+                }
+                tail = lowest;
+                notFull.signalAll();
+            }
+        }
+
+        private int index(long offset) {
+            return (int) (offset & (ring.length - 1));
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.personal_projects.standalone.bus;
+
+import org.springframework.kafka.core.KafkaAdmin;
+
+import java.util.Map;
+
+/**
+ * {@link KafkaAdmin} of a service running on the {@link InProcessEventBus}. The observed templates and listener
+ * containers ask it for the cluster ID, which it answers without a broker, and it creates no topics, since the
+ * bus creates them on first use.
+ */
+public class InProcessKafkaAdmin extends KafkaAdmin {
+
+    public static final String CLUSTER_ID = "in-process";
+
+    /**
+     * @param config the admin configuration, whose bootstrap servers must match the service's clients so the
+     *               templates and containers use this admin rather than creating their own
+     */
+    public InProcessKafkaAdmin(Map<String, Object> config) {
+        super(config);
+    }
+
+    @Override
+    public String clusterId() {
+        return CLUSTER_ID;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        // No topics to create and no broker to check.
+    }
+}
@@ -0,0 +1,69 @@
+package com.personal_projects.standalone.bus;
+
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.ProducerFactory;
+
+import java.util.Map;
+
+/**
+ * Moves a service's Kafka traffic onto the {@link InProcessEventBus} of the parent context, added to the sources
+ * of each service in the single-JVM deployment.
+ * <p>
+ * Every {@link ProducerFactory} and {@link ConsumerFactory} the service defines is wrapped as it is created, so
+ * its templates and listener containers, with their interceptors, observation and journal, stay as they are
+ * and only the clients underneath change.
+ * </p>
+ */
+@Configuration(proxyBeanMethods = false)
+public class InProcessKafkaConfiguration {
+
+    /**
+     * Registers the post-processor swapping the Kafka client factories. Static, as post-processors are created
+     * before the other beans.
+     *
+     * @param eventBus the bus of the parent context
+     * @return the post-processor
+     */
+    @Bean
+    public static BeanPostProcessor inProcessKafkaClients(ObjectProvider<InProcessEventBus> eventBus) {
+        return new ClientFactoryPostProcessor(eventBus);
+    }
+
+    /**
+     * Replaces Spring Boot's admin, which would connect to the broker.
+     *
+     * @param bootstrapServers the bootstrap servers the service's clients are configured with
+     * @return the admin
+     */
+    @Bean
+    public KafkaAdmin kafkaAdmin(@Value("${spring.kafka.bootstrap-servers}") String bootstrapServers) {
+        return new InProcessKafkaAdmin(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers));
+    }
+
+    private static final class ClientFactoryPostProcessor implements BeanPostProcessor {
+
+        private final ObjectProvider<InProcessEventBus> eventBus;
+
+        private ClientFactoryPostProcessor(ObjectProvider<InProcessEventBus> eventBus) {
+            this.eventBus = eventBus;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof ProducerFactory<?, ?> factory && !(bean instanceof InProcessProducerFactory)) {
+                return new InProcessProducerFactory<>(eventBus.getObject(), factory);
+            }
+            if (bean instanceof ConsumerFactory<?, ?> factory && !(bean instanceof InProcessConsumerFactory)) {
+                return new InProcessConsumerFactory<>(eventBus.getObject(), factory);
+            }
+            return bean;
+        }
+    }
+}
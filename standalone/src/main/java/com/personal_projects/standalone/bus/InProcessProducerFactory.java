@@ -0,0 +1,68 @@
+package com.personal_projects.standalone.bus;
+
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.kafka.core.ProducerFactory;
+
+import java.util.Map;
+
+/**
+ * {@link ProducerFactory} handing out a {@link BusProducer} in place of the Kafka producers of a service's own
+ * factory, whose configuration and serializers it reuses.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class InProcessProducerFactory<K, V> implements ProducerFactory<K, V> {
+
+    private final ProducerFactory<K, V> delegate;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final BusProducer<K, V> producer;
+
+    /**
+     * Wraps a service's producer factory.
+     *
+     * @param bus      the bus the records are appended to
+     * @param delegate the factory configured by the service
+     */
+    @SuppressWarnings("unchecked")
+    public InProcessProducerFactory(InProcessEventBus bus, ProducerFactory<K, V> delegate) {
+        this.delegate = delegate;
+        Map<String, Object> config = delegate.getConfigurationProperties();
+        if (delegate.getKeySerializer() != null) {
+            this.keySerializer = delegate.getKeySerializer();
+        } else {
+            this.keySerializer = ClientConfigs.instantiate(config, ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, Serializer.class);
+            this.keySerializer.configure(config, true);
+        }
+        if (delegate.getValueSerializer() != null) {
+            this.valueSerializer = delegate.getValueSerializer();
+        } else {
+            this.valueSerializer = ClientConfigs.instantiate(config, ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, Serializer.class);
+            this.valueSerializer.configure(config, false);
+        }
+        this.producer = new BusProducer<>(bus, keySerializer, valueSerializer);
+    }
+
+    @Override
+    public Producer<K, V> createProducer() {
+        return producer;
+    }
+
+    @Override
+    public Map<String, Object> getConfigurationProperties() {
+        return delegate.getConfigurationProperties();
+    }
+
+    @Override
+    public Serializer<K> getKeySerializer() {
+        return keySerializer;
+    }
+
+    @Override
+    public Serializer<V> getValueSerializer() {
+        return valueSerializer;
+    }
+}
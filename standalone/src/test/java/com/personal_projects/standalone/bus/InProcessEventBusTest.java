@@ -0,0 +1,208 @@
+package com.personal_projects.standalone.bus;
+
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Produces to and consumes from an {@link InProcessEventBus} through a {@link BusProducer} and
+ * {@link BusConsumer}s, as the services of the single-JVM deployment do.
+ */
+class InProcessEventBusTest {
+
+    private static final String TOPIC = "order-topic";
+    private static final Duration POLL = Duration.ofMillis(50);
+
+    @Test
+    void deliversTheRecordsOfAKeyInOrder() throws Exception {
+        InProcessEventBus bus = new InProcessEventBus(4, 1024, Duration.ofSeconds(1));
+        BusConsumer<String, String> consumer = consumer(bus, "shipping", new CommittingListener());
+        BusProducer<String, String> producer = producer(bus);
+        for (int i = 0; i < 100; i++) {
+            for (int key = 0; key < 10; key++) {
+                producer.send(new ProducerRecord<>(TOPIC, "order-" + key, Integer.toString(i))).get();
+            }
+        }
+
+        List<ConsumerRecord<String, String>> records = pollUntil(consumer, 1_000);
+
+        Map<String, Integer> last = new HashMap<>();
+        Map<String, Integer> partitions = new HashMap<>();
+        for (ConsumerRecord<String, String> record : records) {
+            int value = Integer.parseInt(record.value());
+            assertEquals(last.getOrDefault(record.key(), -1) + 1, value, "records of " + record.key() + " in order");
+            assertEquals(partitions.computeIfAbsent(record.key(), k -> record.partition()), record.partition());
+            last.put(record.key(), value);
+        }
+        assertEquals(10, last.size());
+        consumer.close();
+    }
+
+    @Test
+    void handsAPartitionOverOnlyOnceItsOwnerRevokedIt() throws Exception {
+        InProcessEventBus bus = new InProcessEventBus(2, 1024, Duration.ofSeconds(1));
+        CommittingListener firstListener = new CommittingListener();
+        BusConsumer<String, String> first = consumer(bus, "shipping", firstListener);
+        firstListener.consumer = first;
+        BusProducer<String, String> producer = producer(bus);
+        producer.send(new ProducerRecord<>(TOPIC, 0, "1", "a")).get();
+        producer.send(new ProducerRecord<>(TOPIC, 1, "2", "b")).get();
+        assertEquals(2, pollUntil(first, 2).size());
+
+        BusConsumer<String, String> second = consumer(bus, "shipping", new CommittingListener());
+        // The first consumer still owns both partitions until its next poll
+        assertTrue(second.poll(POLL).isEmpty());
+        assertTrue(second.assignment().isEmpty());
+
+        // Revokes both, committing what it processed, and keeps partition 0
+        assertTrue(first.poll(POLL).isEmpty());
+        assertEquals(List.of(new TopicPartition(TOPIC, 0)), List.copyOf(first.assignment()));
+        assertTrue(second.poll(POLL).isEmpty(), "the committed records are not delivered again");
+        assertEquals(List.of(new TopicPartition(TOPIC, 1)), List.copyOf(second.assignment()));
+
+        producer.send(new ProducerRecord<>(TOPIC, 1, "2", "c")).get();
+        assertEquals(List.of("c"), values(pollUntil(second, 1)));
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void redeliversTheRecordsNotCommittedWhenAConsumerLeaves() throws Exception {
+        InProcessEventBus bus = new InProcessEventBus(2, 1024, Duration.ofSeconds(1));
+        BusConsumer<String, String> first = consumer(bus, "shipping", new CommittingListener());
+        BusConsumer<String, String> second = consumer(bus, "shipping", new CommittingListener());
+        BusProducer<String, String> producer = producer(bus);
+        producer.send(new ProducerRecord<>(TOPIC, 0, "1", "a")).get();
+        producer.send(new ProducerRecord<>(TOPIC, 1, "2", "b")).get();
+
+        // Polled, but neither processed nor committed
+        assertEquals(List.of("a"), values(pollUntil(first, 1)));
+        assertEquals(List.of("b"), values(pollUntil(second, 1)));
+        first.close();
+
+        List<String> redelivered = values(pollUntil(second, 2));
+        redelivered.sort(null);
+        assertEquals(List.of("a", "b"), redelivered);
+        second.close();
+    }
+
+    @Test
+    void blocksTheProducerWhileAPartitionIsFull() throws Exception {
+        InProcessEventBus bus = new InProcessEventBus(1, 2, Duration.ofSeconds(5));
+        BusConsumer<String, String> consumer = consumer(bus, "shipping", new CommittingListener());
+        consumer.poll(POLL);
+        BusProducer<String, String> producer = producer(bus);
+        producer.send(new ProducerRecord<>(TOPIC, "1", "a")).get();
+        producer.send(new ProducerRecord<>(TOPIC, "1", "b")).get();
+
+        CompletableFuture<Future<RecordMetadata>> blocked = CompletableFuture.supplyAsync(
+                () -> producer.send(new ProducerRecord<>(TOPIC, "1", "c")));
+        Thread.sleep(200);
+        assertFalse(blocked.isDone(), "the producer waits for the consumer");
+
+        pollUntil(consumer, 2);
+        consumer.commitSync(Map.of(new TopicPartition(TOPIC, 0), new OffsetAndMetadata(2)));
+        assertEquals(2, blocked.get(5, TimeUnit.SECONDS).get().offset());
+        consumer.close();
+    }
+
+    @Test
+    void failsTheSendOnceThePartitionStayedFull() throws Exception {
+        InProcessEventBus bus = new InProcessEventBus(1, 1, Duration.ofMillis(100));
+        BusConsumer<String, String> consumer = consumer(bus, "shipping", new CommittingListener());
+        consumer.poll(POLL);
+        BusProducer<String, String> producer = producer(bus);
+        producer.send(new ProducerRecord<>(TOPIC, "1", "a")).get();
+
+        Future<RecordMetadata> failed = producer.send(new ProducerRecord<>(TOPIC, "1", "b"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, failed::get);
+        assertInstanceOf(TimeoutException.class, e.getCause());
+        consumer.close();
+    }
+
+    @Test
+    void releasesTheRecordsHeldForAGroupItsLastConsumerLeft() throws Exception {
+        InProcessEventBus bus = new InProcessEventBus(1, 1, Duration.ofMillis(500));
+        BusConsumer<String, String> consumer = consumer(bus, "shipping", new CommittingListener());
+        consumer.poll(POLL);
+        BusProducer<String, String> producer = producer(bus);
+        producer.send(new ProducerRecord<>(TOPIC, "1", "a")).get();
+
+        consumer.close();
+
+        assertEquals(1, producer.send(new ProducerRecord<>(TOPIC, "1", "b")).get().offset());
+    }
+
+    private static BusConsumer<String, String> consumer(InProcessEventBus bus, String group,
+                                                        ConsumerRebalanceListener listener) {
+        BusConsumer<String, String> consumer = new BusConsumer<>(bus, group, new StringDeserializer(),
+                new StringDeserializer(), 500);
+        consumer.subscribe(List.of(TOPIC), listener);
+        return consumer;
+    }
+
+    private static BusProducer<String, String> producer(InProcessEventBus bus) {
+        return new BusProducer<>(bus, new StringSerializer(), new StringSerializer());
+    }
+
+    private static List<ConsumerRecord<String, String>> pollUntil(BusConsumer<String, String> consumer, int count) {
+        List<ConsumerRecord<String, String>> records = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (records.size() < count && System.nanoTime() < deadline) {
+            consumer.poll(POLL).forEach(records::add);
+        }
+        assertEquals(count, records.size());
+        return records;
+    }
+
+    private static List<String> values(List<ConsumerRecord<String, String>> records) {
+        return new ArrayList<>(records.stream().map(ConsumerRecord::value).toList());
+    }
+
+    /**
+     * Commits the positions of the revoked partitions, as the listener containers do.
+     */
+    private static final class CommittingListener implements ConsumerRebalanceListener {
+
+        private BusConsumer<String, String> consumer;
+
+        @Override
+        public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+            if (consumer == null) {
+                return;
+            }
+            Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+            partitions.forEach(partition -> offsets.put(partition, new OffsetAndMetadata(consumer.position(partition))));
+            consumer.commitSync(offsets);
+        }
+
+        @Override
+        public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+        }
+    }
+}